@@ -27,8 +27,10 @@ import org.elasticsearch.node.Node;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 import com.fasterxml.jackson.databind.DeserializationFeature;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.frequentis.maritime.mcsr.domain.Doc;
 
 import org.springframework.boot.autoconfigure.AutoConfigureAfter;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
@@ -55,8 +57,16 @@ public class ElasticSearchConfiguration {
     }
 
     @Bean
-    public ElasticsearchTemplate elasticsearchTemplate(Client client, Jackson2ObjectMapperBuilder jackson2ObjectMapperBuilder) {
-        return new ElasticsearchTemplate(client, new CustomEntityMapper(jackson2ObjectMapperBuilder.createXmlMapper(false).build()));
+    public EntityMapper elasticsearchEntityMapper(Jackson2ObjectMapperBuilder jackson2ObjectMapperBuilder) {
+        ObjectMapper objectMapper = jackson2ObjectMapperBuilder.createXmlMapper(false).build();
+        // The file content of docs stays in the database, only its extracted text is indexed
+        objectMapper.addMixIn(Doc.class, DocSearchMixIn.class);
+        return new CustomEntityMapper(objectMapper);
+    }
+
+    @Bean
+    public ElasticsearchTemplate elasticsearchTemplate(Client client, EntityMapper elasticsearchEntityMapper) {
+        return new ElasticsearchTemplate(client, elasticsearchEntityMapper);
     }
 
     @Bean
@@ -116,4 +126,7 @@ public class ElasticSearchConfiguration {
         }
     }
 
+    @JsonIgnoreProperties("filecontent")
+    private abstract static class DocSearchMixIn {
+    }
 }
@@ -34,6 +34,24 @@ public class JHipsterProperties {
 
     private final Async async = new Async();
 
+    private final Reindex reindex = new Reindex();
+
+    private final Outbox outbox = new Outbox();
+
+    private final Indexing indexing = new Indexing();
+
+    private final TextExtraction textExtraction = new TextExtraction();
+
+    private final Compression compression = new Compression();
+
+    private final SearchCache searchCache = new SearchCache();
+
+    private final Export export = new Export();
+
+    private final QueryGeometry queryGeometry = new QueryGeometry();
+
+    private final CoverageIndex coverageIndex = new CoverageIndex();
+
     private final Http http = new Http();
 
     private final Cache cache = new Cache();
@@ -54,6 +72,42 @@ public class JHipsterProperties {
         return async;
     }
 
+    public Reindex getReindex() {
+        return reindex;
+    }
+
+    public Outbox getOutbox() {
+        return outbox;
+    }
+
+    public Indexing getIndexing() {
+        return indexing;
+    }
+
+    public TextExtraction getTextExtraction() {
+        return textExtraction;
+    }
+
+    public Compression getCompression() {
+        return compression;
+    }
+
+    public SearchCache getSearchCache() {
+        return searchCache;
+    }
+
+    public Export getExport() {
+        return export;
+    }
+
+    public QueryGeometry getQueryGeometry() {
+        return queryGeometry;
+    }
+
+    public CoverageIndex getCoverageIndex() {
+        return coverageIndex;
+    }
+
     public Http getHttp() {
         return http;
     }
@@ -119,6 +173,393 @@ public class JHipsterProperties {
         }
     }
 
+    public static class Reindex {
+
+        private int batchSize = 500;
+
+        private int workerThreads = 4;
+
+        private int parallelTypes = 3;
+
+        public int getBatchSize() {
+            return batchSize;
+        }
+
+        public void setBatchSize(int batchSize) {
+            this.batchSize = batchSize;
+        }
+
+        public int getWorkerThreads() {
+            return workerThreads;
+        }
+
+        public void setWorkerThreads(int workerThreads) {
+            this.workerThreads = workerThreads;
+        }
+
+        public int getParallelTypes() {
+            return parallelTypes;
+        }
+
+        public void setParallelTypes(int parallelTypes) {
+            this.parallelTypes = parallelTypes;
+        }
+    }
+
+    public static class Outbox {
+
+        private int batchSize = 500;
+
+        private long pollInterval = 1000;
+
+        private long initialBackoff = 1000;
+
+        private long maxBackoff = 300000;
+
+        private long lease = 60000;
+
+        public int getBatchSize() {
+            return batchSize;
+        }
+
+        public void setBatchSize(int batchSize) {
+            this.batchSize = batchSize;
+        }
+
+        public long getPollInterval() {
+            return pollInterval;
+        }
+
+        public void setPollInterval(long pollInterval) {
+            this.pollInterval = pollInterval;
+        }
+
+        public long getInitialBackoff() {
+            return initialBackoff;
+        }
+
+        public void setInitialBackoff(long initialBackoff) {
+            this.initialBackoff = initialBackoff;
+        }
+
+        public long getMaxBackoff() {
+            return maxBackoff;
+        }
+
+        public void setMaxBackoff(long maxBackoff) {
+            this.maxBackoff = maxBackoff;
+        }
+
+        public long getLease() {
+            return lease;
+        }
+
+        public void setLease(long lease) {
+            this.lease = lease;
+        }
+    }
+
+    public static class Indexing {
+
+        private int batchSize = 500;
+
+        private long flushInterval = 200;
+
+        public int getBatchSize() {
+            return batchSize;
+        }
+
+        public void setBatchSize(int batchSize) {
+            this.batchSize = batchSize;
+        }
+
+        public long getFlushInterval() {
+            return flushInterval;
+        }
+
+        public void setFlushInterval(long flushInterval) {
+            this.flushInterval = flushInterval;
+        }
+    }
+
+    public static class TextExtraction {
+
+        private int poolSize = 2;
+
+        private int queueCapacity = 100;
+
+        private int batchSize = 50;
+
+        private long pollInterval = 5000;
+
+        private long timeout = 60000;
+
+        private int maxChars = 10000;
+
+        private long maxContentSize = 52428800;
+
+        private int maxAttempts = 5;
+
+        private long initialBackoff = 10000;
+
+        private long maxBackoff = 600000;
+
+        public int getPoolSize() {
+            return poolSize;
+        }
+
+        public void setPoolSize(int poolSize) {
+            this.poolSize = poolSize;
+        }
+
+        public int getQueueCapacity() {
+            return queueCapacity;
+        }
+
+        public void setQueueCapacity(int queueCapacity) {
+            this.queueCapacity = queueCapacity;
+        }
+
+        public int getBatchSize() {
+            return batchSize;
+        }
+
+        public void setBatchSize(int batchSize) {
+            this.batchSize = batchSize;
+        }
+
+        public long getPollInterval() {
+            return pollInterval;
+        }
+
+        public void setPollInterval(long pollInterval) {
+            this.pollInterval = pollInterval;
+        }
+
+        public long getTimeout() {
+            return timeout;
+        }
+
+        public void setTimeout(long timeout) {
+            this.timeout = timeout;
+        }
+
+        public int getMaxChars() {
+            return maxChars;
+        }
+
+        public void setMaxChars(int maxChars) {
+            this.maxChars = maxChars;
+        }
+
+        public long getMaxContentSize() {
+            return maxContentSize;
+        }
+
+        public void setMaxContentSize(long maxContentSize) {
+            this.maxContentSize = maxContentSize;
+        }
+
+        public int getMaxAttempts() {
+            return maxAttempts;
+        }
+
+        public void setMaxAttempts(int maxAttempts) {
+            this.maxAttempts = maxAttempts;
+        }
+
+        public long getInitialBackoff() {
+            return initialBackoff;
+        }
+
+        public void setInitialBackoff(long initialBackoff) {
+            this.initialBackoff = initialBackoff;
+        }
+
+        public long getMaxBackoff() {
+            return maxBackoff;
+        }
+
+        public void setMaxBackoff(long maxBackoff) {
+            this.maxBackoff = maxBackoff;
+        }
+    }
+
+    public static class Compression {
+
+        private boolean migrate = true;
+
+        private int batchSize = 100;
+
+        public boolean isMigrate() {
+            return migrate;
+        }
+
+        public void setMigrate(boolean migrate) {
+            this.migrate = migrate;
+        }
+
+        public int getBatchSize() {
+            return batchSize;
+        }
+
+        public void setBatchSize(int batchSize) {
+            this.batchSize = batchSize;
+        }
+    }
+
+    public static class SearchCache {
+
+        private int maxEntries = 2000;
+
+        private long maxWeight = 64L * 1024 * 1024;
+
+        private long timeToLive = 60000;
+
+        private long refreshWindow = 1000;
+
+        public int getMaxEntries() {
+            return maxEntries;
+        }
+
+        public void setMaxEntries(int maxEntries) {
+            this.maxEntries = maxEntries;
+        }
+
+        public long getMaxWeight() {
+            return maxWeight;
+        }
+
+        public void setMaxWeight(long maxWeight) {
+            this.maxWeight = maxWeight;
+        }
+
+        public long getTimeToLive() {
+            return timeToLive;
+        }
+
+        public void setTimeToLive(long timeToLive) {
+            this.timeToLive = timeToLive;
+        }
+
+        public long getRefreshWindow() {
+            return refreshWindow;
+        }
+
+        public void setRefreshWindow(long refreshWindow) {
+            this.refreshWindow = refreshWindow;
+        }
+    }
+
+    public static class Export {
+
+        private int batchSize = 200;
+
+        public int getBatchSize() {
+            return batchSize;
+        }
+
+        public void setBatchSize(int batchSize) {
+            this.batchSize = batchSize;
+        }
+    }
+
+    public static class QueryGeometry {
+
+        private int cacheSize = 1000;
+
+        private double simplifyTolerance = 0;
+
+        private int simplifyMinVertices = 1000;
+
+        public int getCacheSize() {
+            return cacheSize;
+        }
+
+        public void setCacheSize(int cacheSize) {
+            this.cacheSize = cacheSize;
+        }
+
+        public double getSimplifyTolerance() {
+            return simplifyTolerance;
+        }
+
+        public void setSimplifyTolerance(double simplifyTolerance) {
+            this.simplifyTolerance = simplifyTolerance;
+        }
+
+        public int getSimplifyMinVertices() {
+            return simplifyMinVertices;
+        }
+
+        public void setSimplifyMinVertices(int simplifyMinVertices) {
+            this.simplifyMinVertices = simplifyMinVertices;
+        }
+    }
+
+    public static class CoverageIndex {
+
+        private boolean enabled = true;
+
+        private long rebuildInterval = 300000;
+
+        private int compactThreshold = 500;
+
+        private double maxQueryArea = 1.0;
+
+        private long changePollInterval = 5000;
+
+        private long changeWindow = 120000;
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public long getRebuildInterval() {
+            return rebuildInterval;
+        }
+
+        public void setRebuildInterval(long rebuildInterval) {
+            this.rebuildInterval = rebuildInterval;
+        }
+
+        public int getCompactThreshold() {
+            return compactThreshold;
+        }
+
+        public void setCompactThreshold(int compactThreshold) {
+            this.compactThreshold = compactThreshold;
+        }
+
+        public double getMaxQueryArea() {
+            return maxQueryArea;
+        }
+
+        public void setMaxQueryArea(double maxQueryArea) {
+            this.maxQueryArea = maxQueryArea;
+        }
+
+        public long getChangePollInterval() {
+            return changePollInterval;
+        }
+
+        public void setChangePollInterval(long changePollInterval) {
+            this.changePollInterval = changePollInterval;
+        }
+
+        public long getChangeWindow() {
+            return changeWindow;
+        }
+
+        public void setChangeWindow(long changeWindow) {
+            this.changeWindow = changeWindow;
+        }
+    }
+
     public static class Http {
 
         private final Cache cache = new Cache();
@@ -205,6 +205,10 @@ public class SecurityConfiguration extends KeycloakWebSecurityConfigurerAdapter
             .antMatchers("/websocket/**").permitAll()
             .antMatchers("/management/**").hasAuthority(AuthoritiesConstants.ADMIN)
             .antMatchers("/v2/api-docs/**").permitAll()
+            // read only batch lookup, public like the single GET
+            .antMatchers(HttpMethod.POST, "/api/_resolve/**").permitAll()
+            // existence checks, public like the single GET
+            .antMatchers(HttpMethod.HEAD, "/api/serviceInstance/**").permitAll()
             .antMatchers(HttpMethod.PUT, "/api/**").authenticated()
             .antMatchers(HttpMethod.POST, "/api/**").authenticated()
             .antMatchers(HttpMethod.DELETE, "/api/**").authenticated()
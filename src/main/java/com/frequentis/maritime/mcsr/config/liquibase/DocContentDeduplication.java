@@ -0,0 +1,191 @@
+/*
+ * MaritimeCloud Service Registry
+ * Copyright (c) 2016 Frequentis AG
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package com.frequentis.maritime.mcsr.config.liquibase;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.commons.io.IOUtils;
+
+import com.frequentis.maritime.mcsr.domain.util.ContentHash;
+
+import liquibase.change.custom.CustomTaskChange;
+import liquibase.database.Database;
+import liquibase.database.jvm.JdbcConnection;
+import liquibase.exception.CustomChangeException;
+import liquibase.exception.SetupException;
+import liquibase.exception.ValidationErrors;
+import liquibase.resource.ResourceAccessor;
+
+/**
+ * Hashes the existing doc contents and merges identical ones.
+ *
+ * <p>
+ * Each content is streamed once to compute its SHA-256. If a content with the same hash was seen before, the docs
+ * are pointed to that one and the duplicate is deleted. Afterwards the references of every content are counted.
+ * Both passes work in id ranges of {@value #BATCH_SIZE}, each committed on its own; contents already hashed are
+ * skipped, so an interrupted migration continues where it stopped.
+ * </p>
+ */
+public class DocContentDeduplication implements CustomTaskChange {
+
+    private static final int BATCH_SIZE = 100;
+
+    private int merged;
+
+    @Override
+    public void execute(Database database) throws CustomChangeException {
+        Connection connection = ((JdbcConnection) database.getConnection()).getUnderlyingConnection();
+        try {
+            hashContents(connection);
+            countReferences(connection);
+        } catch (SQLException | IOException e) {
+            throw new CustomChangeException("Could not deduplicate doc contents", e);
+        }
+    }
+
+    private void hashContents(Connection connection) throws SQLException, IOException {
+        try (PreparedStatement next = connection.prepareStatement(
+                "select id from doc_content where sha256 is null and id > ? order by id");
+             PreparedStatement read = connection.prepareStatement(
+                "select content from doc_content where id = ?");
+             PreparedStatement find = connection.prepareStatement(
+                "select id from doc_content where sha256 = ? and id <> ?");
+             PreparedStatement relink = connection.prepareStatement(
+                "update doc set content_id = ? where content_id = ?");
+             PreparedStatement delete = connection.prepareStatement(
+                "delete from doc_content where id = ?");
+             PreparedStatement hash = connection.prepareStatement(
+                "update doc_content set sha256 = ?, content_size = ? where id = ?");
+             PreparedStatement describe = connection.prepareStatement(
+                "update doc set filecontent_size = ?, filecontent_sha256 = ? where content_id = ?")) {
+            next.setMaxRows(BATCH_SIZE);
+            find.setMaxRows(1);
+            long last = Long.MIN_VALUE;
+            List<Long> ids;
+            while (!(ids = nextIds(next, last)).isEmpty()) {
+                for (Long id : ids) {
+                    read.setLong(1, id);
+                    MessageDigest digest = ContentHash.newDigest();
+                    long size;
+                    try (ResultSet rows = read.executeQuery()) {
+                        rows.next();
+                        try (InputStream in = new DigestInputStream(rows.getBinaryStream(1), digest)) {
+                            size = IOUtils.skip(in, Long.MAX_VALUE);
+                        }
+                    }
+                    String sha256 = ContentHash.of(digest);
+
+                    long target = id;
+                    find.setString(1, sha256);
+                    find.setLong(2, id);
+                    try (ResultSet rows = find.executeQuery()) {
+                        if (rows.next()) {
+                            target = rows.getLong(1);
+                        }
+                    }
+                    if (target != id) {
+                        relink.setLong(1, target);
+                        relink.setLong(2, id);
+                        relink.executeUpdate();
+                        delete.setLong(1, id);
+                        delete.executeUpdate();
+                        merged++;
+                    } else {
+                        hash.setString(1, sha256);
+                        hash.setLong(2, size);
+                        hash.setLong(3, id);
+                        hash.executeUpdate();
+                    }
+                    describe.setLong(1, size);
+                    describe.setString(2, sha256);
+                    describe.setLong(3, target);
+                    describe.executeUpdate();
+                }
+                last = ids.get(ids.size() - 1);
+                commit(connection);
+            }
+        }
+    }
+
+    private void countReferences(Connection connection) throws SQLException {
+        try (PreparedStatement next = connection.prepareStatement(
+                "select id from doc_content where id > ? order by id");
+             PreparedStatement count = connection.prepareStatement(
+                "update doc_content set ref_count = (select count(*) from doc where doc.content_id = doc_content.id)"
+                    + " where id >= ? and id <= ?")) {
+            next.setMaxRows(BATCH_SIZE);
+            long last = Long.MIN_VALUE;
+            List<Long> ids;
+            while (!(ids = nextIds(next, last)).isEmpty()) {
+                last = ids.get(ids.size() - 1);
+                count.setLong(1, ids.get(0));
+                count.setLong(2, last);
+                count.executeUpdate();
+                commit(connection);
+            }
+        }
+    }
+
+    private static List<Long> nextIds(PreparedStatement next, long last) throws SQLException {
+        List<Long> ids = new ArrayList<>(BATCH_SIZE);
+        next.setLong(1, last);
+        try (ResultSet rows = next.executeQuery()) {
+            while (rows.next()) {
+                ids.add(rows.getLong(1));
+            }
+        }
+        return ids;
+    }
+
+    private static void commit(Connection connection) throws SQLException {
+        if (!connection.getAutoCommit()) {
+            connection.commit();
+        }
+    }
+
+    @Override
+    public String getConfirmationMessage() {
+        return merged + " duplicate doc contents merged";
+    }
+
+    @Override
+    public void setUp() throws SetupException {
+        // Nothing
+    }
+
+    @Override
+    public void setFileOpener(ResourceAccessor resourceAccessor) {
+        // Nothing
+    }
+
+    @Override
+    public ValidationErrors validate(Database database) {
+        return new ValidationErrors();
+    }
+}
@@ -0,0 +1,108 @@
+/*
+ * MaritimeCloud Service Registry
+ * Copyright (c) 2016 Frequentis AG
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package com.frequentis.maritime.mcsr.config.liquibase;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+import liquibase.change.custom.CustomTaskChange;
+import liquibase.database.Database;
+import liquibase.database.jvm.JdbcConnection;
+import liquibase.exception.CustomChangeException;
+import liquibase.exception.SetupException;
+import liquibase.exception.ValidationErrors;
+import liquibase.resource.ResourceAccessor;
+
+/**
+ * Copies the file content of the existing docs to the doc_content table, keeping the doc id as content id.
+ *
+ * <p>
+ * The docs are moved in id ranges of {@value #BATCH_SIZE}, each committed on its own, so no lock is held on more
+ * than one range at a time. Docs already moved are skipped, so an interrupted migration continues where it stopped.
+ * </p>
+ */
+public class DocContentMigration implements CustomTaskChange {
+
+    private static final int BATCH_SIZE = 100;
+
+    private int moved;
+
+    @Override
+    public void execute(Database database) throws CustomChangeException {
+        Connection connection = ((JdbcConnection) database.getConnection()).getUnderlyingConnection();
+        try (PreparedStatement next = connection.prepareStatement(
+                "select id from doc where content_id is null and id > ? order by id");
+             PreparedStatement copy = connection.prepareStatement(
+                "insert into doc_content (id, content) select id, filecontent from doc where content_id is null and id >= ? and id <= ?");
+             PreparedStatement link = connection.prepareStatement(
+                "update doc set content_id = id where content_id is null and id >= ? and id <= ?")) {
+            next.setMaxRows(BATCH_SIZE);
+            long last = Long.MIN_VALUE;
+            while (true) {
+                long first = -1;
+                next.setLong(1, last);
+                try (ResultSet rows = next.executeQuery()) {
+                    while (rows.next()) {
+                        if (first == -1) {
+                            first = rows.getLong(1);
+                        }
+                        last = rows.getLong(1);
+                    }
+                }
+                if (first == -1) {
+                    break;
+                }
+                copy.setLong(1, first);
+                copy.setLong(2, last);
+                moved += copy.executeUpdate();
+                link.setLong(1, first);
+                link.setLong(2, last);
+                link.executeUpdate();
+                if (!connection.getAutoCommit()) {
+                    connection.commit();
+                }
+            }
+        } catch (SQLException e) {
+            throw new CustomChangeException("Could not move doc contents", e);
+        }
+    }
+
+    @Override
+    public String getConfirmationMessage() {
+        return moved + " doc contents moved";
+    }
+
+    @Override
+    public void setUp() throws SetupException {
+        // Nothing
+    }
+
+    @Override
+    public void setFileOpener(ResourceAccessor resourceAccessor) {
+        // Nothing
+    }
+
+    @Override
+    public ValidationErrors validate(Database database) {
+        return new ValidationErrors();
+    }
+}
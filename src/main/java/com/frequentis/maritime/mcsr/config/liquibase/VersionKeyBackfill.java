@@ -0,0 +1,98 @@
+/*
+ * MaritimeCloud Service Registry
+ * Copyright (c) 2016 Frequentis AG
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.frequentis.maritime.mcsr.config.liquibase;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+import com.frequentis.maritime.mcsr.domain.util.VersionKey;
+
+import liquibase.change.custom.CustomTaskChange;
+import liquibase.database.Database;
+import liquibase.database.jvm.JdbcConnection;
+import liquibase.exception.CustomChangeException;
+import liquibase.exception.SetupException;
+import liquibase.exception.ValidationErrors;
+import liquibase.resource.ResourceAccessor;
+
+/**
+ * Fills the version_key column of the existing rows of a table from their version.
+ */
+public class VersionKeyBackfill implements CustomTaskChange {
+
+    private static final int BATCH_SIZE = 500;
+
+    private String tableName;
+
+    public String getTableName() {
+        return tableName;
+    }
+
+    public void setTableName(String tableName) {
+        this.tableName = tableName;
+    }
+
+    @Override
+    public void execute(Database database) throws CustomChangeException {
+        Connection connection = ((JdbcConnection) database.getConnection()).getUnderlyingConnection();
+        try (PreparedStatement select = connection.prepareStatement(
+                "select id, version from " + tableName + " where version_key is null");
+             PreparedStatement update = connection.prepareStatement(
+                "update " + tableName + " set version_key = ? where id = ?");
+             ResultSet rows = select.executeQuery()) {
+            int pending = 0;
+            while (rows.next()) {
+                update.setString(1, VersionKey.of(rows.getString(2)));
+                update.setLong(2, rows.getLong(1));
+                update.addBatch();
+                if (++pending == BATCH_SIZE) {
+                    update.executeBatch();
+                    pending = 0;
+                }
+            }
+            if (pending > 0) {
+                update.executeBatch();
+            }
+        } catch (SQLException e) {
+            throw new CustomChangeException("Could not compute version keys of " + tableName, e);
+        }
+    }
+
+    @Override
+    public String getConfirmationMessage() {
+        return "Version keys of " + tableName + " computed";
+    }
+
+    @Override
+    public void setUp() throws SetupException {
+        // Nothing
+    }
+
+    @Override
+    public void setFileOpener(ResourceAccessor resourceAccessor) {
+        // Nothing
+    }
+
+    @Override
+    public ValidationErrors validate(Database database) {
+        return new ValidationErrors();
+    }
+}
@@ -34,6 +34,8 @@ import javax.persistence.JoinTable;
 import javax.persistence.ManyToMany;
 import javax.persistence.ManyToOne;
 import javax.persistence.OneToOne;
+import javax.persistence.PrePersist;
+import javax.persistence.PreUpdate;
 import javax.persistence.Table;
 import javax.validation.constraints.NotNull;
 
@@ -45,6 +47,7 @@ import org.springframework.data.elasticsearch.annotations.Mapping;
 import org.springframework.data.elasticsearch.annotations.Field;
 import org.springframework.data.elasticsearch.annotations.FieldType;
 import com.frequentis.maritime.mcsr.domain.Xml;
+import com.frequentis.maritime.mcsr.domain.util.VersionKey;
 
 import io.swagger.annotations.ApiModel;
 
@@ -61,7 +64,7 @@ import com.fasterxml.jackson.annotation.JsonProperty;
 @Entity
 @Table(name = "design")
 @Cache(usage = CacheConcurrencyStrategy.NONSTRICT_READ_WRITE)
-@Document(indexName = "design")
+@Document(indexName = "#{T(com.frequentis.maritime.mcsr.domain.util.ElasticsearchIndexName).resolve('design')}")
 @Setting(settingPath = "analyzer-settings.json")
 public class Design implements Serializable {
 
@@ -81,6 +84,10 @@ public class Design implements Serializable {
     @Field(type = FieldType.text, index = true, fielddata = true)
     private String version;
 
+    @Column(name = "version_key")
+    @Field(type = FieldType.keyword, index = true)
+    private String versionKey;
+
     @Column(name = "published_at", nullable = true)
     @Field(type = FieldType.text, index = true, fielddata = true)
     private String publishedAt;
@@ -165,6 +172,19 @@ public class Design implements Serializable {
         this.version = version;
     }
 
+    /**
+     * @return the sortable key of the version, see {@link VersionKey}
+     */
+    public String getVersionKey() {
+        return versionKey;
+    }
+
+    @PrePersist
+    @PreUpdate
+    void updateVersionKey() {
+        versionKey = VersionKey.of(version);
+    }
+
     public String getLastUpdatedAt() {
         return lastUpdatedAt;
     }
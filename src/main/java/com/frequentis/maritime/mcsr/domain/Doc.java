@@ -36,6 +36,9 @@ import java.io.Serializable;
 import java.util.HashSet;
 import io.swagger.annotations.ApiModel;
 import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.frequentis.maritime.mcsr.domain.util.ContentHash;
 
 /**
  * A doc represents a human readable document that can be attached to various objects.This could be an office document containing guidelines linked,to a service specification, or a Getting Started PDF attached toan service instance.
@@ -47,7 +50,7 @@ import com.fasterxml.jackson.annotation.JsonIgnore;
 @Entity
 @Table(name = "doc")
 @Cache(usage = CacheConcurrencyStrategy.NONSTRICT_READ_WRITE)
-@Document(indexName = "doc")
+@Document(indexName = "#{T(com.frequentis.maritime.mcsr.domain.util.ElasticsearchIndexName).resolve('doc')}")
 public class Doc implements Serializable {
 
     private static final long serialVersionUID = 1L;
@@ -70,16 +73,36 @@ public class Doc implements Serializable {
     @Field(type = FieldType.text, index = true, fielddata = true)
     private String mimetype;
 
-    @NotNull
-    @Lob
-    @Column(name = "filecontent", nullable = false)
-    @Field(type = FieldType.text, index = true, fielddata = true)
-    private byte[] filecontent;
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "content_id", nullable = false)
+    @JsonIgnore
+    private DocContent content;
+
+    /**
+     * The content as sent by or for a client. Not persisted with the doc, see {@link #getContent()}.
+     */
+    private transient byte[] filecontent;
 
     @Column(name = "filecontent_content_type", nullable = false)
     @Field(type = FieldType.text, index = true, fielddata = true)
     private String filecontentContentType;
 
+    @Column(name = "filecontent_size")
+    @Field(type = FieldType.Long)
+    @JsonProperty(access = JsonProperty.Access.READ_ONLY)
+    private Long filecontentSize;
+
+    @Column(name = "filecontent_sha256", length = ContentHash.LENGTH)
+    @Field(type = FieldType.keyword, index = true)
+    @JsonProperty(access = JsonProperty.Access.READ_ONLY)
+    private String filecontentSha256;
+
+    @Lob
+    @Column(name = "text_excerpt")
+    @Field(type = FieldType.text, index = true)
+    @JsonProperty(access = JsonProperty.Access.READ_ONLY)
+    private String textExcerpt;
+
     @ManyToMany(mappedBy = "docs")
     @JsonIgnore
     @Cache(usage = CacheConcurrencyStrategy.NONSTRICT_READ_WRITE)
@@ -127,12 +150,44 @@ public class Doc implements Serializable {
         this.mimetype = mimetype;
     }
 
+    /**
+     * @return the content sent by a client or read by {@link #loadFilecontent()}, null otherwise
+     */
+    @JsonInclude(JsonInclude.Include.NON_NULL)
     public byte[] getFilecontent() {
         return filecontent;
     }
 
+    /**
+     * Set a new content, to be stored when the doc is saved by the DocService.
+     *
+     * @param filecontent the new content
+     */
     public void setFilecontent(byte[] filecontent) {
         this.filecontent = filecontent;
+        if (filecontent != null) {
+            filecontentSize = (long) filecontent.length;
+            filecontentSha256 = ContentHash.of(filecontent);
+            textExcerpt = null;
+        }
+    }
+
+    /**
+     * Read the stored content into {@link #getFilecontent()}, within a transaction.
+     */
+    public void loadFilecontent() {
+        filecontent = content != null ? content.getContent() : null;
+    }
+
+    /**
+     * @return the stored content, possibly shared with other docs, read on first access
+     */
+    public DocContent getContent() {
+        return content;
+    }
+
+    public void setContent(DocContent content) {
+        this.content = content;
     }
 
     public String getFilecontentContentType() {
@@ -143,6 +198,40 @@ public class Doc implements Serializable {
         this.filecontentContentType = filecontentContentType;
     }
 
+    /**
+     * @return the size of the file content in bytes
+     */
+    public Long getFilecontentSize() {
+        return filecontentSize;
+    }
+
+    public void setFilecontentSize(Long filecontentSize) {
+        this.filecontentSize = filecontentSize;
+    }
+
+    /**
+     * @return the SHA-256 of the file content as hex string, see {@link ContentHash}
+     */
+    public String getFilecontentSha256() {
+        return filecontentSha256;
+    }
+
+    public void setFilecontentSha256(String filecontentSha256) {
+        this.filecontentSha256 = filecontentSha256;
+    }
+
+    /**
+     * @return the beginning of the plain text of the file content, extracted in the background for the search,
+     * null until extracted or if the content type is not supported
+     */
+    public String getTextExcerpt() {
+        return textExcerpt;
+    }
+
+    public void setTextExcerpt(String textExcerpt) {
+        this.textExcerpt = textExcerpt;
+    }
+
     public Set<Specification> getSpecifications() {
         return specifications;
     }
@@ -194,7 +283,7 @@ public class Doc implements Serializable {
             ", name='" + name + "'" +
             ", comment='" + comment + "'" +
             ", mimetype='" + mimetype + "'" +
-            ", filecontent='" + filecontent + "'" +
+            ", filecontentSize='" + filecontentSize + "'" +
             ", filecontentContentType='" + filecontentContentType + "'" +
             '}';
     }
@@ -0,0 +1,168 @@
+/*
+ * MaritimeCloud Service Registry
+ * Copyright (c) 2016 Frequentis AG
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package com.frequentis.maritime.mcsr.domain;
+
+import java.io.Serializable;
+import java.util.Objects;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.GeneratedValue;
+import javax.persistence.GenerationType;
+import javax.persistence.Id;
+import javax.persistence.Lob;
+import javax.persistence.Table;
+import javax.validation.constraints.NotNull;
+
+import com.frequentis.maritime.mcsr.domain.util.ContentHash;
+
+/**
+ * The file content of one or more {@link Doc}s.
+ *
+ * <p>
+ * Kept apart from the doc metadata, so listing and caching docs never reads the content. A doc references its
+ * content lazily by id, the content is read only when asked for explicitly.
+ * </p>
+ *
+ * <p>
+ * Contents are addressed by their SHA-256: docs with identical files share one content, and the number of docs
+ * referencing it is counted, see DocContentService.
+ * </p>
+ */
+@Entity
+@Table(name = "doc_content")
+public class DocContent implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.AUTO)
+    private Long id;
+
+    @NotNull
+    @Lob
+    @Column(name = "content", nullable = false)
+    private byte[] content;
+
+    @NotNull
+    @Column(name = "sha256", length = ContentHash.LENGTH, nullable = false)
+    private String sha256;
+
+    @NotNull
+    @Column(name = "content_size", nullable = false)
+    private Long size;
+
+    @Column(name = "ref_count", nullable = false)
+    private int refCount;
+
+    public DocContent() {
+    }
+
+    /**
+     * A new content, referenced once.
+     *
+     * @param content the bytes of the content
+     * @param sha256 the hash of the content, see {@link ContentHash}
+     */
+    public DocContent(byte[] content, String sha256) {
+        this.content = content;
+        this.sha256 = sha256;
+        this.size = (long) content.length;
+        this.refCount = 1;
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public byte[] getContent() {
+        return content;
+    }
+
+    public void setContent(byte[] content) {
+        this.content = content;
+    }
+
+    /**
+     * @return the SHA-256 of the content as hex string, see {@link ContentHash}
+     */
+    public String getSha256() {
+        return sha256;
+    }
+
+    public void setSha256(String sha256) {
+        this.sha256 = sha256;
+    }
+
+    /**
+     * @return the size of the content in bytes
+     */
+    public Long getSize() {
+        return size;
+    }
+
+    public void setSize(Long size) {
+        this.size = size;
+    }
+
+    /**
+     * @return the number of docs referencing the content
+     */
+    public int getRefCount() {
+        return refCount;
+    }
+
+    public void setRefCount(int refCount) {
+        this.refCount = refCount;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+        DocContent docContent = (DocContent) o;
+        if (docContent.id == null || id == null) {
+            return false;
+        }
+        return Objects.equals(id, docContent.id);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hashCode(id);
+    }
+
+    @Override
+    public String toString() {
+        return "DocContent{" +
+            "id=" + id +
+            ", sha256='" + sha256 + "'" +
+            ", refCount=" + refCount +
+            '}';
+    }
+}
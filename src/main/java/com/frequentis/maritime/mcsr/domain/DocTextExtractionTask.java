@@ -0,0 +1,163 @@
+/*
+ * MaritimeCloud Service Registry
+ * Copyright (c) 2016 Frequentis AG
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package com.frequentis.maritime.mcsr.domain;
+
+import java.io.Serializable;
+import java.time.ZonedDateTime;
+import java.util.Objects;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.GeneratedValue;
+import javax.persistence.GenerationType;
+import javax.persistence.Id;
+import javax.persistence.Table;
+import javax.validation.constraints.NotNull;
+
+import com.frequentis.maritime.mcsr.domain.util.ContentHash;
+
+/**
+ * A pending extraction of the plain text of a doc content, for the search index.
+ *
+ * <p>
+ * Written in the same transaction as the new content of the doc and removed once the text has been extracted,
+ * see DocTextExtractionWorker.
+ * </p>
+ */
+@Entity
+@Table(name = "doc_text_extraction")
+public class DocTextExtractionTask implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.AUTO)
+    private Long id;
+
+    @NotNull
+    @Column(name = "doc_id", nullable = false)
+    private Long docId;
+
+    @NotNull
+    @Column(name = "content_sha256", length = ContentHash.LENGTH, nullable = false)
+    private String contentSha256;
+
+    @NotNull
+    @Column(name = "created_at", nullable = false)
+    private ZonedDateTime createdAt;
+
+    @NotNull
+    @Column(name = "next_attempt_at", nullable = false)
+    private ZonedDateTime nextAttemptAt;
+
+    @Column(name = "attempts", nullable = false)
+    private int attempts;
+
+    public DocTextExtractionTask() {
+    }
+
+    public DocTextExtractionTask(Long docId, String contentSha256) {
+        this.docId = docId;
+        this.contentSha256 = contentSha256;
+        this.createdAt = ZonedDateTime.now();
+        this.nextAttemptAt = this.createdAt;
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public Long getDocId() {
+        return docId;
+    }
+
+    public void setDocId(Long docId) {
+        this.docId = docId;
+    }
+
+    /**
+     * @return the hash of the doc content to extract the text from, see {@link Doc#getFilecontentSha256()}
+     */
+    public String getContentSha256() {
+        return contentSha256;
+    }
+
+    public void setContentSha256(String contentSha256) {
+        this.contentSha256 = contentSha256;
+    }
+
+    public ZonedDateTime getCreatedAt() {
+        return createdAt;
+    }
+
+    public void setCreatedAt(ZonedDateTime createdAt) {
+        this.createdAt = createdAt;
+    }
+
+    public ZonedDateTime getNextAttemptAt() {
+        return nextAttemptAt;
+    }
+
+    public void setNextAttemptAt(ZonedDateTime nextAttemptAt) {
+        this.nextAttemptAt = nextAttemptAt;
+    }
+
+    public int getAttempts() {
+        return attempts;
+    }
+
+    public void setAttempts(int attempts) {
+        this.attempts = attempts;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+        DocTextExtractionTask task = (DocTextExtractionTask) o;
+        if(task.id == null || id == null) {
+            return false;
+        }
+        return Objects.equals(id, task.id);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hashCode(id);
+    }
+
+    @Override
+    public String toString() {
+        return "DocTextExtractionTask{" +
+            "id=" + id +
+            ", docId='" + docId + "'" +
+            ", contentSha256='" + contentSha256 + "'" +
+            ", attempts='" + attempts + "'" +
+            '}';
+    }
+}
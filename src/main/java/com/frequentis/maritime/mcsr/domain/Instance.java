@@ -37,6 +37,8 @@ import javax.persistence.JoinTable;
 import javax.persistence.ManyToMany;
 import javax.persistence.ManyToOne;
 import javax.persistence.OneToOne;
+import javax.persistence.PrePersist;
+import javax.persistence.PreUpdate;
 import javax.persistence.Table;
 import javax.persistence.Transient;
 import javax.validation.constraints.NotNull;
@@ -47,9 +49,10 @@ import org.hibernate.annotations.CacheConcurrencyStrategy;
 import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import com.fasterxml.jackson.databind.JsonNode;
-import com.frequentis.maritime.mcsr.domain.util.GeoShapeNodeConverter;
+import com.frequentis.maritime.mcsr.domain.util.CompressedGeoShapeConverter;
 import com.frequentis.maritime.mcsr.domain.util.JsonNodeConverter;
 import com.frequentis.maritime.mcsr.domain.util.JsonNodeGeoShapeConverter;
+import com.frequentis.maritime.mcsr.domain.util.VersionKey;
 
 import org.springframework.data.elasticsearch.annotations.Document;
 import org.springframework.data.elasticsearch.annotations.Field;
@@ -71,7 +74,7 @@ import io.swagger.annotations.ApiModel;
 @Entity
 @Table(name = "instance")
 @Cache(usage = CacheConcurrencyStrategy.NONSTRICT_READ_WRITE)
-@Document(indexName = "instance")
+@Document(indexName = "#{T(com.frequentis.maritime.mcsr.domain.util.ElasticsearchIndexName).resolve('instance')}")
 @Setting(settingPath = "analyzer-settings.json")
 public class Instance implements Serializable {
 
@@ -92,6 +95,10 @@ public class Instance implements Serializable {
     @Field(type = FieldType.text, index = true, fielddata = true)
     private String version;
 
+    @Column(name = "version_key")
+    @Field(type = FieldType.keyword, index = true)
+    private String versionKey;
+
     @Column(name = "published_at", nullable = true)
     @Field(type = FieldType.text, index = true, fielddata = true)
     private String publishedAt;
@@ -105,8 +112,8 @@ public class Instance implements Serializable {
     @Field(type = FieldType.text, index = true, fielddata = true)
     private String comment;
 
-    @Column(name = "geometry", columnDefinition = "LONGTEXT")
-    @Convert(converter = GeoShapeNodeConverter.class)
+    @Column(name = "geometry", columnDefinition = "LONGBLOB")
+    @Convert(converter = CompressedGeoShapeConverter.class)
     private GeoShape<?> geometry;
 
     @Column(name = "geometry_content_type")
@@ -228,6 +235,19 @@ public class Instance implements Serializable {
         this.version = version;
     }
 
+    /**
+     * @return the sortable key of the version, see {@link VersionKey}
+     */
+    public String getVersionKey() {
+        return versionKey;
+    }
+
+    @PrePersist
+    @PreUpdate
+    void updateVersionKey() {
+        versionKey = VersionKey.of(version);
+    }
+
     public String getLastUpdatedAt() {
         return lastUpdatedAt;
     }
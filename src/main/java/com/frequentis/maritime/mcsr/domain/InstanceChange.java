@@ -0,0 +1,119 @@
+/*
+ * MaritimeCloud Service Registry
+ * Copyright (c) 2016 Frequentis AG
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.frequentis.maritime.mcsr.domain;
+
+import java.io.Serializable;
+import java.time.ZonedDateTime;
+import java.util.Objects;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.GeneratedValue;
+import javax.persistence.GenerationType;
+import javax.persistence.Id;
+import javax.persistence.Table;
+import javax.validation.constraints.NotNull;
+
+/**
+ * An instance whose change reached the search index, for the coverage indexes of all nodes.
+ *
+ * <p>
+ * Written by the IndexOutboxRelay of the node relaying the change and read by the InstanceCoverageIndex of every
+ * node, see {@code jhipster.coverageIndex.changeWindow}. Removed once older than that window.
+ * </p>
+ */
+@Entity
+@Table(name = "instance_change")
+public class InstanceChange implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.AUTO)
+    private Long id;
+
+    @NotNull
+    @Column(name = "instance_id", nullable = false)
+    private Long instanceId;
+
+    @NotNull
+    @Column(name = "changed_at", nullable = false)
+    private ZonedDateTime changedAt;
+
+    public InstanceChange() {
+    }
+
+    public InstanceChange(Long instanceId) {
+        this.instanceId = instanceId;
+        this.changedAt = ZonedDateTime.now();
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public Long getInstanceId() {
+        return instanceId;
+    }
+
+    public void setInstanceId(Long instanceId) {
+        this.instanceId = instanceId;
+    }
+
+    public ZonedDateTime getChangedAt() {
+        return changedAt;
+    }
+
+    public void setChangedAt(ZonedDateTime changedAt) {
+        this.changedAt = changedAt;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+        InstanceChange change = (InstanceChange) o;
+        if(change.id == null || id == null) {
+            return false;
+        }
+        return Objects.equals(id, change.id);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hashCode(id);
+    }
+
+    @Override
+    public String toString() {
+        return "InstanceChange{" +
+            "id=" + id +
+            ", instanceId='" + instanceId + "'" +
+            ", changedAt='" + changedAt + "'" +
+            '}';
+    }
+}
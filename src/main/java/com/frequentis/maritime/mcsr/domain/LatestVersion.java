@@ -0,0 +1,142 @@
+/*
+ * MaritimeCloud Service Registry
+ * Copyright (c) 2016 Frequentis AG
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.frequentis.maritime.mcsr.domain;
+
+import java.io.Serializable;
+import java.util.Objects;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.GeneratedValue;
+import javax.persistence.GenerationType;
+import javax.persistence.Id;
+import javax.persistence.Table;
+import javax.validation.constraints.NotNull;
+
+/**
+ * Pointer to the latest version of a registry entity with a given domain specific id.
+ *
+ * <p>
+ * For instances only versions with status live are considered, and the latest compliant version is kept
+ * next to the latest one. Maintained by the LatestVersionService whenever a version is saved or deleted.
+ * </p>
+ */
+@Entity
+@Table(name = "latest_version")
+public class LatestVersion implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.AUTO)
+    private Long id;
+
+    @NotNull
+    @Column(name = "entity_type", length = 64, nullable = false)
+    private String entityType;
+
+    @NotNull
+    @Column(name = "domain_id", nullable = false)
+    private String domainId;
+
+    @Column(name = "latest_id")
+    private Long latestId;
+
+    @Column(name = "latest_compliant_id")
+    private Long latestCompliantId;
+
+    public LatestVersion() {
+    }
+
+    public LatestVersion(String entityType, String domainId) {
+        this.entityType = entityType;
+        this.domainId = domainId;
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public String getEntityType() {
+        return entityType;
+    }
+
+    public void setEntityType(String entityType) {
+        this.entityType = entityType;
+    }
+
+    public String getDomainId() {
+        return domainId;
+    }
+
+    public void setDomainId(String domainId) {
+        this.domainId = domainId;
+    }
+
+    public Long getLatestId() {
+        return latestId;
+    }
+
+    public void setLatestId(Long latestId) {
+        this.latestId = latestId;
+    }
+
+    public Long getLatestCompliantId() {
+        return latestCompliantId;
+    }
+
+    public void setLatestCompliantId(Long latestCompliantId) {
+        this.latestCompliantId = latestCompliantId;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+        LatestVersion latestVersion = (LatestVersion) o;
+        if(latestVersion.id == null || id == null) {
+            return false;
+        }
+        return Objects.equals(id, latestVersion.id);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hashCode(id);
+    }
+
+    @Override
+    public String toString() {
+        return "LatestVersion{" +
+            "id=" + id +
+            ", entityType='" + entityType + "'" +
+            ", domainId='" + domainId + "'" +
+            ", latestId='" + latestId + "'" +
+            ", latestCompliantId='" + latestCompliantId + "'" +
+            '}';
+    }
+}
@@ -35,6 +35,8 @@ import javax.persistence.JoinTable;
 import javax.persistence.ManyToMany;
 import javax.persistence.ManyToOne;
 import javax.persistence.OneToOne;
+import javax.persistence.PrePersist;
+import javax.persistence.PreUpdate;
 import javax.persistence.Table;
 import javax.validation.constraints.NotNull;
 
@@ -42,6 +44,7 @@ import org.hibernate.annotations.Cache;
 import org.hibernate.annotations.CacheConcurrencyStrategy;
 
 import com.fasterxml.jackson.annotation.JsonProperty;
+import com.frequentis.maritime.mcsr.domain.util.VersionKey;
 
 import org.springframework.data.elasticsearch.annotations.Document;
 import org.springframework.data.elasticsearch.annotations.Setting;
@@ -65,7 +68,7 @@ import io.swagger.annotations.ApiModel;
 @Entity
 @Table(name = "specification")
 @Cache(usage = CacheConcurrencyStrategy.NONSTRICT_READ_WRITE)
-@Document(indexName = "specification")
+@Document(indexName = "#{T(com.frequentis.maritime.mcsr.domain.util.ElasticsearchIndexName).resolve('specification')}")
 @Setting(settingPath = "analyzer-settings.json")
 public class Specification implements Serializable {
 
@@ -86,6 +89,10 @@ public class Specification implements Serializable {
     @Field(type = FieldType.text, index = true, fielddata = true)
     private String version;
 
+    @Column(name = "version_key")
+    @Field(type = FieldType.keyword, index = true)
+    private String versionKey;
+
     @Column(name = "published_at", nullable = true)
     @Field(type = FieldType.text, index = true, fielddata = true)
     private String publishedAt;
@@ -162,6 +169,19 @@ public class Specification implements Serializable {
         this.version = version;
     }
 
+    /**
+     * @return the sortable key of the version, see {@link VersionKey}
+     */
+    public String getVersionKey() {
+        return versionKey;
+    }
+
+    @PrePersist
+    @PreUpdate
+    void updateVersionKey() {
+        versionKey = VersionKey.of(version);
+    }
+
     public String getLastUpdatedAt() {
         return lastUpdatedAt;
     }
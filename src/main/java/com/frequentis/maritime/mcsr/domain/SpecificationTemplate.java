@@ -60,7 +60,7 @@ import com.frequentis.maritime.mcsr.domain.enumeration.SpecificationTemplateType
 @Entity
 @Table(name = "specification_template")
 @Cache(usage = CacheConcurrencyStrategy.NONSTRICT_READ_WRITE)
-@Document(indexName = "specificationtemplate")
+@Document(indexName = "#{T(com.frequentis.maritime.mcsr.domain.util.ElasticsearchIndexName).resolve('specificationtemplate')}")
 public class SpecificationTemplate implements Serializable {
 
     private static final long serialVersionUID = 1L;
@@ -51,7 +51,7 @@ import io.swagger.annotations.ApiModel;
 @Entity
 @Table(name = "specification_template_set")
 @Cache(usage = CacheConcurrencyStrategy.NONSTRICT_READ_WRITE)
-@Document(indexName = "specificationtemplateset")
+@Document(indexName = "#{T(com.frequentis.maritime.mcsr.domain.util.ElasticsearchIndexName).resolve('specificationtemplateset')}")
 public class SpecificationTemplateSet implements Serializable {
 
     private static final long serialVersionUID = 1L;
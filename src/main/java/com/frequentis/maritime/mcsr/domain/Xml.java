@@ -22,6 +22,7 @@ import java.io.Serializable;
 import java.util.Objects;
 
 import javax.persistence.Column;
+import javax.persistence.Convert;
 import javax.persistence.Entity;
 import javax.persistence.GeneratedValue;
 import javax.persistence.GenerationType;
@@ -35,6 +36,8 @@ import org.springframework.data.elasticsearch.annotations.Document;
 import org.springframework.data.elasticsearch.annotations.Field;
 import org.springframework.data.elasticsearch.annotations.FieldType;
 
+import com.frequentis.maritime.mcsr.domain.util.CompressedTextConverter;
+
 /**
  * A technical way to describe aspects if a service.The Xml should validate against a XSD from a SpecificationTemplate.
  *
@@ -45,7 +48,7 @@ import org.springframework.data.elasticsearch.annotations.FieldType;
 @Entity
 @Table(name = "xml")
 @Cache(usage = CacheConcurrencyStrategy.NONSTRICT_READ_WRITE)
-@Document(indexName = "xml")
+@Document(indexName = "#{T(com.frequentis.maritime.mcsr.domain.util.ElasticsearchIndexName).resolve('xml')}")
 public class Xml implements Serializable {
 
     private static final long serialVersionUID = 1L;
@@ -64,8 +67,8 @@ public class Xml implements Serializable {
     private String comment;
 
     @NotNull
-//    @Lob
-    @Column(name = "content", nullable = false, columnDefinition = "LONGTEXT")
+    @Column(name = "content", nullable = false, columnDefinition = "LONGBLOB")
+    @Convert(converter = CompressedTextConverter.class)
     @Field(type = FieldType.text, index = true, fielddata = true)
     private String content;
 
@@ -46,7 +46,7 @@ import io.swagger.annotations.ApiModel;
 @Entity
 @Table(name = "xsd")
 @Cache(usage = CacheConcurrencyStrategy.NONSTRICT_READ_WRITE)
-@Document(indexName = "xsd")
+@Document(indexName = "#{T(com.frequentis.maritime.mcsr.domain.util.ElasticsearchIndexName).resolve('xsd')}")
 public class Xsd implements Serializable {
 
     private static final long serialVersionUID = 1L;
@@ -0,0 +1,44 @@
+/*
+ * MaritimeCloud Service Registry
+ * Copyright (c) 2016 Frequentis AG
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package com.frequentis.maritime.mcsr.domain.util;
+
+import javax.persistence.AttributeConverter;
+import javax.persistence.Converter;
+
+import org.springframework.data.elasticsearch.core.geo.GeoShape;
+
+/**
+ * Stores a geo shape as compressed GeoJSON, see {@link GeoShapeNodeConverter} and {@link CompressedText}.
+ */
+@Converter
+public class CompressedGeoShapeConverter implements AttributeConverter<GeoShape<?>, byte[]> {
+
+    private final GeoShapeNodeConverter geoShapeNodeConverter = new GeoShapeNodeConverter();
+
+    @Override
+    public byte[] convertToDatabaseColumn(GeoShape<?> geoShape) {
+        return CompressedText.encode(geoShapeNodeConverter.convertToDatabaseColumn(geoShape));
+    }
+
+    @Override
+    public GeoShape<?> convertToEntityAttribute(byte[] stored) {
+        return geoShapeNodeConverter.convertToEntityAttribute(CompressedText.decode(stored));
+    }
+}
@@ -0,0 +1,194 @@
+/*
+ * MaritimeCloud Service Registry
+ * Copyright (c) 2016 Frequentis AG
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package com.frequentis.maritime.mcsr.domain.util;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+import org.apache.commons.io.IOUtils;
+
+import com.codahale.metrics.Timer;
+
+/**
+ * Storage format of large text columns, compressed with a format header.
+ *
+ * <p>
+ * A stored value starts with the 3 byte marker {@code 00 'M' 'Z'} and a format byte, followed by the UTF-8 text
+ * either as it is or deflated (zlib). Short texts, and texts that do not get smaller, are stored as they are.
+ * Values without the marker are read as plain UTF-8 text, as written before the columns were compressed;
+ * texts never start with a zero byte.
+ * </p>
+ *
+ * <p>
+ * The sizes and times of all values encoded and decoded are counted for the metrics, see
+ * ColumnCompressionService.
+ * </p>
+ */
+public final class CompressedText {
+
+    private static final byte[] MARKER = {0, 'M', 'Z'};
+
+    private static final int HEADER_LENGTH = MARKER.length + 1;
+
+    private static final byte FORMAT_PLAIN = 0;
+
+    private static final byte FORMAT_DEFLATE = 1;
+
+    /**
+     * Texts shorter than this, in UTF-8 bytes, are not compressed.
+     */
+    private static final int MIN_COMPRESSED_LENGTH = 256;
+
+    private static final Timer ENCODE_TIMER = new Timer();
+
+    private static final Timer DECODE_TIMER = new Timer();
+
+    private static final LongAdder TEXT_BYTES = new LongAdder();
+
+    private static final LongAdder STORED_BYTES = new LongAdder();
+
+    private CompressedText() {
+        // Nothing
+    }
+
+    /**
+     * Encode a text for storage.
+     *
+     * @param text the text
+     * @return the stored value, null for a null text
+     */
+    public static byte[] encode(String text) {
+        if (text == null) {
+            return null;
+        }
+        try (Timer.Context ignored = ENCODE_TIMER.time()) {
+            byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+            byte[] stored = null;
+            if (bytes.length >= MIN_COMPRESSED_LENGTH) {
+                stored = deflate(bytes);
+            }
+            if (stored == null || stored.length >= bytes.length + HEADER_LENGTH) {
+                stored = new byte[bytes.length + HEADER_LENGTH];
+                writeHeader(stored, FORMAT_PLAIN);
+                System.arraycopy(bytes, 0, stored, HEADER_LENGTH, bytes.length);
+            }
+            TEXT_BYTES.add(bytes.length);
+            STORED_BYTES.add(stored.length);
+            return stored;
+        }
+    }
+
+    /**
+     * Decode a stored value, compressed or written before the compression.
+     *
+     * @param stored the stored value
+     * @return the text, null for a null value
+     * @throws IllegalArgumentException if the value has an unknown format or is corrupt
+     */
+    public static String decode(byte[] stored) {
+        if (stored == null) {
+            return null;
+        }
+        if (!isEncoded(stored)) {
+            return new String(stored, StandardCharsets.UTF_8);
+        }
+        try (Timer.Context ignored = DECODE_TIMER.time()) {
+            switch (stored[MARKER.length]) {
+                case FORMAT_PLAIN:
+                    return new String(stored, HEADER_LENGTH, stored.length - HEADER_LENGTH, StandardCharsets.UTF_8);
+                case FORMAT_DEFLATE:
+                    return new String(inflate(stored), StandardCharsets.UTF_8);
+                default:
+                    throw new IllegalArgumentException("Unknown storage format " + stored[MARKER.length]);
+            }
+        }
+    }
+
+    /**
+     * @param stored a stored value
+     * @return true if the value has a format header, false if it was written before the compression
+     */
+    public static boolean isEncoded(byte[] stored) {
+        if (stored.length < HEADER_LENGTH) {
+            return false;
+        }
+        for (int i = 0; i < MARKER.length; i++) {
+            if (stored[i] != MARKER[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return the time taken to encode values
+     */
+    public static Timer getEncodeTimer() {
+        return ENCODE_TIMER;
+    }
+
+    /**
+     * @return the time taken to decode stored values
+     */
+    public static Timer getDecodeTimer() {
+        return DECODE_TIMER;
+    }
+
+    /**
+     * @return the ratio of the UTF-8 size of all texts encoded to their stored size, 1 if none was encoded
+     */
+    public static double getCompressionRatio() {
+        long stored = STORED_BYTES.sum();
+        return stored == 0 ? 1.0 : (double) TEXT_BYTES.sum() / stored;
+    }
+
+    private static void writeHeader(byte[] stored, byte format) {
+        System.arraycopy(MARKER, 0, stored, 0, MARKER.length);
+        stored[MARKER.length] = format;
+    }
+
+    private static byte[] deflate(byte[] bytes) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(bytes.length / 4 + HEADER_LENGTH);
+        out.write(MARKER, 0, MARKER.length);
+        out.write(FORMAT_DEFLATE);
+        try (DeflaterOutputStream deflater = new DeflaterOutputStream(out)) {
+            deflater.write(bytes);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return out.toByteArray();
+    }
+
+    private static byte[] inflate(byte[] stored) {
+        try (InputStream in = new InflaterInputStream(
+                new ByteArrayInputStream(stored, HEADER_LENGTH, stored.length - HEADER_LENGTH))) {
+            return IOUtils.toByteArray(in);
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Corrupt compressed value", e);
+        }
+    }
+}
@@ -16,10 +16,25 @@
  * along with this program.  If not, see <http://www.gnu.org/licenses/>.
  */
 
-package com.frequentis.maritime.mcsr.web.rest.util;
 
-public class UnLoCodeMapEntry {
-    public double latitude;
-    public double longitude;
-    public String status;
+package com.frequentis.maritime.mcsr.domain.util;
+
+import javax.persistence.AttributeConverter;
+import javax.persistence.Converter;
+
+/**
+ * Stores a large text column compressed, see {@link CompressedText}.
+ */
+@Converter
+public class CompressedTextConverter implements AttributeConverter<String, byte[]> {
+
+    @Override
+    public byte[] convertToDatabaseColumn(String text) {
+        return CompressedText.encode(text);
+    }
+
+    @Override
+    public String convertToEntityAttribute(byte[] stored) {
+        return CompressedText.decode(stored);
+    }
 }
@@ -0,0 +1,70 @@
+/*
+ * MaritimeCloud Service Registry
+ * Copyright (c) 2016 Frequentis AG
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.frequentis.maritime.mcsr.domain.util;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Resolves the Elasticsearch index of an entity.
+ *
+ * <p>
+ * The entities are annotated with their stable index name, which is an alias pointing at the current physical
+ * index generation. While a new generation is built, the reindexing thread redirects the alias to the new
+ * physical index, so the Spring Data template writes there while all other threads keep using the alias.
+ * </p>
+ *
+ * <p>Used from the SpEL expression in the {@code @Document(indexName)} of the entities.</p>
+ */
+public final class ElasticsearchIndexName {
+
+    private static final ThreadLocal<Map<String, String>> REDIRECTS = ThreadLocal.withInitial(HashMap::new);
+
+    private ElasticsearchIndexName() {
+        // Nothing
+    }
+
+    /**
+     * @param alias the index name of the entity
+     * @return the index the current thread has to use for the entity
+     */
+    public static String resolve(String alias) {
+        String index = REDIRECTS.get().get(alias);
+        return index != null ? index : alias;
+    }
+
+    /**
+     * Make the current thread use another index for an alias.
+     *
+     * @param alias the index name of the entity
+     * @param index the physical index to use instead
+     */
+    public static void redirect(String alias, String index) {
+        REDIRECTS.get().put(alias, index);
+    }
+
+    /**
+     * Make the current thread use the alias again.
+     *
+     * @param alias the index name of the entity
+     */
+    public static void reset(String alias) {
+        REDIRECTS.get().remove(alias);
+    }
+}
@@ -0,0 +1,154 @@
+/*
+ * MaritimeCloud Service Registry
+ * Copyright (c) 2016 Frequentis AG
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.frequentis.maritime.mcsr.domain.util;
+
+import java.util.Locale;
+
+/**
+ * Normalised, lexicographically sortable key of a free-text version.
+ *
+ * <p>
+ * The first four numeric components are zero padded to ten digits, so "1.10" sorts after "1.9". Anything following
+ * the numeric part is taken as qualifier and ordered like Maven's {@code DefaultArtifactVersion} does: alpha &lt; beta
+ * &lt; milestone &lt; rc &lt; snapshot &lt; release &lt; sp &lt; any other qualifier. "a", "b", "m" followed by a number
+ * and "cr" are aliases of alpha, beta, milestone and rc; "ga", "final" and "release" of the release itself. Numbers
+ * within the qualifier are zero padded as well, so "1.0-rc10" sorts after "1.0-rc9".
+ * </p>
+ */
+public final class VersionKey {
+
+    private static final int COMPONENTS = 4;
+
+    private static final int DIGITS = 10;
+
+    private static final String QUALIFIER = "-";
+
+    private static final String[][] QUALIFIER_RANKS = {
+        {"alpha", "1"}, {"beta", "2"}, {"milestone", "3"}, {"rc", "4"}, {"cr", "4"}, {"snapshot", "5"},
+        {"", "6"}, {"ga", "6"}, {"final", "6"}, {"release", "6"}, {"sp", "7"}
+    };
+
+    private static final String OTHER_RANK = "8";
+
+    /**
+     * Maximum length of a key, the length of the version_key columns.
+     */
+    public static final int MAX_LENGTH = 255;
+
+    private VersionKey() {
+        // Nothing
+    }
+
+    /**
+     * Compute the sort key of a version.
+     *
+     * @param version the version, e.g. "1.2.0" or "2.0-beta"
+     * @return the key, null for a null version
+     */
+    public static String of(String version) {
+        if (version == null) {
+            return null;
+        }
+        String v = version.trim();
+        StringBuilder key = new StringBuilder(64);
+        int pos = 0;
+        int component = 0;
+        while (component < COMPONENTS) {
+            int start = pos;
+            while (pos < v.length() && Character.isDigit(v.charAt(pos))) {
+                pos++;
+            }
+            if (pos == start) {
+                break;
+            }
+            appendComponent(key, component++, v.substring(start, pos));
+            if (pos + 1 < v.length() && v.charAt(pos) == '.' && Character.isDigit(v.charAt(pos + 1))) {
+                pos++;
+            } else {
+                break;
+            }
+        }
+        while (component < COMPONENTS) {
+            appendComponent(key, component++, "");
+        }
+
+        // skip what is left of the numeric part, e.g. the fifth component, and the qualifier separator
+        while (pos < v.length() && (Character.isDigit(v.charAt(pos)) || v.charAt(pos) == '.')) {
+            pos++;
+        }
+        if (pos < v.length() && (v.charAt(pos) == '-' || v.charAt(pos) == '_' || v.charAt(pos) == '+')) {
+            pos++;
+        }
+        appendQualifier(key, v.substring(pos).toLowerCase(Locale.ROOT));
+        return key.length() > MAX_LENGTH ? key.substring(0, MAX_LENGTH) : key.toString();
+    }
+
+    private static void appendQualifier(StringBuilder key, String qualifier) {
+        int end = 0;
+        while (end < qualifier.length() && Character.isLetter(qualifier.charAt(end))) {
+            end++;
+        }
+        String word = qualifier.substring(0, end);
+        boolean numbered = end < qualifier.length() && Character.isDigit(qualifier.charAt(end));
+        if (numbered && word.length() == 1) {
+            word = word.equals("a") ? "alpha" : word.equals("b") ? "beta" : word.equals("m") ? "milestone" : word;
+        }
+        key.append(QUALIFIER).append(rank(word));
+
+        // the rest, without a leading separator and with its numbers padded
+        int pos = end;
+        if (pos < qualifier.length() && (qualifier.charAt(pos) == '-' || qualifier.charAt(pos) == '_' || qualifier.charAt(pos) == '.')) {
+            pos++;
+        }
+        while (pos < qualifier.length()) {
+            int start = pos;
+            if (Character.isDigit(qualifier.charAt(pos))) {
+                while (pos < qualifier.length() && Character.isDigit(qualifier.charAt(pos))) {
+                    pos++;
+                }
+                appendComponent(key, 0, qualifier.substring(start, pos));
+            } else {
+                key.append(qualifier.charAt(pos++));
+            }
+        }
+    }
+
+    private static String rank(String word) {
+        for (String[] rank : QUALIFIER_RANKS) {
+            if (rank[0].equals(word)) {
+                return rank[1];
+            }
+        }
+        return OTHER_RANK + word;
+    }
+
+    private static void appendComponent(StringBuilder key, int component, String digits) {
+        if (component > 0) {
+            key.append('.');
+        }
+        String value = digits.replaceFirst("^0+", "");
+        if (value.length() > DIGITS) {
+            value = "9999999999";
+        }
+        for (int i = value.length(); i < DIGITS; i++) {
+            key.append('0');
+        }
+        key.append(value);
+    }
+}
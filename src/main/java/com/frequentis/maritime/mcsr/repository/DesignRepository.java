@@ -21,8 +21,10 @@ package com.frequentis.maritime.mcsr.repository;
 import com.frequentis.maritime.mcsr.domain.Design;
 
 import org.springframework.data.jpa.repository.*;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.repository.query.Param;
 
+import java.util.Collection;
 import java.util.List;
 
 /**
@@ -34,6 +36,9 @@ public interface DesignRepository extends JpaRepository<Design,Long> {
     @Query("select distinct design from Design design left join fetch design.specifications left join fetch design.docs")
     List<Design> findAllWithEagerRelationships();
 
+    @Query("select distinct design from Design design left join fetch design.specifications left join fetch design.docs where design.id in :ids")
+    List<Design> findAllWithEagerRelationshipsByIdIn(@Param("ids") Collection<Long> ids);
+
     @Query("select design from Design design left join fetch design.specifications left join fetch design.docs where design.id =:id")
     Design findOneWithEagerRelationships(@Param("id") Long id);
 
@@ -45,4 +50,13 @@ public interface DesignRepository extends JpaRepository<Design,Long> {
 
     @Query("select distinct design from Design design left join fetch design.specifications left join fetch design.docs join design.specifications as specification where specification.specificationId = :id")
     List<Design> findBySpecificationId(@Param("id") String id);
+
+    @Query("select design.id from Design design where design.designAsDoc.id = :docId")
+    List<Long> findIdsByDesignAsDocId(@Param("docId") Long docId);
+
+    @Query("select design.id from Design design where design.designId = :id order by design.versionKey desc")
+    List<Long> findIdsByDomainIdOrderByVersionKeyDesc(@Param("id") String id, Pageable pageable);
+
+    @Query("select design.designId from Design design where design.id = :id")
+    String findDomainIdById(@Param("id") Long id);
 }
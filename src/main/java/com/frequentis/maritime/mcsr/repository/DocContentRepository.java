@@ -0,0 +1,50 @@
+/*
+ * MaritimeCloud Service Registry
+ * Copyright (c) 2016 Frequentis AG
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package com.frequentis.maritime.mcsr.repository;
+
+import com.frequentis.maritime.mcsr.domain.DocContent;
+
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.*;
+import org.springframework.data.repository.query.Param;
+
+import java.util.List;
+
+/**
+ * Spring Data JPA repository for the DocContent entity.
+ */
+public interface DocContentRepository extends JpaRepository<DocContent,Long> {
+
+    @Query("select content.id from DocContent content where content.sha256 = :sha256 order by content.id")
+    List<Long> findIdsBySha256(@Param("sha256") String sha256, Pageable pageable);
+
+    @Modifying
+    @Query("update DocContent content set content.refCount = content.refCount + 1 where content.id = :id")
+    int incrementRefCount(@Param("id") Long id);
+
+    @Modifying
+    @Query("update DocContent content set content.refCount = content.refCount - 1 where content.id = :id")
+    int decrementRefCount(@Param("id") Long id);
+
+    @Modifying
+    @Query("delete from DocContent content where content.id = :id and content.refCount <= 0"
+        + " and not exists (select doc.id from Doc doc where doc.content.id = :id)")
+    int deleteIfUnreferenced(@Param("id") Long id);
+}
@@ -20,6 +20,7 @@ package com.frequentis.maritime.mcsr.repository;
 import com.frequentis.maritime.mcsr.domain.Doc;
 
 import org.springframework.data.jpa.repository.*;
+import org.springframework.data.repository.query.Param;
 
 import java.util.List;
 
@@ -29,4 +30,10 @@ import java.util.List;
 @SuppressWarnings("unused")
 public interface DocRepository extends JpaRepository<Doc,Long> {
 
+    @Query("select doc.content.id from Doc doc where doc.id = :id")
+    Long findContentIdById(@Param("id") Long id);
+
+    @Modifying
+    @Query("update Doc doc set doc.textExcerpt = :textExcerpt where doc.id = :id and doc.filecontentSha256 = :sha256")
+    int updateTextExcerpt(@Param("id") Long id, @Param("sha256") String sha256, @Param("textExcerpt") String textExcerpt);
 }
@@ -0,0 +1,43 @@
+/*
+ * MaritimeCloud Service Registry
+ * Copyright (c) 2016 Frequentis AG
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package com.frequentis.maritime.mcsr.repository;
+
+import com.frequentis.maritime.mcsr.domain.DocTextExtractionTask;
+
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.*;
+import org.springframework.data.repository.query.Param;
+
+import java.time.ZonedDateTime;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Spring Data JPA repository for the DocTextExtractionTask entity.
+ */
+public interface DocTextExtractionTaskRepository extends JpaRepository<DocTextExtractionTask,Long> {
+
+    @Query("select task from DocTextExtractionTask task where task.nextAttemptAt <= :now order by task.id")
+    List<DocTextExtractionTask> findDue(@Param("now") ZonedDateTime now, Pageable pageable);
+
+    @Modifying
+    @Query("delete from DocTextExtractionTask task where task.id in :ids")
+    int deleteByIdIn(@Param("ids") Collection<Long> ids);
+}
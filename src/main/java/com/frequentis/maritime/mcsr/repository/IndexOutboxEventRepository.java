@@ -0,0 +1,65 @@
+/*
+ * MaritimeCloud Service Registry
+ * Copyright (c) 2016 Frequentis AG
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.frequentis.maritime.mcsr.repository;
+
+import com.frequentis.maritime.mcsr.domain.IndexOutboxEvent;
+
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.*;
+import org.springframework.data.repository.query.Param;
+
+import java.time.ZonedDateTime;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Spring Data JPA repository for the IndexOutboxEvent entity.
+ */
+public interface IndexOutboxEventRepository extends JpaRepository<IndexOutboxEvent,Long> {
+
+    @Query("select event.id from IndexOutboxEvent event where event.nextAttemptAt <= :now order by event.id")
+    List<Long> findDueIds(@Param("now") ZonedDateTime now, Pageable pageable);
+
+    /**
+     * Claim due events for one relay run. Events claimed meanwhile by another node are no longer due and skipped.
+     *
+     * @return the number of events claimed
+     */
+    @Modifying
+    @Query("update IndexOutboxEvent event set event.claimedBy = :claimedBy, event.nextAttemptAt = :leaseUntil"
+        + " where event.id in :ids and event.nextAttemptAt <= :now")
+    int claim(@Param("ids") Collection<Long> ids, @Param("now") ZonedDateTime now,
+              @Param("leaseUntil") ZonedDateTime leaseUntil, @Param("claimedBy") String claimedBy);
+
+    @Query("select event from IndexOutboxEvent event where event.claimedBy = :claimedBy order by event.id")
+    List<IndexOutboxEvent> findClaimed(@Param("claimedBy") String claimedBy);
+
+    /**
+     * @return the id of the latest event, null if the outbox is empty
+     */
+    @Query("select max(event.id) from IndexOutboxEvent event")
+    Long findMaxId();
+
+    @Query("select min(event.createdAt) from IndexOutboxEvent event")
+    ZonedDateTime findOldestCreatedAt();
+
+    @Modifying
+    @Query("delete from IndexOutboxEvent event where event.id in :ids")
+    int deleteByIdIn(@Param("ids") Collection<Long> ids);
+}
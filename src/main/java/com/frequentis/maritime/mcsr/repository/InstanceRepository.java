@@ -21,8 +21,10 @@ package com.frequentis.maritime.mcsr.repository;
 import com.frequentis.maritime.mcsr.domain.Instance;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.repository.query.Param;
 
+import java.util.Collection;
 import java.util.List;
 
 /**
@@ -34,6 +36,9 @@ public interface InstanceRepository extends JpaRepository<Instance,Long> {
     @Query("select distinct instance from Instance instance left join fetch instance.designs left join fetch instance.docs")
     List<Instance> findAllWithEagerRelationships();
 
+    @Query("select distinct instance from Instance instance left join fetch instance.designs left join fetch instance.docs where instance.id in :ids")
+    List<Instance> findAllWithEagerRelationshipsByIdIn(@Param("ids") Collection<Long> ids);
+
     @Query("select instance from Instance instance left join fetch instance.designs left join fetch instance.docs where instance.id =:id")
     Instance findOneWithEagerRelationships(@Param("id") Long id);
 
@@ -49,10 +54,34 @@ public interface InstanceRepository extends JpaRepository<Instance,Long> {
     @Query("select distinct instance from Instance instance left join fetch instance.designs left join fetch instance.docs where instance.instanceId = :id and instance.version = :version")
     List<Instance> findByDomainIdAndVersionEagerRelationshipsWithNonCompliant(@Param("id") String id, @Param("version") String version);
 
-    @Query("select distinct instance from Instance instance where instance.instanceId = :id")
+    @Query("select distinct instance from Instance instance left join fetch instance.designs left join fetch instance.docs where instance.instanceId in :ids and instance.version in :versions")
+    List<Instance> findByDomainIdInAndVersionInEagerRelationships(@Param("ids") Collection<String> ids, @Param("versions") Collection<String> versions);
+
+    @Query("select instance from Instance instance where instance.instanceId = :id")
     List<Instance> findByDomainId(@Param("id") String id);
 
-    @Query("select distinct instance from Instance instance where instance.instanceId = :id and instance.version = :version")
+    @Query("select instance from Instance instance where instance.instanceId = :id and instance.version = :version")
     List<Instance> findByDomainIdAndVersion(@Param("id") String id, @Param("version") String version);
 
+    @Query("select count(instance.id) from Instance instance where instance.instanceId = :id and instance.version = :version")
+    long countByDomainIdAndVersion(@Param("id") String id, @Param("version") String version);
+
+    @Query("select count(instance.id) from Instance instance where instance.instanceId = :id")
+    long countByDomainId(@Param("id") String id);
+
+    @Query("select count(instance.id) from Instance instance where instance.instanceId = :id and instance.compliant = true")
+    long countCompliantByDomainId(@Param("id") String id);
+
+    @Query("select instance.id from Instance instance where instance.instanceAsDoc.id = :docId")
+    List<Long> findIdsByInstanceAsDocId(@Param("docId") Long docId);
+
+    @Query("select instance.id from Instance instance where instance.instanceId = :id and lower(instance.status) = :status order by instance.versionKey desc")
+    List<Long> findIdsByDomainIdAndStatusOrderByVersionKeyDesc(@Param("id") String id, @Param("status") String status, Pageable pageable);
+
+    @Query("select instance.id from Instance instance where instance.instanceId = :id and lower(instance.status) = :status and instance.compliant = true order by instance.versionKey desc")
+    List<Long> findCompliantIdsByDomainIdAndStatusOrderByVersionKeyDesc(@Param("id") String id, @Param("status") String status, Pageable pageable);
+
+    @Query("select instance.instanceId from Instance instance where instance.id = :id")
+    String findDomainIdById(@Param("id") Long id);
+
 }
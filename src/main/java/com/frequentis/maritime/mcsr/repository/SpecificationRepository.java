@@ -21,8 +21,10 @@ package com.frequentis.maritime.mcsr.repository;
 import com.frequentis.maritime.mcsr.domain.Specification;
 
 import org.springframework.data.jpa.repository.*;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.repository.query.Param;
 
+import java.util.Collection;
 import java.util.List;
 
 /**
@@ -34,6 +36,9 @@ public interface SpecificationRepository extends JpaRepository<Specification,Lon
     @Query("select distinct specification from Specification specification left join fetch specification.docs")
     List<Specification> findAllWithEagerRelationships();
 
+    @Query("select distinct specification from Specification specification left join fetch specification.docs where specification.id in :ids")
+    List<Specification> findAllWithEagerRelationshipsByIdIn(@Param("ids") Collection<Long> ids);
+
     @Query("select specification from Specification specification left join fetch specification.docs where specification.id =:id")
     Specification findOneWithEagerRelationships(@Param("id") Long id);
 
@@ -43,4 +48,13 @@ public interface SpecificationRepository extends JpaRepository<Specification,Lon
     @Query("select distinct specification from Specification specification left join fetch specification.docs where specification.specificationId = :id and specification.version = :version")
     List<Specification> findByDomainIdAndVersion(@Param("id") String id, @Param("version") String version);
 
+    @Query("select specification.id from Specification specification where specification.specAsDoc.id = :docId")
+    List<Long> findIdsBySpecAsDocId(@Param("docId") Long docId);
+
+    @Query("select specification.id from Specification specification where specification.specificationId = :id order by specification.versionKey desc")
+    List<Long> findIdsByDomainIdOrderByVersionKeyDesc(@Param("id") String id, Pageable pageable);
+
+    @Query("select specification.specificationId from Specification specification where specification.id = :id")
+    String findDomainIdById(@Param("id") Long id);
+
 }
@@ -0,0 +1,167 @@
+/*
+ * MaritimeCloud Service Registry
+ * Copyright (c) 2016 Frequentis AG
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.frequentis.maritime.mcsr.security;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.List;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * The registry relevant claims of a bearer token: organization, roles and the organizations the user acts on behalf of.
+ *
+ * <p>
+ * Instances are immutable and are obtained from the {@link RegistryPrincipalResolver}, which decodes each token only
+ * once. The token signature is not checked here, this is done by the authentication in front of the registry.
+ * </p>
+ */
+public final class RegistryPrincipal {
+
+    private static final Logger log = LoggerFactory.getLogger(RegistryPrincipal.class);
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private static final List<String> ADMIN_ROLES = Arrays.asList(
+        "ROLE_SITE_ADMIN", "ROLE_ORG_ADMIN", "ROLE_ENTITY_ADMIN", "ROLE_SERVICE_ADMIN");
+
+    /**
+     * The principal of requests without (usable) bearer token.
+     */
+    public static final RegistryPrincipal ANONYMOUS = new RegistryPrincipal("", Collections.emptyList(), Collections.emptyList(), 0);
+
+    private final String organizationId;
+
+    private final List<String> roles;
+
+    private final List<String> actingOnBehalfOf;
+
+    private final long expiresAt;
+
+    RegistryPrincipal(String organizationId, List<String> roles, List<String> actingOnBehalfOf, long expiresAt) {
+        this.organizationId = organizationId;
+        this.roles = Collections.unmodifiableList(roles);
+        this.actingOnBehalfOf = Collections.unmodifiableList(actingOnBehalfOf);
+        this.expiresAt = expiresAt;
+    }
+
+    /**
+     * Decode the claims of a JWT.
+     *
+     * @param token the token, without "Bearer " prefix
+     * @return the principal, {@link #ANONYMOUS} if the token could not be decoded
+     */
+    static RegistryPrincipal parse(String token) {
+        int start = token.indexOf('.');
+        int end = token.indexOf('.', start + 1);
+        if (start < 0 || end < 0) {
+            log.warn("Bearer token is not a JWT");
+            return ANONYMOUS;
+        }
+        try {
+            byte[] payload = Base64.getUrlDecoder().decode(token.substring(start + 1, end).replace('+', '-').replace('/', '_'));
+            JsonNode json = MAPPER.readTree(new String(payload, StandardCharsets.UTF_8));
+            JsonNode exp = json.get("exp");
+            return new RegistryPrincipal(
+                json.hasNonNull("org") ? json.get("org").asText() : "",
+                textValues(json.get("roles")),
+                textValues(json.get("acting_on_behalf_of")),
+                exp != null && exp.canConvertToLong() ? exp.asLong() * 1000 : 0);
+        } catch (IllegalArgumentException | IOException e) {
+            log.warn("Error decoding bearer token: {}", e.getMessage());
+            return ANONYMOUS;
+        }
+    }
+
+    private static List<String> textValues(JsonNode node) {
+        List<String> result = new ArrayList<>();
+        if (node == null || node.isNull()) {
+            return result;
+        }
+        if (node.isArray()) {
+            for (JsonNode value : node) {
+                result.add(value.textValue());
+            }
+        } else {
+            result.add(node.textValue());
+        }
+        return result;
+    }
+
+    /**
+     * @return the organization of the user, empty if unknown
+     */
+    public String getOrganizationId() {
+        return organizationId;
+    }
+
+    public List<String> getRoles() {
+        return roles;
+    }
+
+    /**
+     * @return the organizations the user may act on behalf of
+     */
+    public List<String> getActingOnBehalfOf() {
+        return actingOnBehalfOf;
+    }
+
+    /**
+     * @return the expiry of the token in milliseconds since the epoch, 0 if the token has none
+     */
+    public long getExpiresAt() {
+        return expiresAt;
+    }
+
+    /**
+     * Check if the user may make changes on an entity owned by an organization.
+     *
+     * @param entityOrganizationId the owner of the entity, null or empty if not owned
+     * @return true if the user has an administrative role and is part of, or acting on behalf of, the organization
+     */
+    public boolean canModify(String entityOrganizationId) {
+        if (roles.stream().noneMatch(ADMIN_ROLES::contains)) {
+            log.warn("User does not have the neccessary roles to perform this operation");
+            return false;
+        }
+        if (entityOrganizationId != null && entityOrganizationId.length() > 0 && !organizationId.equals(entityOrganizationId)
+                && !actingOnBehalfOf.contains(entityOrganizationId) && !roles.contains("ROLE_SERVICE_ADMIN")) {
+            log.warn("User is not part or acting on behalf of Organization ID " + organizationId);
+            return false;
+        }
+        return true;
+    }
+
+    @Override
+    public String toString() {
+        return "RegistryPrincipal{" +
+            "organizationId='" + organizationId + "'" +
+            ", roles=" + roles +
+            ", actingOnBehalfOf=" + actingOnBehalfOf +
+            '}';
+    }
+}
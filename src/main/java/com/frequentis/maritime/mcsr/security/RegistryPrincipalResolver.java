@@ -0,0 +1,188 @@
+/*
+ * MaritimeCloud Service Registry
+ * Copyright (c) 2016 Frequentis AG
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.frequentis.maritime.mcsr.security;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import javax.servlet.http.HttpServletRequest;
+
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+
+/**
+ * Resolves the {@link RegistryPrincipal} of bearer tokens.
+ *
+ * <p>
+ * A token is resolved once per request, the principal is kept as request attribute. Across requests the principals
+ * are kept in a bounded cache keyed by a hash of the token, so clients repeating their token skip decoding entirely.
+ * Cache entries expire with the token, at the latest after {@link #MAX_AGE_MILLIS}.
+ * </p>
+ */
+public final class RegistryPrincipalResolver {
+
+    static final int MAX_ENTRIES = 10000;
+
+    static final long MAX_AGE_MILLIS = 5 * 60 * 1000;
+
+    private static final String REQUEST_ATTRIBUTE = RegistryPrincipal.class.getName();
+
+    private static final Map<String, CacheEntry> CACHE = new LinkedHashMap<String, CacheEntry>(256, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, CacheEntry> eldest) {
+            return size() > MAX_ENTRIES;
+        }
+    };
+
+    private RegistryPrincipalResolver() {
+        // Nothing
+    }
+
+    /**
+     * Get the principal of the current request, from its Authorization header.
+     *
+     * @return the principal, {@link RegistryPrincipal#ANONYMOUS} outside of requests or without bearer token
+     */
+    public static RegistryPrincipal current() {
+        RequestAttributes attributes = RequestContextHolder.getRequestAttributes();
+        if (attributes == null) {
+            return RegistryPrincipal.ANONYMOUS;
+        }
+        HttpServletRequest request = (HttpServletRequest) attributes.resolveReference(RequestAttributes.REFERENCE_REQUEST);
+        return request != null ? resolve(request) : RegistryPrincipal.ANONYMOUS;
+    }
+
+    /**
+     * Get the principal of a request, from its Authorization header.
+     *
+     * @param request the HTTP request
+     * @return the principal, {@link RegistryPrincipal#ANONYMOUS} without bearer token
+     */
+    public static RegistryPrincipal resolve(HttpServletRequest request) {
+        Resolved resolved = (Resolved) request.getAttribute(REQUEST_ATTRIBUTE);
+        String token = stripBearer(request.getHeader("Authorization"));
+        if (resolved == null || !resolved.token.equals(token)) {
+            resolved = new Resolved(token, lookup(token));
+            request.setAttribute(REQUEST_ATTRIBUTE, resolved);
+        }
+        return resolved.principal;
+    }
+
+    /**
+     * Get the principal of a bearer token. Within a request carrying the same token, the principal of the request is
+     * returned.
+     *
+     * @param bearerToken the token, with or without "Bearer " prefix
+     * @return the principal, {@link RegistryPrincipal#ANONYMOUS} if there is no usable token
+     */
+    public static RegistryPrincipal resolve(String bearerToken) {
+        String token = stripBearer(bearerToken);
+        RequestAttributes attributes = RequestContextHolder.getRequestAttributes();
+        if (attributes != null) {
+            Resolved resolved = (Resolved) attributes.getAttribute(REQUEST_ATTRIBUTE, RequestAttributes.SCOPE_REQUEST);
+            if (resolved != null && resolved.token.equals(token)) {
+                return resolved.principal;
+            }
+            RegistryPrincipal principal = lookup(token);
+            attributes.setAttribute(REQUEST_ATTRIBUTE, new Resolved(token, principal), RequestAttributes.SCOPE_REQUEST);
+            return principal;
+        }
+        return lookup(token);
+    }
+
+    static void clearCache() {
+        synchronized (CACHE) {
+            CACHE.clear();
+        }
+    }
+
+    private static RegistryPrincipal lookup(String token) {
+        if (token.isEmpty()) {
+            return RegistryPrincipal.ANONYMOUS;
+        }
+        String key = hash(token);
+        long now = System.currentTimeMillis();
+        synchronized (CACHE) {
+            CacheEntry entry = CACHE.get(key);
+            if (entry != null && entry.expiresAt > now) {
+                return entry.principal;
+            }
+        }
+
+        RegistryPrincipal principal = RegistryPrincipal.parse(token);
+        long expiresAt = now + MAX_AGE_MILLIS;
+        if (principal.getExpiresAt() > 0) {
+            expiresAt = Math.min(expiresAt, principal.getExpiresAt());
+        }
+        if (expiresAt > now) {
+            synchronized (CACHE) {
+                CACHE.put(key, new CacheEntry(principal, expiresAt));
+            }
+        }
+        return principal;
+    }
+
+    private static String stripBearer(String bearerToken) {
+        if (bearerToken == null) {
+            return "";
+        }
+        String token = bearerToken.trim();
+        if (token.regionMatches(true, 0, "Bearer ", 0, 7)) {
+            token = token.substring(7).trim();
+        }
+        return token;
+    }
+
+    private static String hash(String token) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(token.getBytes(StandardCharsets.UTF_8));
+            return Base64.getEncoder().encodeToString(digest);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    private static final class CacheEntry {
+
+        private final RegistryPrincipal principal;
+
+        private final long expiresAt;
+
+        CacheEntry(RegistryPrincipal principal, long expiresAt) {
+            this.principal = principal;
+            this.expiresAt = expiresAt;
+        }
+    }
+
+    private static final class Resolved {
+
+        private final String token;
+
+        private final RegistryPrincipal principal;
+
+        Resolved(String token, RegistryPrincipal principal) {
+            this.token = token;
+            this.principal = principal;
+        }
+    }
+}
@@ -0,0 +1,188 @@
+/*
+ * MaritimeCloud Service Registry
+ * Copyright (c) 2016 Frequentis AG
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package com.frequentis.maritime.mcsr.service;
+
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.inject.Inject;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.frequentis.maritime.mcsr.config.JHipsterProperties;
+import com.frequentis.maritime.mcsr.domain.util.CompressedText;
+
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Compresses the values of the large text columns stored before they were compressed, and reports the
+ * compression metrics.
+ *
+ * <p>
+ * The xml content and the instance geometry are stored in the {@link CompressedText} format. Values written
+ * before are still read as they are; once the application is ready, they are compressed in the background,
+ * in id ranges of {@code jhipster.compression.batchSize} rows, each locked and committed on its own.
+ * </p>
+ */
+@Service
+public class ColumnCompressionService {
+
+    private final Logger log = LoggerFactory.getLogger(ColumnCompressionService.class);
+
+    private static final String METRIC_PREFIX = "storage.compression";
+
+    /**
+     * The compressed columns, as table and column name.
+     */
+    private static final String[][] COLUMNS = {
+        {"xml", "content"},
+        {"instance", "geometry"}
+    };
+
+    @Inject
+    private JdbcTemplate jdbcTemplate;
+
+    @Inject
+    private PlatformTransactionManager transactionManager;
+
+    @Inject
+    private JHipsterProperties jHipsterProperties;
+
+    @Inject
+    private MetricRegistry metricRegistry;
+
+    private ExecutorService executor;
+
+    private Meter migrated;
+
+    @PostConstruct
+    public void init() {
+        metricRegistry.register(MetricRegistry.name(METRIC_PREFIX, "encode"), CompressedText.getEncodeTimer());
+        metricRegistry.register(MetricRegistry.name(METRIC_PREFIX, "decode"), CompressedText.getDecodeTimer());
+        metricRegistry.register(MetricRegistry.name(METRIC_PREFIX, "ratio"),
+            (Gauge<Double>) CompressedText::getCompressionRatio);
+        migrated = metricRegistry.meter(MetricRegistry.name(METRIC_PREFIX, "migrated"));
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void startMigration() {
+        if (jHipsterProperties.getCompression().isMigrate()) {
+            executor = Executors.newSingleThreadExecutor(new CustomizableThreadFactory("column-compression-"));
+            executor.execute(this::migrate);
+        }
+    }
+
+    @PreDestroy
+    public void destroy() {
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Compress the values of all compressed columns that were stored before the compression.
+     */
+    public void migrate() {
+        for (String[] column : COLUMNS) {
+            try {
+                int count = migrate(column[0], column[1]);
+                log.info("Compressed {} values of {}.{}", count, column[0], column[1]);
+            } catch (RuntimeException e) {
+                log.error("Could not compress {}.{}", column[0], column[1], e);
+            }
+        }
+    }
+
+    private int migrate(String table, String column) {
+        if (!isBinary(table, column)) {
+            // Liquibase running asynchronously has not changed the column yet
+            log.warn("Column {}.{} is not binary yet, not compressing it", table, column);
+            return 0;
+        }
+        TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+        int batchSize = jHipsterProperties.getCompression().getBatchSize();
+        int count = 0;
+        Batch batch = new Batch(Long.MIN_VALUE);
+        do {
+            long after = batch.lastId;
+            batch = transaction.execute(status -> compressBatch(table, column, after, batchSize));
+            count += batch.compressed;
+            migrated.mark(batch.compressed);
+        } while (batch.rows == batchSize && !Thread.currentThread().isInterrupted());
+        return count;
+    }
+
+    private Batch compressBatch(String table, String column, long after, int batchSize) {
+        Batch batch = new Batch(after);
+        List<Object[]> updates = new ArrayList<>();
+        jdbcTemplate.query("select id, " + column + " from " + table + " where id > ? order by id limit ? for update",
+            rs -> {
+                batch.rows++;
+                batch.lastId = rs.getLong(1);
+                byte[] stored = rs.getBytes(2);
+                if (stored != null && !CompressedText.isEncoded(stored)) {
+                    updates.add(new Object[] {CompressedText.encode(CompressedText.decode(stored)), batch.lastId});
+                }
+            }, after, batchSize);
+        if (!updates.isEmpty()) {
+            jdbcTemplate.batchUpdate("update " + table + " set " + column + " = ? where id = ?", updates);
+        }
+        batch.compressed = updates.size();
+        return batch;
+    }
+
+    private boolean isBinary(String table, String column) {
+        return jdbcTemplate.query("select " + column + " from " + table + " where 1 = 0", rs -> {
+            int type = rs.getMetaData().getColumnType(1);
+            return type == Types.BLOB || type == Types.LONGVARBINARY || type == Types.VARBINARY || type == Types.BINARY;
+        });
+    }
+
+    /**
+     * Progress of one batch of rows.
+     */
+    private static class Batch {
+
+        private long lastId;
+
+        private int rows;
+
+        private int compressed;
+
+        Batch(long lastId) {
+            this.lastId = lastId;
+        }
+    }
+}
@@ -0,0 +1,104 @@
+/*
+ * MaritimeCloud Service Registry
+ * Copyright (c) 2016 Frequentis AG
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.frequentis.maritime.mcsr.service;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.inject.Inject;
+
+import org.elasticsearch.action.search.SearchRequestBuilder;
+import org.elasticsearch.action.search.SearchResponse;
+import org.elasticsearch.index.query.QueryBuilder;
+import org.elasticsearch.search.SearchHit;
+import org.elasticsearch.search.SearchHits;
+import org.elasticsearch.search.sort.SortBuilders;
+import org.elasticsearch.search.sort.SortOrder;
+import org.springframework.data.elasticsearch.ElasticsearchException;
+import org.springframework.data.elasticsearch.core.ElasticsearchOperations;
+import org.springframework.data.elasticsearch.core.EntityMapper;
+import org.springframework.data.elasticsearch.core.mapping.ElasticsearchPersistentEntity;
+import org.springframework.data.elasticsearch.core.query.SourceFilter;
+import org.springframework.stereotype.Service;
+
+/**
+ * Runs searches page by page with search_after instead of from/size.
+ *
+ * <p>
+ * Results are sorted by score and then by id, and each page continues after the sort values of the last
+ * entity of the previous page. A page costs the same no matter how deep it is, and there is no limit on
+ * the number of results that can be read. Changes to the index between two pages are seen by the later one.
+ * </p>
+ */
+@Service
+public class CursorSearchService {
+
+    private static final String TIEBREAKER = "id";
+
+    @Inject
+    private ElasticsearchOperations elasticsearchOperations;
+
+    @Inject
+    private EntityMapper elasticsearchEntityMapper;
+
+    /**
+     * @param entityClass the entity to search
+     * @param query the query
+     * @param sourceFilter the source filter, or null to read the complete entities
+     * @param cursor the page to read
+     * @return the page
+     */
+    public <T> CursorPage<T> search(Class<T> entityClass, QueryBuilder query, SourceFilter sourceFilter, SearchCursor cursor) {
+        ElasticsearchPersistentEntity<?> persistentEntity = elasticsearchOperations.getPersistentEntityFor(entityClass);
+        SearchRequestBuilder request = elasticsearchOperations.getClient()
+            .prepareSearch(persistentEntity.getIndexName())
+            .setTypes(persistentEntity.getIndexType())
+            .setQuery(query)
+            // one more than requested, to know if there is a following page
+            .setSize(cursor.getSize() + 1)
+            .addSort(SortBuilders.scoreSort())
+            .addSort(SortBuilders.fieldSort(TIEBREAKER).order(SortOrder.ASC));
+        if (cursor.getAfter() != null) {
+            request.searchAfter(cursor.getAfter());
+        }
+        if (sourceFilter != null) {
+            request.setFetchSource(sourceFilter.getIncludes(), sourceFilter.getExcludes());
+        }
+        SearchResponse response = request.get();
+
+        SearchHits hits = response.getHits();
+        int count = Math.min(hits.getHits().length, cursor.getSize());
+        List<T> content = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            try {
+                content.add(elasticsearchEntityMapper.mapToObject(hits.getAt(i).getSourceAsString(), entityClass));
+            } catch (IOException e) {
+                throw new ElasticsearchException("Failed to map search result to " + entityClass.getSimpleName(), e);
+            }
+        }
+        String nextCursor = null;
+        if (hits.getHits().length > cursor.getSize()) {
+            SearchHit last = hits.getAt(count - 1);
+            nextCursor = SearchCursor.token(last.getSortValues());
+        }
+        // Elasticsearch counts the total anyway, it is only reported if asked for
+        return new CursorPage<>(content, nextCursor, cursor.isCountTotal() ? hits.getTotalHits() : null);
+    }
+}
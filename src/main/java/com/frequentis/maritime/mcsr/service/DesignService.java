@@ -21,7 +21,6 @@ package com.frequentis.maritime.mcsr.service;
 import com.frequentis.maritime.mcsr.domain.Design;
 import com.frequentis.maritime.mcsr.repository.DesignRepository;
 import com.frequentis.maritime.mcsr.repository.search.DesignSearchRepository;
-import org.apache.maven.artifact.versioning.DefaultArtifactVersion;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.data.domain.Page;
@@ -49,6 +48,15 @@ public class DesignService {
     @Inject
     private DesignSearchRepository designSearchRepository;
 
+    @Inject
+    private IndexOutboxService indexOutboxService;
+
+    @Inject
+    private LatestVersionService latestVersionService;
+
+    @Inject
+    private CursorSearchService cursorSearchService;
+
     /**
      * Save a design.
      *
@@ -58,7 +66,8 @@ public class DesignService {
     public Design save(Design design) {
         log.debug("Request to save Design : {}", design);
         Design result = designRepository.save(design);
-        designSearchRepository.save(result);
+        indexOutboxService.index(Design.class, result.getId());
+        latestVersionService.refresh(Design.class, result.getDesignId());
         return result;
     }
 
@@ -95,8 +104,10 @@ public class DesignService {
      */
     public void delete(Long id) {
         log.debug("Request to delete Design : {}", id);
+        String domainId = designRepository.findDomainIdById(id);
         designRepository.deleteById(id);
-        designSearchRepository.deleteById(id);
+        indexOutboxService.delete(Design.class, id);
+        latestVersionService.refresh(Design.class, domainId);
     }
 
     /**
@@ -124,6 +135,18 @@ public class DesignService {
         return designSearchRepository.search(queryStringQuery(query), pageable);
     }
 
+    /**
+     * Search for the design corresponding to the query, page by page with a cursor.
+     *
+     *  @param query the query of the search
+     *  @param cursor the page to return
+     *  @return the page of entities
+     */
+    public CursorPage<Design> search(String query, SearchCursor cursor) {
+        log.debug("Request to search for a cursor page of Designs for query {}", query);
+        return cursorSearchService.search(Design.class, queryStringQuery(query), null, cursor);
+    }
+
     /**
      *  Get one design by domain specific id (for example, maritime id) and version.
      *
@@ -156,24 +179,8 @@ public class DesignService {
     @Transactional(readOnly = true)
     public Design findLatestVersionByDomainId(String domainId) {
         log.debug("Request to get Design by domain id {}", domainId);
-        Design design = null;
-        DefaultArtifactVersion latestVersion = new DefaultArtifactVersion("0.0");
-        try {
-            Iterable<Design> designs = designRepository.findByDomainId(domainId);
-            if (designs.iterator().hasNext()) {
-                Design i = designs.iterator().next();
-                //Compare version numbers, save the instance if it's a newer version
-                DefaultArtifactVersion iv = new DefaultArtifactVersion(i.getVersion());
-                if (iv.compareTo(latestVersion) > 0) {
-                    design = i;
-                    latestVersion = iv;
-                }
-            }
-        } catch (Exception e) {
-            log.debug("Could not find specification for domain id {}", domainId);
-            e.printStackTrace();
-        }
-        return design;
+        return latestVersionService.findLatest(Design.class, domainId, false,
+            designRepository::findOneWithEagerRelationships, Design::getDesignId);
     }
 
     /**
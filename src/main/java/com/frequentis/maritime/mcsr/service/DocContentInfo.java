@@ -0,0 +1,80 @@
+/*
+ * MaritimeCloud Service Registry
+ * Copyright (c) 2016 Frequentis AG
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package com.frequentis.maritime.mcsr.service;
+
+/**
+ * Description of a doc file content, available without reading the content itself.
+ */
+public class DocContentInfo {
+
+    private final Long id;
+
+    private final String contentType;
+
+    private final long size;
+
+    private final String sha256;
+
+    public DocContentInfo(Long id, String contentType, long size, String sha256) {
+        this.id = id;
+        this.contentType = contentType;
+        this.size = size;
+        this.sha256 = sha256;
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public String getContentType() {
+        return contentType;
+    }
+
+    /**
+     * @return the size of the content in bytes
+     */
+    public long getSize() {
+        return size;
+    }
+
+    /**
+     * @return the SHA-256 of the content as hex string
+     */
+    public String getSha256() {
+        return sha256;
+    }
+
+    /**
+     * @return the strong entity tag of the content, its quoted hash
+     */
+    public String getETag() {
+        return "\"" + sha256 + "\"";
+    }
+
+    @Override
+    public String toString() {
+        return "DocContentInfo{" +
+            "id=" + id +
+            ", contentType='" + contentType + "'" +
+            ", size=" + size +
+            ", sha256='" + sha256 + "'" +
+            '}';
+    }
+}
@@ -0,0 +1,313 @@
+/*
+ * MaritimeCloud Service Registry
+ * Copyright (c) 2016 Frequentis AG
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package com.frequentis.maritime.mcsr.service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.util.List;
+
+import javax.annotation.PostConstruct;
+import javax.inject.Inject;
+import javax.persistence.EntityManager;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.io.input.CountingInputStream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.frequentis.maritime.mcsr.domain.Doc;
+import com.frequentis.maritime.mcsr.domain.DocContent;
+import com.frequentis.maritime.mcsr.domain.util.ContentHash;
+import com.frequentis.maritime.mcsr.repository.DocContentRepository;
+import com.frequentis.maritime.mcsr.repository.DocRepository;
+
+/**
+ * Service for storing the file content of docs, and for reading and writing it as streams.
+ *
+ * <p>
+ * Contents are addressed by their SHA-256. Identical files are stored once and shared by all docs using them, each
+ * {@link DocContent} counts the docs referencing it and is deleted with the last one. Storing a content whose hash
+ * is already known only adds a reference.
+ * </p>
+ *
+ * <p>
+ * Streams are written to the doc_content table through JDBC. On MySQL, whose driver fetches a whole BLOB column
+ * into memory, contents are read in chunks of {@link #CHUNK_SIZE} bytes with SUBSTRING, so a range is read without
+ * the bytes in front of it. Other databases stream the content from the result set. Size and SHA-256 are kept next
+ * to the content, so downloads can send Content-Length and ETag before the first byte is read.
+ * </p>
+ */
+@Service
+@Transactional
+public class DocContentService {
+
+    private final Logger log = LoggerFactory.getLogger(DocContentService.class);
+
+    private static final int BUFFER_SIZE = 8192;
+
+    static final int CHUNK_SIZE = 1024 * 1024;
+
+    @Inject
+    private JdbcTemplate jdbcTemplate;
+
+    @Inject
+    private EntityManager entityManager;
+
+    @Inject
+    private DocContentRepository docContentRepository;
+
+    @Inject
+    private DocRepository docRepository;
+
+    @Inject
+    private DocService docService;
+
+    @Inject
+    private DocTextExtractionService docTextExtractionService;
+
+    private boolean chunkedReads;
+
+    @PostConstruct
+    public void init() {
+        // MySQL Connector/J reads a whole BLOB into memory, without locator emulation even for getBinaryStream
+        String database = jdbcTemplate.execute((ConnectionCallback<String>) connection -> connection.getMetaData().getDatabaseProductName());
+        chunkedReads = "MySQL".equalsIgnoreCase(database);
+        log.debug("Reading doc contents of {} {}", database, chunkedReads ? "in chunks" : "as streams");
+    }
+
+    /**
+     * Get a content with the given bytes, adding a reference to it.
+     *
+     * @param content the bytes of the content
+     * @param sha256 the hash of the bytes
+     * @return the content already stored with this hash, or a new one
+     */
+    public DocContent store(byte[] content, String sha256) {
+        Long id = findIdBySha256(sha256);
+        if (id != null && reference(id)) {
+            log.debug("Reusing DocContent {} for hash {}", id, sha256);
+            return docContentRepository.getOne(id);
+        }
+        return docContentRepository.save(new DocContent(content, sha256));
+    }
+
+    /**
+     * Remove a reference to a content, deleting it if it is no longer used.
+     *
+     * <p>The doc no longer referencing the content must already be flushed.</p>
+     *
+     * @param id the id of the content
+     */
+    public void release(Long id) {
+        docContentRepository.decrementRefCount(id);
+        if (docContentRepository.deleteIfUnreferenced(id) > 0) {
+            log.debug("Deleted unreferenced DocContent {}", id);
+        }
+    }
+
+    /**
+     * Get the description of the content of a doc.
+     *
+     * <p>Docs stored without size and hash get them from their content on the first call.</p>
+     *
+     * @param id the id of the doc
+     * @return the description, null if there is no such doc
+     */
+    public DocContentInfo findInfo(Long id) {
+        log.debug("Request to get content info of Doc : {}", id);
+        List<DocContentInfo> result = jdbcTemplate.query(
+            "select filecontent_content_type, filecontent_size, filecontent_sha256 from doc where id = ?",
+            (rs, rowNum) -> {
+                Number size = (Number) rs.getObject(2);
+                String sha256 = rs.getString(3);
+                return size == null || sha256 == null ? null : new DocContentInfo(id, rs.getString(1), size.longValue(), sha256);
+            }, id);
+        if (result.isEmpty()) {
+            return null;
+        }
+        if (result.get(0) != null) {
+            return result.get(0);
+        }
+        return updateInfo(id);
+    }
+
+    /**
+     * Write a part of the content of a doc to a stream.
+     *
+     * @param id the id of the doc
+     * @param offset the position of the first byte to write
+     * @param length the number of bytes to write
+     * @param out the stream to write to, not closed
+     * @throws IOException if the content could not be written
+     */
+    @Transactional(readOnly = true)
+    public void copyContent(Long id, long offset, long length, OutputStream out) throws IOException {
+        log.debug("Request to read content of Doc : {}, bytes {}+{}", id, offset, length);
+        if (!chunkedReads) {
+            copyContentStream(id, offset, length, out);
+            return;
+        }
+        List<Long> contentIds = jdbcTemplate.queryForList("select content_id from doc where id = ?", Long.class, id);
+        if (contentIds.isEmpty()) {
+            return;
+        }
+        long position = offset;
+        long remaining = length;
+        while (remaining > 0) {
+            int chunk = (int) Math.min(remaining, CHUNK_SIZE);
+            List<byte[]> bytes = jdbcTemplate.query("select substring(content, ?, ?) from doc_content where id = ?",
+                (rs, rowNum) -> rs.getBytes(1), position + 1, chunk, contentIds.get(0));
+            if (bytes.isEmpty() || bytes.get(0) == null || bytes.get(0).length == 0) {
+                return;
+            }
+            out.write(bytes.get(0));
+            position += bytes.get(0).length;
+            remaining -= bytes.get(0).length;
+        }
+    }
+
+    private void copyContentStream(Long id, long offset, long length, OutputStream out) throws IOException {
+        try {
+            jdbcTemplate.query("select c.content from doc d join doc_content c on c.id = d.content_id where d.id = ?", rs -> {
+                if (rs.next()) {
+                    try (InputStream in = rs.getBinaryStream(1)) {
+                        IOUtils.copyLarge(in, out, offset, length, new byte[BUFFER_SIZE]);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                }
+                return null;
+            }, id);
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * Replace the content of a doc with the data of a stream.
+     *
+     * <p>
+     * The data is passed to the JDBC driver as stream, size and hash are taken on the way. As the hash is known
+     * only at the end, the data is written to a new content first, which is dropped again if the same content
+     * was already stored.
+     * </p>
+     *
+     * @param id the id of the doc
+     * @param in the new content, read to the end but not closed
+     * @param contentType the content type of the new content
+     * @return the description of the new content, null if there is no such doc
+     */
+    public DocContentInfo replaceContent(Long id, InputStream in, String contentType) {
+        return replaceContent(id, in, contentType, null);
+    }
+
+    /**
+     * Replace the content of a doc with the data of a stream, checking it against the hash the client sent.
+     *
+     * @param id the id of the doc
+     * @param in the new content, read to the end but not closed
+     * @param contentType the content type of the new content
+     * @param expectedSha256 the SHA-256 of the new content as hex string, null if not known
+     * @return the description of the new content, null if there is no such doc
+     * @throws IllegalArgumentException if the content does not match the expected hash, nothing is changed then
+     */
+    public DocContentInfo replaceContent(Long id, InputStream in, String contentType, String expectedSha256) {
+        log.debug("Request to replace content of Doc : {}", id);
+        Long previousContentId = docRepository.findContentIdById(id);
+        if (previousContentId == null) {
+            return null;
+        }
+        DocContent created = docContentRepository.saveAndFlush(new DocContent(new byte[0], ""));
+        entityManager.detach(created);
+
+        MessageDigest digest = ContentHash.newDigest();
+        CountingInputStream counting = new CountingInputStream(new DigestInputStream(in, digest));
+        jdbcTemplate.update("update doc_content set content = ? where id = ?", ps -> {
+            ps.setBinaryStream(1, counting);
+            ps.setLong(2, created.getId());
+        });
+        DocContentInfo info = new DocContentInfo(id, contentType, counting.getByteCount(), ContentHash.of(digest));
+        if (expectedSha256 != null && !expectedSha256.equalsIgnoreCase(info.getSha256())) {
+            throw new IllegalArgumentException("Content has SHA-256 " + info.getSha256() + ", expected " + expectedSha256);
+        }
+
+        Long contentId = findIdBySha256(info.getSha256());
+        if (contentId != null && reference(contentId)) {
+            log.debug("Reusing DocContent {} for hash {}", contentId, info.getSha256());
+            jdbcTemplate.update("delete from doc_content where id = ?", created.getId());
+        } else {
+            contentId = created.getId();
+            jdbcTemplate.update("update doc_content set sha256 = ?, content_size = ? where id = ?",
+                info.getSha256(), info.getSize(), contentId);
+        }
+        return updateDoc(id, previousContentId, contentId, info);
+    }
+
+    private DocContentInfo updateDoc(Long id, Long previousContentId, Long contentId, DocContentInfo info) {
+        jdbcTemplate.update("update doc set content_id = ?, filecontent_content_type = ?, filecontent_size = ?, filecontent_sha256 = ?, text_excerpt = null where id = ?",
+            contentId, info.getContentType(), info.getSize(), info.getSha256(), id);
+        release(previousContentId);
+        docTextExtractionService.request(id, info.getSha256());
+        entityManager.getEntityManagerFactory().getCache().evict(Doc.class, id);
+        docService.reindex(id);
+        return info;
+    }
+
+    /**
+     * Add a reference to a stored content. The content row is locked first, so a concurrent release of its last
+     * reference either completes before, then the content is gone, or waits for this transaction.
+     *
+     * @param id the id of the content
+     * @return false if the content was deleted meanwhile
+     */
+    private boolean reference(Long id) {
+        List<Integer> refCounts = jdbcTemplate.queryForList("select ref_count from doc_content where id = ? for update", Integer.class, id);
+        return !refCounts.isEmpty() && docContentRepository.incrementRefCount(id) > 0;
+    }
+
+    private Long findIdBySha256(String sha256) {
+        List<Long> ids = docContentRepository.findIdsBySha256(sha256, PageRequest.of(0, 1));
+        return ids.isEmpty() ? null : ids.get(0);
+    }
+
+    private DocContentInfo updateInfo(Long id) {
+        log.debug("Copying content info to Doc : {}", id);
+        List<DocContentInfo> result = jdbcTemplate.query(
+            "select d.filecontent_content_type, c.content_size, c.sha256 from doc d join doc_content c on c.id = d.content_id where d.id = ?",
+            (rs, rowNum) -> new DocContentInfo(id, rs.getString(1), rs.getLong(2), rs.getString(3)), id);
+        if (result.isEmpty()) {
+            return null;
+        }
+        DocContentInfo info = result.get(0);
+        jdbcTemplate.update("update doc set filecontent_size = ?, filecontent_sha256 = ? where id = ?",
+            info.getSize(), info.getSha256(), id);
+        entityManager.getEntityManagerFactory().getCache().evict(Doc.class, id);
+        return info;
+    }
+}
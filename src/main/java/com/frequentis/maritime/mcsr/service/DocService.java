@@ -20,7 +20,6 @@ package com.frequentis.maritime.mcsr.service;
 import static org.elasticsearch.index.query.QueryBuilders.queryStringQuery;
 
 import javax.inject.Inject;
-import java.util.List;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -38,9 +37,6 @@ import com.frequentis.maritime.mcsr.repository.DesignRepository;
 import com.frequentis.maritime.mcsr.repository.SpecificationRepository;
 import com.frequentis.maritime.mcsr.repository.InstanceRepository;
 import com.frequentis.maritime.mcsr.repository.search.DocSearchRepository;
-import com.frequentis.maritime.mcsr.repository.search.DesignSearchRepository;
-import com.frequentis.maritime.mcsr.repository.search.SpecificationSearchRepository;
-import com.frequentis.maritime.mcsr.repository.search.InstanceSearchRepository;
 
 /**
  * Service Implementation for managing Doc.
@@ -61,66 +57,81 @@ public class DocService {
     private DesignRepository designRepository;
 
     @Inject
-    private DesignSearchRepository designSearchRepository;
+    private SpecificationRepository specificationRepository;
 
     @Inject
-    private SpecificationRepository specificationRepository;
+    private InstanceRepository instanceRepository;
 
     @Inject
-    private SpecificationSearchRepository specificationSearchRepository;
+    private IndexOutboxService indexOutboxService;
 
     @Inject
-    private InstanceRepository instanceRepository;
+    private DocContentService docContentService;
 
     @Inject
-    private InstanceSearchRepository instanceSearchRepository;
+    private DocTextExtractionService docTextExtractionService;
 
     /**
      * Save a doc.
      *
+     * <p>The designs, specifications and instances using the doc as their main document embed it in
+     * their search documents, so they are re-indexed together with the doc.</p>
+     *
+     * <p>New file content is stored content-addressed, see {@link DocContentService}. A doc without new file
+     * content keeps the content stored so far. The text of new content is extracted in the background,
+     * see {@link DocTextExtractionWorker}.</p>
+     *
      * @param doc the entity to save
      * @return the persisted entity
      */
     public Doc save(Doc doc) {
         log.debug("Request to save Doc : {}", doc);
-        Doc result = docRepository.save(doc);
-        docSearchRepository.save(result);
-	Doc searchBaseDoc = docRepository.findById(doc.getId()).orElse(null);
-
-	List<Design> designs = designRepository.findAllWithEagerRelationships();
-	if (designs != null && designs.size() > 0) {
-	    for (Design d : designs) {
-		if (d.getDesignAsDoc() != null && d.getDesignAsDoc().getId() == doc.getId()) {
-	            log.debug("Updating Linked Design: {}", d);
-                    Design resultDesign = designRepository.save(d);
-	            designSearchRepository.save(resultDesign);
-		}
-	    }
-	}
-	List<Specification> specs = specificationRepository.findAllWithEagerRelationships();
-	if (specs != null && specs.size() > 0) {
-	    for (Specification s : specs) {
-		if (s.getSpecAsDoc() != null && s.getSpecAsDoc().getId() == doc.getId()) {
-	            log.debug("Updating Linked Specification: {}", s);
-            	    Specification resultSpecification = specificationRepository.save(s);
-	    	    specificationSearchRepository.save(resultSpecification);
-		}
-	    }
-	}
-	List<Instance> instances = instanceRepository.findAllWithEagerRelationships();
-	if (instances != null && instances.size() > 0) {
-	    for (Instance i : instances) {
-		if (i.getInstanceAsDoc() != null && i.getInstanceAsDoc().getId() == doc.getId()) {
-	            log.debug("Updating Linked Instance: {}", i);
-            	    Instance resultInstance = instanceRepository.save(i);
-	    	    instanceSearchRepository.save(resultInstance);
-		}
-	    }
-	}
-	
+        Long previousContentId = null;
+        if (doc.getFilecontent() != null) {
+            if (doc.getId() != null) {
+                previousContentId = docRepository.findContentIdById(doc.getId());
+            }
+            doc.setContent(docContentService.store(doc.getFilecontent(), doc.getFilecontentSha256()));
+        } else if (doc.getId() != null && doc.getContent() == null) {
+            docRepository.findById(doc.getId()).ifPresent(stored -> {
+                doc.setContent(stored.getContent());
+                doc.setFilecontentSize(stored.getFilecontentSize());
+                doc.setFilecontentSha256(stored.getFilecontentSha256());
+                doc.setTextExcerpt(stored.getTextExcerpt());
+            });
+        }
+        Doc result = docRepository.saveAndFlush(doc);
+        if (previousContentId != null) {
+            docContentService.release(previousContentId);
+        }
+        if (doc.getFilecontent() != null) {
+            docTextExtractionService.request(result.getId(), result.getFilecontentSha256());
+        }
+        reindex(result.getId());
         return result;
     }
 
+    /**
+     * Re-index a doc and the designs, specifications and instances using it as their main document.
+     *
+     * @param docId the id of the doc
+     */
+    void reindex(Long docId) {
+        indexOutboxService.index(Doc.class, docId);
+        for (Long id : designRepository.findIdsByDesignAsDocId(docId)) {
+            log.debug("Updating Linked Design: {}", id);
+            indexOutboxService.index(Design.class, id);
+        }
+        for (Long id : specificationRepository.findIdsBySpecAsDocId(docId)) {
+            log.debug("Updating Linked Specification: {}", id);
+            indexOutboxService.index(Specification.class, id);
+        }
+        for (Long id : instanceRepository.findIdsByInstanceAsDocId(docId)) {
+            log.debug("Updating Linked Instance: {}", id);
+            indexOutboxService.index(Instance.class, id);
+        }
+    }
+
     /**
      *  Get all the docs.
      *
@@ -147,6 +158,22 @@ public class DocService {
         return doc;
     }
 
+    /**
+     *  Get one doc by id, together with its file content.
+     *
+     *  @param id the id of the entity
+     *  @return the entity, with {@link Doc#getFilecontent()} set
+     */
+    @Transactional(readOnly = true)
+    public Doc findOneWithContent(Long id) {
+        log.debug("Request to get Doc with content : {}", id);
+        Doc doc = docRepository.findById(id).orElse(null);
+        if (doc != null) {
+            doc.loadFilecontent();
+        }
+        return doc;
+    }
+
     /**
      *  Delete the  doc by id.
      *
@@ -154,8 +181,13 @@ public class DocService {
      */
     public void delete(Long id) {
         log.debug("Request to delete Doc : {}", id);
+        Long contentId = docRepository.findContentIdById(id);
         docRepository.deleteById(id);
-        docSearchRepository.deleteById(id);
+        docRepository.flush();
+        if (contentId != null) {
+            docContentService.release(contentId);
+        }
+        indexOutboxService.delete(Doc.class, id);
     }
 
     /**
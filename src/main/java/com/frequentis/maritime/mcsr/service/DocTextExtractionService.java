@@ -0,0 +1,60 @@
+/*
+ * MaritimeCloud Service Registry
+ * Copyright (c) 2016 Frequentis AG
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package com.frequentis.maritime.mcsr.service;
+
+import javax.inject.Inject;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.frequentis.maritime.mcsr.domain.DocTextExtractionTask;
+import com.frequentis.maritime.mcsr.repository.DocTextExtractionTaskRepository;
+
+/**
+ * Records doc contents whose text has to be extracted for the search index.
+ *
+ * <p>
+ * The tasks are written in the transaction of the content change, so they are committed or rolled back
+ * together with it. The {@link DocTextExtractionWorker} extracts the text afterwards.
+ * </p>
+ */
+@Service
+@Transactional(propagation = Propagation.MANDATORY)
+public class DocTextExtractionService {
+
+    private final Logger log = LoggerFactory.getLogger(DocTextExtractionService.class);
+
+    @Inject
+    private DocTextExtractionTaskRepository docTextExtractionTaskRepository;
+
+    /**
+     * Record that the text of a new doc content has to be extracted.
+     *
+     * @param docId the id of the doc
+     * @param sha256 the hash of the new content of the doc
+     */
+    public void request(Long docId, String sha256) {
+        log.debug("Request to extract the text of Doc {} : {}", docId, sha256);
+        docTextExtractionTaskRepository.save(new DocTextExtractionTask(docId, sha256));
+    }
+}
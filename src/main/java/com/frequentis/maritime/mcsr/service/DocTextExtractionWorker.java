@@ -0,0 +1,369 @@
+/*
+ * MaritimeCloud Service Registry
+ * Copyright (c) 2016 Frequentis AG
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package com.frequentis.maritime.mcsr.service;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.ZonedDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.inject.Inject;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.frequentis.maritime.mcsr.config.JHipsterProperties;
+import com.frequentis.maritime.mcsr.domain.Doc;
+import com.frequentis.maritime.mcsr.domain.DocTextExtractionTask;
+import com.frequentis.maritime.mcsr.repository.DocRepository;
+import com.frequentis.maritime.mcsr.repository.DocTextExtractionTaskRepository;
+import com.frequentis.maritime.mcsr.service.text.TextExcerpt;
+import com.frequentis.maritime.mcsr.service.text.TextExtractor;
+
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Extracts the text of new doc contents recorded by the {@link DocTextExtractionService}.
+ *
+ * <p>
+ * Due tasks are read in id order, coalesced per doc so only its latest content is read, and handed to a fixed
+ * pool of workers with a bounded queue; tasks the queue does not take anymore are left for the next batch. Each
+ * extraction is cancelled {@code jhipster.textExtraction.timeout} milliseconds after it started. The text is
+ * cut to {@code jhipster.textExtraction.maxChars} characters. The excerpts of a batch are stored in one transaction
+ * and the docs re-indexed through the index outbox, which writes them to Elasticsearch in bulk.
+ * </p>
+ *
+ * <p>
+ * Failed or timed out tasks are retried with exponential backoff, up to {@code jhipster.textExtraction.maxAttempts}
+ * times; a task that never started does not count as an attempt. An excerpt is stored only if the doc still has the content it was extracted from.
+ * </p>
+ */
+@Component
+public class DocTextExtractionWorker {
+
+    private final Logger log = LoggerFactory.getLogger(DocTextExtractionWorker.class);
+
+    private static final String METRIC_PREFIX = "text.extraction";
+
+    @Inject
+    private DocTextExtractionTaskRepository docTextExtractionTaskRepository;
+
+    @Inject
+    private DocRepository docRepository;
+
+    @Inject
+    private DocService docService;
+
+    @Inject
+    private List<TextExtractor> textExtractors;
+
+    @Inject
+    private JHipsterProperties jHipsterProperties;
+
+    @Inject
+    private MetricRegistry metricRegistry;
+
+    @Inject
+    private PlatformTransactionManager transactionManager;
+
+    private ThreadPoolExecutor executor;
+
+    private ScheduledExecutorService timeouts;
+
+    private TransactionTemplate readWriteTransaction;
+
+    private TransactionTemplate readOnlyTransaction;
+
+    private Meter extracted;
+
+    private Meter failed;
+
+    @PostConstruct
+    public void init() {
+        JHipsterProperties.TextExtraction properties = jHipsterProperties.getTextExtraction();
+        executor = new ThreadPoolExecutor(properties.getPoolSize(), properties.getPoolSize(), 0L, TimeUnit.MILLISECONDS,
+            new ArrayBlockingQueue<>(properties.getQueueCapacity()), new CustomizableThreadFactory("mcsr-text-extraction-"),
+            new ThreadPoolExecutor.AbortPolicy());
+        timeouts = Executors.newSingleThreadScheduledExecutor(new CustomizableThreadFactory("mcsr-text-extraction-timeout-"));
+
+        readWriteTransaction = new TransactionTemplate(transactionManager);
+        readOnlyTransaction = new TransactionTemplate(transactionManager);
+        readOnlyTransaction.setReadOnly(true);
+
+        metricRegistry.register(MetricRegistry.name(METRIC_PREFIX, "queue"),
+            (Gauge<Integer>) () -> executor.getQueue().size());
+        metricRegistry.register(MetricRegistry.name(METRIC_PREFIX, "backlog"),
+            (Gauge<Long>) docTextExtractionTaskRepository::count);
+        extracted = metricRegistry.meter(MetricRegistry.name(METRIC_PREFIX, "extracted"));
+        failed = metricRegistry.meter(MetricRegistry.name(METRIC_PREFIX, "failed"));
+    }
+
+    @PreDestroy
+    public void destroy() {
+        // Queued extractions never run, release a poller waiting for them
+        for (Runnable queued : executor.shutdownNow()) {
+            ((Future<?>) queued).cancel(false);
+        }
+        timeouts.shutdownNow();
+    }
+
+    /**
+     * Extract the text of the due tasks until no full batch is left. Only one run at a time, a caller
+     * arriving meanwhile waits for it and then extracts what is still due.
+     */
+    @Scheduled(fixedDelayString = "${jhipster.textExtraction.pollInterval:5000}")
+    public synchronized void extract() {
+        int batchSize = jHipsterProperties.getTextExtraction().getBatchSize();
+        try {
+            while (extractBatch() >= batchSize) {
+                log.debug("More doc texts to extract, continuing");
+            }
+        } catch (RuntimeException e) {
+            log.error("Could not extract doc texts", e);
+        }
+    }
+
+    /**
+     * Extract the text of one batch of due tasks.
+     *
+     * @return the number of tasks read
+     */
+    public int extractBatch() {
+        JHipsterProperties.TextExtraction properties = jHipsterProperties.getTextExtraction();
+        List<DocTextExtractionTask> tasks = readWriteTransaction.execute(status -> docTextExtractionTaskRepository.findDue(
+            ZonedDateTime.now(), PageRequest.of(0, properties.getBatchSize())));
+        if (tasks.isEmpty()) {
+            return 0;
+        }
+
+        // The last task per doc wins, an older content is not of interest anymore
+        Map<Long, DocTextExtractionTask> latest = new LinkedHashMap<>();
+        for (DocTextExtractionTask task : tasks) {
+            latest.remove(task.getDocId());
+            latest.put(task.getDocId(), task);
+        }
+
+        Map<DocTextExtractionTask, Extraction> submitted = new LinkedHashMap<>();
+        List<DocTextExtractionTask> notStarted = new ArrayList<>();
+        for (DocTextExtractionTask task : latest.values()) {
+            Extraction extraction = new Extraction(task);
+            try {
+                executor.execute(extraction.future);
+                submitted.put(task, extraction);
+            } catch (RejectedExecutionException e) {
+                log.debug("Extraction queue full, leaving {} for the next batch", task);
+                notStarted.add(task);
+            }
+        }
+
+        Map<DocTextExtractionTask, String> excerpts = new LinkedHashMap<>();
+        List<DocTextExtractionTask> failedTasks = new ArrayList<>();
+        for (Map.Entry<DocTextExtractionTask, Extraction> entry : submitted.entrySet()) {
+            Extraction extraction = entry.getValue();
+            try {
+                excerpts.put(entry.getKey(), extraction.future.get());
+            } catch (ExecutionException e) {
+                log.warn("Could not extract the text of {}: {}", entry.getKey(), e.getCause().toString());
+                failedTasks.add(entry.getKey());
+            } catch (CancellationException e) {
+                if (extraction.started) {
+                    log.warn("Extracting the text of {} timed out", entry.getKey());
+                    failedTasks.add(entry.getKey());
+                } else {
+                    notStarted.add(entry.getKey());
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                extraction.future.cancel(true);
+                if (extraction.started) {
+                    failedTasks.add(entry.getKey());
+                } else {
+                    notStarted.add(entry.getKey());
+                }
+            }
+        }
+
+        List<Long> done = new ArrayList<>(tasks.size());
+        for (DocTextExtractionTask task : tasks) {
+            if (!failedTasks.contains(task) && !notStarted.contains(task)) {
+                done.add(task.getId());
+            }
+        }
+        readWriteTransaction.execute(status -> {
+            for (Map.Entry<DocTextExtractionTask, String> entry : excerpts.entrySet()) {
+                DocTextExtractionTask task = entry.getKey();
+                if (entry.getValue() != null
+                        && docRepository.updateTextExcerpt(task.getDocId(), task.getContentSha256(), entry.getValue()) > 0) {
+                    docService.reindex(task.getDocId());
+                }
+            }
+            if (!done.isEmpty()) {
+                docTextExtractionTaskRepository.deleteByIdIn(done);
+            }
+            failedTasks.forEach(this::reschedule);
+            return null;
+        });
+        extracted.mark(excerpts.size());
+        failed.mark(failedTasks.size());
+        return tasks.size();
+    }
+
+    /**
+     * Extract the text of the content of a task.
+     *
+     * @return the excerpt, null if there is nothing to store
+     */
+    private String extractText(DocTextExtractionTask task) throws IOException {
+        JHipsterProperties.TextExtraction properties = jHipsterProperties.getTextExtraction();
+        Content content = readOnlyTransaction.execute(status -> {
+            Doc doc = docRepository.findById(task.getDocId()).orElse(null);
+            if (doc == null || !task.getContentSha256().equals(doc.getFilecontentSha256())) {
+                log.debug("Content of {} deleted or replaced meanwhile", task);
+                return null;
+            }
+            String contentType = doc.getFilecontentContentType() != null ? doc.getFilecontentContentType() : doc.getMimetype();
+            TextExtractor extractor = findExtractor(contentType);
+            if (extractor == null) {
+                log.debug("No text extractor for {} of {}", contentType, task);
+                return null;
+            }
+            if (doc.getFilecontentSize() != null && doc.getFilecontentSize() > properties.getMaxContentSize()) {
+                log.debug("Content of {} too large to extract its text: {} bytes", task, doc.getFilecontentSize());
+                return null;
+            }
+            doc.loadFilecontent();
+            return new Content(extractor, contentType, doc.getFilecontent());
+        });
+        if (content == null) {
+            return null;
+        }
+        TextExcerpt excerpt = new TextExcerpt(properties.getMaxChars());
+        try (InputStream in = new ByteArrayInputStream(content.bytes)) {
+            content.extractor.extract(in, content.contentType, excerpt);
+        }
+        return excerpt.toString();
+    }
+
+    private TextExtractor findExtractor(String contentType) {
+        if (contentType == null) {
+            return null;
+        }
+        int parameters = contentType.indexOf(';');
+        String type = (parameters >= 0 ? contentType.substring(0, parameters) : contentType).trim().toLowerCase(Locale.ROOT);
+        for (TextExtractor extractor : textExtractors) {
+            if (extractor.supports(type)) {
+                return extractor;
+            }
+        }
+        return null;
+    }
+
+    private void reschedule(DocTextExtractionTask task) {
+        JHipsterProperties.TextExtraction properties = jHipsterProperties.getTextExtraction();
+        int attempts = task.getAttempts() + 1;
+        if (attempts >= properties.getMaxAttempts()) {
+            log.error("Giving up extracting the text of {} after {} attempts", task, attempts);
+            docTextExtractionTaskRepository.deleteByIdIn(Collections.singleton(task.getId()));
+            return;
+        }
+        long backoff = properties.getInitialBackoff() << Math.min(attempts - 1, 30);
+        if (backoff <= 0 || backoff > properties.getMaxBackoff()) {
+            backoff = properties.getMaxBackoff();
+        }
+        task.setAttempts(attempts);
+        task.setNextAttemptAt(ZonedDateTime.now().plus(backoff, ChronoUnit.MILLIS));
+        docTextExtractionTaskRepository.save(task);
+    }
+
+    /**
+     * The extraction of one task, cancelled once it ran longer than the timeout.
+     */
+    private class Extraction implements Callable<String> {
+
+        private final DocTextExtractionTask task;
+
+        private final FutureTask<String> future = new FutureTask<>(this);
+
+        private volatile boolean started;
+
+        Extraction(DocTextExtractionTask task) {
+            this.task = task;
+        }
+
+        @Override
+        public String call() throws IOException {
+            started = true;
+            ScheduledFuture<?> timeout = timeouts.schedule(() -> future.cancel(true),
+                jHipsterProperties.getTextExtraction().getTimeout(), TimeUnit.MILLISECONDS);
+            try {
+                return extractText(task);
+            } finally {
+                timeout.cancel(false);
+            }
+        }
+    }
+
+    /**
+     * A content read from the database, to be extracted outside of the transaction.
+     */
+    private static class Content {
+
+        private final TextExtractor extractor;
+
+        private final String contentType;
+
+        private final byte[] bytes;
+
+        Content(TextExtractor extractor, String contentType, byte[] bytes) {
+            this.extractor = extractor;
+            this.contentType = contentType;
+            this.bytes = bytes;
+        }
+    }
+}
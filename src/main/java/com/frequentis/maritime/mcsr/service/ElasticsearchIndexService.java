@@ -18,17 +18,45 @@
 
 package com.frequentis.maritime.mcsr.service;
 
-import java.lang.reflect.Method;
+import static org.elasticsearch.index.query.QueryBuilders.matchAllQuery;
+
+import java.io.IOException;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
-
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+import java.util.regex.Pattern;
+
+import javax.annotation.PostConstruct;
 import javax.inject.Inject;
-
-import org.elasticsearch.ResourceAlreadyExistsException;
-//import org.elasticsearch.indices.IndexAlreadyExistsException;
+import javax.persistence.EntityManager;
+
+import org.elasticsearch.action.admin.indices.alias.IndicesAliasesRequestBuilder;
+import org.elasticsearch.action.bulk.BulkItemResponse;
+import org.elasticsearch.action.bulk.BulkRequestBuilder;
+import org.elasticsearch.action.bulk.BulkResponse;
+import org.elasticsearch.client.Client;
+import org.elasticsearch.client.IndicesAdminClient;
+import org.elasticsearch.cluster.metadata.AliasOrIndex;
+import org.elasticsearch.cluster.metadata.IndexMetaData;
+import org.elasticsearch.cluster.metadata.MetaData;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.xcontent.XContentType;
+import org.elasticsearch.index.VersionType;
+import org.elasticsearch.rest.RestStatus;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.codahale.metrics.annotation.Timed;
+import com.frequentis.maritime.mcsr.config.JHipsterProperties;
 import com.frequentis.maritime.mcsr.domain.Design;
 import com.frequentis.maritime.mcsr.domain.Doc;
 import com.frequentis.maritime.mcsr.domain.Instance;
@@ -38,8 +66,10 @@ import com.frequentis.maritime.mcsr.domain.SpecificationTemplateSet;
 import com.frequentis.maritime.mcsr.domain.User;
 import com.frequentis.maritime.mcsr.domain.Xml;
 import com.frequentis.maritime.mcsr.domain.Xsd;
+import com.frequentis.maritime.mcsr.domain.util.ElasticsearchIndexName;
 import com.frequentis.maritime.mcsr.repository.DesignRepository;
 import com.frequentis.maritime.mcsr.repository.DocRepository;
+import com.frequentis.maritime.mcsr.repository.IndexOutboxEventRepository;
 import com.frequentis.maritime.mcsr.repository.InstanceRepository;
 import com.frequentis.maritime.mcsr.repository.SpecificationRepository;
 import com.frequentis.maritime.mcsr.repository.SpecificationTemplateRepository;
@@ -47,165 +77,515 @@ import com.frequentis.maritime.mcsr.repository.SpecificationTemplateSetRepositor
 import com.frequentis.maritime.mcsr.repository.UserRepository;
 import com.frequentis.maritime.mcsr.repository.XmlRepository;
 import com.frequentis.maritime.mcsr.repository.XsdRepository;
-import com.frequentis.maritime.mcsr.repository.search.DesignSearchRepository;
-import com.frequentis.maritime.mcsr.repository.search.DocSearchRepository;
-import com.frequentis.maritime.mcsr.repository.search.InstanceSearchRepository;
-import com.frequentis.maritime.mcsr.repository.search.SpecificationSearchRepository;
-import com.frequentis.maritime.mcsr.repository.search.SpecificationTemplateSearchRepository;
-import com.frequentis.maritime.mcsr.repository.search.SpecificationTemplateSetSearchRepository;
-import com.frequentis.maritime.mcsr.repository.search.UserSearchRepository;
-import com.frequentis.maritime.mcsr.repository.search.XmlSearchRepository;
-import com.frequentis.maritime.mcsr.repository.search.XsdSearchRepository;
-import com.frequentis.maritime.mcsr.web.rest.registry.ServiceInstanceResource;
 import com.frequentis.maritime.mcsr.web.rest.util.InstanceUtil;
-import com.frequentis.maritime.mcsr.web.rest.util.XmlUtil;
+import com.frequentis.maritime.mcsr.web.rest.util.InstanceXmlAttributes;
+import com.frequentis.maritime.mcsr.web.rest.util.InstanceXmlParser;
 
+import org.springframework.data.elasticsearch.ElasticsearchException;
 import org.springframework.data.elasticsearch.core.ElasticsearchTemplate;
-import org.springframework.data.elasticsearch.repository.ElasticsearchRepository;
+import org.springframework.data.elasticsearch.core.EntityMapper;
+import org.springframework.data.elasticsearch.core.mapping.ElasticsearchPersistentEntity;
+import org.springframework.data.elasticsearch.core.query.NativeSearchQueryBuilder;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.scheduling.annotation.Async;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
+/**
+ * Rebuilds the Elasticsearch indices from the database.
+ *
+ * <p>
+ * Each entity type is streamed in keyset-paginated chunks, every chunk in its own transaction so the
+ * persistence context never holds more than one chunk. Chunks are written with one bulk request each, with
+ * index refresh disabled while loading; the refresh interval of the previous generation is restored afterwards.
+ * Entity types are reindexed in parallel, and the instance XML parsing and geometry conversion run on a separate
+ * worker pool.
+ * </p>
+ *
+ * <p>
+ * The entity index names are aliases. Every reindex builds a new timestamped index generation and only
+ * switches the alias over once it is complete, so searches never see a partial index.
+ * </p>
+ *
+ * <p>
+ * Documents are written with the same external versions as the {@link IndexOutboxRelay} uses: the highest outbox
+ * event id when the rebuild of the type started. A change recorded later has a higher event id, so a chunk read
+ * before it can never replace the document the relay wrote for it.
+ * </p>
+ */
 @Service
 public class ElasticsearchIndexService {
 
     private final Logger log = LoggerFactory.getLogger(ElasticsearchIndexService.class);
 
-    @Inject
-    private DesignRepository designRepository;
+    private static final String REFRESH_INTERVAL = "index.refresh_interval";
+    private static final DateTimeFormatter GENERATION_FORMAT = DateTimeFormatter.ofPattern("yyyyMMddHHmmss");
+    private static final int MAX_REPLAY_ROUNDS = 3;
+    private static final int KEPT_GENERATIONS = 1;
 
     @Inject
-    private DesignSearchRepository designSearchRepository;
+    private DesignRepository designRepository;
 
     @Inject
     private DocRepository docRepository;
 
     @Inject
-    private DocSearchRepository docSearchRepository;
+    private InstanceRepository instanceRepository;
 
     @Inject
-    private ServiceInstanceResource serviceInstanceResource;
+    private SpecificationRepository specificationRepository;
 
     @Inject
-    private InstanceRepository instanceRepository;
+    private SpecificationTemplateRepository specificationTemplateRepository;
 
     @Inject
-    private InstanceSearchRepository instanceSearchRepository;
+    private SpecificationTemplateSetRepository specificationTemplateSetRepository;
 
     @Inject
-    private SpecificationRepository specificationRepository;
+    private XmlRepository xmlRepository;
 
     @Inject
-    private SpecificationSearchRepository specificationSearchRepository;
+    private XsdRepository xsdRepository;
 
     @Inject
-    private SpecificationTemplateRepository specificationTemplateRepository;
+    private UserRepository userRepository;
 
     @Inject
-    private SpecificationTemplateSearchRepository specificationTemplateSearchRepository;
+    private IndexOutboxEventRepository indexOutboxEventRepository;
 
     @Inject
-    private SpecificationTemplateSetRepository specificationTemplateSetRepository;
+    private ElasticsearchTemplate elasticsearchTemplate;
 
     @Inject
-    private SpecificationTemplateSetSearchRepository specificationTemplateSetSearchRepository;
+    private Client elasticsearchClient;
 
     @Inject
-    private XmlRepository xmlRepository;
+    private EntityMapper elasticsearchEntityMapper;
 
     @Inject
-    private XmlSearchRepository xmlSearchRepository;
+    private EntityManager entityManager;
 
     @Inject
-    private XsdRepository xsdRepository;
+    private PlatformTransactionManager transactionManager;
 
     @Inject
-    private XsdSearchRepository xsdSearchRepository;
+    private JHipsterProperties jHipsterProperties;
 
     @Inject
-    private UserRepository userRepository;
+    private SearchResultCache searchResultCache;
 
     @Inject
-    private UserSearchRepository userSearchRepository;
+    private ReindexChangeTracker changeTracker;
 
-    @Inject
-    private ElasticsearchTemplate elasticsearchTemplate;
+    private TransactionTemplate readOnlyTransaction;
+
+    private TransactionTemplate readWriteTransaction;
+
+    private volatile ReindexProgress progress = new ReindexProgress();
+
+    @PostConstruct
+    public void init() {
+        readOnlyTransaction = new TransactionTemplate(transactionManager);
+        readOnlyTransaction.setReadOnly(true);
+        readWriteTransaction = new TransactionTemplate(transactionManager);
+    }
+
+    /**
+     * @return the progress of the running or last reindex
+     */
+    public ReindexProgress getProgress() {
+        return progress;
+    }
+
+    /**
+     * @return true if a reindex is currently running
+     */
+    public boolean isReindexRunning() {
+        return progress.isRunning();
+    }
 
     @Async
     @Timed
     public void reindexAll() {
-        reindexForClass(Design.class, designRepository, designSearchRepository);
-        reindexForClass(Doc.class, docRepository, docSearchRepository);
-        reindexInstances(instanceRepository, instanceSearchRepository, serviceInstanceResource);
-        reindexForClass(Specification.class, specificationRepository, specificationSearchRepository);
-        reindexForClass(SpecificationTemplate.class, specificationTemplateRepository, specificationTemplateSearchRepository);
-        reindexForClass(SpecificationTemplateSet.class, specificationTemplateSetRepository, specificationTemplateSetSearchRepository);
-        reindexForClass(Xml.class, xmlRepository, xmlSearchRepository);
-        reindexForClass(Xsd.class, xsdRepository, xsdSearchRepository);
-        reindexForClass(User.class, userRepository, userSearchRepository);
-
-        log.info("Elasticsearch: Successfully performed reindexing");
-    }
-
-    @Transactional
-    @SuppressWarnings("unchecked")
-    private <T> void reindexForClass(Class<T> entityClass, JpaRepository<T, Long> jpaRepository,
-                                                          ElasticsearchRepository<T, Long> elasticsearchRepository) {
-        elasticsearchTemplate.deleteIndex(entityClass);
+        ReindexProgress run = new ReindexProgress();
+        synchronized (this) {
+            if (progress.isRunning()) {
+                log.warn("Elasticsearch: Reindexing already running, request ignored");
+                return;
+            }
+            progress = run;
+            run.start();
+        }
+
+        String generation = GENERATION_FORMAT.format(ZonedDateTime.now(ZoneOffset.UTC));
+        JHipsterProperties.Reindex properties = jHipsterProperties.getReindex();
+        ExecutorService typeExecutor = Executors.newFixedThreadPool(properties.getParallelTypes(),
+            new CustomizableThreadFactory("mcsr-reindex-"));
+        ExecutorService workerExecutor = Executors.newFixedThreadPool(properties.getWorkerThreads(),
+            new CustomizableThreadFactory("mcsr-reindex-worker-"));
+        boolean failed = false;
         try {
-            elasticsearchTemplate.createIndex(entityClass);
-        } catch (ResourceAlreadyExistsException  e) {
-            // Do nothing. Index was already concurrently recreated by some other service.
+            List<Future<?>> types = new ArrayList<>();
+            types.add(typeExecutor.submit(() -> reindexInstances(run, generation, workerExecutor)));
+            types.add(typeExecutor.submit(() -> reindexForClass(run, generation, Design.class, designRepository,
+                designRepository::findAllWithEagerRelationshipsByIdIn)));
+            types.add(typeExecutor.submit(() -> reindexForClass(run, generation, Doc.class, docRepository,
+                docRepository::findAllById)));
+            types.add(typeExecutor.submit(() -> reindexForClass(run, generation, Specification.class, specificationRepository,
+                specificationRepository::findAllWithEagerRelationshipsByIdIn)));
+            types.add(typeExecutor.submit(() -> reindexForClass(run, generation, SpecificationTemplate.class, specificationTemplateRepository,
+                specificationTemplateRepository::findAllById)));
+            types.add(typeExecutor.submit(() -> reindexForClass(run, generation, SpecificationTemplateSet.class, specificationTemplateSetRepository,
+                specificationTemplateSetRepository::findAllById)));
+            types.add(typeExecutor.submit(() -> reindexForClass(run, generation, Xml.class, xmlRepository,
+                xmlRepository::findAllById)));
+            types.add(typeExecutor.submit(() -> reindexForClass(run, generation, Xsd.class, xsdRepository,
+                xsdRepository::findAllById)));
+            types.add(typeExecutor.submit(() -> reindexForClass(run, generation, User.class, userRepository,
+                userRepository::findAllById)));
+            for (Future<?> type : types) {
+                try {
+                    type.get();
+                } catch (ExecutionException e) {
+                    failed = true;
+                    log.error("Elasticsearch: Reindexing failed", e.getCause());
+                }
+            }
+        } catch (InterruptedException e) {
+            failed = true;
+            Thread.currentThread().interrupt();
+        } finally {
+            typeExecutor.shutdownNow();
+            workerExecutor.shutdownNow();
+            run.finish(failed);
         }
-        elasticsearchTemplate.putMapping(entityClass);
-        if (jpaRepository.count() > 0) {
+
+        log.info("Elasticsearch: Performed reindexing of {} documents ({} docs/s), {}", run.getIndexed(),
+            run.getDocumentsPerSecond(), failed ? "with errors" : "successfully");
+    }
+
+    private <T> void reindexForClass(ReindexProgress run, String generation, Class<T> entityClass,
+                                     JpaRepository<T, Long> jpaRepository, Function<List<Long>, List<T>> loader) {
+        ReindexProgress.TypeProgress type = run.addType(entityClass.getSimpleName());
+        rebuildIndex(type, generation, entityClass, jpaRepository, (ids, version) -> readOnlyTransaction.execute(status -> {
+            List<T> chunk = loader.apply(ids);
+            bulkIndex(entityClass, chunk, version);
+            return chunk.size();
+        }));
+    }
+
+    private void reindexInstances(ReindexProgress run, String generation, ExecutorService workerExecutor) {
+        ReindexProgress.TypeProgress type = run.addType(Instance.class.getSimpleName());
+        rebuildIndex(type, generation, Instance.class, instanceRepository, (ids, version) -> readWriteTransaction.execute(status -> {
+            List<Instance> chunk = instanceRepository.findAllWithEagerRelationshipsByIdIn(ids);
+
+            // Refresh the search attributes stored in the database from the XML
+            List<Future<InstanceXmlAttributes>> parsed = new ArrayList<>(chunk.size());
+            for (Instance i : chunk) {
+                String xml = i.getInstanceAsXml() != null ? i.getInstanceAsXml().getContent() : null;
+                parsed.add(workerExecutor.submit(() -> InstanceXmlParser.parseAndValidate(xml, "ServiceInstanceSchema.xsd")));
+            }
+            List<Instance> instances = new ArrayList<>(chunk.size());
+            List<InstanceXmlAttributes> attributes = new ArrayList<>(chunk.size());
+            for (int n = 0; n < chunk.size(); n++) {
+                Instance i = chunk.get(n);
+                try {
+                    InstanceXmlAttributes a = parsed.get(n).get();
+                    a.applyTo(i);
+                    attributes.add(a);
+                    instances.add(i);
+                } catch (ExecutionException e) {
+                    type.failed(1);
+                    log.error("Error parsing XML of instance: " + i.getId(), e.getCause());
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IllegalStateException("Reindexing interrupted", e);
+                }
+            }
+            entityManager.flush();
+            // The geometry is only kept in the index, so it is set on detached instances
+            entityManager.clear();
+
+            List<Future<Instance>> prepared = new ArrayList<>(instances.size());
+            for (int n = 0; n < instances.size(); n++) {
+                Instance i = instances.get(n);
+                InstanceXmlAttributes a = attributes.get(n);
+                prepared.add(workerExecutor.submit(() -> InstanceUtil.applyInstanceGeometry(i, a)));
+            }
+            List<Instance> result = new ArrayList<>(instances.size());
+            for (int n = 0; n < prepared.size(); n++) {
+                try {
+                    result.add(prepared.get(n).get());
+                } catch (ExecutionException e) {
+                    type.failed(1);
+                    log.error("Error parsing geometry of instance: " + instances.get(n).getId(), e.getCause());
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IllegalStateException("Reindexing interrupted", e);
+                }
+            }
+            bulkIndex(Instance.class, result, version);
+            return result.size();
+        }));
+    }
+
+    /**
+     * Build a new index generation for an entity type and switch its alias over once complete.
+     *
+     * <p>
+     * Searches keep being served by the previous generation until the switch. Entities written meanwhile are
+     * recorded by the {@link ReindexChangeTracker} and replayed into the new generation.
+     * </p>
+     *
+     * @param chunkIndexer indexes the entities with the given ids in the given external version and returns how many
+     *                     were indexed
+     */
+    private <T> void rebuildIndex(ReindexProgress.TypeProgress type, String generation, Class<T> entityClass,
+                                  JpaRepository<T, Long> jpaRepository, BiFunction<List<Long>, Long, Integer> chunkIndexer) {
+        String alias = elasticsearchTemplate.getPersistentEntityFor(entityClass).getIndexName();
+        String index = alias + "_" + generation;
+        String entityName = entityManager.getMetamodel().entity(entityClass).getName();
+        boolean switched = false;
+
+        changeTracker.start(entityClass);
+        try {
+            // Read after the tracking started, so any change with a higher event id is replayed
+            Long maxEventId = readOnlyTransaction.execute(status -> indexOutboxEventRepository.findMaxId());
+            long version = maxEventId != null ? maxEventId : 0L;
+            type.start(jpaRepository.count());
+            ElasticsearchIndexName.redirect(alias, index);
             try {
-                Method m = jpaRepository.getClass().getMethod("findAllWithEagerRelationships");
-                elasticsearchRepository.saveAll((List<T>) m.invoke(jpaRepository));
-            } catch (Exception e) {
-                elasticsearchRepository.saveAll(jpaRepository.findAll());
+                buildGeneration(type, entityClass, entityName, alias, index, chunkIndexer, version);
+                validateGeneration(type, entityClass, jpaRepository, index);
+            } finally {
+                ElasticsearchIndexName.reset(alias);
+            }
+
+            switchAlias(alias, index);
+            switched = true;
+            searchResultCache.invalidate(alias);
+            // Writes that reached the previous generation just before the switch
+            replayChanges(entityClass, entityName, chunkIndexer, version, changeTracker.stop(entityClass));
+            searchResultCache.invalidate(alias);
+            deleteOldGenerations(alias, index);
+            type.finish(type.getFailed() > 0);
+        } catch (RuntimeException e) {
+            changeTracker.stop(entityClass);
+            if (!switched) {
+                log.error("Elasticsearch: Discarding index {}, searches stay on the previous generation", index);
+                deleteIndexQuietly(index);
             }
+            type.finish(true);
+            throw e;
         }
-        log.info("Elasticsearch: Indexed all rows for " + entityClass.getSimpleName());
-    }
-
-    @Transactional
-    @SuppressWarnings("unchecked")
-    private <T> void reindexInstances(InstanceRepository instanceRepository,
-                                      InstanceSearchRepository instanceSearchRepository,
-                                      ServiceInstanceResource serviceInstanceResource) {
-        //Don't delete the instance index because this index needs to be manually created
-        //because spring-data can't handle geometry index creation
-        //elasticsearchTemplate.deleteIndex(entityClass);
-        // Delete in Custom Spring Data Elasticsearch
-        elasticsearchTemplate.deleteIndex(Instance.class);
+        log.info("Elasticsearch: Indexed {} rows for {} into {} ({} docs/s)", type.getIndexed(), entityClass.getSimpleName(),
+            index, type.getDocumentsPerSecond());
+    }
+
+    /**
+     * Feed the new generation chunk by chunk, ordered by id. Runs with the alias redirected to the new index.
+     */
+    private void buildGeneration(ReindexProgress.TypeProgress type, Class<?> entityClass, String entityName, String alias,
+                                 String index, BiFunction<List<Long>, Long, Integer> chunkIndexer, long version) {
+        elasticsearchTemplate.createIndex(entityClass);
+        elasticsearchTemplate.putMapping(entityClass);
+        int batchSize = jHipsterProperties.getReindex().getBatchSize();
+
+        String refreshInterval = getRefreshInterval(alias, index);
+        setRefreshInterval(index, "-1");
         try {
-            elasticsearchTemplate.createIndex(Instance.class);
-        } catch (ResourceAlreadyExistsException  e) {
-            // Do nothing. Index was already concurrently recreated by some other service.
+            long lastId = Long.MIN_VALUE;
+            while (true) {
+                List<Long> ids = nextIds(entityName, lastId, batchSize);
+                if (ids.isEmpty()) {
+                    break;
+                }
+                lastId = ids.get(ids.size() - 1);
+                try {
+                    type.indexed(chunkIndexer.apply(ids, version));
+                } catch (RuntimeException e) {
+                    type.failed(ids.size());
+                    log.error("Elasticsearch: Error indexing " + entityClass.getSimpleName() + " up to id " + lastId, e);
+                }
+            }
+            // Writes that reached the previous generation while loading
+            for (int round = 0; round < MAX_REPLAY_ROUNDS; round++) {
+                List<Long> changed = changeTracker.drain(entityClass);
+                if (changed.isEmpty()) {
+                    break;
+                }
+                replayChanges(entityClass, entityName, chunkIndexer, version, changed);
+            }
+        } finally {
+            setRefreshInterval(index, refreshInterval);
         }
-        elasticsearchTemplate.putMapping(Instance.class);
-        if (instanceRepository.count() > 0) {
-            List<Instance> instanceList = null;
-            try {
-                instanceList = instanceRepository.findAllWithEagerRelationships();
-            } catch (Exception e) {
-                instanceList = instanceRepository.findAll();
+        elasticsearchTemplate.refresh(entityClass);
+    }
+
+    /**
+     * Check the new generation holds every row of the database, except the ones which failed to index.
+     */
+    private void validateGeneration(ReindexProgress.TypeProgress type, Class<?> entityClass, JpaRepository<?, Long> jpaRepository,
+                                    String index) {
+        long indexed = elasticsearchTemplate.count(new NativeSearchQueryBuilder().withQuery(matchAllQuery()).build(), entityClass);
+        long expected = jpaRepository.count() - type.getFailed();
+        if (indexed < expected) {
+            throw new IllegalStateException("Index " + index + " holds " + indexed + " documents, expected " + expected);
+        }
+    }
+
+    private void replayChanges(Class<?> entityClass, String entityName, BiFunction<List<Long>, Long, Integer> chunkIndexer,
+                               long version, List<Long> changed) {
+        int batchSize = jHipsterProperties.getReindex().getBatchSize();
+        for (int from = 0; from < changed.size(); from += batchSize) {
+            List<Long> ids = changed.subList(from, Math.min(from + batchSize, changed.size()));
+            List<Long> existing = readOnlyTransaction.execute(status -> entityManager
+                .createQuery("select e.id from " + entityName + " e where e.id in :ids", Long.class)
+                .setParameter("ids", ids)
+                .getResultList());
+            ElasticsearchPersistentEntity<?> persistentEntity = elasticsearchTemplate.getPersistentEntityFor(entityClass);
+            BulkRequestBuilder bulk = elasticsearchClient.prepareBulk();
+            for (Long id : ids) {
+                if (!existing.contains(id)) {
+                    bulk.add(elasticsearchClient.prepareDelete(persistentEntity.getIndexName(), persistentEntity.getIndexType(),
+                        String.valueOf(id)).setVersion(version).setVersionType(VersionType.EXTERNAL_GTE));
+                }
             }
-            for (Instance i : instanceList) {
-                try {
-                    String xml = i.getInstanceAsXml().getContent().toString();
-                    XmlUtil.validateXml(xml, "ServiceInstanceSchema.xsd");
-                    i = InstanceUtil.parseInstanceAttributesFromXML(i);
-                    Instance result = instanceRepository.save(i);
-                    result = InstanceUtil.parseInstanceGeometryFromXML(result);
-                    instanceSearchRepository.save(result);
-                } catch (Exception e) {
-                    log.error("Error parsing XML of instance: " + i.getId(), e);
+            if (bulk.numberOfActions() > 0) {
+                executeBulk(bulk);
+            }
+            if (!existing.isEmpty()) {
+                chunkIndexer.apply(existing, version);
+            }
+        }
+    }
+
+    private List<Long> nextIds(String entityName, long lastId, int batchSize) {
+        return readOnlyTransaction.execute(status -> entityManager
+            .createQuery("select e.id from " + entityName + " e where e.id > :lastId order by e.id", Long.class)
+            .setParameter("lastId", lastId)
+            .setMaxResults(batchSize)
+            .getResultList());
+    }
+
+    /**
+     * Point the alias at the new generation, atomically removing it from the previous ones.
+     */
+    private void switchAlias(String alias, String index) {
+        IndicesAdminClient indices = elasticsearchTemplate.getClient().admin().indices();
+        MetaData metaData = clusterMetaData();
+        if (metaData.hasIndex(alias)) {
+            // Index from before the alias based indexing, it has to go before its name can become an alias
+            log.warn("Elasticsearch: Replacing index {} by an alias", alias);
+            indices.prepareDelete(alias).get();
+            indices.prepareAliases().addAlias(index, alias).get();
+            return;
+        }
+        IndicesAliasesRequestBuilder request = indices.prepareAliases().addAlias(index, alias);
+        AliasOrIndex current = metaData.getAliasAndIndexLookup().get(alias);
+        if (current != null) {
+            for (IndexMetaData previous : current.getIndices()) {
+                request.removeAlias(previous.getIndex().getName(), alias);
+            }
+        }
+        request.get();
+        log.info("Elasticsearch: Alias {} switched to {}", alias, index);
+    }
+
+    /**
+     * Delete the generations older than the one just replaced, which is kept for a manual rollback.
+     */
+    private void deleteOldGenerations(String alias, String index) {
+        Pattern generationPattern = Pattern.compile(Pattern.quote(alias) + "_\\d{14}");
+        List<String> generations = new ArrayList<>();
+        for (String name : clusterMetaData().getConcreteAllIndices()) {
+            if (generationPattern.matcher(name).matches() && !name.equals(index)) {
+                generations.add(name);
+            }
+        }
+        Collections.sort(generations);
+        for (int i = 0; i < generations.size() - KEPT_GENERATIONS; i++) {
+            log.info("Elasticsearch: Deleting old index generation {}", generations.get(i));
+            deleteIndexQuietly(generations.get(i));
+        }
+    }
+
+    private void deleteIndexQuietly(String index) {
+        try {
+            elasticsearchTemplate.deleteIndex(index);
+        } catch (RuntimeException e) {
+            log.warn("Elasticsearch: Could not delete index {}", index, e);
+        }
+    }
+
+    private MetaData clusterMetaData() {
+        return elasticsearchTemplate.getClient().admin().cluster().prepareState().get().getState().getMetaData();
+    }
+
+    /**
+     * @return the refresh interval of the previous generation, else the one the new index was created with,
+     * null if neither sets one
+     */
+    private String getRefreshInterval(String alias, String index) {
+        MetaData metaData = clusterMetaData();
+        AliasOrIndex previous = metaData.getAliasAndIndexLookup().get(alias);
+        if (previous != null) {
+            for (IndexMetaData previousIndex : previous.getIndices()) {
+                String interval = previousIndex.getSettings().get(REFRESH_INTERVAL);
+                if (interval != null) {
+                    return interval;
                 }
             }
         }
-        log.info("Elasticsearch: Indexed all rows for " + Instance.class.getSimpleName());
+        IndexMetaData created = metaData.index(index);
+        return created != null ? created.getSettings().get(REFRESH_INTERVAL) : null;
+    }
+
+    /**
+     * @param interval the new refresh interval, null for the default of Elasticsearch
+     */
+    private void setRefreshInterval(String indexName, String interval) {
+        Settings.Builder settings = interval != null
+            ? Settings.builder().put(REFRESH_INTERVAL, interval) : Settings.builder().putNull(REFRESH_INTERVAL);
+        elasticsearchTemplate.getClient().admin().indices().prepareUpdateSettings(indexName)
+            .setSettings(settings)
+            .get();
+    }
+
+    private void bulkIndex(Class<?> entityClass, List<?> entities, long version) {
+        if (entities.isEmpty()) {
+            return;
+        }
+        ElasticsearchPersistentEntity<?> persistentEntity = elasticsearchTemplate.getPersistentEntityFor(entityClass);
+        String index = persistentEntity.getIndexName();
+        BulkRequestBuilder bulk = elasticsearchClient.prepareBulk();
+        for (Object entity : entities) {
+            Object id = persistentEntity.getIdentifierAccessor(entity).getIdentifier();
+            String source;
+            try {
+                source = elasticsearchEntityMapper.mapToString(entity);
+            } catch (IOException e) {
+                throw new ElasticsearchException("Could not map " + entityClass.getSimpleName() + " " + id, e);
+            }
+            bulk.add(elasticsearchClient.prepareIndex(index, persistentEntity.getIndexType(), String.valueOf(id))
+                .setSource(source, XContentType.JSON)
+                .setVersion(version)
+                .setVersionType(VersionType.EXTERNAL_GTE));
+        }
+        executeBulk(bulk);
+    }
+
+    /**
+     * Send a bulk request. A version conflict means the relay already wrote a newer state and is not a failure.
+     */
+    private void executeBulk(BulkRequestBuilder bulk) {
+        BulkResponse response = bulk.get();
+        for (BulkItemResponse item : response.getItems()) {
+            if (item.isFailed() && item.getFailure().getStatus() != RestStatus.CONFLICT) {
+                throw new ElasticsearchException("Bulk request failed for " + item.getId() + ": " + item.getFailureMessage());
+            }
+        }
     }
 }
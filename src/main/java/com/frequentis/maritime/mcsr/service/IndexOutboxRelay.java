@@ -0,0 +1,378 @@
+/*
+ * MaritimeCloud Service Registry
+ * Copyright (c) 2016 Frequentis AG
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.frequentis.maritime.mcsr.service;
+
+import java.time.ZonedDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.function.Function;
+
+import javax.annotation.PostConstruct;
+import javax.inject.Inject;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+import com.frequentis.maritime.mcsr.config.JHipsterProperties;
+import com.frequentis.maritime.mcsr.domain.Design;
+import com.frequentis.maritime.mcsr.domain.Doc;
+import com.frequentis.maritime.mcsr.domain.IndexOutboxEvent;
+import com.frequentis.maritime.mcsr.domain.Instance;
+import com.frequentis.maritime.mcsr.domain.InstanceChange;
+import com.frequentis.maritime.mcsr.domain.Specification;
+import com.frequentis.maritime.mcsr.domain.Xsd;
+import com.frequentis.maritime.mcsr.repository.DesignRepository;
+import com.frequentis.maritime.mcsr.repository.DocRepository;
+import com.frequentis.maritime.mcsr.repository.IndexOutboxEventRepository;
+import com.frequentis.maritime.mcsr.repository.InstanceChangeRepository;
+import com.frequentis.maritime.mcsr.repository.InstanceRepository;
+import com.frequentis.maritime.mcsr.repository.SpecificationRepository;
+import com.frequentis.maritime.mcsr.repository.XsdRepository;
+import com.frequentis.maritime.mcsr.service.SearchIndexingService.Visibility;
+
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.elasticsearch.core.ElasticsearchTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Sends the search index changes recorded by the {@link IndexOutboxService} to Elasticsearch.
+ *
+ * <p>
+ * Due events are read in id order, coalesced per entity so only the latest operation is sent, and written
+ * through the {@link SearchIndexingService} in bulk. Delivered events are removed from the outbox, failed ones are retried
+ * with exponential backoff, so every change is delivered at least once.
+ * </p>
+ *
+ * <p>
+ * The entity state is read when the event is relayed, not when it was recorded. Documents are written with
+ * the id of the latest event of the entity as external version. Event ids are assigned by the database in the
+ * order the changes of an entity are written, so a redelivered or overtaken older state can never replace a
+ * newer one in the index, whatever the clocks of the nodes say.
+ * </p>
+ *
+ * <p>
+ * Several nodes may relay the same outbox. Each run claims its events first, pushing their next attempt
+ * {@code jhipster.outbox.lease} milliseconds ahead, so other nodes skip them; the events of a node failing
+ * meanwhile become due again once the lease has passed.
+ * </p>
+ */
+@Component
+public class IndexOutboxRelay {
+
+    private final Logger log = LoggerFactory.getLogger(IndexOutboxRelay.class);
+
+    private static final String METRIC_PREFIX = "outbox";
+
+    @Inject
+    private IndexOutboxEventRepository indexOutboxEventRepository;
+
+    @Inject
+    private InstanceChangeRepository instanceChangeRepository;
+
+    @Inject
+    private DesignRepository designRepository;
+
+    @Inject
+    private DocRepository docRepository;
+
+    @Inject
+    private InstanceRepository instanceRepository;
+
+    @Inject
+    private SpecificationRepository specificationRepository;
+
+    @Inject
+    private XsdRepository xsdRepository;
+
+    @Inject
+    private InstanceService instanceService;
+
+    @Inject
+    private InstanceCoverageIndex instanceCoverageIndex;
+
+    @Inject
+    private ElasticsearchTemplate elasticsearchTemplate;
+
+    @Inject
+    private SearchIndexingService searchIndexingService;
+
+    @Inject
+    private JHipsterProperties jHipsterProperties;
+
+    @Inject
+    private MetricRegistry metricRegistry;
+
+    @Inject
+    private PlatformTransactionManager transactionManager;
+
+    private final Map<String, EntityType<?>> entityTypes = new HashMap<>();
+
+    private TransactionTemplate readWriteTransaction;
+
+    private TransactionTemplate readOnlyTransaction;
+
+    private Meter relayed;
+
+    private Meter failed;
+
+    private Timer batches;
+
+    @PostConstruct
+    public void init() {
+        readWriteTransaction = new TransactionTemplate(transactionManager);
+        readOnlyTransaction = new TransactionTemplate(transactionManager);
+        readOnlyTransaction.setReadOnly(true);
+
+        register(Design.class, designRepository::findAllWithEagerRelationshipsByIdIn);
+        register(Doc.class, docRepository::findAllById);
+        register(Instance.class, ids -> {
+            List<Instance> instances = instanceRepository.findAllWithEagerRelationshipsByIdIn(ids);
+            instances.forEach(instanceService::prepareForIndex);
+            return instances;
+        });
+        register(Specification.class, specificationRepository::findAllWithEagerRelationshipsByIdIn);
+        register(Xsd.class, xsdRepository::findAllById);
+
+        metricRegistry.register(MetricRegistry.name(METRIC_PREFIX, "backlog"),
+            (Gauge<Long>) indexOutboxEventRepository::count);
+        metricRegistry.register(MetricRegistry.name(METRIC_PREFIX, "lag"), (Gauge<Long>) () -> {
+            ZonedDateTime oldest = indexOutboxEventRepository.findOldestCreatedAt();
+            return oldest == null ? 0L : oldest.until(ZonedDateTime.now(), ChronoUnit.MILLIS);
+        });
+        relayed = metricRegistry.meter(MetricRegistry.name(METRIC_PREFIX, "relayed"));
+        failed = metricRegistry.meter(MetricRegistry.name(METRIC_PREFIX, "failed"));
+        batches = metricRegistry.timer(MetricRegistry.name(METRIC_PREFIX, "batch"));
+    }
+
+    private <T> void register(Class<T> entityClass, Function<Collection<Long>, ? extends Iterable<T>> loader) {
+        entityTypes.put(entityClass.getSimpleName(), new EntityType<>(entityClass, loader));
+    }
+
+    /**
+     * Relay the due outbox events until no full batch is left. Only one relay runs at a time, a caller
+     * arriving meanwhile waits for it and then relays what is still due.
+     */
+    @Scheduled(fixedDelayString = "${jhipster.outbox.pollInterval:1000}")
+    public synchronized void relay() {
+        int batchSize = jHipsterProperties.getOutbox().getBatchSize();
+        try {
+            while (relayBatch() >= batchSize) {
+                log.debug("Outbox has more due events, continuing");
+            }
+        } catch (RuntimeException e) {
+            log.error("Could not relay the index outbox", e);
+        }
+    }
+
+    /**
+     * Relay one batch of due outbox events.
+     *
+     * @return the number of events read from the outbox
+     */
+    public int relayBatch() {
+        List<IndexOutboxEvent> events = readWriteTransaction.execute(status -> claimDue());
+        if (events.isEmpty()) {
+            return 0;
+        }
+
+        try (Timer.Context ignored = batches.time()) {
+            // The last event per entity wins, ordered by its position in the outbox
+            Map<String, IndexOutboxEvent> latest = new LinkedHashMap<>();
+            for (IndexOutboxEvent event : events) {
+                String key = event.getEntityType() + "#" + event.getEntityId();
+                latest.remove(key);
+                latest.put(key, event);
+            }
+
+            List<IndexOutboxEvent> failedEvents = send(latest.values());
+
+            List<Long> delivered = new ArrayList<>(events.size());
+            for (IndexOutboxEvent event : events) {
+                if (!failedEvents.contains(event)) {
+                    delivered.add(event.getId());
+                }
+            }
+            List<InstanceChange> instanceChanges = new ArrayList<>();
+            if (jHipsterProperties.getCoverageIndex().isEnabled()) {
+                for (IndexOutboxEvent event : latest.values()) {
+                    if (Instance.class.getSimpleName().equals(event.getEntityType()) && !failedEvents.contains(event)) {
+                        instanceChanges.add(new InstanceChange(event.getEntityId()));
+                    }
+                }
+            }
+            readWriteTransaction.execute(status -> {
+                if (!delivered.isEmpty()) {
+                    indexOutboxEventRepository.deleteByIdIn(delivered);
+                }
+                // The coverage indexes of the other nodes pick these up
+                instanceChangeRepository.saveAll(instanceChanges);
+                failedEvents.forEach(this::reschedule);
+                return null;
+            });
+            relayed.mark(latest.size() - failedEvents.size());
+            failed.mark(failedEvents.size());
+        }
+        return events.size();
+    }
+
+    /**
+     * Claim the due events of one batch for this run.
+     *
+     * @return the events claimed, ordered by id
+     */
+    private List<IndexOutboxEvent> claimDue() {
+        JHipsterProperties.Outbox outbox = jHipsterProperties.getOutbox();
+        ZonedDateTime now = ZonedDateTime.now();
+        List<Long> ids = indexOutboxEventRepository.findDueIds(now, PageRequest.of(0, outbox.getBatchSize()));
+        if (ids.isEmpty()) {
+            return new ArrayList<>();
+        }
+        String claimedBy = UUID.randomUUID().toString();
+        if (indexOutboxEventRepository.claim(ids, now, now.plus(outbox.getLease(), ChronoUnit.MILLIS), claimedBy) == 0) {
+            return new ArrayList<>();
+        }
+        return indexOutboxEventRepository.findClaimed(claimedBy);
+    }
+
+    /**
+     * Send the latest event of each entity to Elasticsearch.
+     *
+     * @return the events that could not be delivered
+     */
+    private List<IndexOutboxEvent> send(Collection<IndexOutboxEvent> events) {
+        Map<IndexOutboxEvent, CompletableFuture<Void>> submitted;
+        try {
+            submitted = readOnlyTransaction.execute(status -> submit(events));
+        } catch (RuntimeException e) {
+            log.error("Could not read the entities of the index outbox", e);
+            return new ArrayList<>(events);
+        }
+        searchIndexingService.flush();
+
+        List<IndexOutboxEvent> failedEvents = new ArrayList<>();
+        for (IndexOutboxEvent event : events) {
+            CompletableFuture<Void> result = submitted.get(event);
+            if (result == null) {
+                failedEvents.add(event);
+                continue;
+            }
+            try {
+                result.get();
+            } catch (ExecutionException e) {
+                log.warn("Could not relay {}: {}", event, e.getCause().getMessage());
+                failedEvents.add(event);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                failedEvents.add(event);
+            }
+        }
+        return failedEvents;
+    }
+
+    private Map<IndexOutboxEvent, CompletableFuture<Void>> submit(Collection<IndexOutboxEvent> events) {
+        Map<String, List<Long>> idsByType = new HashMap<>();
+        for (IndexOutboxEvent event : events) {
+            if (event.getOperation() == IndexOutboxEvent.Operation.INDEX) {
+                idsByType.computeIfAbsent(event.getEntityType(), type -> new ArrayList<>()).add(event.getEntityId());
+            }
+        }
+        Map<String, Map<Long, ?>> entitiesByType = new HashMap<>();
+        for (Map.Entry<String, List<Long>> entry : idsByType.entrySet()) {
+            EntityType<?> type = entityTypes.get(entry.getKey());
+            if (type != null) {
+                entitiesByType.put(entry.getKey(), type.load(entry.getValue()));
+            }
+        }
+
+        Map<IndexOutboxEvent, CompletableFuture<Void>> submitted = new HashMap<>();
+        for (IndexOutboxEvent event : events) {
+            EntityType<?> type = entityTypes.get(event.getEntityType());
+            if (type == null) {
+                log.error("Unknown entity type in index outbox: {}", event);
+                continue;
+            }
+            Object entity = event.getOperation() == IndexOutboxEvent.Operation.INDEX
+                ? entitiesByType.get(event.getEntityType()).get(event.getEntityId()) : null;
+            if (entity != null) {
+                submitted.put(event, searchIndexingService.index(entity, event.getId(), Visibility.NONE));
+                if (entity instanceof Instance) {
+                    instanceCoverageIndex.update((Instance) entity);
+                }
+            } else {
+                // Deleted, or no longer in the database when the index event is relayed
+                submitted.put(event, searchIndexingService.delete(type.entityClass, event.getEntityId(), event.getId(), Visibility.NONE));
+                if (type.entityClass == Instance.class) {
+                    instanceCoverageIndex.remove(event.getEntityId());
+                }
+            }
+        }
+        return submitted;
+    }
+
+    private void reschedule(IndexOutboxEvent event) {
+        JHipsterProperties.Outbox outbox = jHipsterProperties.getOutbox();
+        int attempts = event.getAttempts() + 1;
+        long backoff = outbox.getInitialBackoff() << Math.min(attempts - 1, 30);
+        if (backoff <= 0 || backoff > outbox.getMaxBackoff()) {
+            backoff = outbox.getMaxBackoff();
+        }
+        event.setAttempts(attempts);
+        event.setClaimedBy(null);
+        event.setNextAttemptAt(ZonedDateTime.now().plus(backoff, ChronoUnit.MILLIS));
+        indexOutboxEventRepository.save(event);
+    }
+
+    /**
+     * How to load and serialize the entities of one type.
+     */
+    private class EntityType<T> {
+
+        private final Class<T> entityClass;
+
+        private final Function<Collection<Long>, ? extends Iterable<T>> loader;
+
+        EntityType(Class<T> entityClass, Function<Collection<Long>, ? extends Iterable<T>> loader) {
+            this.entityClass = entityClass;
+            this.loader = loader;
+        }
+
+        Map<Long, T> load(List<Long> ids) {
+            Map<Long, T> entities = new HashMap<>();
+            for (T entity : loader.apply(ids)) {
+                entities.put((Long) elasticsearchTemplate.getPersistentEntityFor(entityClass).getIdentifierAccessor(entity).getIdentifier(), entity);
+            }
+            return entities;
+        }
+    }
+}
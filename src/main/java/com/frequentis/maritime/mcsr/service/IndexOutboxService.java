@@ -0,0 +1,73 @@
+/*
+ * MaritimeCloud Service Registry
+ * Copyright (c) 2016 Frequentis AG
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.frequentis.maritime.mcsr.service;
+
+import javax.inject.Inject;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.frequentis.maritime.mcsr.domain.IndexOutboxEvent;
+import com.frequentis.maritime.mcsr.repository.IndexOutboxEventRepository;
+
+/**
+ * Records search index changes in the outbox table.
+ *
+ * <p>
+ * The events are written in the transaction of the entity change, so they are committed or rolled back
+ * together with it. The {@link IndexOutboxRelay} sends them to Elasticsearch afterwards.
+ * </p>
+ */
+@Service
+@Transactional(propagation = Propagation.MANDATORY)
+public class IndexOutboxService {
+
+    private final Logger log = LoggerFactory.getLogger(IndexOutboxService.class);
+
+    @Inject
+    private IndexOutboxEventRepository indexOutboxEventRepository;
+
+    /**
+     * Record that an entity has to be (re-)indexed.
+     *
+     * @param entityClass the class of the entity
+     * @param id the id of the entity
+     */
+    public void index(Class<?> entityClass, Long id) {
+        enqueue(entityClass, id, IndexOutboxEvent.Operation.INDEX);
+    }
+
+    /**
+     * Record that an entity has to be removed from the index.
+     *
+     * @param entityClass the class of the entity
+     * @param id the id of the entity
+     */
+    public void delete(Class<?> entityClass, Long id) {
+        enqueue(entityClass, id, IndexOutboxEvent.Operation.DELETE);
+    }
+
+    private void enqueue(Class<?> entityClass, Long id, IndexOutboxEvent.Operation operation) {
+        log.debug("Request to {} {} : {}", operation, entityClass.getSimpleName(), id);
+        indexOutboxEventRepository.save(new IndexOutboxEvent(entityClass.getSimpleName(), id, operation));
+    }
+}
@@ -0,0 +1,560 @@
+/*
+ * MaritimeCloud Service Registry
+ * Copyright (c) 2016 Frequentis AG
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.frequentis.maritime.mcsr.service;
+
+import java.io.IOException;
+import java.time.ZonedDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.inject.Inject;
+
+import org.elasticsearch.action.get.GetResponse;
+import org.elasticsearch.action.get.MultiGetItemResponse;
+import org.elasticsearch.action.get.MultiGetRequest;
+import org.elasticsearch.action.get.MultiGetRequestBuilder;
+import org.elasticsearch.action.search.SearchResponse;
+import org.elasticsearch.common.unit.TimeValue;
+import org.elasticsearch.index.IndexNotFoundException;
+import org.elasticsearch.index.query.QueryBuilders;
+import org.elasticsearch.search.SearchHit;
+import org.elasticsearch.search.fetch.subphase.FetchSourceContext;
+import org.elasticsearch.search.sort.FieldSortBuilder;
+import org.elasticsearch.search.sort.SortOrder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.elasticsearch.core.ElasticsearchOperations;
+import org.springframework.data.elasticsearch.core.EntityMapper;
+import org.springframework.data.elasticsearch.core.mapping.ElasticsearchPersistentEntity;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.wololo.jts2geojson.GeoJSONReader;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.frequentis.maritime.mcsr.config.JHipsterProperties;
+import com.frequentis.maritime.mcsr.domain.Instance;
+import com.frequentis.maritime.mcsr.domain.InstanceChange;
+import com.frequentis.maritime.mcsr.repository.InstanceChangeRepository;
+import com.vividsolutions.jts.geom.Coordinate;
+import com.vividsolutions.jts.geom.Envelope;
+import com.vividsolutions.jts.geom.Geometry;
+import com.vividsolutions.jts.geom.GeometryCollection;
+import com.vividsolutions.jts.geom.GeometryFactory;
+import com.vividsolutions.jts.geom.LineString;
+import com.vividsolutions.jts.geom.Polygon;
+import com.vividsolutions.jts.geom.prep.PreparedGeometry;
+import com.vividsolutions.jts.geom.prep.PreparedGeometryFactory;
+import com.vividsolutions.jts.index.strtree.STRtree;
+
+/**
+ * In memory spatial index of the coverage areas of all instances, to find the instances covering a position
+ * without a geo shape search.
+ *
+ * <p>
+ * The coverage areas are kept in an {@link STRtree}, which is read from the instance search index at startup and
+ * every {@code jhipster.coverageIndex.rebuildInterval} milliseconds after. Instances indexed by the
+ * {@link IndexOutboxRelay} of this node are updated right away, those indexed by any node are read from the search
+ * index every {@code jhipster.coverageIndex.changePollInterval} milliseconds, see {@link InstanceChange}. As the
+ * tree cannot be changed once built, changed instances are kept aside and searched one by one, until
+ * {@code jhipster.coverageIndex.compactThreshold} changes are reached and the tree is built again from memory.
+ * </p>
+ *
+ * <p>
+ * Candidates found in the tree are checked exactly with {@link Geometry#intersects}, like the default relation of
+ * the geo shape query. Elasticsearch splits shapes with edges longer than 180 degrees of longitude at the dateline,
+ * which a planar check cannot reproduce. A search hitting such a shape, or an unreadable one, is not answered, and
+ * neither are searches before the tree is first built or for areas larger than
+ * {@code jhipster.coverageIndex.maxQueryArea} square degrees. The caller falls back to Elasticsearch then.
+ * </p>
+ */
+@Service
+public class InstanceCoverageIndex {
+
+    private final Logger log = LoggerFactory.getLogger(InstanceCoverageIndex.class);
+
+    private static final String METRIC_PREFIX = "coverage.index";
+
+    private static final String[] SOURCE_FIELDS = {"id", "compliant", "geometry"};
+
+    private static final int SCROLL_SIZE = 500;
+
+    private static final TimeValue SCROLL_TIMEOUT = TimeValue.timeValueMinutes(1);
+
+    /**
+     * Rough size of a coordinate and of the per instance overhead, for the memory estimate.
+     */
+    private static final long COORDINATE_BYTES = 40;
+
+    private static final long ENTRY_BYTES = 200;
+
+    private static final Entry REMOVED = new Entry(null, false, null, null);
+
+    @Inject
+    private ElasticsearchOperations elasticsearchOperations;
+
+    @Inject
+    private EntityMapper elasticsearchEntityMapper;
+
+    @Inject
+    private JHipsterProperties jHipsterProperties;
+
+    @Inject
+    private MetricRegistry metricRegistry;
+
+    @Inject
+    private InstanceChangeRepository instanceChangeRepository;
+
+    @Inject
+    private PlatformTransactionManager transactionManager;
+
+    private final GeometryFactory geometryFactory = new GeometryFactory();
+
+    private volatile State state;
+
+    /**
+     * Changes made while the index is read from Elasticsearch, to be applied to the result. Guarded by this.
+     */
+    private Map<Long, Entry> rebuildChanges;
+
+    /**
+     * The ids of the instance changes applied already. Guarded by changeLock.
+     */
+    private Set<Long> appliedChanges = new HashSet<>();
+
+    private final Object changeLock = new Object();
+
+    private TransactionTemplate transaction;
+
+    private ScheduledExecutorService executor;
+
+    private Timer buildTime;
+
+    private Timer queryTime;
+
+    private Meter fallbacks;
+
+    @PostConstruct
+    public void init() {
+        transaction = new TransactionTemplate(transactionManager);
+        buildTime = metricRegistry.timer(MetricRegistry.name(METRIC_PREFIX, "build"));
+        queryTime = metricRegistry.timer(MetricRegistry.name(METRIC_PREFIX, "query"));
+        fallbacks = metricRegistry.meter(MetricRegistry.name(METRIC_PREFIX, "fallback"));
+        metricRegistry.register(MetricRegistry.name(METRIC_PREFIX, "size"), (Gauge<Integer>) () -> {
+            State current = state;
+            return current == null ? 0 : current.entries.size();
+        });
+        metricRegistry.register(MetricRegistry.name(METRIC_PREFIX, "memory"), (Gauge<Long>) () -> {
+            State current = state;
+            if (current == null) {
+                return 0L;
+            }
+            long vertices = current.entries.values().stream().mapToLong(entry -> entry.vertices).sum();
+            return vertices * COORDINATE_BYTES + current.entries.size() * ENTRY_BYTES;
+        });
+
+        JHipsterProperties.CoverageIndex properties = jHipsterProperties.getCoverageIndex();
+        if (properties.isEnabled()) {
+            executor = Executors.newSingleThreadScheduledExecutor(new CustomizableThreadFactory("coverage-index-"));
+            executor.scheduleWithFixedDelay(this::rebuild, 0, properties.getRebuildInterval(), TimeUnit.MILLISECONDS);
+            executor.scheduleWithFixedDelay(this::applyChanges, properties.getChangePollInterval(),
+                properties.getChangePollInterval(), TimeUnit.MILLISECONDS);
+        }
+    }
+
+    @PreDestroy
+    public void destroy() {
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Find the instances whose coverage area contains a position.
+     *
+     * @param latitude the latitude of the position
+     * @param longitude the longitude of the position
+     * @param includeNonCompliant include also non-compliant instances
+     * @return the ids of the instances in ascending order, or null if the index cannot answer the search
+     */
+    public List<Long> findCovering(double latitude, double longitude, boolean includeNonCompliant) {
+        return find(geometryFactory.createPoint(new Coordinate(longitude, latitude)), includeNonCompliant);
+    }
+
+    /**
+     * Find the instances whose coverage area intersects a small search area.
+     *
+     * @param geometry the search area
+     * @param includeNonCompliant include also non-compliant instances
+     * @return the ids of the instances in ascending order, or null if the index cannot answer the search
+     */
+    public List<Long> findIntersecting(Geometry geometry, boolean includeNonCompliant) {
+        if (geometry.getEnvelopeInternal().getArea() > jHipsterProperties.getCoverageIndex().getMaxQueryArea()
+            || !isPlanar(geometry)) {
+            fallbacks.mark();
+            return null;
+        }
+        return find(geometry, includeNonCompliant);
+    }
+
+    private List<Long> find(Geometry geometry, boolean includeNonCompliant) {
+        State current = state;
+        if (current == null || !jHipsterProperties.getCoverageIndex().isEnabled()) {
+            fallbacks.mark();
+            return null;
+        }
+        try (Timer.Context ignored = queryTime.time()) {
+            Envelope envelope = geometry.getEnvelopeInternal();
+            List<Long> result = new ArrayList<>();
+            for (Object candidate : current.tree.query(envelope)) {
+                Entry entry = (Entry) candidate;
+                // Only if it was not changed since the tree was built
+                if (current.entries.get(entry.id) == entry && !test(entry, geometry, includeNonCompliant, result)) {
+                    fallbacks.mark();
+                    return null;
+                }
+            }
+            for (Entry entry : current.changed.values()) {
+                if (entry != REMOVED && entry.envelope.intersects(envelope)
+                    && !test(entry, geometry, includeNonCompliant, result)) {
+                    fallbacks.mark();
+                    return null;
+                }
+            }
+            Collections.sort(result);
+            return result;
+        }
+    }
+
+    /**
+     * @return false if the entry cannot be checked exactly
+     */
+    private static boolean test(Entry entry, Geometry geometry, boolean includeNonCompliant, List<Long> result) {
+        if (entry.coverage == null) {
+            return false;
+        }
+        try {
+            if ((includeNonCompliant || entry.compliant) && entry.coverage.intersects(geometry)) {
+                result.add(entry.id);
+            }
+            return true;
+        } catch (RuntimeException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Update the coverage area of an instance, as it was sent to the search index.
+     *
+     * @param instance the instance, with its geometry set
+     */
+    public void update(Instance instance) {
+        if (jHipsterProperties.getCoverageIndex().isEnabled()) {
+            put(instance.getId(), entry(instance));
+        }
+    }
+
+    /**
+     * Remove an instance.
+     *
+     * @param id the id of the instance
+     */
+    public void remove(Long id) {
+        if (jHipsterProperties.getCoverageIndex().isEnabled()) {
+            put(id, REMOVED);
+        }
+    }
+
+    private synchronized void put(Long id, Entry entry) {
+        if (rebuildChanges != null) {
+            rebuildChanges.put(id, entry);
+        }
+        State current = state;
+        if (current == null) {
+            return;
+        }
+        if (entry == REMOVED) {
+            current.entries.remove(id);
+        } else {
+            current.entries.put(id, entry);
+        }
+        current.changed.put(id, entry);
+        if (current.changed.size() >= jHipsterProperties.getCoverageIndex().getCompactThreshold()) {
+            state = new State(current.entries);
+        }
+    }
+
+    /**
+     * Read all coverage areas from the instance search index and replace the index with them.
+     */
+    public void rebuild() {
+        synchronized (this) {
+            rebuildChanges = new LinkedHashMap<>();
+        }
+        Map<Long, Entry> entries = new ConcurrentHashMap<>();
+        try (Timer.Context ignored = buildTime.time()) {
+            read(entries);
+            synchronized (this) {
+                for (Map.Entry<Long, Entry> change : rebuildChanges.entrySet()) {
+                    if (change.getValue() == REMOVED) {
+                        entries.remove(change.getKey());
+                    } else {
+                        entries.put(change.getKey(), change.getValue());
+                    }
+                }
+                state = new State(entries);
+            }
+            log.debug("Built the coverage index of {} instances", entries.size());
+            // Changes made shortly before the search index was read may not have been visible to it yet
+            synchronized (changeLock) {
+                appliedChanges.clear();
+            }
+            applyChanges();
+        } catch (IndexNotFoundException e) {
+            log.debug("No instance search index to build the coverage index from yet");
+        } catch (RuntimeException e) {
+            log.warn("Could not build the coverage index: {}", e.getMessage());
+        } finally {
+            synchronized (this) {
+                rebuildChanges = null;
+            }
+        }
+    }
+
+    /**
+     * Read the instances changed on any node within {@code jhipster.coverageIndex.changeWindow} milliseconds from
+     * the instance search index, unless already applied. Also removes the changes older than twice that window.
+     */
+    public void applyChanges() {
+        JHipsterProperties.CoverageIndex properties = jHipsterProperties.getCoverageIndex();
+        if (!properties.isEnabled() || state == null) {
+            return;
+        }
+        synchronized (changeLock) {
+            try {
+                ZonedDateTime now = ZonedDateTime.now();
+                List<InstanceChange> changes = transaction.execute(status -> {
+                    instanceChangeRepository.deleteOlderThan(now.minus(2 * properties.getChangeWindow(), ChronoUnit.MILLIS));
+                    return instanceChangeRepository.findAllSince(now.minus(properties.getChangeWindow(), ChronoUnit.MILLIS));
+                });
+                Set<Long> changeIds = new HashSet<>();
+                Set<Long> instanceIds = new LinkedHashSet<>();
+                for (InstanceChange change : changes) {
+                    changeIds.add(change.getId());
+                    if (!appliedChanges.contains(change.getId())) {
+                        instanceIds.add(change.getInstanceId());
+                    }
+                }
+                if (!instanceIds.isEmpty()) {
+                    read(instanceIds);
+                    log.debug("Applied the changes of {} instances to the coverage index", instanceIds.size());
+                }
+                appliedChanges = changeIds;
+            } catch (RuntimeException e) {
+                log.warn("Could not apply the instance changes to the coverage index: {}", e.getMessage());
+            }
+        }
+    }
+
+    private void read(Collection<Long> ids) {
+        ElasticsearchPersistentEntity<?> persistentEntity = elasticsearchOperations.getPersistentEntityFor(Instance.class);
+        MultiGetRequestBuilder request = elasticsearchOperations.getClient().prepareMultiGet();
+        for (Long id : ids) {
+            request.add(new MultiGetRequest.Item(persistentEntity.getIndexName(), persistentEntity.getIndexType(), String.valueOf(id))
+                .fetchSourceContext(new FetchSourceContext(true, SOURCE_FIELDS, null)));
+        }
+        for (MultiGetItemResponse item : request.get()) {
+            if (item.isFailed()) {
+                throw new IllegalStateException("Could not read instance " + item.getId() + ": " + item.getFailure().getMessage());
+            }
+            GetResponse response = item.getResponse();
+            if (!response.isExists()) {
+                put(Long.valueOf(response.getId()), REMOVED);
+                continue;
+            }
+            try {
+                Instance instance = elasticsearchEntityMapper.mapToObject(response.getSourceAsString(), Instance.class);
+                put(instance.getId(), entry(instance));
+            } catch (IOException e) {
+                log.warn("Could not read the coverage of instance {}: {}", response.getId(), e.getMessage());
+            }
+        }
+    }
+
+    private void read(Map<Long, Entry> entries) {
+        ElasticsearchPersistentEntity<?> persistentEntity = elasticsearchOperations.getPersistentEntityFor(Instance.class);
+        SearchResponse response = elasticsearchOperations.getClient()
+            .prepareSearch(persistentEntity.getIndexName())
+            .setTypes(persistentEntity.getIndexType())
+            .setQuery(QueryBuilders.matchAllQuery())
+            .setFetchSource(SOURCE_FIELDS, null)
+            .addSort(FieldSortBuilder.DOC_FIELD_NAME, SortOrder.ASC)
+            .setSize(SCROLL_SIZE)
+            .setScroll(SCROLL_TIMEOUT)
+            .get();
+        try {
+            while (response.getHits().getHits().length > 0) {
+                for (SearchHit hit : response.getHits().getHits()) {
+                    Instance instance;
+                    try {
+                        instance = elasticsearchEntityMapper.mapToObject(hit.getSourceAsString(), Instance.class);
+                    } catch (IOException e) {
+                        log.warn("Could not read the coverage of instance {}: {}", hit.getId(), e.getMessage());
+                        continue;
+                    }
+                    entries.put(instance.getId(), entry(instance));
+                }
+                response = elasticsearchOperations.getClient().prepareSearchScroll(response.getScrollId())
+                    .setScroll(SCROLL_TIMEOUT)
+                    .get();
+            }
+        } finally {
+            elasticsearchOperations.getClient().prepareClearScroll().addScrollId(response.getScrollId()).get();
+        }
+    }
+
+    private Entry entry(Instance instance) {
+        JsonNode json = instance.getGeometry();
+        Geometry geometry = null;
+        if (json != null && !json.isNull()) {
+            try {
+                geometry = new GeoJSONReader().read(json.toString());
+            } catch (RuntimeException e) {
+                log.debug("Coverage of instance {} is not readable as JTS geometry: {}", instance.getId(), e.getMessage());
+            }
+        }
+        if (geometry == null) {
+            // Matches everything, so every search falls back to Elasticsearch
+            return new Entry(instance.getId(), instance.isCompliant(), null, new Envelope(-180, 180, -90, 90));
+        }
+        if (!isPlanar(geometry) || !geometry.isValid()) {
+            // Searches in its latitudes fall back to Elasticsearch
+            Envelope envelope = geometry.getEnvelopeInternal();
+            return new Entry(instance.getId(), instance.isCompliant(), null,
+                new Envelope(-180, 180, Math.max(envelope.getMinY(), -90), Math.min(envelope.getMaxY(), 90)));
+        }
+        return new Entry(instance.getId(), instance.isCompliant(), geometry, geometry.getEnvelopeInternal());
+    }
+
+    /**
+     * @return true if Elasticsearch takes the geometry as it is, without splitting it at the dateline
+     */
+    private static boolean isPlanar(Geometry geometry) {
+        Envelope envelope = geometry.getEnvelopeInternal();
+        if (envelope.getMinX() < -180 || envelope.getMaxX() > 180 || envelope.getMinY() < -90 || envelope.getMaxY() > 90) {
+            return false;
+        }
+        if (geometry.isRectangle() && envelope.getMinX() == -180 && envelope.getMaxX() == 180) {
+            // The whole earth coverage given to instances without an area
+            return true;
+        }
+        for (int i = 0; i < geometry.getNumGeometries(); i++) {
+            Geometry part = geometry.getGeometryN(i);
+            if (part instanceof Polygon) {
+                Polygon polygon = (Polygon) part;
+                if (!isPlanar(polygon.getExteriorRing())) {
+                    return false;
+                }
+                for (int j = 0; j < polygon.getNumInteriorRing(); j++) {
+                    if (!isPlanar(polygon.getInteriorRingN(j))) {
+                        return false;
+                    }
+                }
+            } else if (part instanceof LineString && !isPlanar((LineString) part)) {
+                return false;
+            } else if (part instanceof GeometryCollection && !isPlanar(part)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isPlanar(LineString line) {
+        Coordinate[] coordinates = line.getCoordinates();
+        for (int i = 1; i < coordinates.length; i++) {
+            if (Math.abs(coordinates[i].x - coordinates[i - 1].x) > 180) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * The tree with all entries when it was built, the current entries, and the entries changed since.
+     */
+    private static final class State {
+
+        private final STRtree tree = new STRtree();
+
+        private final Map<Long, Entry> entries;
+
+        private final Map<Long, Entry> changed = new ConcurrentHashMap<>();
+
+        State(Map<Long, Entry> entries) {
+            this.entries = entries;
+            for (Entry entry : entries.values()) {
+                tree.insert(entry.envelope, entry);
+            }
+            tree.build();
+        }
+    }
+
+    /**
+     * The coverage of one instance. Without coverage, it cannot be checked exactly.
+     */
+    private static final class Entry {
+
+        private final Long id;
+
+        private final boolean compliant;
+
+        private final PreparedGeometry coverage;
+
+        private final Envelope envelope;
+
+        private final int vertices;
+
+        Entry(Long id, boolean compliant, Geometry coverage, Envelope envelope) {
+            this.id = id;
+            this.compliant = compliant;
+            this.coverage = coverage == null ? null : PreparedGeometryFactory.prepare(coverage);
+            this.envelope = envelope;
+            this.vertices = coverage == null ? 0 : coverage.getNumPoints();
+        }
+    }
+}
@@ -0,0 +1,112 @@
+/*
+ * MaritimeCloud Service Registry
+ * Copyright (c) 2016 Frequentis AG
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.frequentis.maritime.mcsr.service;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.springframework.data.elasticsearch.core.query.FetchSourceFilter;
+import org.springframework.data.elasticsearch.core.query.SourceFilter;
+
+import com.frequentis.maritime.mcsr.domain.Instance;
+
+/**
+ * The heavy parts of an instance a search result should contain: its documents (with their binary content) and the
+ * content of its XML.
+ *
+ * <p>
+ * Parts that are not wanted are excluded from the search index response already, so they are neither transferred
+ * nor deserialized.
+ * </p>
+ */
+public final class InstanceFields {
+
+    /**
+     * Complete instances.
+     */
+    public static final InstanceFields ALL = new InstanceFields(true, true);
+
+    private final boolean includeDoc;
+
+    private final boolean includeXml;
+
+    private InstanceFields(boolean includeDoc, boolean includeXml) {
+        this.includeDoc = includeDoc;
+        this.includeXml = includeXml;
+    }
+
+    /**
+     * @param includeDoc include the instance document and the attached documents
+     * @param includeXml include the content of the instance XML
+     * @return the fields
+     */
+    public static InstanceFields of(boolean includeDoc, boolean includeXml) {
+        return includeDoc && includeXml ? ALL : new InstanceFields(includeDoc, includeXml);
+    }
+
+    public boolean isIncludeDoc() {
+        return includeDoc;
+    }
+
+    public boolean isIncludeXml() {
+        return includeXml;
+    }
+
+    /**
+     * @return the source filter for the search request, null if the complete source is needed
+     */
+    SourceFilter sourceFilter() {
+        List<String> excludes = new ArrayList<>();
+        if (!includeDoc) {
+            excludes.add("docs");
+            excludes.add("instanceAsDoc");
+        }
+        if (!includeXml) {
+            excludes.add("instanceAsXml.content");
+        }
+        return excludes.isEmpty() ? null : new FetchSourceFilter(null, excludes.toArray(new String[0]));
+    }
+
+    /**
+     * Clear the excluded parts of an instance read from the search index, the same way they are reported when
+     * read from the database without them.
+     *
+     * @param instance an instance not attached to a persistence context
+     * @return the same instance
+     */
+    Instance apply(Instance instance) {
+        if (!includeDoc) {
+            instance.setDocs(null);
+            instance.setInstanceAsDoc(null);
+        }
+        return instance;
+    }
+
+    /**
+     * @return the part of the search result cache key
+     */
+    String key() {
+        return (includeDoc ? "doc" : "") + "," + (includeXml ? "xml" : "");
+    }
+
+    @Override
+    public String toString() {
+        return "InstanceFields{includeDoc=" + includeDoc + ", includeXml=" + includeXml + "}";
+    }
+}
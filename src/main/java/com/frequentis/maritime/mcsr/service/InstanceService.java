@@ -23,7 +23,16 @@ import static org.elasticsearch.index.query.QueryBuilders.geoShapeQuery;
 import static org.elasticsearch.index.query.QueryBuilders.queryStringQuery;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Supplier;
 
 //import static org.elasticsearch.common.geo.builders.ShapeBuilder.newPoint;
 
@@ -33,15 +42,16 @@ import javax.xml.transform.TransformerException;
 import javax.xml.xpath.XPathExpressionException;
 
 import org.apache.lucene.queryparser.classic.QueryParser;
-import org.apache.maven.artifact.versioning.DefaultArtifactVersion;
+import org.elasticsearch.action.search.SearchRequestBuilder;
+import org.elasticsearch.action.search.SearchResponse;
 import org.elasticsearch.common.geo.builders.ShapeBuilder;
 import org.elasticsearch.common.geo.builders.ShapeBuilders;
-import org.elasticsearch.common.xcontent.NamedXContentRegistry;
-import org.elasticsearch.common.xcontent.XContentParser;
-import org.elasticsearch.common.xcontent.json.JsonXContent;
 import org.elasticsearch.index.query.BoolQueryBuilder;
+import org.elasticsearch.index.query.QueryBuilder;
 import org.elasticsearch.index.query.QueryBuilders;
 import org.elasticsearch.index.query.QueryStringQueryBuilder;
+import org.elasticsearch.search.aggregations.AggregationBuilders;
+import org.elasticsearch.search.aggregations.bucket.terms.Terms;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -50,14 +60,19 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 import com.frequentis.maritime.mcsr.domain.Instance;
 import com.frequentis.maritime.mcsr.domain.Xml;
 import com.frequentis.maritime.mcsr.repository.InstanceRepository;
-import com.frequentis.maritime.mcsr.repository.search.InstanceSearchRepository;
+import com.frequentis.maritime.mcsr.web.rest.util.InstanceUtil;
 import com.frequentis.maritime.mcsr.web.rest.util.XmlUtil;
-import com.vividsolutions.jts.geom.Geometry;
 
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.elasticsearch.core.ElasticsearchOperations;
-import org.springframework.data.elasticsearch.core.geo.GeoShapeModule;
+import org.springframework.data.elasticsearch.core.CriteriaQueryProcessor;
+import org.springframework.data.elasticsearch.core.mapping.ElasticsearchPersistentEntity;
+import org.springframework.data.elasticsearch.core.query.Criteria;
+import org.springframework.data.elasticsearch.core.query.CriteriaQuery;
+import org.springframework.data.elasticsearch.core.query.NativeSearchQueryBuilder;
+import org.springframework.data.elasticsearch.core.query.SourceFilter;
 import org.springframework.data.mapping.context.InvalidPersistentPropertyPath;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
@@ -71,16 +86,48 @@ public class InstanceService {
     private final Logger log = LoggerFactory.getLogger(InstanceService.class);
     private static final boolean SEARCH_INCLUDE_NONCOMPLIANT_BY_DEFAULT = false;
 
+    /**
+     * The most references resolved in one call.
+     */
+    public static final int MAX_RESOLVE_REFERENCES = 100;
+
+    /**
+     * The fields instances can be counted by.
+     */
+    public static final List<String> FACET_FIELDS = Collections.unmodifiableList(Arrays.asList(
+        "organizationId", "serviceType", "status", "unlocode", "compliant", "designId"));
+
+    /**
+     * The most values counted per field.
+     */
+    public static final int MAX_FACET_SIZE = 1000;
+
     @Inject
     private InstanceRepository instanceRepository;
 
-    @Inject
-    private InstanceSearchRepository instanceSearchRepository;
     @Inject
     private ElasticsearchOperations elasticsearchOperations;
     
     @Inject
     private XmlService xmlService;
+
+    @Inject
+    private IndexOutboxService indexOutboxService;
+
+    @Inject
+    private LatestVersionService latestVersionService;
+
+    @Inject
+    private SearchResultCache searchResultCache;
+
+    @Inject
+    private CursorSearchService cursorSearchService;
+
+    @Inject
+    private QueryGeometryService queryGeometryService;
+
+    @Inject
+    private InstanceCoverageIndex instanceCoverageIndex;
     
     
 
@@ -106,30 +153,65 @@ public class InstanceService {
         setCompliantFlag(instance);
 
         Instance result = instanceRepository.save(instance);
+        indexOutboxService.index(Instance.class, result.getId());
+        latestVersionService.refresh(Instance.class, result.getInstanceId());
         return result;
     }
 
+    /**
+     * Complete the geometry of a saved instance.
+     *
+     * <p>The geometry is only kept in the search index, which is updated from the outbox after the save is committed.</p>
+     *
+     * @param instance the saved instance
+     * @return the instance with its geometry set
+     */
     public Instance saveGeometry(Instance instance) throws Exception{
-        //Save instance to DB
     	log.debug("saveGeometry for instance {}", instance);
         JsonNode geometry = instance.getGeometry();
         if (instance.getGeometry() == null || instance.getGeometry().asText() == null || instance.getGeometry().asText() == "null") {
             log.debug("Setting whole-earth coverage");
-            ObjectMapper mapper = new ObjectMapper();
-            JsonNode wholeEarth = null;
-            wholeEarth = mapper.readTree(wholeWorldGeoJson);
-            geometry = wholeEarth;
+            geometry = wholeEarth();
         }
 
         // set compliant flag if is instance compliant
         setCompliantFlag(instance);
 
-        //Save to ES
         instance.setGeometry(geometry);
-        instanceSearchRepository.save(instance);
         return instance;
     }
 
+    /**
+     * Set the search only attributes of an instance before it is indexed.
+     *
+     * <p>The geometry is not stored in the database, so it is read from the instance XML again.
+     * Instances without a coverage area cover the whole earth.</p>
+     *
+     * @param instance the instance to index
+     * @return the same instance
+     */
+    public Instance prepareForIndex(Instance instance) {
+        if (instance.getInstanceAsXml() != null && instance.getInstanceAsXml().getContent() != null) {
+            try {
+                InstanceUtil.parseInstanceGeometryFromXML(instance);
+            } catch (Exception e) {
+                log.warn("Could not parse geometry of instance {}: {}", instance.getId(), e.getMessage());
+            }
+        }
+        if (instance.getGeometry() == null) {
+            try {
+                instance.setGeometry(wholeEarth());
+            } catch (IOException e) {
+                throw new IllegalStateException("Could not read whole-earth geometry", e);
+            }
+        }
+        return instance;
+    }
+
+    private JsonNode wholeEarth() throws IOException {
+        return new ObjectMapper().readTree(wholeWorldGeoJson);
+    }
+
     /**
      * Sets compliant flag to service instance to true if service has design and
      * specification, to false if service has not these documents.
@@ -187,8 +269,10 @@ public class InstanceService {
      */
     public void delete(Long id) {
         log.debug("Request to delete Instance : {}", id);
+        String domainId = instanceRepository.findDomainIdById(id);
         instanceRepository.deleteById(id);
-        instanceSearchRepository.deleteById(id);
+        indexOutboxService.delete(Instance.class, id);
+        latestVersionService.refresh(Instance.class, domainId);
     }
 
     /**
@@ -216,14 +300,6 @@ public class InstanceService {
             
             instance.setStatus(status);
             instance.setInstanceAsXml(instanceXml);
-            // Update also ES record
-            Instance esInstance = instanceSearchRepository.findOneByInstanceIdAndVersion(QueryParser.escape(instance.getInstanceId()), instance.getVersion());
-            if(esInstance != null) {
-                esInstance.setStatus(status);
-                esInstance.setInstanceAsXml(instanceXml);
-    
-                instanceSearchRepository.save(esInstance);
-            }
             save(instance);
         } catch (InvalidPersistentPropertyPath e) {
             log.error("Problem during instance status update.", e);
@@ -264,9 +340,9 @@ public class InstanceService {
         log.debug("Request to search for a page of Instances for query {}", query);
 
         QueryStringQueryBuilder queryStringQuery2 = queryStringQuery(query);
-        log.error(queryStringQuery2.toString());
+        log.debug(queryStringQuery2.toString());
 
-        return instanceSearchRepository.search(queryStringQuery2, pageable);
+        return searchIndex("searchAll|" + normalise(query), queryStringQuery2, pageable, InstanceFields.ALL);
     }
 
     /**
@@ -277,17 +353,103 @@ public class InstanceService {
      *  @param pageable
      *  @return the list of entities
      */
-    @Transactional(readOnly = true)
     public Page<Instance> search(String query, boolean includeNonCompliant, Pageable pageable) {
+        return search(query, includeNonCompliant, InstanceFields.ALL, pageable);
+    }
+
+    /**
+     * Search for the instance corresponding to the query.
+     *
+     *  @param query the query of the search
+     *  @param includeNonCompliant include also non-compliant services
+     *  @param fields the parts of the instances to return
+     *  @param pageable
+     *  @return the list of entities
+     */
+    @Transactional(readOnly = true)
+    public Page<Instance> search(String query, boolean includeNonCompliant, InstanceFields fields, Pageable pageable) {
         log.debug("Request to search for a page of Instances for query {}", query);
+        return searchIndex("search|" + includeNonCompliant + "|" + normalise(query), searchQuery(query, includeNonCompliant),
+            pageable, fields);
+    }
+
+    /**
+     * Search for the instance corresponding to the query, page by page with a cursor.
+     *
+     *  @param query the query of the search
+     *  @param includeNonCompliant include also non-compliant services
+     *  @param fields the parts of the instances to return
+     *  @param cursor the page to return
+     *  @return the page of entities
+     */
+    public CursorPage<Instance> search(String query, boolean includeNonCompliant, InstanceFields fields, SearchCursor cursor) {
+        log.debug("Request to search for a cursor page of Instances for query {}", query);
+        return searchIndex(searchQuery(query, includeNonCompliant), cursor, fields);
+    }
+
+    private static QueryBuilder searchQuery(String query, boolean includeNonCompliant) {
         BoolQueryBuilder qb =  QueryBuilders.boolQuery();
         qb.must(queryStringQuery(query));
 
         if(!includeNonCompliant) {
             qb.must(boolQuery().filter(QueryBuilders.termQuery("compliant", "true")));
         }
+        return qb;
+    }
+
+    /**
+     * Count the instances matching a query, without reading them.
+     *
+     *  @param query the query of the search
+     *  @param includeNonCompliant include also non-compliant services
+     *  @return the number of matching instances
+     */
+    public long count(String query, boolean includeNonCompliant) {
+        log.debug("Request to count Instances for query {}", query);
+        return facets(query, includeNonCompliant, Collections.emptyList(), 0).getTotal();
+    }
+
+    /**
+     * Count the instances matching a query per value of some fields, without reading them.
+     *
+     *  @param query the query of the search
+     *  @param includeNonCompliant include also non-compliant services
+     *  @param fields the fields to count by, out of {@link #FACET_FIELDS}
+     *  @param size the number of values to count per field, the most frequent ones, at most {@link #MAX_FACET_SIZE}
+     *  @return the total and per value number of matching instances
+     */
+    public SearchFacets facets(String query, boolean includeNonCompliant, List<String> fields, int size) {
+        log.debug("Request to count Instances by {} for query {}", fields, query);
+        if (size < 1 || size > MAX_FACET_SIZE) {
+            throw new IllegalArgumentException("Between 1 and " + MAX_FACET_SIZE + " values can be counted per field");
+        }
+        if (query == null || query.trim().length() == 0) {
+            query = "*";
+        }
+        ElasticsearchPersistentEntity<?> persistentEntity = elasticsearchOperations.getPersistentEntityFor(Instance.class);
+        SearchRequestBuilder request = elasticsearchOperations.getClient()
+            .prepareSearch(persistentEntity.getIndexName())
+            .setTypes(persistentEntity.getIndexType())
+            .setQuery(searchQuery(query, includeNonCompliant))
+            .setFetchSource(false)
+            .setSize(0);
+        for (String field : fields) {
+            if (!FACET_FIELDS.contains(field)) {
+                throw new IllegalArgumentException("Instances cannot be counted by " + field + ", only by " + FACET_FIELDS);
+            }
+            request.addAggregation(AggregationBuilders.terms(field).field(field).size(size));
+        }
+        SearchResponse response = request.get();
 
-        return instanceSearchRepository.search(qb, pageable);
+        SearchFacets result = new SearchFacets(response.getHits().getTotalHits());
+        for (String field : fields) {
+            Map<String, Long> counts = new LinkedHashMap<>();
+            for (Terms.Bucket bucket : response.getAggregations().<Terms>get(field).getBuckets()) {
+                counts.put(bucket.getKeyAsString(), bucket.getDocCount());
+            }
+            result.put(field, counts);
+        }
+        return result;
     }
 
     /**
@@ -307,15 +469,39 @@ public class InstanceService {
      *  @param includeNonCompliant include also non-compliant services
      *  @return the list of entities
      */
-    @Transactional(readOnly = true)
     public Page<Instance> searchKeywords(String keywords, boolean includeNonCompliant, Pageable pageable) {
+        return searchKeywords(keywords, includeNonCompliant, InstanceFields.ALL, pageable);
+    }
+
+    /**
+     * Search for the instance by keyword.
+     *
+     *  @param keywords the keywords of the search
+     *  @param includeNonCompliant include also non-compliant services
+     *  @param fields the parts of the instances to return
+     *  @return the list of entities
+     */
+    @Transactional(readOnly = true)
+    public Page<Instance> searchKeywords(String keywords, boolean includeNonCompliant, InstanceFields fields, Pageable pageable) {
         log.debug("Request to search for a page of Instances for keywords  {}", keywords);
 
-        if(includeNonCompliant) {
-            return instanceSearchRepository.findByKeywords(keywords, pageable);
-        } else {
-            return instanceSearchRepository.findByKeywordsAndCompliantTrue(keywords, pageable);
-        }
+        return searchIndex("keywords|" + includeNonCompliant + "|" + keywords,
+            fieldCriteria("keywords", keywords, includeNonCompliant), pageable, fields);
+    }
+
+    /**
+     * Search for the instance by keyword, page by page with a cursor.
+     *
+     *  @param keywords the keywords of the search
+     *  @param includeNonCompliant include also non-compliant services
+     *  @param fields the parts of the instances to return
+     *  @param cursor the page to return
+     *  @return the page of entities
+     */
+    public CursorPage<Instance> searchKeywords(String keywords, boolean includeNonCompliant, InstanceFields fields, SearchCursor cursor) {
+        log.debug("Request to search for a cursor page of Instances for keywords  {}", keywords);
+        return searchIndex(new CriteriaQueryProcessor().createQueryFromCriteria(fieldCriteria("keywords", keywords, includeNonCompliant)),
+            cursor, fields);
     }
 
     /**
@@ -335,16 +521,39 @@ public class InstanceService {
      *  @param includeNonCompliant include also non-compliant services
      *  @return the list of entities
      */
-    @Transactional(readOnly = true)
     public Page<Instance> searchUnlocode(String unlocode, boolean includeNonCompliant, Pageable pageable) {
+        return searchUnlocode(unlocode, includeNonCompliant, InstanceFields.ALL, pageable);
+    }
+
+    /**
+     * Search for the instance by unlocode.
+     *
+     *  @param unlocode the unlocode of the search
+     *  @param includeNonCompliant include also non-compliant services
+     *  @param fields the parts of the instances to return
+     *  @return the list of entities
+     */
+    @Transactional(readOnly = true)
+    public Page<Instance> searchUnlocode(String unlocode, boolean includeNonCompliant, InstanceFields fields, Pageable pageable) {
         log.debug("Request to search for a page of Instances for unlocode {}", unlocode);
 
-        if(includeNonCompliant ) {
-            return instanceSearchRepository.findByUnlocode(unlocode, pageable);
-        } else {
-            return instanceSearchRepository.findByUnlocodeAndCompliantTrue(unlocode, pageable);
-        }
+        return searchIndex("unlocode|" + includeNonCompliant + "|" + unlocode,
+            fieldCriteria("unlocode", unlocode, includeNonCompliant), pageable, fields);
+    }
 
+    /**
+     * Search for the instance by unlocode, page by page with a cursor.
+     *
+     *  @param unlocode the unlocode of the search
+     *  @param includeNonCompliant include also non-compliant services
+     *  @param fields the parts of the instances to return
+     *  @param cursor the page to return
+     *  @return the page of entities
+     */
+    public CursorPage<Instance> searchUnlocode(String unlocode, boolean includeNonCompliant, InstanceFields fields, SearchCursor cursor) {
+        log.debug("Request to search for a cursor page of Instances for unlocode {}", unlocode);
+        return searchIndex(new CriteriaQueryProcessor().createQueryFromCriteria(fieldCriteria("unlocode", unlocode, includeNonCompliant)),
+            cursor, fields);
     }
 
     /**
@@ -367,6 +576,102 @@ public class InstanceService {
         return null;
     }
 
+    /**
+     *  Get many instances by domain specific id and version at once.
+     *
+     *  <p>
+     *  Every reference resolves to the same instance as {@link #findAllByDomainId(String, String)} or, for the
+     *  version "latest", {@link #findLatestVersionByDomainId(String, boolean)} would. The explicit versions are
+     *  read with one query, the latest versions with another.
+     *  </p>
+     *
+     *  @param references the domain ids and versions, at most {@link #MAX_RESOLVE_REFERENCES}
+     *  @param includeNonCompliant include also non-compliant services (used only for "latest" versions)
+     *  @return the instances in the order of the references, null for the references not found
+     */
+    @Transactional(readOnly = true)
+    public List<Instance> findAllByDomainIdAndVersion(List<VersionReference> references, boolean includeNonCompliant) {
+        log.debug("Request to get {} Instances by domain id and version", references.size());
+        if (references.size() > MAX_RESOLVE_REFERENCES) {
+            throw new IllegalArgumentException("At most " + MAX_RESOLVE_REFERENCES + " references can be resolved at once");
+        }
+        Set<String> domainIds = new HashSet<>();
+        Set<String> versions = new HashSet<>();
+        Set<String> latestDomainIds = new HashSet<>();
+        for (VersionReference reference : references) {
+            if (reference == null || reference.getId() == null || reference.getVersion() == null) {
+                throw new IllegalArgumentException("Every reference needs an id and a version");
+            }
+            if (reference.isLatest()) {
+                latestDomainIds.add(reference.getId());
+            } else {
+                domainIds.add(reference.getId());
+                versions.add(reference.getVersion());
+            }
+        }
+
+        Map<VersionReference, Instance> byVersion = new HashMap<>();
+        if (!domainIds.isEmpty()) {
+            for (Instance instance : instanceRepository.findByDomainIdInAndVersionInEagerRelationships(domainIds, versions)) {
+                byVersion.putIfAbsent(new VersionReference(instance.getInstanceId(), instance.getVersion()), instance);
+            }
+        }
+        Map<String, Instance> latest = new HashMap<>();
+        if (!latestDomainIds.isEmpty()) {
+            Map<String, Long> latestIds = latestVersionService.findLatestIds(Instance.class, latestDomainIds, !includeNonCompliant);
+            Map<Long, Instance> byId = new HashMap<>();
+            if (!latestIds.isEmpty()) {
+                instanceRepository.findAllWithEagerRelationshipsByIdIn(latestIds.values())
+                    .forEach(instance -> byId.put(instance.getId(), instance));
+            }
+            for (String domainId : latestDomainIds) {
+                Instance instance = byId.get(latestIds.get(domainId));
+                if (instance == null ? latestIds.containsKey(domainId) : !domainId.equals(instance.getInstanceId())) {
+                    // Stale pointer, computed again
+                    instance = findLatestVersionByDomainId(domainId, includeNonCompliant);
+                }
+                latest.put(domainId, instance);
+            }
+        }
+
+        List<Instance> result = new ArrayList<>(references.size());
+        for (VersionReference reference : references) {
+            result.add(reference.isLatest() ? latest.get(reference.getId()) : byVersion.get(reference));
+        }
+        return result;
+    }
+
+    /**
+     *  Check if an instance exists, without loading it.
+     *
+     *  @param domainId the domain specific id of the instance
+     *  @param version the version of the instance, "latest" for the highest version number
+     *  @param includeNonCompliant include also non-compliant services (used only for "latest" version)
+     *  @return true if {@link #findAllByDomainIdAndVersion} would find the instance
+     */
+    @Transactional(readOnly = true)
+    public boolean existsByDomainIdAndVersion(String domainId, String version, boolean includeNonCompliant) {
+        log.debug("Request to check Instance by domain id {} and version {}", domainId, version);
+        if (VersionReference.LATEST.equalsIgnoreCase(version)) {
+            return !latestVersionService.findLatestIds(Instance.class, Collections.singleton(domainId), !includeNonCompliant).isEmpty();
+        }
+        return instanceRepository.countByDomainIdAndVersion(domainId, version) > 0;
+    }
+
+    /**
+     *  Count the versions of an instance, without loading them.
+     *
+     *  @param domainId the domain specific id of the instance
+     *  @param includeNonCompliant include also non-compliant versions
+     *  @return the number of versions
+     */
+    @Transactional(readOnly = true)
+    public long countByDomainId(String domainId, boolean includeNonCompliant) {
+        log.debug("Request to count Instances by domain id {}", domainId);
+        return includeNonCompliant ? instanceRepository.countByDomainId(domainId)
+            : instanceRepository.countCompliantByDomainId(domainId);
+    }
+
     /**
      *  Get one instance by domain specific id (for example, maritime id) and version.
      *
@@ -417,31 +722,8 @@ public class InstanceService {
     @Transactional(readOnly = true)
     public Instance findLatestVersionByDomainId(String domainId, boolean includeNonCompliant) {
         log.debug("Request to get Instance by domain id {}", domainId);
-        Instance instance = null;
-        DefaultArtifactVersion latestVersion = new DefaultArtifactVersion("0.0");
-        try {
-
-            Iterable<Instance> instances;
-            if(includeNonCompliant) {
-                instances = instanceRepository.findByDomainIdEagerRelationshipsWithNonCompliant(domainId);
-            } else {
-                instances = instanceRepository.findByDomainIdEagerRelationships(domainId);
-            }
-
-            if (instances.iterator().hasNext()) {
-                Instance i = instances.iterator().next();
-                //Compare version numbers, save the instance if it's a newer version
-                DefaultArtifactVersion iv = new DefaultArtifactVersion(i.getVersion());
-                if (iv.compareTo(latestVersion) > 0 && i.getStatus().equalsIgnoreCase(Instance.SERVICESTATUS_LIVE)) {
-                    instance = i;
-                    latestVersion = iv;
-                }
-            }
-        } catch (Exception e) {
-            log.debug("Could not find a live instance for domain id {}", domainId);
-            e.printStackTrace();
-        }
-        return instance;
+        return latestVersionService.findLatest(Instance.class, domainId, !includeNonCompliant,
+            instanceRepository::findOneWithEagerRelationships, Instance::getInstanceId);
     }
 
     /**
@@ -461,19 +743,26 @@ public class InstanceService {
      *  @param includeNonCompliant include also non-compliant services
      *  @return the list of entities
      */
-    @Transactional(readOnly = true)
     public Page<Instance> findAllByDomainId(String domainId, boolean includeNonCompliant, Pageable pageable) {
+        return findAllByDomainId(domainId, includeNonCompliant, InstanceFields.ALL, pageable);
+    }
+
+    /**
+     *  Get all matching instances by domain specific id (for example, maritime id)
+     *
+     *  @param domainId the domain specific id of the instance
+     *  @param includeNonCompliant include also non-compliant services
+     *  @param fields the parts of the instances to return
+     *  @return the list of entities
+     */
+    @Transactional(readOnly = true)
+    public Page<Instance> findAllByDomainId(String domainId, boolean includeNonCompliant, InstanceFields fields, Pageable pageable) {
         log.debug("Request to get Instance by domain id {}", QueryParser.escape(domainId));
         Page<Instance> instances = null;
 
-        BoolQueryBuilder qb = QueryBuilders.boolQuery();
-        qb.must(queryStringQuery("instanceId:" + QueryParser.escape(domainId)));
-        if(!includeNonCompliant) {
-            qb.must(boolQuery().filter(QueryBuilders.termQuery("compliant", true)));
-        }
-
         try {
-            instances = instanceSearchRepository.search(qb, pageable);
+            instances = searchIndex("domainId|" + includeNonCompliant + "|" + domainId, domainIdQuery(domainId, includeNonCompliant),
+                pageable, fields);
         } catch (Exception e) {
             log.debug("Could not find instance for domain id {}", domainId);
             e.printStackTrace();
@@ -481,6 +770,29 @@ public class InstanceService {
         return instances;
     }
 
+    /**
+     *  Get all matching instances by domain specific id (for example, maritime id), page by page with a cursor.
+     *
+     *  @param domainId the domain specific id of the instance
+     *  @param includeNonCompliant include also non-compliant services
+     *  @param fields the parts of the instances to return
+     *  @param cursor the page to return
+     *  @return the page of entities
+     */
+    public CursorPage<Instance> findAllByDomainId(String domainId, boolean includeNonCompliant, InstanceFields fields, SearchCursor cursor) {
+        log.debug("Request to get a cursor page of Instances by domain id {}", domainId);
+        return searchIndex(domainIdQuery(domainId, includeNonCompliant), cursor, fields);
+    }
+
+    private static QueryBuilder domainIdQuery(String domainId, boolean includeNonCompliant) {
+        BoolQueryBuilder qb = QueryBuilders.boolQuery();
+        qb.must(queryStringQuery("instanceId:" + QueryParser.escape(domainId)));
+        if(!includeNonCompliant) {
+            qb.must(boolQuery().filter(QueryBuilders.termQuery("compliant", true)));
+        }
+        return qb;
+    }
+
     /**
      *  Get service instances by location
      *
@@ -500,26 +812,55 @@ public class InstanceService {
      *  @param includeNonCompliant include also non-compliant services
      *  @return the entity
      */
-    @Transactional(readOnly = true)
     public Page<Instance> findByLocation(double latitude, double longitude, String query, boolean includeNonCompliant, Pageable pageable) throws Exception {
+        return findByLocation(latitude, longitude, query, includeNonCompliant, InstanceFields.ALL, pageable);
+    }
+
+    /**
+     *  Get service instances by location
+     *
+     *  @param latitude search latitude
+     *  @param longitude search longitude
+     *  @param includeNonCompliant include also non-compliant services
+     *  @param fields the parts of the instances to return
+     *  @return the entity
+     */
+    @Transactional(readOnly = true)
+    public Page<Instance> findByLocation(double latitude, double longitude, String query, boolean includeNonCompliant,
+                                         InstanceFields fields, Pageable pageable) throws Exception {
         log.debug("Request to get Instance by lat {} long {} and query {}", latitude, longitude, query);
         Page<Instance> instances = null;
-        Geometry g;
-        ShapeBuilder sb = ShapeBuilders.newPoint(longitude, latitude);
-        if (query == null || query.trim().length() == 0) {
-            query = "*";
-        }
-        BoolQueryBuilder qb = boolQuery()
-            .must(geoShapeQuery("geometry", sb))
-            .must(queryStringQuery(query));
-        if(!includeNonCompliant) {
-            qb.must(boolQuery().filter(QueryBuilders.termQuery("compliant", true)));
+        String key = "location|" + includeNonCompliant + "|" + latitude + "," + longitude + "|" + normalise(query);
+        List<Long> ids = isMatchAll(query) ? instanceCoverageIndex.findCovering(latitude, longitude, includeNonCompliant) : null;
+        if (ids != null) {
+            return searchIds(key, ids, pageable, fields);
         }
+        QueryBuilder qb = shapeQuery(ShapeBuilders.newPoint(longitude, latitude), query, includeNonCompliant);
 
-        instances = instanceSearchRepository.search(qb, pageable);
+        instances = searchIndex(key, qb, pageable, fields);
         return instances;
     }
 
+    /**
+     *  Get service instances by location, page by page with a cursor.
+     *
+     *  @param latitude search latitude
+     *  @param longitude search longitude
+     *  @param includeNonCompliant include also non-compliant services
+     *  @param fields the parts of the instances to return
+     *  @param cursor the page to return
+     *  @return the page of entities
+     */
+    public CursorPage<Instance> findByLocation(double latitude, double longitude, String query, boolean includeNonCompliant,
+                                               InstanceFields fields, SearchCursor cursor) throws Exception {
+        log.debug("Request to get a cursor page of Instances by lat {} long {} and query {}", latitude, longitude, query);
+        List<Long> ids = isMatchAll(query) ? instanceCoverageIndex.findCovering(latitude, longitude, includeNonCompliant) : null;
+        if (ids != null) {
+            return searchIds(ids, cursor, fields);
+        }
+        return searchIndex(shapeQuery(ShapeBuilders.newPoint(longitude, latitude), query, includeNonCompliant), cursor, fields);
+    }
+
     /**
      *  Get service instances by geoshape query
      *
@@ -540,28 +881,193 @@ public class InstanceService {
      */
     @Transactional(readOnly = true)
     public Page<Instance> findByGeoshape(String geoJson, String query, boolean includeNonCompliant, Pageable pageable) throws Exception {
+        return findByGeoshape(geoJson, query, includeNonCompliant, InstanceFields.ALL, pageable);
+    }
+
+    /**
+     *  Get service instances by geoshape query
+     *
+     *  @param geoJson search geometry in geojson format
+     *  @param includeNonCompliant include also non-compliant services
+     *  @param fields the parts of the instances to return
+     *  @return the entity
+     */
+    @Transactional(readOnly = true)
+    public Page<Instance> findByGeoshape(String geoJson, String query, boolean includeNonCompliant, InstanceFields fields,
+                                         Pageable pageable) throws Exception {
         log.debug("Request to get Instance by query {} and geojson {}", query, geoJson);
-        Page<Instance> instances = null;
+        return findByGeometry(queryGeometryService.fromGeoJson(geoJson), query, includeNonCompliant, fields, pageable);
+    }
+
+    /**
+     *  Get service instances by geoshape query, page by page with a cursor.
+     *
+     *  @param geoJson search geometry in geojson format
+     *  @param includeNonCompliant include also non-compliant services
+     *  @param fields the parts of the instances to return
+     *  @param cursor the page to return
+     *  @return the page of entities
+     */
+    public CursorPage<Instance> findByGeoshape(String geoJson, String query, boolean includeNonCompliant, InstanceFields fields,
+                                               SearchCursor cursor) throws Exception {
+        log.debug("Request to get a cursor page of Instances by query {} and geojson {}", query, geoJson);
+        return findByGeometry(queryGeometryService.fromGeoJson(geoJson), query, includeNonCompliant, fields, cursor);
+    }
 
-        ObjectMapper om = new ObjectMapper();
-        om.registerModule(new GeoShapeModule());
+    /**
+     *  Get service instances by WKT geometry query
+     *
+     *  @param wkt search geometry in WKT format
+     *  @param includeNonCompliant include also non-compliant services
+     *  @param fields the parts of the instances to return
+     *  @return the entity
+     */
+    @Transactional(readOnly = true)
+    public Page<Instance> findByWkt(String wkt, String query, boolean includeNonCompliant, InstanceFields fields,
+                                    Pageable pageable) throws Exception {
+        log.debug("Request to get Instance by query {} and wkt {}", query, wkt);
+        return findByGeometry(queryGeometryService.fromWkt(wkt), query, includeNonCompliant, fields, pageable);
+    }
+
+    /**
+     *  Get service instances by WKT geometry query, page by page with a cursor.
+     *
+     *  @param wkt search geometry in WKT format
+     *  @param includeNonCompliant include also non-compliant services
+     *  @param fields the parts of the instances to return
+     *  @param cursor the page to return
+     *  @return the page of entities
+     */
+    public CursorPage<Instance> findByWkt(String wkt, String query, boolean includeNonCompliant, InstanceFields fields,
+                                          SearchCursor cursor) throws Exception {
+        log.debug("Request to get a cursor page of Instances by query {} and wkt {}", query, wkt);
+        return findByGeometry(queryGeometryService.fromWkt(wkt), query, includeNonCompliant, fields, cursor);
+    }
+
+    private Page<Instance> findByGeometry(QueryGeometry geometry, String query, boolean includeNonCompliant,
+                                          InstanceFields fields, Pageable pageable) throws IOException {
+        String key = "geoshape|" + includeNonCompliant + "|" + geometry.getKey() + "|" + normalise(query);
+        List<Long> ids = coveringIds(geometry, query, includeNonCompliant);
+        if (ids != null) {
+            return searchIds(key, ids, pageable, fields);
+        }
+        QueryBuilder qb = shapeQuery(geometry.toShapeBuilder(), query, includeNonCompliant);
+        return searchIndex(key, qb, pageable, fields);
+    }
+
+    private CursorPage<Instance> findByGeometry(QueryGeometry geometry, String query, boolean includeNonCompliant,
+                                                InstanceFields fields, SearchCursor cursor) throws IOException {
+        List<Long> ids = coveringIds(geometry, query, includeNonCompliant);
+        if (ids != null) {
+            return searchIds(ids, cursor, fields);
+        }
+        return searchIndex(shapeQuery(geometry.toShapeBuilder(), query, includeNonCompliant), cursor, fields);
+    }
 
-        XContentParser parser = JsonXContent.jsonXContent.createParser(NamedXContentRegistry.EMPTY, geoJson);
-        parser.nextToken();
-        ShapeBuilder sb = ShapeBuilder.parse(parser);
+    /**
+     * The instances intersecting a small search area without further query, from the coverage index.
+     *
+     * @return the instance ids, or null if the search has to go to Elasticsearch
+     */
+    private List<Long> coveringIds(QueryGeometry geometry, String query, boolean includeNonCompliant) {
+        if (geometry.getGeometry() == null || !isMatchAll(query)) {
+            return null;
+        }
+        return instanceCoverageIndex.findIntersecting(geometry.getGeometry(), includeNonCompliant);
+    }
+
+    private static boolean isMatchAll(String query) {
+        return query == null || query.trim().length() == 0 || "*".equals(query.trim());
+    }
+
+    /**
+     * Read instances found in the coverage index from the search index, through the search result cache.
+     */
+    private Page<Instance> searchIds(String key, List<Long> ids, Pageable pageable, InstanceFields fields) {
+        if (ids.isEmpty()) {
+            return new PageImpl<>(Collections.emptyList(), pageable, 0);
+        }
+        return searchIndex(key, idsQuery(ids), pageable, fields);
+    }
+
+    private CursorPage<Instance> searchIds(List<Long> ids, SearchCursor cursor, InstanceFields fields) {
+        if (ids.isEmpty()) {
+            return new CursorPage<>(Collections.emptyList(), null, cursor.isCountTotal() ? 0L : null);
+        }
+        return searchIndex(idsQuery(ids), cursor, fields);
+    }
+
+    private static QueryBuilder idsQuery(List<Long> ids) {
+        return QueryBuilders.idsQuery().addIds(ids.stream().map(String::valueOf).toArray(String[]::new));
+    }
+
+    private static QueryBuilder shapeQuery(ShapeBuilder shape, String query, boolean includeNonCompliant) throws IOException {
         if (query == null || query.trim().length() == 0) {
             query = "*";
         }
         BoolQueryBuilder qb = boolQuery()
-            .must(geoShapeQuery("geometry", sb))
+            .must(geoShapeQuery("geometry", shape))
             .must(queryStringQuery(query));
         if(!includeNonCompliant) {
             qb.must(boolQuery().filter(QueryBuilders.termQuery("compliant", true)));
         }
-        instances = instanceSearchRepository.search(qb, pageable);
+        return qb;
+    }
 
-        return instances;
+    /**
+     * Search the instance index, through the search result cache.
+     *
+     * @param key the query and flags the result depends on; free text queries normalised, term values verbatim
+     */
+    private Page<Instance> searchIndex(String key, QueryBuilder query, Pageable pageable, InstanceFields fields) {
+        return cached(key, pageable, fields, () -> {
+            NativeSearchQueryBuilder searchQuery = new NativeSearchQueryBuilder().withQuery(query).withPageable(pageable);
+            SourceFilter sourceFilter = fields.sourceFilter();
+            if (sourceFilter != null) {
+                searchQuery.withSourceFilter(sourceFilter);
+            }
+            return elasticsearchOperations.queryForPage(searchQuery.build(), Instance.class);
+        });
     }
 
+    private Page<Instance> searchIndex(String key, Criteria criteria, Pageable pageable, InstanceFields fields) {
+        return cached(key, pageable, fields, () -> {
+            CriteriaQuery criteriaQuery = new CriteriaQuery(criteria, pageable);
+            SourceFilter sourceFilter = fields.sourceFilter();
+            if (sourceFilter != null) {
+                criteriaQuery.addSourceFilter(sourceFilter);
+            }
+            return elasticsearchOperations.queryForPage(criteriaQuery, Instance.class);
+        });
+    }
 
+    private CursorPage<Instance> searchIndex(QueryBuilder query, SearchCursor cursor, InstanceFields fields) {
+        CursorPage<Instance> page = cursorSearchService.search(Instance.class, query, fields.sourceFilter(), cursor);
+        page.getContent().forEach(fields::apply);
+        return page;
+    }
+
+    private Page<Instance> cached(String key, Pageable pageable, InstanceFields fields, Supplier<Page<Instance>> search) {
+        Page<Instance> page = searchResultCache.get(Instance.class, key + "|" + fields.key(), pageable, search);
+        if (page != null) {
+            page.getContent().forEach(fields::apply);
+        }
+        return page;
+    }
+
+    /**
+     * The criteria of the former derived finders findByField / findByFieldAndCompliantTrue.
+     */
+    private static Criteria fieldCriteria(String field, String value, boolean includeNonCompliant) {
+        Criteria criteria = new Criteria(field).is(value);
+        return includeNonCompliant ? criteria : criteria.and(new Criteria("compliant").is(true));
+    }
+
+    /**
+     * Collapse the whitespace of a free text query, which does not change its result. Term values are matched
+     * exactly and must not go through here.
+     */
+    private static String normalise(String query) {
+        return query == null ? "" : query.trim().replaceAll("\\s+", " ");
+    }
 }
@@ -0,0 +1,343 @@
+/*
+ * MaritimeCloud Service Registry
+ * Copyright (c) 2016 Frequentis AG
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.frequentis.maritime.mcsr.service;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.Function;
+
+import javax.annotation.PostConstruct;
+import javax.inject.Inject;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.dao.ConcurrencyFailureException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.frequentis.maritime.mcsr.domain.Design;
+import com.frequentis.maritime.mcsr.domain.Instance;
+import com.frequentis.maritime.mcsr.domain.LatestVersion;
+import com.frequentis.maritime.mcsr.domain.Specification;
+import com.frequentis.maritime.mcsr.repository.DesignRepository;
+import com.frequentis.maritime.mcsr.repository.InstanceRepository;
+import com.frequentis.maritime.mcsr.repository.LatestVersionRepository;
+import com.frequentis.maritime.mcsr.repository.SpecificationRepository;
+
+/**
+ * Keeps track of the latest version per domain id of instances, designs and specifications.
+ *
+ * <p>
+ * The pointers are stored in the latest_version table, updated right after the transaction that saves or deletes a
+ * version committed, and kept in a bounded in-memory cache in front of it. Cache entries expire after {@link #MAX_AGE_MILLIS}, so
+ * changes made by other nodes become visible. Domain ids without a stored pointer yet are computed on first read.
+ * The latest version is found by the database, ordered by the sortable version key.
+ * </p>
+ */
+@Service
+@Transactional
+public class LatestVersionService {
+
+    static final int MAX_ENTRIES = 10000;
+
+    static final long MAX_AGE_MILLIS = 60 * 1000;
+
+    static final int MAX_UPDATE_ATTEMPTS = 3;
+
+    private static final Pageable FIRST = PageRequest.of(0, 1);
+
+    private final Logger log = LoggerFactory.getLogger(LatestVersionService.class);
+
+    @Inject
+    private LatestVersionRepository latestVersionRepository;
+
+    @Inject
+    private InstanceRepository instanceRepository;
+
+    @Inject
+    private DesignRepository designRepository;
+
+    @Inject
+    private SpecificationRepository specificationRepository;
+
+    @Inject
+    private PlatformTransactionManager transactionManager;
+
+    private TransactionTemplate updateTransaction;
+
+    private final Map<String, Pointer> cache = new LinkedHashMap<String, Pointer>(256, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Pointer> eldest) {
+            return size() > MAX_ENTRIES;
+        }
+    };
+
+    @PostConstruct
+    public void init() {
+        updateTransaction = new TransactionTemplate(transactionManager);
+        updateTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    }
+
+    /**
+     * Get the latest version of an entity by domain id.
+     *
+     * <p>
+     * The entity is loaded by the id of the pointer. Should the pointer be stale, i.e. the entity was removed or got
+     * another domain id, the latest version is computed from the versions again.
+     * </p>
+     *
+     * @param entityClass the class of the entity: Instance, Design or Specification
+     * @param domainId the domain specific id
+     * @param compliantOnly only consider compliant versions (instances only)
+     * @param loader loads the entity by id
+     * @param domainIdOf gets the domain id of an entity
+     * @return the entity, null if there is none
+     */
+    @Transactional(readOnly = true)
+    public <T> T findLatest(Class<T> entityClass, String domainId, boolean compliantOnly,
+                            Function<Long, T> loader, Function<T, String> domainIdOf) {
+        log.debug("Request to get latest {} by domain id {}", entityClass.getSimpleName(), domainId);
+        T entity = load(pointer(entityClass, domainId, false), compliantOnly, loader);
+        if (entity != null && Objects.equals(domainIdOf.apply(entity), domainId)) {
+            return entity;
+        }
+        Pointer pointer = pointer(entityClass, domainId, true);
+        entity = load(pointer, compliantOnly, loader);
+        return entity != null && Objects.equals(domainIdOf.apply(entity), domainId) ? entity : null;
+    }
+
+    /**
+     * Get the ids of the latest versions of many domain ids at once.
+     *
+     * <p>
+     * Pointers not in the cache are read with one query. The ids are not checked against the entities, callers
+     * loading an entity that no longer has the domain id fall back to {@link #findLatest}.
+     * </p>
+     *
+     * @param entityClass the class of the entity: Instance, Design or Specification
+     * @param domainIds the domain specific ids
+     * @param compliantOnly only consider compliant versions (instances only)
+     * @return the id of the latest version by domain id, without the domain ids having none
+     */
+    @Transactional(readOnly = true)
+    public Map<String, Long> findLatestIds(Class<?> entityClass, Collection<String> domainIds, boolean compliantOnly) {
+        Map<String, Pointer> pointers = new HashMap<>();
+        Set<String> missing = new LinkedHashSet<>();
+        long now = System.currentTimeMillis();
+        synchronized (cache) {
+            for (String domainId : domainIds) {
+                Pointer pointer = cache.get(key(entityClass, domainId));
+                if (pointer != null && pointer.expiresAt > now) {
+                    pointers.put(domainId, pointer);
+                } else {
+                    missing.add(domainId);
+                }
+            }
+        }
+        if (!missing.isEmpty()) {
+            Map<String, Pointer> read = new HashMap<>();
+            for (LatestVersion latestVersion : latestVersionRepository.findAllByEntityTypeAndDomainIdIn(entityClass.getSimpleName(), missing)) {
+                read.put(latestVersion.getDomainId(),
+                    new Pointer(latestVersion.getLatestId(), latestVersion.getLatestCompliantId(), now + MAX_AGE_MILLIS));
+            }
+            for (String domainId : missing) {
+                read.computeIfAbsent(domainId, id -> compute(entityClass, id));
+            }
+            synchronized (cache) {
+                read.forEach((domainId, pointer) -> cache.put(key(entityClass, domainId), pointer));
+            }
+            pointers.putAll(read);
+        }
+
+        Map<String, Long> result = new HashMap<>();
+        pointers.forEach((domainId, pointer) -> {
+            Long id = compliantOnly ? pointer.latestCompliantId : pointer.latestId;
+            if (id != null) {
+                result.put(domainId, id);
+            }
+        });
+        return result;
+    }
+
+    /**
+     * Recompute the latest version of a domain id after one of its versions was saved or deleted.
+     *
+     * <p>
+     * The pointer is recomputed once the transaction committed, in a transaction of its own holding a lock on the
+     * pointer row. The versions are only read after the lock was taken, so writers of the same domain id are
+     * serialized and the last one to get the lock sees the versions of all of them.
+     * </p>
+     *
+     * @param entityClass the class of the entity: Instance, Design or Specification
+     * @param domainId the domain specific id
+     */
+    public void refresh(Class<?> entityClass, String domainId) {
+        if (domainId == null) {
+            return;
+        }
+        String key = key(entityClass, domainId);
+        evict(key);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+                @Override
+                public void afterCommit() {
+                    update(entityClass, domainId);
+                }
+
+                @Override
+                public void afterCompletion(int status) {
+                    // Readers may have cached the old pointer until the change is visible to them
+                    evict(key);
+                }
+            });
+        } else {
+            update(entityClass, domainId);
+        }
+    }
+
+    private void update(Class<?> entityClass, String domainId) {
+        String entityType = entityClass.getSimpleName();
+        for (int attempt = 1; ; attempt++) {
+            try {
+                updateTransaction.execute(status -> {
+                    LatestVersion latestVersion = latestVersionRepository.findOneForUpdate(entityType, domainId);
+                    Pointer pointer = compute(entityClass, domainId);
+                    if (pointer.latestId == null && pointer.latestCompliantId == null) {
+                        if (latestVersion != null) {
+                            latestVersionRepository.delete(latestVersion);
+                        }
+                    } else {
+                        if (latestVersion == null) {
+                            latestVersion = new LatestVersion(entityType, domainId);
+                        }
+                        latestVersion.setLatestId(pointer.latestId);
+                        latestVersion.setLatestCompliantId(pointer.latestCompliantId);
+                        latestVersionRepository.saveAndFlush(latestVersion);
+                    }
+                    return null;
+                });
+                return;
+            } catch (DataIntegrityViolationException | ConcurrencyFailureException e) {
+                // Another writer inserted the missing pointer row at the same time, the row is locked on the next attempt
+                if (attempt >= MAX_UPDATE_ATTEMPTS) {
+                    log.warn("Could not update the latest version of {} {}: {}", entityType, domainId, e.getMessage());
+                    return;
+                }
+                log.debug("Retrying the update of the latest version of {} {}: {}", entityType, domainId, e.getMessage());
+            }
+        }
+    }
+
+    private <T> T load(Pointer pointer, boolean compliantOnly, Function<Long, T> loader) {
+        Long id = compliantOnly ? pointer.latestCompliantId : pointer.latestId;
+        return id != null ? loader.apply(id) : null;
+    }
+
+    private Pointer pointer(Class<?> entityClass, String domainId, boolean recompute) {
+        String key = key(entityClass, domainId);
+        long now = System.currentTimeMillis();
+        if (!recompute) {
+            synchronized (cache) {
+                Pointer pointer = cache.get(key);
+                if (pointer != null && pointer.expiresAt > now) {
+                    return pointer;
+                }
+            }
+        }
+
+        Pointer pointer = null;
+        if (!recompute) {
+            LatestVersion latestVersion = latestVersionRepository.findOneByEntityTypeAndDomainId(entityClass.getSimpleName(), domainId);
+            if (latestVersion != null) {
+                pointer = new Pointer(latestVersion.getLatestId(), latestVersion.getLatestCompliantId(), now + MAX_AGE_MILLIS);
+            }
+        }
+        if (pointer == null) {
+            pointer = compute(entityClass, domainId);
+        }
+        synchronized (cache) {
+            cache.put(key, pointer);
+        }
+        return pointer;
+    }
+
+    private Pointer compute(Class<?> entityClass, String domainId) {
+        Long latestId;
+        Long latestCompliantId;
+        if (entityClass == Instance.class) {
+            String live = Instance.SERVICESTATUS_LIVE.toLowerCase(Locale.ROOT);
+            latestId = first(instanceRepository.findIdsByDomainIdAndStatusOrderByVersionKeyDesc(domainId, live, FIRST));
+            latestCompliantId = latestId == null ? null
+                : first(instanceRepository.findCompliantIdsByDomainIdAndStatusOrderByVersionKeyDesc(domainId, live, FIRST));
+        } else if (entityClass == Design.class) {
+            latestId = first(designRepository.findIdsByDomainIdOrderByVersionKeyDesc(domainId, FIRST));
+            latestCompliantId = latestId;
+        } else if (entityClass == Specification.class) {
+            latestId = first(specificationRepository.findIdsByDomainIdOrderByVersionKeyDesc(domainId, FIRST));
+            latestCompliantId = latestId;
+        } else {
+            throw new IllegalArgumentException("No latest version for " + entityClass.getSimpleName());
+        }
+        return new Pointer(latestId, latestCompliantId, System.currentTimeMillis() + MAX_AGE_MILLIS);
+    }
+
+    private static Long first(List<Long> ids) {
+        return ids.isEmpty() ? null : ids.get(0);
+    }
+
+    private void evict(String key) {
+        synchronized (cache) {
+            cache.remove(key);
+        }
+    }
+
+    private static String key(Class<?> entityClass, String domainId) {
+        return entityClass.getSimpleName() + "#" + domainId;
+    }
+
+    private static final class Pointer {
+
+        private final Long latestId;
+
+        private final Long latestCompliantId;
+
+        private final long expiresAt;
+
+        Pointer(Long latestId, Long latestCompliantId, long expiresAt) {
+            this.latestId = latestId;
+            this.latestCompliantId = latestCompliantId;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
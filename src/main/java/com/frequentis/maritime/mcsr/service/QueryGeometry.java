@@ -0,0 +1,161 @@
+/*
+ * MaritimeCloud Service Registry
+ * Copyright (c) 2016 Frequentis AG
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.frequentis.maritime.mcsr.service;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.elasticsearch.common.geo.builders.GeometryCollectionBuilder;
+import org.elasticsearch.common.geo.builders.LineStringBuilder;
+import org.elasticsearch.common.geo.builders.MultiLineStringBuilder;
+import org.elasticsearch.common.geo.builders.MultiPolygonBuilder;
+import org.elasticsearch.common.geo.builders.PolygonBuilder;
+import org.elasticsearch.common.geo.builders.ShapeBuilder;
+import org.elasticsearch.common.geo.builders.ShapeBuilders;
+
+import com.vividsolutions.jts.geom.Coordinate;
+import com.vividsolutions.jts.geom.Geometry;
+import com.vividsolutions.jts.geom.GeometryCollection;
+import com.vividsolutions.jts.geom.LineString;
+import com.vividsolutions.jts.geom.MultiLineString;
+import com.vividsolutions.jts.geom.MultiPoint;
+import com.vividsolutions.jts.geom.MultiPolygon;
+import com.vividsolutions.jts.geom.Point;
+import com.vividsolutions.jts.geom.Polygon;
+
+/**
+ * A parsed search geometry, as returned by the {@link QueryGeometryService}.
+ *
+ * <p>
+ * Instances are shared through the parse cache and never modified. Every call of {@link #toShapeBuilder()} builds a
+ * new shape for the search query from the kept JTS geometry, which is cheap compared to parsing.
+ * </p>
+ */
+public final class QueryGeometry {
+
+    private final String key;
+
+    private final Geometry geometry;
+
+    private final ShapeBuilder shape;
+
+    QueryGeometry(String key, Geometry geometry) {
+        this.key = key;
+        this.geometry = geometry;
+        this.shape = null;
+    }
+
+    /**
+     * A geometry JTS has no type for (the circle and envelope extensions of Elasticsearch), used once.
+     */
+    QueryGeometry(String key, ShapeBuilder shape) {
+        this.key = key;
+        this.geometry = null;
+        this.shape = shape;
+    }
+
+    /**
+     * @return the hash of the geometry, the same for equal geometries given as WKT or GeoJSON
+     */
+    public String getKey() {
+        return key;
+    }
+
+    /**
+     * @return the number of vertices of the geometry, 0 if unknown
+     */
+    public int getVertices() {
+        return geometry != null ? geometry.getNumPoints() : 0;
+    }
+
+    /**
+     * @return the JTS geometry, null for the Elasticsearch extensions of GeoJSON
+     */
+    Geometry getGeometry() {
+        return geometry;
+    }
+
+    /**
+     * @return a new shape builder for the geometry
+     */
+    public ShapeBuilder toShapeBuilder() {
+        return shape != null ? shape : toShapeBuilder(geometry);
+    }
+
+    private static ShapeBuilder toShapeBuilder(Geometry geometry) {
+        if (geometry instanceof Point) {
+            return ShapeBuilders.newPoint(new Coordinate(geometry.getCoordinate()));
+        }
+        if (geometry instanceof LineString) {
+            return lineString((LineString) geometry);
+        }
+        if (geometry instanceof Polygon) {
+            return polygon((Polygon) geometry);
+        }
+        if (geometry instanceof MultiPoint) {
+            return ShapeBuilders.newMultiPoint(coordinates(geometry));
+        }
+        if (geometry instanceof MultiLineString) {
+            MultiLineStringBuilder builder = ShapeBuilders.newMultiLinestring();
+            for (int i = 0; i < geometry.getNumGeometries(); i++) {
+                builder.linestring(lineString((LineString) geometry.getGeometryN(i)));
+            }
+            return builder;
+        }
+        if (geometry instanceof MultiPolygon) {
+            MultiPolygonBuilder builder = ShapeBuilders.newMultiPolygon();
+            for (int i = 0; i < geometry.getNumGeometries(); i++) {
+                builder.polygon(polygon((Polygon) geometry.getGeometryN(i)));
+            }
+            return builder;
+        }
+        if (geometry instanceof GeometryCollection) {
+            GeometryCollectionBuilder builder = ShapeBuilders.newGeometryCollection();
+            for (int i = 0; i < geometry.getNumGeometries(); i++) {
+                builder.shape(toShapeBuilder(geometry.getGeometryN(i)));
+            }
+            return builder;
+        }
+        throw new IllegalArgumentException("Unsupported geometry type " + geometry.getGeometryType());
+    }
+
+    private static LineStringBuilder lineString(LineString lineString) {
+        return ShapeBuilders.newLineString(coordinates(lineString));
+    }
+
+    private static PolygonBuilder polygon(Polygon polygon) {
+        PolygonBuilder builder = ShapeBuilders.newPolygon(coordinates(polygon.getExteriorRing()));
+        for (int i = 0; i < polygon.getNumInteriorRing(); i++) {
+            builder.hole(lineString(polygon.getInteriorRingN(i)));
+        }
+        return builder;
+    }
+
+    /**
+     * Copies of the coordinates, the builders must not share them with the cached geometry.
+     */
+    private static List<Coordinate> coordinates(Geometry geometry) {
+        Coordinate[] coordinates = geometry.getCoordinates();
+        List<Coordinate> result = new ArrayList<>(coordinates.length);
+        for (Coordinate coordinate : coordinates) {
+            result.add(new Coordinate(coordinate));
+        }
+        return result;
+    }
+}
@@ -0,0 +1,225 @@
+/*
+ * MaritimeCloud Service Registry
+ * Copyright (c) 2016 Frequentis AG
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.frequentis.maritime.mcsr.service;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import javax.annotation.PostConstruct;
+import javax.inject.Inject;
+
+import org.elasticsearch.common.geo.builders.ShapeBuilder;
+import org.elasticsearch.common.xcontent.NamedXContentRegistry;
+import org.elasticsearch.common.xcontent.XContentParser;
+import org.elasticsearch.common.xcontent.json.JsonXContent;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+import org.wololo.jts2geojson.GeoJSONReader;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Histogram;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+import com.frequentis.maritime.mcsr.config.JHipsterProperties;
+import com.vividsolutions.jts.geom.Geometry;
+import com.vividsolutions.jts.io.ParseException;
+import com.vividsolutions.jts.io.WKBWriter;
+import com.vividsolutions.jts.io.WKTReader;
+import com.vividsolutions.jts.simplify.TopologyPreservingSimplifier;
+
+/**
+ * Parses the search geometries of geo queries, given as WKT or GeoJSON, into {@link QueryGeometry}s.
+ *
+ * <p>
+ * Both formats are read into a JTS geometry. Geometries with at least {@code jhipster.queryGeometry.simplifyMinVertices}
+ * vertices are simplified to {@code jhipster.queryGeometry.simplifyTolerance} degrees, keeping their topology, if a
+ * tolerance is set. The last {@code jhipster.queryGeometry.cacheSize} results are kept, keyed by the hash of their
+ * text, so repeated searches of the same area are not parsed again. The time to parse and the number of vertices
+ * before and after simplification are reported as metrics.
+ * </p>
+ */
+@Service
+public class QueryGeometryService {
+
+    private final Logger log = LoggerFactory.getLogger(QueryGeometryService.class);
+
+    private static final String METRIC_PREFIX = "query.geometry";
+
+    @Inject
+    private JHipsterProperties jHipsterProperties;
+
+    @Inject
+    private MetricRegistry metricRegistry;
+
+    private final LinkedHashMap<String, QueryGeometry> cache = new LinkedHashMap<String, QueryGeometry>(64, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, QueryGeometry> eldest) {
+            return size() > jHipsterProperties.getQueryGeometry().getCacheSize();
+        }
+    };
+
+    private Timer parseTime;
+
+    private Histogram vertices;
+
+    private Histogram simplifiedVertices;
+
+    private Meter hits;
+
+    private Meter misses;
+
+    @PostConstruct
+    public void init() {
+        parseTime = metricRegistry.timer(MetricRegistry.name(METRIC_PREFIX, "parse"));
+        vertices = metricRegistry.histogram(MetricRegistry.name(METRIC_PREFIX, "vertices"));
+        simplifiedVertices = metricRegistry.histogram(MetricRegistry.name(METRIC_PREFIX, "vertices", "simplified"));
+        hits = metricRegistry.meter(MetricRegistry.name(METRIC_PREFIX, "cache", "hit"));
+        misses = metricRegistry.meter(MetricRegistry.name(METRIC_PREFIX, "cache", "miss"));
+        metricRegistry.register(MetricRegistry.name(METRIC_PREFIX, "cache", "size"), (Gauge<Integer>) () -> {
+            synchronized (cache) {
+                return cache.size();
+            }
+        });
+    }
+
+    /**
+     * Parse a search geometry in WKT format.
+     *
+     * @param wkt the geometry as WKT
+     * @return the parsed geometry
+     * @throws ParseException if the WKT is invalid
+     */
+    public QueryGeometry fromWkt(String wkt) throws ParseException {
+        String textKey = textKey("wkt", wkt);
+        QueryGeometry result = cached(textKey);
+        if (result == null) {
+            Timer.Context time = parseTime.time();
+            try {
+                result = prepare(new WKTReader().read(wkt));
+            } finally {
+                time.stop();
+            }
+            cache(textKey, result);
+        }
+        return result;
+    }
+
+    /**
+     * Parse a search geometry in GeoJSON format.
+     *
+     * <p>
+     * The circle and envelope types Elasticsearch adds to GeoJSON have no JTS counterpart. They are left to
+     * Elasticsearch to parse, and neither simplified nor cached.
+     * </p>
+     *
+     * @param geoJson the geometry as GeoJSON
+     * @return the parsed geometry
+     * @throws IOException if the GeoJSON is invalid
+     */
+    public QueryGeometry fromGeoJson(String geoJson) throws IOException {
+        String textKey = textKey("geojson", geoJson);
+        QueryGeometry result = cached(textKey);
+        if (result == null) {
+            Timer.Context time = parseTime.time();
+            try {
+                Geometry geometry;
+                try {
+                    geometry = new GeoJSONReader().read(geoJson);
+                } catch (RuntimeException e) {
+                    log.debug("Could not read GeoJSON with JTS, parsing it with Elasticsearch: {}", e.getMessage());
+                    return new QueryGeometry(textKey, parseShape(geoJson));
+                }
+                result = prepare(geometry);
+            } finally {
+                time.stop();
+            }
+            cache(textKey, result);
+        }
+        return result;
+    }
+
+    private QueryGeometry prepare(Geometry geometry) {
+        if (geometry == null) {
+            throw new IllegalArgumentException("No geometry given");
+        }
+        JHipsterProperties.QueryGeometry properties = jHipsterProperties.getQueryGeometry();
+        int count = geometry.getNumPoints();
+        vertices.update(count);
+        if (properties.getSimplifyTolerance() > 0 && count >= properties.getSimplifyMinVertices()) {
+            geometry = TopologyPreservingSimplifier.simplify(geometry, properties.getSimplifyTolerance());
+            log.debug("Simplified search geometry from {} to {} vertices", count, geometry.getNumPoints());
+        }
+        simplifiedVertices.update(geometry.getNumPoints());
+        return new QueryGeometry(hash(new WKBWriter().write(geometry)), geometry);
+    }
+
+    private QueryGeometry cached(String textKey) {
+        if (jHipsterProperties.getQueryGeometry().getCacheSize() <= 0) {
+            return null;
+        }
+        QueryGeometry result;
+        synchronized (cache) {
+            result = cache.get(textKey);
+        }
+        if (result != null) {
+            hits.mark();
+        } else {
+            misses.mark();
+        }
+        return result;
+    }
+
+    private void cache(String textKey, QueryGeometry geometry) {
+        if (jHipsterProperties.getQueryGeometry().getCacheSize() > 0) {
+            synchronized (cache) {
+                cache.put(textKey, geometry);
+            }
+        }
+    }
+
+    private static ShapeBuilder parseShape(String geoJson) throws IOException {
+        try (XContentParser parser = JsonXContent.jsonXContent.createParser(NamedXContentRegistry.EMPTY, geoJson)) {
+            parser.nextToken();
+            return ShapeBuilder.parse(parser);
+        }
+    }
+
+    /**
+     * The text is hashed with its whitespace collapsed, dense geometries are too large to be kept as keys.
+     */
+    private static String textKey(String format, String text) {
+        String normalised = text == null ? "" : text.trim().replaceAll("\\s+", " ");
+        return format + ":" + hash(normalised.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String hash(byte[] bytes) {
+        try {
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(MessageDigest.getInstance("SHA-256").digest(bytes));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,389 @@
+/*
+ * MaritimeCloud Service Registry
+ * Copyright (c) 2016 Frequentis AG
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.frequentis.maritime.mcsr.service;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+
+import javax.annotation.PostConstruct;
+import javax.inject.Inject;
+import javax.persistence.EntityManager;
+import javax.persistence.TypedQuery;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.frequentis.maritime.mcsr.config.JHipsterProperties;
+import com.frequentis.maritime.mcsr.domain.Design;
+import com.frequentis.maritime.mcsr.domain.Instance;
+import com.frequentis.maritime.mcsr.domain.Specification;
+import com.frequentis.maritime.mcsr.repository.DesignRepository;
+import com.frequentis.maritime.mcsr.repository.InstanceRepository;
+import com.frequentis.maritime.mcsr.repository.SpecificationRepository;
+
+/**
+ * Export of the registry content as newline delimited JSON.
+ *
+ * <p>
+ * Instances, designs and specifications are read in id order, one batch per read only transaction, and written
+ * with a streaming JSON generator, so neither a transaction nor more than one batch is held while the client
+ * reads. Every line is an object with the entity type, the entity as returned by the REST API and a resume token.
+ * An export started with the resume token of a line continues with the entity following it.
+ * </p>
+ */
+@Service
+public class RegistryExportService {
+
+    private final Logger log = LoggerFactory.getLogger(RegistryExportService.class);
+
+    /**
+     * The exported entity types, in the order they are exported.
+     */
+    public enum EntityType {
+        INSTANCE("instance", Instance.class),
+        DESIGN("design", Design.class),
+        SPECIFICATION("specification", Specification.class);
+
+        private final String key;
+
+        private final Class<?> entityClass;
+
+        EntityType(String key, Class<?> entityClass) {
+            this.key = key;
+            this.entityClass = entityClass;
+        }
+
+        public String getKey() {
+            return key;
+        }
+
+        /**
+         * @param key the key of the type, as used in the export
+         * @return the type
+         * @throws IllegalArgumentException if there is no type with that key
+         */
+        public static EntityType fromKey(String key) {
+            for (EntityType type : values()) {
+                if (type.key.equalsIgnoreCase(key.trim())) {
+                    return type;
+                }
+            }
+            throw new IllegalArgumentException("Unknown entity type: " + key);
+        }
+    }
+
+    /**
+     * Restricts the exported entities. Unset criteria match all entities.
+     */
+    public static class Filter {
+
+        private static final DateTimeFormatter TIMESTAMP_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm'Z'")
+            .withZone(ZoneOffset.UTC);
+
+        private String organizationId;
+
+        private String status;
+
+        private Boolean compliant;
+
+        private String updatedSince;
+
+        public String getOrganizationId() {
+            return organizationId;
+        }
+
+        public void setOrganizationId(String organizationId) {
+            this.organizationId = organizationId;
+        }
+
+        public String getStatus() {
+            return status;
+        }
+
+        public void setStatus(String status) {
+            this.status = status == null ? null : status.toLowerCase();
+        }
+
+        public Boolean getCompliant() {
+            return compliant;
+        }
+
+        /**
+         * @param compliant export only compliant or only non-compliant instances, does not restrict designs and
+         *                  specifications
+         */
+        public void setCompliant(Boolean compliant) {
+            this.compliant = compliant;
+        }
+
+        public String getUpdatedSince() {
+            return updatedSince;
+        }
+
+        /**
+         * @param updatedSince an ISO-8601 date or date-time, entities last updated in the same minute or later match
+         * @throws IllegalArgumentException if the value is not an ISO-8601 date or date-time
+         */
+        public void setUpdatedSince(String updatedSince) {
+            if (updatedSince == null) {
+                this.updatedSince = null;
+                return;
+            }
+            try {
+                this.updatedSince = TIMESTAMP_FORMAT.format(OffsetDateTime.parse(updatedSince));
+            } catch (DateTimeParseException e) {
+                try {
+                    this.updatedSince = TIMESTAMP_FORMAT.format(LocalDate.parse(updatedSince).atStartOfDay(ZoneOffset.UTC));
+                } catch (DateTimeParseException e2) {
+                    throw new IllegalArgumentException("Invalid updatedSince: " + updatedSince, e2);
+                }
+            }
+        }
+    }
+
+    /**
+     * Position in an export, the last written entity.
+     */
+    static final class Cursor {
+
+        private final EntityType type;
+
+        private final long id;
+
+        Cursor(EntityType type, long id) {
+            this.type = type;
+            this.id = id;
+        }
+
+        String toToken() {
+            return Base64.getUrlEncoder().withoutPadding()
+                .encodeToString((type.getKey() + ":" + id).getBytes(StandardCharsets.UTF_8));
+        }
+
+        static Cursor parse(String token) {
+            try {
+                String value = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+                int separator = value.indexOf(':');
+                return new Cursor(EntityType.fromKey(value.substring(0, separator)), Long.parseLong(value.substring(separator + 1)));
+            } catch (IllegalArgumentException | IndexOutOfBoundsException e) {
+                throw new IllegalArgumentException("Invalid resume token: " + token, e);
+            }
+        }
+    }
+
+    @Inject
+    private InstanceRepository instanceRepository;
+
+    @Inject
+    private DesignRepository designRepository;
+
+    @Inject
+    private SpecificationRepository specificationRepository;
+
+    @Inject
+    private EntityManager entityManager;
+
+    @Inject
+    private PlatformTransactionManager transactionManager;
+
+    @Inject
+    private JHipsterProperties jHipsterProperties;
+
+    @Inject
+    private ObjectMapper objectMapper;
+
+    private final Map<EntityType, Function<Collection<Long>, ? extends Collection<?>>> loaders = new EnumMap<>(EntityType.class);
+
+    private TransactionTemplate readOnlyTransaction;
+
+    @PostConstruct
+    public void init() {
+        readOnlyTransaction = new TransactionTemplate(transactionManager);
+        readOnlyTransaction.setReadOnly(true);
+
+        loaders.put(EntityType.INSTANCE, instanceRepository::findAllWithEagerRelationshipsByIdIn);
+        loaders.put(EntityType.DESIGN, designRepository::findAllWithEagerRelationshipsByIdIn);
+        loaders.put(EntityType.SPECIFICATION, specificationRepository::findAllWithEagerRelationshipsByIdIn);
+    }
+
+    /**
+     * Check a resume token before an export is started with it.
+     *
+     * @param resumeToken the resume token of an exported line
+     * @throws IllegalArgumentException if the token is invalid
+     */
+    public void validateResumeToken(String resumeToken) {
+        Cursor.parse(resumeToken);
+    }
+
+    /**
+     * Write the matching entities to a stream, one JSON object per line. The stream is flushed after each batch
+     * and left open.
+     *
+     * @param types the types of entities to export
+     * @param filter the criteria the exported entities match
+     * @param resumeToken the resume token of the last line received by an interrupted export, or null to start
+     *                    from the beginning
+     * @param includeDoc include the documents of the entities
+     * @param out the stream to write to
+     * @return the number of entities written
+     * @throws IOException if the stream could not be written
+     */
+    public long export(Set<EntityType> types, Filter filter, String resumeToken, boolean includeDoc, OutputStream out) throws IOException {
+        Cursor start = resumeToken == null || resumeToken.isEmpty() ? null : Cursor.parse(resumeToken);
+        int batchSize = jHipsterProperties.getExport().getBatchSize();
+        long written = 0;
+
+        JsonGenerator generator = objectMapper.getFactory().createGenerator(out);
+        generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+        try {
+            for (EntityType type : EntityType.values()) {
+                if (!types.contains(type) || (start != null && type.ordinal() < start.type.ordinal())) {
+                    continue;
+                }
+                long after = start != null && start.type == type ? start.id : 0L;
+                Batch batch;
+                do {
+                    long from = after;
+                    batch = readOnlyTransaction.execute(status -> loadBatch(type, filter, from, batchSize, includeDoc));
+                    for (Object entity : batch.entities) {
+                        generator.writeStartObject();
+                        generator.writeStringField("type", type.getKey());
+                        generator.writeStringField("resumeToken", new Cursor(type, idOf(entity)).toToken());
+                        generator.writeObjectField("entity", entity);
+                        generator.writeEndObject();
+                        generator.writeRaw('\n');
+                    }
+                    // Past the ids of rows deleted before they could be loaded, too
+                    after = batch.lastId;
+                    written += batch.entities.size();
+                    generator.flush();
+                } while (batch.fetched == batchSize);
+            }
+        } finally {
+            generator.close();
+        }
+        log.debug("Exported {} entities", written);
+        return written;
+    }
+
+    private Batch loadBatch(EntityType type, Filter filter, long after, int batchSize, boolean includeDoc) {
+        String entityName = entityManager.getMetamodel().entity(type.entityClass).getName();
+        StringBuilder jpql = new StringBuilder("select e.id from ").append(entityName).append(" e where e.id > :after");
+        Map<String, Object> parameters = new HashMap<>();
+        parameters.put("after", after);
+        if (filter.getOrganizationId() != null) {
+            jpql.append(" and e.organizationId = :organizationId");
+            parameters.put("organizationId", filter.getOrganizationId());
+        }
+        if (filter.getStatus() != null) {
+            jpql.append(" and lower(e.status) = :status");
+            parameters.put("status", filter.getStatus());
+        }
+        if (filter.getCompliant() != null && type == EntityType.INSTANCE) {
+            jpql.append(" and e.compliant = :compliant");
+            parameters.put("compliant", filter.getCompliant());
+        }
+        if (filter.getUpdatedSince() != null) {
+            jpql.append(" and e.lastUpdatedAt >= :updatedSince");
+            parameters.put("updatedSince", filter.getUpdatedSince());
+        }
+        jpql.append(" order by e.id");
+
+        TypedQuery<Long> query = entityManager.createQuery(jpql.toString(), Long.class).setMaxResults(batchSize);
+        parameters.forEach(query::setParameter);
+        List<Long> ids = query.getResultList();
+        if (ids.isEmpty()) {
+            return new Batch(new ArrayList<>(), 0, after);
+        }
+
+        Map<Long, Object> loaded = new HashMap<>();
+        for (Object entity : loaders.get(type).apply(ids)) {
+            // Detached, so the documents can be dropped without touching the database
+            entityManager.detach(entity);
+            if (!includeDoc) {
+                removeDocuments(entity);
+            }
+            loaded.put(idOf(entity), entity);
+        }
+        List<Object> entities = new ArrayList<>(ids.size());
+        for (Long id : ids) {
+            Object entity = loaded.get(id);
+            if (entity != null) {
+                entities.add(entity);
+            }
+        }
+        return new Batch(entities, ids.size(), ids.get(ids.size() - 1));
+    }
+
+    private long idOf(Object entity) {
+        return (Long) entityManager.getEntityManagerFactory().getPersistenceUnitUtil().getIdentifier(entity);
+    }
+
+    private static void removeDocuments(Object entity) {
+        if (entity instanceof Instance) {
+            ((Instance) entity).setInstanceAsDoc(null);
+            ((Instance) entity).setDocs(null);
+        } else if (entity instanceof Design) {
+            ((Design) entity).setDesignAsDoc(null);
+            ((Design) entity).setDocs(null);
+        } else if (entity instanceof Specification) {
+            ((Specification) entity).setSpecAsDoc(null);
+            ((Specification) entity).setDocs(null);
+        }
+    }
+
+    /**
+     * The entities of one batch, without the ones deleted between reading their ids and loading them.
+     */
+    private static final class Batch {
+
+        private final List<Object> entities;
+
+        private final int fetched;
+
+        private final long lastId;
+
+        Batch(List<Object> entities, int fetched, long lastId) {
+            this.entities = entities;
+            this.fetched = fetched;
+            this.lastId = lastId;
+        }
+    }
+}
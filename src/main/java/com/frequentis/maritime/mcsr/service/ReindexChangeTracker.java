@@ -0,0 +1,171 @@
+/*
+ * MaritimeCloud Service Registry
+ * Copyright (c) 2016 Frequentis AG
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.frequentis.maritime.mcsr.service;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.annotation.PostConstruct;
+import javax.inject.Inject;
+import javax.persistence.EntityManagerFactory;
+
+import org.hibernate.Hibernate;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.event.service.spi.EventListenerRegistry;
+import org.hibernate.event.spi.AbstractCollectionEvent;
+import org.hibernate.event.spi.EventSource;
+import org.hibernate.event.spi.EventType;
+import org.hibernate.event.spi.PostCollectionRecreateEvent;
+import org.hibernate.event.spi.PostCollectionRecreateEventListener;
+import org.hibernate.event.spi.PostCollectionUpdateEvent;
+import org.hibernate.event.spi.PostCollectionUpdateEventListener;
+import org.hibernate.event.spi.PostDeleteEvent;
+import org.hibernate.event.spi.PostDeleteEventListener;
+import org.hibernate.event.spi.PostInsertEvent;
+import org.hibernate.event.spi.PostInsertEventListener;
+import org.hibernate.event.spi.PostUpdateEvent;
+import org.hibernate.event.spi.PostUpdateEventListener;
+import org.hibernate.persister.entity.EntityPersister;
+import org.springframework.stereotype.Component;
+
+/**
+ * Records the ids of entities written while their index is being rebuilt.
+ *
+ * <p>
+ * Writes during a rebuild still go to the index generation being served. The rebuild replays the recorded
+ * ids into the new generation before and after switching the alias, so no write is lost.
+ * </p>
+ *
+ * <p>
+ * The changes are seen when they are flushed, but an id is recorded only once its transaction has committed.
+ * So a replay always reads the committed state, and changes rolled back are not replayed.
+ * </p>
+ */
+@Component
+public class ReindexChangeTracker implements PostInsertEventListener, PostUpdateEventListener, PostDeleteEventListener,
+    PostCollectionUpdateEventListener, PostCollectionRecreateEventListener {
+
+    private final Map<Class<?>, Set<Long>> changes = new ConcurrentHashMap<>();
+
+    @Inject
+    private EntityManagerFactory entityManagerFactory;
+
+    @PostConstruct
+    public void init() {
+        EventListenerRegistry registry = entityManagerFactory.unwrap(SessionFactoryImplementor.class)
+            .getServiceRegistry().getService(EventListenerRegistry.class);
+        registry.appendListeners(EventType.POST_INSERT, this);
+        registry.appendListeners(EventType.POST_UPDATE, this);
+        registry.appendListeners(EventType.POST_DELETE, this);
+        registry.appendListeners(EventType.POST_COLLECTION_UPDATE, this);
+        registry.appendListeners(EventType.POST_COLLECTION_RECREATE, this);
+    }
+
+    /**
+     * Start recording the changes of an entity type.
+     */
+    public void start(Class<?> entityClass) {
+        changes.put(entityClass, ConcurrentHashMap.newKeySet());
+    }
+
+    /**
+     * Stop recording the changes of an entity type.
+     *
+     * @return the ids changed since the last drain
+     */
+    public List<Long> stop(Class<?> entityClass) {
+        Set<Long> ids = changes.remove(entityClass);
+        return ids == null ? new ArrayList<>() : drain(ids);
+    }
+
+    /**
+     * @return the ids changed since the start or the last drain
+     */
+    public List<Long> drain(Class<?> entityClass) {
+        Set<Long> ids = changes.get(entityClass);
+        return ids == null ? new ArrayList<>() : drain(ids);
+    }
+
+    private List<Long> drain(Set<Long> ids) {
+        List<Long> result = new ArrayList<>();
+        for (Long id : ids) {
+            if (ids.remove(id)) {
+                result.add(id);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Record a change once the transaction of the session has committed. The rebuild may start between
+     * the flush and the commit, so the change is always registered and only filtered at commit.
+     */
+    private void record(EventSource session, Class<?> entityClass, Serializable id) {
+        if (!(id instanceof Long)) {
+            return;
+        }
+        session.getActionQueue().registerProcess((success, completedSession) -> {
+            Set<Long> ids = changes.get(entityClass);
+            if (success && ids != null) {
+                ids.add((Long) id);
+            }
+        });
+    }
+
+    private void record(AbstractCollectionEvent event) {
+        Object owner = event.getAffectedOwnerOrNull();
+        if (owner != null) {
+            record(event.getSession(), Hibernate.getClass(owner), event.getAffectedOwnerIdOrNull());
+        }
+    }
+
+    @Override
+    public void onPostInsert(PostInsertEvent event) {
+        record(event.getSession(), event.getPersister().getMappedClass(), event.getId());
+    }
+
+    @Override
+    public void onPostUpdate(PostUpdateEvent event) {
+        record(event.getSession(), event.getPersister().getMappedClass(), event.getId());
+    }
+
+    @Override
+    public void onPostDelete(PostDeleteEvent event) {
+        record(event.getSession(), event.getPersister().getMappedClass(), event.getId());
+    }
+
+    @Override
+    public void onPostUpdateCollection(PostCollectionUpdateEvent event) {
+        record(event);
+    }
+
+    @Override
+    public void onPostRecreateCollection(PostCollectionRecreateEvent event) {
+        record(event);
+    }
+
+    @Override
+    public boolean requiresPostCommitHanding(EntityPersister persister) {
+        return false;
+    }
+}
@@ -0,0 +1,173 @@
+/*
+ * MaritimeCloud Service Registry
+ * Copyright (c) 2016 Frequentis AG
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.frequentis.maritime.mcsr.service;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Progress of a full Elasticsearch reindex, as reported by the /api/elasticsearch/index resource.
+ */
+public class ReindexProgress {
+
+    public enum State {
+        IDLE, RUNNING, COMPLETED, FAILED
+    }
+
+    private volatile State state = State.IDLE;
+
+    private volatile long startedAt;
+
+    private volatile long finishedAt;
+
+    private final List<TypeProgress> types = Collections.synchronizedList(new ArrayList<>());
+
+    public State getState() {
+        return state;
+    }
+
+    public Long getStartedAt() {
+        return startedAt == 0 ? null : startedAt;
+    }
+
+    public Long getFinishedAt() {
+        return finishedAt == 0 ? null : finishedAt;
+    }
+
+    public List<TypeProgress> getTypes() {
+        synchronized (types) {
+            return new ArrayList<>(types);
+        }
+    }
+
+    /**
+     * @return the number of documents indexed over all types
+     */
+    public long getIndexed() {
+        long indexed = 0;
+        for (TypeProgress type : getTypes()) {
+            indexed += type.getIndexed();
+        }
+        return indexed;
+    }
+
+    /**
+     * @return documents indexed per second since the start
+     */
+    public long getDocumentsPerSecond() {
+        return perSecond(getIndexed(), startedAt, finishedAt);
+    }
+
+    boolean isRunning() {
+        return state == State.RUNNING;
+    }
+
+    void start() {
+        startedAt = System.currentTimeMillis();
+        state = State.RUNNING;
+    }
+
+    void finish(boolean failed) {
+        finishedAt = System.currentTimeMillis();
+        state = failed ? State.FAILED : State.COMPLETED;
+    }
+
+    TypeProgress addType(String name) {
+        TypeProgress type = new TypeProgress(name);
+        types.add(type);
+        return type;
+    }
+
+    private static long perSecond(long count, long from, long to) {
+        if (from == 0) {
+            return 0;
+        }
+        long millis = (to == 0 ? System.currentTimeMillis() : to) - from;
+        return millis <= 0 ? count : count * 1000 / millis;
+    }
+
+    /**
+     * Progress of a single entity type.
+     */
+    public static class TypeProgress {
+
+        private final String name;
+
+        private volatile State state = State.IDLE;
+
+        private volatile long total;
+
+        private volatile long startedAt;
+
+        private volatile long finishedAt;
+
+        private final AtomicLong indexed = new AtomicLong();
+
+        private final AtomicLong failed = new AtomicLong();
+
+        TypeProgress(String name) {
+            this.name = name;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public State getState() {
+            return state;
+        }
+
+        public long getTotal() {
+            return total;
+        }
+
+        public long getIndexed() {
+            return indexed.get();
+        }
+
+        public long getFailed() {
+            return failed.get();
+        }
+
+        public long getDocumentsPerSecond() {
+            return perSecond(indexed.get(), startedAt, finishedAt);
+        }
+
+        void start(long total) {
+            this.total = total;
+            this.startedAt = System.currentTimeMillis();
+            this.state = State.RUNNING;
+        }
+
+        void finish(boolean failed) {
+            this.finishedAt = System.currentTimeMillis();
+            this.state = failed ? State.FAILED : State.COMPLETED;
+        }
+
+        void indexed(long count) {
+            indexed.addAndGet(count);
+        }
+
+        void failed(long count) {
+            failed.addAndGet(count);
+        }
+    }
+}
@@ -0,0 +1,103 @@
+/*
+ * MaritimeCloud Service Registry
+ * Copyright (c) 2016 Frequentis AG
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.frequentis.maritime.mcsr.service;
+
+import java.io.IOException;
+import java.util.Base64;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Position and size of a page of search results read with search_after.
+ *
+ * <p>
+ * The position is passed between requests as an opaque token encoding the sort values of the last returned
+ * entity: its score, and its id as tiebreaker.
+ * </p>
+ */
+public final class SearchCursor {
+
+    private static final ObjectMapper TOKEN_MAPPER = new ObjectMapper();
+
+    private static final int MAX_SIZE = 1000;
+
+    private final Object[] after;
+
+    private final int size;
+
+    private final boolean countTotal;
+
+    SearchCursor(Object[] after, int size, boolean countTotal) {
+        this.after = after;
+        this.size = size;
+        this.countTotal = countTotal;
+    }
+
+    /**
+     * @param token the cursor token of the previous page, null or empty for the first page
+     * @param size the number of entities per page
+     * @param countTotal report the total number of matching entities
+     * @return the cursor
+     * @throws IllegalArgumentException if the token is invalid
+     */
+    public static SearchCursor of(String token, int size, boolean countTotal) {
+        if (size < 1 || size > MAX_SIZE) {
+            throw new IllegalArgumentException("Page size must be between 1 and " + MAX_SIZE);
+        }
+        if (token == null || token.isEmpty()) {
+            return new SearchCursor(null, size, countTotal);
+        }
+        try {
+            Object[] after = TOKEN_MAPPER.readValue(Base64.getUrlDecoder().decode(token), Object[].class);
+            if (after.length != 2) {
+                throw new IllegalArgumentException("Invalid cursor: " + token);
+            }
+            return new SearchCursor(after, size, countTotal);
+        } catch (IOException | IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid cursor: " + token, e);
+        }
+    }
+
+    /**
+     * @param sortValues the sort values of the last entity of a page
+     * @return the token to read the page following it
+     */
+    static String token(Object[] sortValues) {
+        try {
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(TOKEN_MAPPER.writeValueAsBytes(sortValues));
+        } catch (IOException e) {
+            throw new IllegalStateException("Could not encode cursor", e);
+        }
+    }
+
+    /**
+     * @return the sort values to search after, null for the first page
+     */
+    Object[] getAfter() {
+        return after;
+    }
+
+    public int getSize() {
+        return size;
+    }
+
+    public boolean isCountTotal() {
+        return countTotal;
+    }
+}
@@ -0,0 +1,54 @@
+/*
+ * MaritimeCloud Service Registry
+ * Copyright (c) 2016 Frequentis AG
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.frequentis.maritime.mcsr.service;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Number of entities matching a search, in total and per value of some fields.
+ */
+public class SearchFacets {
+
+    private final long total;
+
+    private final Map<String, Map<String, Long>> facets = new LinkedHashMap<>();
+
+    public SearchFacets(long total) {
+        this.total = total;
+    }
+
+    /**
+     * @return the number of entities matching the search
+     */
+    public long getTotal() {
+        return total;
+    }
+
+    /**
+     * @return the number of matching entities per value, by field, the most frequent values first
+     */
+    public Map<String, Map<String, Long>> getFacets() {
+        return facets;
+    }
+
+    void put(String field, Map<String, Long> counts) {
+        facets.put(field, counts);
+    }
+}
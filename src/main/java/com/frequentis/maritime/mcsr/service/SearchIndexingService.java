@@ -0,0 +1,382 @@
+/*
+ * MaritimeCloud Service Registry
+ * Copyright (c) 2016 Frequentis AG
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.frequentis.maritime.mcsr.service;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.inject.Inject;
+
+import org.elasticsearch.action.bulk.BulkItemResponse;
+import org.elasticsearch.action.bulk.BulkRequestBuilder;
+import org.elasticsearch.action.bulk.BulkResponse;
+import org.elasticsearch.action.delete.DeleteRequestBuilder;
+import org.elasticsearch.action.index.IndexRequestBuilder;
+import org.elasticsearch.action.support.WriteRequest;
+import org.elasticsearch.client.Client;
+import org.elasticsearch.common.xcontent.XContentType;
+import org.elasticsearch.index.VersionType;
+import org.elasticsearch.rest.RestStatus;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Histogram;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+import com.frequentis.maritime.mcsr.config.JHipsterProperties;
+
+import org.springframework.data.elasticsearch.core.ElasticsearchTemplate;
+import org.springframework.data.elasticsearch.core.EntityMapper;
+import org.springframework.data.elasticsearch.core.mapping.ElasticsearchPersistentEntity;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+
+/**
+ * Queue for writing documents to the search indices in bulk.
+ *
+ * <p>
+ * Index and delete requests are collected for a short window ({@code jhipster.indexing.flushInterval}) or until
+ * {@code jhipster.indexing.batchSize} requests are pending, and then sent in one bulk request. A document submitted
+ * again while it is still pending replaces the pending request, so bursts of updates of the same entity are sent once.
+ * </p>
+ *
+ * <p>
+ * The returned futures complete when the request has been executed by Elasticsearch. Callers that need to read their
+ * own writes through a search submit with {@link Visibility#WAIT_FOR_REFRESH}, which sends the batch right away and
+ * completes only once the changes are visible to searches. Every batch sent invalidates the cached search results of
+ * the indices it wrote to, see {@link SearchResultCache}.
+ * </p>
+ */
+@Service
+public class SearchIndexingService {
+
+    private final Logger log = LoggerFactory.getLogger(SearchIndexingService.class);
+
+    private static final String METRIC_PREFIX = "search.indexing";
+
+    /**
+     * When a submitted change has to be visible.
+     */
+    public enum Visibility {
+        /** The change becomes searchable with the next regular index refresh. */
+        NONE,
+        /** The future completes only once the change is searchable. */
+        WAIT_FOR_REFRESH
+    }
+
+    @Inject
+    private Client elasticsearchClient;
+
+    @Inject
+    private ElasticsearchTemplate elasticsearchTemplate;
+
+    @Inject
+    private EntityMapper elasticsearchEntityMapper;
+
+    @Inject
+    private JHipsterProperties jHipsterProperties;
+
+    @Inject
+    private MetricRegistry metricRegistry;
+
+    @Inject
+    private SearchResultCache searchResultCache;
+
+    private final Map<String, PendingRequest> pending = new LinkedHashMap<>();
+
+    private boolean flushRequested;
+
+    private ScheduledExecutorService executor;
+
+    private Meter deduplicated;
+
+    private Meter failed;
+
+    private Histogram flushSize;
+
+    private Timer flushLatency;
+
+    @PostConstruct
+    public void init() {
+        long flushInterval = jHipsterProperties.getIndexing().getFlushInterval();
+        executor = Executors.newSingleThreadScheduledExecutor(new CustomizableThreadFactory("search-indexing-"));
+        executor.scheduleWithFixedDelay(this::flushPending, flushInterval, flushInterval, TimeUnit.MILLISECONDS);
+
+        metricRegistry.register(MetricRegistry.name(METRIC_PREFIX, "queue"), (Gauge<Integer>) () -> {
+            synchronized (pending) {
+                return pending.size();
+            }
+        });
+        deduplicated = metricRegistry.meter(MetricRegistry.name(METRIC_PREFIX, "deduplicated"));
+        failed = metricRegistry.meter(MetricRegistry.name(METRIC_PREFIX, "failed"));
+        flushSize = metricRegistry.histogram(MetricRegistry.name(METRIC_PREFIX, "flush", "size"));
+        flushLatency = metricRegistry.timer(MetricRegistry.name(METRIC_PREFIX, "flush", "latency"));
+    }
+
+    @PreDestroy
+    public void destroy() {
+        executor.execute(this::flushPending);
+        executor.shutdown();
+        try {
+            executor.awaitTermination(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Index an entity with the next bulk request.
+     *
+     * @param entity the entity to index, serialized right away
+     * @return a future completing once the entity has been indexed
+     */
+    public CompletableFuture<Void> index(Object entity) {
+        return index(entity, null, Visibility.NONE);
+    }
+
+    /**
+     * Index an entity with the next bulk request.
+     *
+     * @param entity the entity to index, serialized right away
+     * @param visibility when the future completes
+     * @return a future completing once the entity has been indexed
+     */
+    public CompletableFuture<Void> index(Object entity, Visibility visibility) {
+        return index(entity, null, visibility);
+    }
+
+    /**
+     * Index an entity with the next bulk request.
+     *
+     * @param entity the entity to index, serialized right away
+     * @param version external version of the document, or null for internal versioning. A version conflict means the
+     *                index already has this or a newer version and is not reported as failure.
+     * @param visibility when the future completes
+     * @return a future completing once the entity has been indexed
+     */
+    public CompletableFuture<Void> index(Object entity, Long version, Visibility visibility) {
+        ElasticsearchPersistentEntity<?> persistentEntity = elasticsearchTemplate.getPersistentEntityFor(entity.getClass());
+        Object id = persistentEntity.getIdentifierAccessor(entity).getIdentifier();
+        String source;
+        try {
+            source = elasticsearchEntityMapper.mapToString(entity);
+        } catch (IOException e) {
+            CompletableFuture<Void> result = new CompletableFuture<>();
+            result.completeExceptionally(e);
+            return result;
+        }
+        return submit(new PendingRequest(persistentEntity, String.valueOf(id), source, version, visibility));
+    }
+
+    /**
+     * Delete a document with the next bulk request.
+     *
+     * @param entityClass the class of the entity
+     * @param id the id of the entity
+     * @return a future completing once the document has been deleted
+     */
+    public CompletableFuture<Void> delete(Class<?> entityClass, Object id) {
+        return delete(entityClass, id, null, Visibility.NONE);
+    }
+
+    /**
+     * Delete a document with the next bulk request.
+     *
+     * @param entityClass the class of the entity
+     * @param id the id of the entity
+     * @param version external version of the deletion, or null for internal versioning
+     * @param visibility when the future completes
+     * @return a future completing once the document has been deleted
+     */
+    public CompletableFuture<Void> delete(Class<?> entityClass, Object id, Long version, Visibility visibility) {
+        ElasticsearchPersistentEntity<?> persistentEntity = elasticsearchTemplate.getPersistentEntityFor(entityClass);
+        return submit(new PendingRequest(persistentEntity, String.valueOf(id), null, version, visibility));
+    }
+
+    /**
+     * Send all pending requests now and wait until they have been executed.
+     */
+    public void flush() {
+        try {
+            executor.submit(this::flushPending).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            log.error("Could not flush the search indexing queue", e.getCause());
+        }
+    }
+
+    private CompletableFuture<Void> submit(PendingRequest request) {
+        synchronized (pending) {
+            PendingRequest previous = pending.remove(request.key());
+            if (previous != null) {
+                request.replace(previous);
+                deduplicated.mark();
+            }
+            pending.put(request.key(), request);
+            boolean flushNow = pending.size() >= jHipsterProperties.getIndexing().getBatchSize()
+                || request.visibility == Visibility.WAIT_FOR_REFRESH;
+            if (flushNow && !flushRequested) {
+                flushRequested = true;
+                executor.execute(this::flushPending);
+            }
+        }
+        return request.future;
+    }
+
+    /**
+     * Send the pending requests in batches until the queue is empty. Only runs on the executor thread, so the
+     * requests for the same document are sent in submission order.
+     */
+    private void flushPending() {
+        int batchSize = jHipsterProperties.getIndexing().getBatchSize();
+        while (true) {
+            List<PendingRequest> batch;
+            synchronized (pending) {
+                flushRequested = false;
+                if (pending.isEmpty()) {
+                    return;
+                }
+                batch = new ArrayList<>(Math.min(pending.size(), batchSize));
+                Iterator<PendingRequest> it = pending.values().iterator();
+                while (it.hasNext() && batch.size() < batchSize) {
+                    batch.add(it.next());
+                    it.remove();
+                }
+            }
+            try {
+                send(batch);
+            } finally {
+                batch.stream().map(request -> request.index).distinct().forEach(searchResultCache::invalidate);
+            }
+        }
+    }
+
+    private void send(List<PendingRequest> batch) {
+        BulkRequestBuilder bulk = elasticsearchClient.prepareBulk();
+        boolean waitForRefresh = false;
+        for (PendingRequest request : batch) {
+            request.addTo(bulk);
+            waitForRefresh |= request.visibility == Visibility.WAIT_FOR_REFRESH;
+        }
+        if (waitForRefresh) {
+            bulk.setRefreshPolicy(WriteRequest.RefreshPolicy.WAIT_UNTIL);
+        }
+        flushSize.update(batch.size());
+
+        BulkResponse response;
+        try (Timer.Context ignored = flushLatency.time()) {
+            response = bulk.get();
+        } catch (RuntimeException e) {
+            log.warn("Could not send {} documents to Elasticsearch: {}", batch.size(), e.getMessage());
+            failed.mark(batch.size());
+            batch.forEach(request -> request.future.completeExceptionally(e));
+            return;
+        }
+        for (BulkItemResponse item : response.getItems()) {
+            PendingRequest request = batch.get(item.getItemId());
+            if (item.isFailed() && !(request.version != null && item.getFailure().getStatus() == RestStatus.CONFLICT)) {
+                log.warn("Could not index {}: {}", request.key(), item.getFailureMessage());
+                failed.mark();
+                request.future.completeExceptionally(item.getFailure().getCause());
+            } else {
+                request.future.complete(null);
+            }
+        }
+    }
+
+    /**
+     * An index (with source) or delete (without) request waiting for the next bulk request.
+     */
+    private class PendingRequest {
+
+        private final String index;
+
+        private final String type;
+
+        private final String id;
+
+        private final String source;
+
+        private final Long version;
+
+        private Visibility visibility;
+
+        private final CompletableFuture<Void> future = new CompletableFuture<>();
+
+        PendingRequest(ElasticsearchPersistentEntity<?> persistentEntity, String id, String source, Long version,
+                       Visibility visibility) {
+            this.index = persistentEntity.getIndexName();
+            this.type = persistentEntity.getIndexType();
+            this.id = id;
+            this.source = source;
+            this.version = version;
+            this.visibility = visibility;
+        }
+
+        String key() {
+            return index + "/" + type + "/" + id;
+        }
+
+        /**
+         * Take the place of a pending request for the same document, which then completes together with this one.
+         */
+        void replace(PendingRequest previous) {
+            if (previous.visibility == Visibility.WAIT_FOR_REFRESH) {
+                visibility = Visibility.WAIT_FOR_REFRESH;
+            }
+            future.whenComplete((result, e) -> {
+                if (e != null) {
+                    previous.future.completeExceptionally(e);
+                } else {
+                    previous.future.complete(result);
+                }
+            });
+        }
+
+        void addTo(BulkRequestBuilder bulk) {
+            if (source != null) {
+                IndexRequestBuilder builder = elasticsearchClient.prepareIndex(index, type, id).setSource(source, XContentType.JSON);
+                if (version != null) {
+                    builder.setVersion(version).setVersionType(VersionType.EXTERNAL_GTE);
+                }
+                bulk.add(builder);
+            } else {
+                DeleteRequestBuilder builder = elasticsearchClient.prepareDelete(index, type, id);
+                if (version != null) {
+                    builder.setVersion(version).setVersionType(VersionType.EXTERNAL_GTE);
+                }
+                bulk.add(builder);
+            }
+        }
+    }
+}
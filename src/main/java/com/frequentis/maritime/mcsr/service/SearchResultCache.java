@@ -0,0 +1,260 @@
+/*
+ * MaritimeCloud Service Registry
+ * Copyright (c) 2016 Frequentis AG
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.frequentis.maritime.mcsr.service;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+import javax.annotation.PostConstruct;
+import javax.inject.Inject;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.elasticsearch.core.ElasticsearchTemplate;
+import org.springframework.data.elasticsearch.core.EntityMapper;
+import org.springframework.stereotype.Service;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.frequentis.maritime.mcsr.config.JHipsterProperties;
+
+/**
+ * Bounded cache of search results, invalidated by writes to the searched index.
+ *
+ * <p>
+ * Every index has a generation, which is bumped whenever the {@link SearchIndexingService} has written to it or its
+ * alias was switched to a new index. Entries remember the generation they were computed at and are discarded once it
+ * changed, so a write only drops the results of its own index. Results computed while a write may not be visible yet,
+ * within {@code jhipster.searchCache.refreshWindow} after it, are not cached at all.
+ * </p>
+ *
+ * <p>
+ * The cache holds at most {@code jhipster.searchCache.maxEntries} result pages with a total size of
+ * {@code jhipster.searchCache.maxWeight} bytes, least recently used first out. Writes on other nodes are not seen,
+ * entries therefore expire after {@code jhipster.searchCache.timeToLive} milliseconds. A maxEntries of 0 disables
+ * the cache.
+ * </p>
+ */
+@Service
+public class SearchResultCache {
+
+    private final Logger log = LoggerFactory.getLogger(SearchResultCache.class);
+
+    private static final String METRIC_PREFIX = "search.cache";
+
+    @Inject
+    private ElasticsearchTemplate elasticsearchTemplate;
+
+    @Inject
+    private EntityMapper elasticsearchEntityMapper;
+
+    @Inject
+    private JHipsterProperties jHipsterProperties;
+
+    @Inject
+    private MetricRegistry metricRegistry;
+
+    private final Map<String, IndexGeneration> generations = new ConcurrentHashMap<>();
+
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(256, 0.75f, true);
+
+    private long weight;
+
+    private Meter hits;
+
+    private Meter misses;
+
+    private Meter evictions;
+
+    @PostConstruct
+    public void init() {
+        hits = metricRegistry.meter(MetricRegistry.name(METRIC_PREFIX, "hit"));
+        misses = metricRegistry.meter(MetricRegistry.name(METRIC_PREFIX, "miss"));
+        evictions = metricRegistry.meter(MetricRegistry.name(METRIC_PREFIX, "eviction"));
+        metricRegistry.register(MetricRegistry.name(METRIC_PREFIX, "size"), (Gauge<Integer>) () -> {
+            synchronized (entries) {
+                return entries.size();
+            }
+        });
+        metricRegistry.register(MetricRegistry.name(METRIC_PREFIX, "weight"), (Gauge<Long>) () -> {
+            synchronized (entries) {
+                return weight;
+            }
+        });
+    }
+
+    /**
+     * Get a page of search results from the cache, or search and cache it.
+     *
+     * <p>
+     * The entities are kept as their search index JSON, so every caller gets its own copies to modify.
+     * </p>
+     *
+     * @param entityClass the searched entity
+     * @param key the normalised query, including everything the result depends on besides the page (filters, flags)
+     * @param pageable the page and sort
+     * @param search runs the search on a cache miss
+     * @return the page of search results
+     */
+    public <T> Page<T> get(Class<T> entityClass, String key, Pageable pageable, Supplier<Page<T>> search) {
+        JHipsterProperties.SearchCache properties = jHipsterProperties.getSearchCache();
+        if (properties.getMaxEntries() <= 0 || pageable.isUnpaged()) {
+            return search.get();
+        }
+        IndexGeneration generation = generation(elasticsearchTemplate.getPersistentEntityFor(entityClass).getIndexName());
+        String entryKey = entityClass.getSimpleName() + ":" + key + ":" + pageable.getPageNumber() + ":"
+            + pageable.getPageSize() + ":" + pageable.getSort();
+        long now = System.currentTimeMillis();
+        long current = generation.generation;
+        Entry entry;
+        synchronized (entries) {
+            entry = entries.get(entryKey);
+            if (entry != null && (entry.generation != current || entry.expiresAt <= now)) {
+                remove(entryKey);
+                entry = null;
+            }
+        }
+        if (entry != null) {
+            try {
+                List<T> content = new ArrayList<>(entry.sources.size());
+                for (String source : entry.sources) {
+                    content.add(elasticsearchEntityMapper.mapToObject(source, entityClass));
+                }
+                hits.mark();
+                return new PageImpl<>(content, pageable, entry.total);
+            } catch (IOException e) {
+                log.warn("Could not read cached search result {}: {}", entryKey, e.getMessage());
+            }
+        }
+
+        misses.mark();
+        Page<T> page = search.get();
+        if (page == null || now < generation.quietUntil) {
+            return page;
+        }
+        List<String> sources = new ArrayList<>(page.getNumberOfElements());
+        long entryWeight = entryKey.length() * 2L;
+        try {
+            for (T entity : page.getContent()) {
+                String source = elasticsearchEntityMapper.mapToString(entity);
+                sources.add(source);
+                entryWeight += source.length() * 2L;
+            }
+        } catch (IOException e) {
+            log.warn("Could not cache search result {}: {}", entryKey, e.getMessage());
+            return page;
+        }
+        if (entryWeight > properties.getMaxWeight() / 4) {
+            log.debug("Search result {} too large to cache: {} bytes", entryKey, entryWeight);
+            return page;
+        }
+        synchronized (entries) {
+            // a write that happened during the search may not be contained in the result
+            if (generation.generation == current) {
+                remove(entryKey);
+                entries.put(entryKey, new Entry(sources, page.getTotalElements(), current,
+                    now + properties.getTimeToLive(), entryWeight));
+                weight += entryWeight;
+                evict(properties);
+            }
+        }
+        return page;
+    }
+
+    /**
+     * Drop the cached results of an index, called after it has been written to.
+     *
+     * @param indexName the name (alias) of the index
+     */
+    public void invalidate(String indexName) {
+        IndexGeneration generation = generation(indexName);
+        synchronized (entries) {
+            generation.generation++;
+            generation.quietUntil = System.currentTimeMillis() + jHipsterProperties.getSearchCache().getRefreshWindow();
+        }
+    }
+
+    /**
+     * Drop all cached results.
+     */
+    public void clear() {
+        synchronized (entries) {
+            entries.clear();
+            weight = 0;
+        }
+    }
+
+    private IndexGeneration generation(String indexName) {
+        return generations.computeIfAbsent(indexName, name -> new IndexGeneration());
+    }
+
+    private void remove(String entryKey) {
+        Entry removed = entries.remove(entryKey);
+        if (removed != null) {
+            weight -= removed.weight;
+        }
+    }
+
+    private void evict(JHipsterProperties.SearchCache properties) {
+        Iterator<Entry> it = entries.values().iterator();
+        while (it.hasNext() && (entries.size() > properties.getMaxEntries() || weight > properties.getMaxWeight())) {
+            weight -= it.next().weight;
+            it.remove();
+            evictions.mark();
+        }
+    }
+
+    private static final class IndexGeneration {
+
+        private volatile long generation;
+
+        private volatile long quietUntil;
+    }
+
+    private static final class Entry {
+
+        private final List<String> sources;
+
+        private final long total;
+
+        private final long generation;
+
+        private final long expiresAt;
+
+        private final long weight;
+
+        Entry(List<String> sources, long total, long generation, long expiresAt, long weight) {
+            this.sources = sources;
+            this.total = total;
+            this.generation = generation;
+            this.expiresAt = expiresAt;
+            this.weight = weight;
+        }
+    }
+}
@@ -21,7 +21,6 @@ package com.frequentis.maritime.mcsr.service;
 import com.frequentis.maritime.mcsr.domain.Specification;
 import com.frequentis.maritime.mcsr.repository.SpecificationRepository;
 import com.frequentis.maritime.mcsr.repository.search.SpecificationSearchRepository;
-import org.apache.maven.artifact.versioning.DefaultArtifactVersion;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.data.domain.Page;
@@ -48,6 +47,15 @@ public class SpecificationService {
     @Inject
     private SpecificationSearchRepository specificationSearchRepository;
 
+    @Inject
+    private IndexOutboxService indexOutboxService;
+
+    @Inject
+    private LatestVersionService latestVersionService;
+
+    @Inject
+    private CursorSearchService cursorSearchService;
+
     /**
      * Save a specification.
      *
@@ -57,7 +65,8 @@ public class SpecificationService {
     public Specification save(Specification specification) {
         log.debug("Request to save Specification : {}", specification);
         Specification result = specificationRepository.save(specification);
-        specificationSearchRepository.save(result);
+        indexOutboxService.index(Specification.class, result.getId());
+        latestVersionService.refresh(Specification.class, result.getSpecificationId());
         return result;
     }
 
@@ -94,8 +103,10 @@ public class SpecificationService {
      */
     public void delete(Long id) {
         log.debug("Request to delete Specification : {}", id);
+        String domainId = specificationRepository.findDomainIdById(id);
         specificationRepository.deleteById(id);
-        specificationSearchRepository.deleteById(id);
+        indexOutboxService.delete(Specification.class, id);
+        latestVersionService.refresh(Specification.class, domainId);
     }
 
     /**
@@ -123,6 +134,18 @@ public class SpecificationService {
         return specificationSearchRepository.search(queryStringQuery(query), pageable);
     }
 
+    /**
+     * Search for the specification corresponding to the query, page by page with a cursor.
+     *
+     *  @param query the query of the search
+     *  @param cursor the page to return
+     *  @return the page of entities
+     */
+    public CursorPage<Specification> search(String query, SearchCursor cursor) {
+        log.debug("Request to search for a cursor page of Specifications for query {}", query);
+        return cursorSearchService.search(Specification.class, queryStringQuery(query), null, cursor);
+    }
+
     /**
      *  Get one specification by domain specific id (for example, maritime id) and version.
      *
@@ -155,24 +178,8 @@ public class SpecificationService {
     @Transactional(readOnly = true)
     public Specification findLatestVersionByDomainId(String domainId) {
         log.debug("Request to get Specification by domain id {}", domainId);
-        Specification specification = null;
-        DefaultArtifactVersion latestVersion = new DefaultArtifactVersion("0.0");
-        try {
-            Iterable<Specification> specifications = specificationRepository.findByDomainId(domainId);
-            if (specifications.iterator().hasNext()) {
-                Specification i = specifications.iterator().next();
-                //Compare version numbers, save the instance if it's a newer version
-                DefaultArtifactVersion iv = new DefaultArtifactVersion(i.getVersion());
-                if (iv.compareTo(latestVersion) > 0) {
-                    specification = i;
-                    latestVersion = iv;
-                }
-            }
-        } catch (Exception e) {
-            log.debug("Could not find specification for domain id {}", domainId);
-            e.printStackTrace();
-        }
-        return specification;
+        return latestVersionService.findLatest(Specification.class, domainId, false,
+            specificationRepository::findOneWithEagerRelationships, Specification::getSpecificationId);
     }
 
     /**
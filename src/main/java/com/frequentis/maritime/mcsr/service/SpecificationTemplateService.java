@@ -47,6 +47,9 @@ public class SpecificationTemplateService {
     @Inject
     private SpecificationTemplateSearchRepository specificationTemplateSearchRepository;
 
+    @Inject
+    private SearchIndexingService searchIndexingService;
+
     /**
      * Save a specificationTemplate.
      *
@@ -56,7 +59,7 @@ public class SpecificationTemplateService {
     public SpecificationTemplate save(SpecificationTemplate specificationTemplate) {
         log.debug("Request to save SpecificationTemplate : {}", specificationTemplate);
         SpecificationTemplate result = specificationTemplateRepository.save(specificationTemplate);
-        specificationTemplateSearchRepository.save(result);
+        searchIndexingService.index(result);
         return result;
     }
 
@@ -96,7 +99,7 @@ public class SpecificationTemplateService {
     public void delete(Long id) {
         log.debug("Request to delete SpecificationTemplate : {}", id);
         specificationTemplateRepository.deleteById(id);
-        specificationTemplateSearchRepository.deleteById(id);
+        searchIndexingService.delete(SpecificationTemplate.class, id);
     }
 
     /**
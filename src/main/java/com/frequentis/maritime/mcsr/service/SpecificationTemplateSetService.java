@@ -49,6 +49,9 @@ public class SpecificationTemplateSetService {
     @Inject
     private SpecificationTemplateSetSearchRepository specificationTemplateSetSearchRepository;
 
+    @Inject
+    private SearchIndexingService searchIndexingService;
+
     /**
      * Save a specificationTemplateSet.
      *
@@ -58,7 +61,7 @@ public class SpecificationTemplateSetService {
     public SpecificationTemplateSet save(SpecificationTemplateSet specificationTemplateSet) {
         log.debug("Request to save SpecificationTemplateSet : {}", specificationTemplateSet);
         SpecificationTemplateSet result = specificationTemplateSetRepository.save(specificationTemplateSet);
-        specificationTemplateSetSearchRepository.save(result);
+        searchIndexingService.index(result);
         return result;
     }
 
@@ -96,7 +99,7 @@ public class SpecificationTemplateSetService {
     public void delete(Long id) {
         log.debug("Request to delete SpecificationTemplateSet : {}", id);
         specificationTemplateSetRepository.deleteById(id);
-        specificationTemplateSetSearchRepository.deleteById(id);
+        searchIndexingService.delete(SpecificationTemplateSet.class, id);
     }
 
     /**
@@ -0,0 +1,89 @@
+/*
+ * MaritimeCloud Service Registry
+ * Copyright (c) 2016 Frequentis AG
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.frequentis.maritime.mcsr.service;
+
+import java.io.IOException;
+import java.util.List;
+
+import javax.annotation.PostConstruct;
+import javax.inject.Inject;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry;
+import com.frequentis.maritime.mcsr.web.rest.util.UnLoCodeGazetteer;
+
+import org.springframework.stereotype.Service;
+
+/**
+ * Service owning the UN/LOCODE gazetteer.
+ *
+ * <p>The gazetteer is loaded once on startup so that no request pays the load cost, and can be reloaded at runtime.</p>
+ */
+@Service
+public class UnLoCodeService {
+
+    private final Logger log = LoggerFactory.getLogger(UnLoCodeService.class);
+
+    private static final String METRIC_PREFIX = "unlocode.gazetteer";
+
+    @Inject
+    private MetricRegistry metricRegistry;
+
+    @PostConstruct
+    public void init() {
+        metricRegistry.register(MetricRegistry.name(METRIC_PREFIX, "size"),
+            (Gauge<Integer>) () -> UnLoCodeGazetteer.getCurrent().size());
+        metricRegistry.register(MetricRegistry.name(METRIC_PREFIX, "memory"),
+            (Gauge<Long>) () -> UnLoCodeGazetteer.getCurrent().getEstimatedMemoryBytes());
+        metricRegistry.register(MetricRegistry.name(METRIC_PREFIX, "lookup"), UnLoCodeGazetteer.getLookupTimer());
+        long start = System.currentTimeMillis();
+        UnLoCodeGazetteer gazetteer = UnLoCodeGazetteer.loadDefault();
+        log.info("Loaded {} UnLoCodes in {} ms", gazetteer.size(), System.currentTimeMillis() - start);
+    }
+
+    /**
+     * Reload the gazetteer from the classpath. Lookups running meanwhile keep using the previous gazetteer,
+     * and so do later ones if it cannot be read.
+     *
+     * @return the number of UN/LOCODEs loaded
+     * @throws IOException if the gazetteer could not be read
+     */
+    public int reload() throws IOException {
+        long start = System.currentTimeMillis();
+        UnLoCodeGazetteer gazetteer = UnLoCodeGazetteer.reloadDefault();
+        log.info("Loaded {} UnLoCodes in {} ms", gazetteer.size(), System.currentTimeMillis() - start);
+        return gazetteer.size();
+    }
+
+    /**
+     * Find the UN/LOCODEs near a point.
+     *
+     * @param latitude latitude of the point
+     * @param longitude longitude of the point
+     * @param radiusKm search radius in kilometres
+     * @param limit maximum number of results
+     * @return the locations, nearest first
+     */
+    public List<UnLoCodeGazetteer.Location> findNear(double latitude, double longitude, double radiusKm, int limit) {
+        return UnLoCodeGazetteer.getCurrent().findNear(latitude, longitude, radiusKm, limit);
+    }
+}
@@ -22,7 +22,6 @@ import com.frequentis.maritime.mcsr.domain.User;
 import com.frequentis.maritime.mcsr.repository.AuthorityRepository;
 import com.frequentis.maritime.mcsr.repository.PersistentTokenRepository;
 import com.frequentis.maritime.mcsr.repository.UserRepository;
-import com.frequentis.maritime.mcsr.repository.search.UserSearchRepository;
 import com.frequentis.maritime.mcsr.security.AuthoritiesConstants;
 import com.frequentis.maritime.mcsr.security.SecurityUtils;
 import com.frequentis.maritime.mcsr.service.util.RandomUtil;
@@ -56,7 +55,7 @@ public class UserService {
     private UserRepository userRepository;
 
     @Inject
-    private UserSearchRepository userSearchRepository;
+    private SearchIndexingService searchIndexingService;
 
     @Inject
     private PersistentTokenRepository persistentTokenRepository;
@@ -72,7 +71,7 @@ public class UserService {
                 user.setActivated(true);
                 user.setActivationKey(null);
                 userRepository.save(user);
-                userSearchRepository.save(user);
+                searchIndexingService.index(user);
                 log.debug("Activated user: {}", user);
                 return user;
             });
@@ -127,7 +126,7 @@ public class UserService {
         authorities.add(authority);
         newUser.setAuthorities(authorities);
         userRepository.save(newUser);
-        userSearchRepository.save(newUser);
+        searchIndexingService.index(newUser);
         log.debug("Created Information for User: {}", newUser);
         return newUser;
     }
@@ -156,7 +155,7 @@ public class UserService {
         user.setResetDate(ZonedDateTime.now());
         user.setActivated(true);
         userRepository.save(user);
-        userSearchRepository.save(user);
+        searchIndexingService.index(user);
         log.debug("Created Information for User: {}", user);
         return user;
     }
@@ -168,7 +167,7 @@ public class UserService {
             u.setEmail(email);
             u.setLangKey(langKey);
             userRepository.save(u);
-            userSearchRepository.save(u);
+            searchIndexingService.index(u);
             log.debug("Changed Information for User: {}", u);
         });
     }
@@ -176,7 +175,7 @@ public class UserService {
     public void deleteUserInformation(String login) {
         userRepository.findFirstByLogin(login).ifPresent(u -> {
             userRepository.delete(u);
-            userSearchRepository.delete(u);
+            searchIndexingService.delete(User.class, u.getId());
             log.debug("Deleted User: {}", u);
         });
     }
@@ -243,7 +242,7 @@ public class UserService {
         for (User user : users) {
             log.debug("Deleting not activated user {}", user.getLogin());
             userRepository.delete(user);
-            userSearchRepository.delete(user);
+            searchIndexingService.delete(User.class, user.getId());
         }
     }
 }
@@ -0,0 +1,87 @@
+/*
+ * MaritimeCloud Service Registry
+ * Copyright (c) 2016 Frequentis AG
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.frequentis.maritime.mcsr.service;
+
+import java.util.Objects;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+/**
+ * Reference to one version of an entity by its domain id, as held in a manifest of services.
+ */
+public final class VersionReference {
+
+    /**
+     * The version to use for the latest version.
+     */
+    public static final String LATEST = "latest";
+
+    private final String id;
+
+    private final String version;
+
+    @JsonCreator
+    public VersionReference(@JsonProperty("id") String id, @JsonProperty("version") String version) {
+        this.id = id;
+        this.version = version;
+    }
+
+    /**
+     * @return the domain id
+     */
+    public String getId() {
+        return id;
+    }
+
+    /**
+     * @return the version, or "latest"
+     */
+    public String getVersion() {
+        return version;
+    }
+
+    @JsonIgnore
+    public boolean isLatest() {
+        return LATEST.equalsIgnoreCase(version);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+        VersionReference that = (VersionReference) o;
+        return Objects.equals(id, that.id) && Objects.equals(version, that.version);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(id, version);
+    }
+
+    @Override
+    public String toString() {
+        return id + ":" + version;
+    }
+}
@@ -49,6 +49,9 @@ public class XmlService {
     @Inject
     private XmlSearchRepository xmlSearchRepository;
 
+    @Inject
+    private SearchIndexingService searchIndexingService;
+
     /**
      * Save a xml.
      *
@@ -58,7 +61,7 @@ public class XmlService {
     public Xml save(Xml xml) {
         log.debug("Request to save Xml : {}", xml);
         Xml result = xmlRepository.save(xml);
-        xmlSearchRepository.save(result);
+        searchIndexingService.index(result);
         return result;
     }
 
@@ -96,7 +99,7 @@ public class XmlService {
     public void delete(Long id) {
         log.debug("Request to delete Xml : {}", id);
         xmlRepository.deleteById(id);
-        xmlSearchRepository.deleteById(id);
+        searchIndexingService.delete(Xml.class, id);
     }
 
     /**
@@ -49,6 +49,9 @@ public class XsdService {
     @Inject
     private XsdSearchRepository xsdSearchRepository;
 
+    @Inject
+    private IndexOutboxService indexOutboxService;
+
     /**
      * Save a xsd.
      *
@@ -58,7 +61,7 @@ public class XsdService {
     public Xsd save(Xsd xsd) {
         log.debug("Request to save Xsd : {}", xsd);
         Xsd result = xsdRepository.save(xsd);
-        xsdSearchRepository.save(result);
+        indexOutboxService.index(Xsd.class, result.getId());
         return result;
     }
 
@@ -96,7 +99,7 @@ public class XsdService {
     public void delete(Long id) {
         log.debug("Request to delete Xsd : {}", id);
         xsdRepository.deleteById(id);
-        xsdSearchRepository.deleteById(id);
+        indexOutboxService.delete(Xsd.class, id);
     }
 
     /**
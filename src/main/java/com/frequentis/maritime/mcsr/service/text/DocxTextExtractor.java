@@ -0,0 +1,186 @@
+/*
+ * MaritimeCloud Service Registry
+ * Copyright (c) 2016 Frequentis AG
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package com.frequentis.maritime.mcsr.service.text;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import org.springframework.stereotype.Component;
+
+/**
+ * Reads the text of Word documents (DOCX).
+ *
+ * <p>
+ * A DOCX file is a ZIP archive with the body of the document in {@code word/document.xml}. The text runs of that
+ * part are read with a streaming XML reader, so neither the archive nor the XML is held in memory as a whole.
+ * The part is read up to {@link #MAX_DOCUMENT_SIZE} bytes once inflated, and reading stops when the thread is
+ * interrupted, e.g. by a timeout of the extraction.
+ * </p>
+ */
+@Component
+public class DocxTextExtractor implements TextExtractor {
+
+    static final String CONTENT_TYPE = "application/vnd.openxmlformats-officedocument.wordprocessingml.document";
+
+    private static final String DOCUMENT_PART = "word/document.xml";
+
+    private static final String WORDPROCESSING_NS = "http://schemas.openxmlformats.org/wordprocessingml/2006/main";
+
+    /**
+     * Limit of the inflated document part, as a small archive may inflate to many gigabytes.
+     */
+    static final long MAX_DOCUMENT_SIZE = 256L * 1024 * 1024;
+
+    private static final XMLInputFactory XML_INPUT_FACTORY = createInputFactory();
+
+    private final long maxDocumentSize;
+
+    public DocxTextExtractor() {
+        this(MAX_DOCUMENT_SIZE);
+    }
+
+    DocxTextExtractor(long maxDocumentSize) {
+        this.maxDocumentSize = maxDocumentSize;
+    }
+
+    @Override
+    public boolean supports(String contentType) {
+        return CONTENT_TYPE.equals(contentType);
+    }
+
+    @Override
+    public void extract(InputStream in, String contentType, TextExcerpt excerpt) throws IOException {
+        ZipInputStream zip = new ZipInputStream(in);
+        ZipEntry entry;
+        while ((entry = zip.getNextEntry()) != null) {
+            if (DOCUMENT_PART.equals(entry.getName())) {
+                try {
+                    extractDocument(new LimitedInputStream(zip, maxDocumentSize), excerpt);
+                } catch (XMLStreamException e) {
+                    if (e.getNestedException() instanceof IOException) {
+                        throw (IOException) e.getNestedException();
+                    }
+                    throw new IOException("Malformed " + DOCUMENT_PART, e);
+                }
+                return;
+            }
+        }
+        throw new IOException("No " + DOCUMENT_PART + " found, not a DOCX file");
+    }
+
+    private void extractDocument(InputStream in, TextExcerpt excerpt) throws XMLStreamException, IOException {
+        XMLStreamReader reader = XML_INPUT_FACTORY.createXMLStreamReader(in);
+        try {
+            boolean inText = false;
+            while (reader.hasNext() && !excerpt.isFull()) {
+                if (Thread.interrupted()) {
+                    throw new InterruptedIOException("Interrupted reading " + DOCUMENT_PART);
+                }
+                switch (reader.next()) {
+                    case XMLStreamConstants.START_ELEMENT:
+                        if (WORDPROCESSING_NS.equals(reader.getNamespaceURI())) {
+                            String name = reader.getLocalName();
+                            inText = "t".equals(name);
+                            if ("tab".equals(name) || "br".equals(name)) {
+                                excerpt.breakText();
+                            }
+                        }
+                        break;
+                    case XMLStreamConstants.END_ELEMENT:
+                        inText = false;
+                        if (WORDPROCESSING_NS.equals(reader.getNamespaceURI()) && "p".equals(reader.getLocalName())) {
+                            excerpt.breakText();
+                        }
+                        break;
+                    case XMLStreamConstants.CHARACTERS:
+                    case XMLStreamConstants.CDATA:
+                        if (inText) {
+                            excerpt.append(reader.getTextCharacters(), reader.getTextStart(), reader.getTextLength());
+                        }
+                        break;
+                    default:
+                        break;
+                }
+            }
+        } finally {
+            reader.close();
+        }
+    }
+
+    /**
+     * Fails once more than a limit of bytes was read or the thread was interrupted.
+     */
+    private static final class LimitedInputStream extends FilterInputStream {
+
+        private final long limit;
+
+        private long count;
+
+        LimitedInputStream(InputStream in, long limit) {
+            super(in);
+            this.limit = limit;
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] b = new byte[1];
+            return read(b, 0, 1) < 0 ? -1 : b[0] & 0xff;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (Thread.interrupted()) {
+                throw new InterruptedIOException("Interrupted reading " + DOCUMENT_PART);
+            }
+            int n = super.read(b, off, (int) Math.min(len, limit - count + 1));
+            if (n > 0) {
+                count += n;
+                if (count > limit) {
+                    throw new IOException(DOCUMENT_PART + " larger than " + limit + " bytes");
+                }
+            }
+            return n;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            byte[] buffer = new byte[(int) Math.min(n, 8192)];
+            int read = read(buffer, 0, buffer.length);
+            return Math.max(read, 0);
+        }
+    }
+
+    private static XMLInputFactory createInputFactory() {
+        XMLInputFactory factory = XMLInputFactory.newInstance();
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        factory.setProperty(XMLInputFactory.IS_COALESCING, false);
+        return factory;
+    }
+}
@@ -0,0 +1,67 @@
+/*
+ * MaritimeCloud Service Registry
+ * Copyright (c) 2016 Frequentis AG
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package com.frequentis.maritime.mcsr.service.text;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+
+import org.springframework.stereotype.Component;
+import org.springframework.util.MimeType;
+
+/**
+ * Takes text contents as they are, decoded with the charset of the content type or UTF-8.
+ */
+@Component
+public class PlainTextExtractor implements TextExtractor {
+
+    private static final int BUFFER_SIZE = 4096;
+
+    @Override
+    public boolean supports(String contentType) {
+        return contentType.startsWith("text/")
+            || contentType.equals("application/xml")
+            || contentType.equals("application/json")
+            || contentType.endsWith("+xml")
+            || contentType.endsWith("+json");
+    }
+
+    @Override
+    public void extract(InputStream in, String contentType, TextExcerpt excerpt) throws IOException {
+        Reader reader = new InputStreamReader(in, charsetOf(contentType));
+        char[] buffer = new char[BUFFER_SIZE];
+        int read;
+        while (!excerpt.isFull() && (read = reader.read(buffer)) != -1) {
+            excerpt.append(buffer, 0, read);
+        }
+    }
+
+    private static Charset charsetOf(String contentType) {
+        try {
+            Charset charset = MimeType.valueOf(contentType).getCharset();
+            return charset != null ? charset : StandardCharsets.UTF_8;
+        } catch (IllegalArgumentException e) {
+            return StandardCharsets.UTF_8;
+        }
+    }
+}
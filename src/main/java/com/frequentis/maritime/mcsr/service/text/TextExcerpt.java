@@ -0,0 +1,105 @@
+/*
+ * MaritimeCloud Service Registry
+ * Copyright (c) 2016 Frequentis AG
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package com.frequentis.maritime.mcsr.service.text;
+
+/**
+ * The beginning of the plain text of a document, limited to a maximum number of characters.
+ *
+ * <p>
+ * Runs of whitespace are collapsed into a single space, so layout does not use up the limit.
+ * </p>
+ */
+public class TextExcerpt {
+
+    private final StringBuilder text = new StringBuilder();
+
+    private final int maxLength;
+
+    private boolean pendingSpace;
+
+    public TextExcerpt(int maxLength) {
+        this.maxLength = maxLength;
+    }
+
+    /**
+     * Append text, as far as the excerpt is not full.
+     *
+     * @param chars the characters to append
+     * @param start the offset of the first character
+     * @param length the number of characters
+     * @return this excerpt
+     */
+    public TextExcerpt append(char[] chars, int start, int length) {
+        for (int i = start; i < start + length && !isFull(); i++) {
+            append(chars[i]);
+        }
+        return this;
+    }
+
+    /**
+     * Append text, as far as the excerpt is not full.
+     *
+     * @param chars the characters to append
+     * @return this excerpt
+     */
+    public TextExcerpt append(CharSequence chars) {
+        for (int i = 0; i < chars.length() && !isFull(); i++) {
+            append(chars.charAt(i));
+        }
+        return this;
+    }
+
+    /**
+     * Separate the text appended so far from the following text, e.g. at the end of a paragraph.
+     *
+     * @return this excerpt
+     */
+    public TextExcerpt breakText() {
+        pendingSpace = text.length() > 0;
+        return this;
+    }
+
+    private void append(char c) {
+        if (Character.isWhitespace(c) || Character.isISOControl(c)) {
+            pendingSpace = text.length() > 0;
+            return;
+        }
+        if (pendingSpace) {
+            text.append(' ');
+            pendingSpace = false;
+            if (isFull()) {
+                return;
+            }
+        }
+        text.append(c);
+    }
+
+    /**
+     * @return true if no more text is taken
+     */
+    public boolean isFull() {
+        return text.length() >= maxLength;
+    }
+
+    @Override
+    public String toString() {
+        return text.toString();
+    }
+}
@@ -0,0 +1,51 @@
+/*
+ * MaritimeCloud Service Registry
+ * Copyright (c) 2016 Frequentis AG
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package com.frequentis.maritime.mcsr.service.text;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Reads the plain text of doc contents of some content types, for the search index.
+ *
+ * <p>
+ * Every bean implementing this interface is used by the DocTextExtractionWorker, the first one supporting
+ * the content type of a doc wins. Formats without a built-in extractor, like PDF, are added by providing
+ * another bean, e.g. one backed by PDFBox.
+ * </p>
+ */
+public interface TextExtractor {
+
+    /**
+     * @param contentType the content type of the doc content, without parameters, in lower case
+     * @return true if this extractor can read contents of this type
+     */
+    boolean supports(String contentType);
+
+    /**
+     * Read the text of a content. Extractors should stop reading once the excerpt is full.
+     *
+     * @param in the content, closed by the caller
+     * @param contentType the full content type of the doc content, including parameters like the charset
+     * @param excerpt the excerpt to append the text to
+     * @throws IOException if the content could not be read or is malformed
+     */
+    void extract(InputStream in, String contentType, TextExcerpt excerpt) throws IOException;
+}
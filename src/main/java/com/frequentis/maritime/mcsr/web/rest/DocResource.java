@@ -17,12 +17,17 @@
  */
 package com.frequentis.maritime.mcsr.web.rest;
 
+import java.io.IOException;
+import java.io.InputStream;
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.util.Collections;
 import java.util.List;
 import java.util.Optional;
 
 import javax.inject.Inject;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
 import javax.validation.Valid;
 
 import org.slf4j.Logger;
@@ -30,18 +35,25 @@ import org.slf4j.LoggerFactory;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpRange;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestMethod;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.ServletWebRequest;
+import org.springframework.web.multipart.MultipartFile;
 
 import com.codahale.metrics.annotation.Timed;
 import com.frequentis.maritime.mcsr.domain.Doc;
+import com.frequentis.maritime.mcsr.service.DocContentInfo;
+import com.frequentis.maritime.mcsr.service.DocContentService;
 import com.frequentis.maritime.mcsr.service.DocService;
 import com.frequentis.maritime.mcsr.web.rest.util.HeaderUtil;
 import com.frequentis.maritime.mcsr.web.rest.util.PaginationUtil;
@@ -55,9 +67,14 @@ public class DocResource {
 
     private final Logger log = LoggerFactory.getLogger(DocResource.class);
 
+    private static final String CONTENT_SHA256 = "X-Content-SHA256";
+
     @Inject
     private DocService docService;
 
+    @Inject
+    private DocContentService docContentService;
+
     /**
      * POST  /docs : Create a new doc.
      *
@@ -74,6 +91,9 @@ public class DocResource {
         if (doc.getId() != null) {
             return ResponseEntity.badRequest().headers(HeaderUtil.createFailureAlert("doc", "idexists", "A new doc cannot already have an ID")).body(null);
         }
+        if (doc.getFilecontent() == null) {
+            return ResponseEntity.badRequest().headers(HeaderUtil.createFailureAlert("doc", "filecontentrequired", "A new doc needs a file content")).body(null);
+        }
         if (doc.getFilecontentContentType() == null ||
 	    (doc.getFilecontentContentType().equalsIgnoreCase("application/pdf") &&
 	    doc.getFilecontentContentType().equalsIgnoreCase("application/vnd.openxmlformats-officedocument.wordprocessingml.document") &&
@@ -113,7 +133,7 @@ public class DocResource {
     }
 
     /**
-     * GET  /docs : get all the docs.
+     * GET  /docs : get all the docs, without their file content.
      *
      * @param pageable the pagination information
      * @return the ResponseEntity with status 200 (OK) and the list of docs in body
@@ -132,7 +152,7 @@ public class DocResource {
     }
 
     /**
-     * GET  /docs/:id : get the "id" doc.
+     * GET  /docs/:id : get the "id" doc, with its file content.
      *
      * @param id the id of the doc to retrieve
      * @return the ResponseEntity with status 200 (OK) and with body the doc, or with status 404 (Not Found)
@@ -143,7 +163,7 @@ public class DocResource {
     @Timed
     public ResponseEntity<Doc> getDoc(@PathVariable Long id) {
         log.debug("REST request to get Doc : {}", id);
-        Doc doc = docService.findOne(id);
+        Doc doc = docService.findOneWithContent(id);
         return Optional.ofNullable(doc)
             .map(result -> new ResponseEntity<>(
                 result,
@@ -151,6 +171,135 @@ public class DocResource {
             .orElse(new ResponseEntity<>(HttpStatus.NOT_FOUND));
     }
 
+    /**
+     * GET  /docs/:id/content : download the file content of the "id" doc.
+     *
+     * <p>
+     * The content is streamed from the database to the response. A single byte range can be requested with the
+     * Range header, conditional on If-Range. Requests for several ranges are answered with the whole content.
+     * </p>
+     *
+     * @param id the id of the doc to download
+     * @param range the byte range to download, if any
+     * @param ifRange the entity tag the range is valid for, if any
+     * @throws IOException if the content could not be sent
+     */
+    @RequestMapping(value = "/docs/{id}/content",
+        method = RequestMethod.GET)
+    @Timed
+    public void downloadDocContent(@PathVariable Long id,
+            @RequestHeader(value = HttpHeaders.RANGE, required = false) String range,
+            @RequestHeader(value = HttpHeaders.IF_RANGE, required = false) String ifRange,
+            ServletWebRequest webRequest, HttpServletResponse response) throws IOException {
+        log.debug("REST request to download Doc content : {}, range {}", id, range);
+        DocContentInfo info = docContentService.findInfo(id);
+        if (info == null) {
+            response.setStatus(HttpStatus.NOT_FOUND.value());
+            return;
+        }
+        response.setHeader(HttpHeaders.ETAG, info.getETag());
+        response.setHeader(HttpHeaders.ACCEPT_RANGES, "bytes");
+        if (webRequest.checkNotModified(info.getETag())) {
+            return;
+        }
+
+        long offset = 0;
+        long length = info.getSize();
+        List<HttpRange> ranges = Collections.emptyList();
+        if (range != null && (ifRange == null || ifRange.equals(info.getETag()))) {
+            try {
+                ranges = HttpRange.parseRanges(range);
+            } catch (IllegalArgumentException e) {
+                log.debug("Ignoring invalid range {}", range);
+            }
+        }
+        if (ranges.size() == 1) {
+            try {
+                offset = ranges.get(0).getRangeStart(info.getSize());
+                length = ranges.get(0).getRangeEnd(info.getSize()) - offset + 1;
+            } catch (IllegalArgumentException e) {
+                response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes */" + info.getSize());
+                response.setStatus(HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE.value());
+                return;
+            }
+            response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes " + offset + "-" + (offset + length - 1) + "/" + info.getSize());
+            response.setStatus(HttpStatus.PARTIAL_CONTENT.value());
+        }
+        response.setContentType(info.getContentType() != null ? info.getContentType() : MediaType.APPLICATION_OCTET_STREAM_VALUE);
+        response.setContentLengthLong(length);
+        if (webRequest.getHttpMethod() != HttpMethod.HEAD) {
+            docContentService.copyContent(id, offset, length, response.getOutputStream());
+        }
+    }
+
+    /**
+     * PUT  /docs/:id/content : replace the file content of the "id" doc with the request body.
+     *
+     * <p>
+     * If the client sends the SHA-256 of the content, the body is checked against it. The body is always required:
+     * linking a stored content by its hash alone would let any caller attach any content it knows the hash of, and
+     * tell it whether that content is stored. A content already stored is still shared instead of stored twice.
+     * </p>
+     *
+     * @param id the id of the doc to update
+     * @param contentType the content type of the new content
+     * @param sha256 the SHA-256 of the new content as hex string, if known
+     * @param request the request carrying the new content
+     * @return the ResponseEntity with status 200 (OK) and with body the description of the new content,
+     * or with status 400 (Bad Request) if the content does not match the hash,
+     * or with status 404 (Not Found)
+     * @throws IOException if the content could not be read
+     */
+    @RequestMapping(value = "/docs/{id}/content",
+        method = RequestMethod.PUT,
+        produces = MediaType.APPLICATION_JSON_VALUE)
+    @Timed
+    public ResponseEntity<DocContentInfo> uploadDocContent(@PathVariable Long id,
+            @RequestHeader(value = HttpHeaders.CONTENT_TYPE, defaultValue = MediaType.APPLICATION_OCTET_STREAM_VALUE) String contentType,
+            @RequestHeader(value = CONTENT_SHA256, required = false) String sha256,
+            HttpServletRequest request) throws IOException {
+        log.debug("REST request to upload Doc content : {}", id);
+        try {
+            return contentUploaded(id, docContentService.replaceContent(id, request.getInputStream(), contentType, sha256));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest()
+                .headers(HeaderUtil.createFailureAlert("doc", "contenthashmismatch", e.getMessage()))
+                .body(null);
+        }
+    }
+
+    /**
+     * POST  /docs/:id/content : replace the file content of the "id" doc with an uploaded file.
+     *
+     * @param id the id of the doc to update
+     * @param file the new content, spooled to disk by the multipart resolver
+     * @return the ResponseEntity with status 200 (OK) and with body the description of the new content,
+     * or with status 404 (Not Found)
+     * @throws IOException if the content could not be read
+     */
+    @RequestMapping(value = "/docs/{id}/content",
+        method = RequestMethod.POST,
+        consumes = MediaType.MULTIPART_FORM_DATA_VALUE,
+        produces = MediaType.APPLICATION_JSON_VALUE)
+    @Timed
+    public ResponseEntity<DocContentInfo> uploadDocContentFile(@PathVariable Long id, @RequestParam("file") MultipartFile file)
+        throws IOException {
+        log.debug("REST request to upload Doc content file : {}, {} bytes", id, file.getSize());
+        String contentType = file.getContentType() != null ? file.getContentType() : MediaType.APPLICATION_OCTET_STREAM_VALUE;
+        try (InputStream in = file.getInputStream()) {
+            return contentUploaded(id, docContentService.replaceContent(id, in, contentType));
+        }
+    }
+
+    private ResponseEntity<DocContentInfo> contentUploaded(Long id, DocContentInfo info) {
+        return Optional.ofNullable(info)
+            .map(result -> ResponseEntity.ok()
+                .headers(HeaderUtil.createEntityUpdateAlert("doc", id.toString()))
+                .eTag(result.getETag())
+                .body(result))
+            .orElse(new ResponseEntity<>(HttpStatus.NOT_FOUND));
+    }
+
     /**
      * DELETE  /docs/:id : delete the "id" doc.
      *
@@ -29,6 +29,7 @@ import com.codahale.metrics.annotation.Timed;
 import com.frequentis.maritime.mcsr.security.AuthoritiesConstants;
 import com.frequentis.maritime.mcsr.security.SecurityUtils;
 import com.frequentis.maritime.mcsr.service.ElasticsearchIndexService;
+import com.frequentis.maritime.mcsr.service.ReindexProgress;
 
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
@@ -63,7 +64,23 @@ public class ElasticsearchIndexResource {
     @PreAuthorize("hasAuthority('" + AuthoritiesConstants.ADMIN + "')")
     public ResponseEntity<String> reindexAll() throws URISyntaxException {
         log.info("REST request to reindex Elasticsearch by user : {}", SecurityUtils.getCurrentUserLogin());
+        if (elasticsearchIndexService.isReindexRunning()) {
+            return new ResponseEntity<>("{\"response\": \"Elasticsearch reindexing is already running.\"}", HttpStatus.CONFLICT);
+        }
         elasticsearchIndexService.reindexAll();
         return new ResponseEntity<>("{\"response\": \"Request accepted, performing full Elasticsearch reindexing.\"}", HttpStatus.ACCEPTED);
     }
+
+    /**
+     * GET  /elasticsearch/index -> Get the progress of the running or last reindexing
+     */
+    @RequestMapping(value = "/elasticsearch/index",
+        method = RequestMethod.GET,
+        produces = MediaType.APPLICATION_JSON_VALUE)
+    @Timed
+    @PreAuthorize("hasAuthority('" + AuthoritiesConstants.ADMIN + "')")
+    public ResponseEntity<ReindexProgress> getReindexProgress() {
+        log.debug("REST request to get Elasticsearch reindexing progress");
+        return new ResponseEntity<>(elasticsearchIndexService.getProgress(), HttpStatus.OK);
+    }
 }
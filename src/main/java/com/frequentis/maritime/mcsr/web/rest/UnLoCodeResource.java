@@ -0,0 +1,102 @@
+/*
+ * MaritimeCloud Service Registry
+ * Copyright (c) 2016 Frequentis AG
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.frequentis.maritime.mcsr.web.rest;
+
+import java.io.IOException;
+import java.util.List;
+
+import javax.inject.Inject;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.codahale.metrics.annotation.Timed;
+import com.frequentis.maritime.mcsr.security.AuthoritiesConstants;
+import com.frequentis.maritime.mcsr.security.SecurityUtils;
+import com.frequentis.maritime.mcsr.service.UnLoCodeService;
+import com.frequentis.maritime.mcsr.web.rest.util.HeaderUtil;
+import com.frequentis.maritime.mcsr.web.rest.util.UnLoCodeGazetteer;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import io.swagger.annotations.Api;
+
+/**
+ * REST controller for the UN/LOCODE gazetteer.
+ */
+@RestController
+@RequestMapping("/api")
+@Api
+public class UnLoCodeResource {
+
+    private final Logger log = LoggerFactory.getLogger(UnLoCodeResource.class);
+
+    private static final int MAX_RESULTS = 100;
+
+    @Inject
+    private UnLoCodeService unLoCodeService;
+
+    /**
+     * GET  /unlocode/_near -> get the UN/LOCODEs near a point, nearest first
+     */
+    @RequestMapping(value = "/unlocode/_near",
+        method = RequestMethod.GET,
+        produces = MediaType.APPLICATION_JSON_VALUE)
+    @Timed
+    public ResponseEntity<List<UnLoCodeGazetteer.Location>> findNear(@RequestParam double lat, @RequestParam double lon,
+                                                                     @RequestParam(defaultValue = "50") double radiusKm,
+                                                                     @RequestParam(defaultValue = "10") int limit) {
+        log.debug("REST request to get UnLoCodes near {} {}", lat, lon);
+        if (limit < 0) {
+            return ResponseEntity.badRequest()
+                .headers(HeaderUtil.createFailureAlert("unlocode", "invalidlimit", "The limit must not be negative"))
+                .body(null);
+        }
+        return new ResponseEntity<>(unLoCodeService.findNear(lat, lon, radiusKm, Math.min(limit, MAX_RESULTS)), HttpStatus.OK);
+    }
+
+    /**
+     * POST  /unlocode/reload -> reload the UN/LOCODE gazetteer, keeping the one in use if that fails
+     */
+    @RequestMapping(value = "/unlocode/reload",
+        method = RequestMethod.POST,
+        produces = MediaType.APPLICATION_JSON_UTF8_VALUE)
+    @Timed
+    @PreAuthorize("hasAuthority('" + AuthoritiesConstants.ADMIN + "')")
+    public ResponseEntity<String> reload() {
+        log.info("REST request to reload UnLoCodes by user : {}", SecurityUtils.getCurrentUserLogin());
+        int size;
+        try {
+            size = unLoCodeService.reload();
+        } catch (IOException e) {
+            log.error("Could not reload UnLoCodes: ", e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                .headers(HeaderUtil.createFailureAlert("unlocode", "reloadfailed", e.getMessage()))
+                .body(null);
+        }
+        return new ResponseEntity<>("{\"response\": \"Loaded " + size + " UnLoCodes.\"}", HttpStatus.OK);
+    }
+}
@@ -0,0 +1,86 @@
+/*
+ * MaritimeCloud Service Registry
+ * Copyright (c) 2016 Frequentis AG
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.frequentis.maritime.mcsr.web.rest.dto;
+
+import com.frequentis.maritime.mcsr.domain.Instance;
+
+/**
+ * One resolved reference of a batch lookup: the requested id and version, and the instance if it was found.
+ */
+public class ResolvedInstanceDTO {
+
+    private String id;
+
+    private String version;
+
+    private boolean found;
+
+    private Instance instance;
+
+    public ResolvedInstanceDTO() {
+    }
+
+    public ResolvedInstanceDTO(String id, String version, Instance instance) {
+        this.id = id;
+        this.version = version;
+        this.found = instance != null;
+        this.instance = instance;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public void setId(String id) {
+        this.id = id;
+    }
+
+    public String getVersion() {
+        return version;
+    }
+
+    public void setVersion(String version) {
+        this.version = version;
+    }
+
+    public boolean isFound() {
+        return found;
+    }
+
+    public void setFound(boolean found) {
+        this.found = found;
+    }
+
+    public Instance getInstance() {
+        return instance;
+    }
+
+    public void setInstance(Instance instance) {
+        this.instance = instance;
+    }
+
+    @Override
+    public String toString() {
+        return "ResolvedInstanceDTO{" +
+            "id='" + id + '\'' +
+            ", version='" + version + '\'' +
+            ", found=" + found +
+            '}';
+    }
+}
@@ -0,0 +1,137 @@
+/*
+ * MaritimeCloud Service Registry
+ * Copyright (c) 2016 Frequentis AG
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.frequentis.maritime.mcsr.web.rest.registry;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.GZIPOutputStream;
+
+import javax.inject.Inject;
+import javax.servlet.http.HttpServletResponse;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.WebRequest;
+
+import com.codahale.metrics.annotation.Timed;
+import com.frequentis.maritime.mcsr.service.RegistryExportService;
+
+import io.swagger.annotations.Api;
+import io.swagger.annotations.ApiOperation;
+
+@RestController
+@RequestMapping("/api")
+@Api
+public class RegistryExportResource {
+
+    private final Logger log = LoggerFactory.getLogger(RegistryExportResource.class);
+
+    private static final String NDJSON_VALUE = "application/x-ndjson";
+
+    @Inject
+    private RegistryExportService registryExportService;
+
+    /**
+     * GET  /export : stream the service instances, designs and specifications as newline delimited JSON.
+     *
+     * <p>
+     * Each line is an object with the "type" of the entity, the "entity" itself and a "resumeToken". An interrupted
+     * export is continued by repeating the request with the resume token of the last line received. The response
+     * is gzip compressed if the client accepts it.
+     * </p>
+     *
+     * @param types the comma separated entity types to export: instance, design, specification
+     * @param organizationId export only entities of this organization
+     * @param status export only entities with this status
+     * @param compliant export only compliant (true) or non-compliant (false) instances
+     * @param updatedSince export only entities updated at or after this ISO-8601 date or date-time
+     * @param resumeToken continue an export after the line with this resume token
+     * @param includeDoc includes docs
+     */
+    @RequestMapping(value = "/export",
+        method = RequestMethod.GET)
+    @Timed
+    @ApiOperation(value = "exportRegistry", notes = "Streams all service instances, designs and specifications as newline delimited JSON.")
+    public void exportRegistry(@RequestParam(defaultValue = "instance,design,specification") String types,
+            @RequestParam(required = false) String organizationId,
+            @RequestParam(required = false) String status,
+            @RequestParam(required = false) Boolean compliant,
+            @RequestParam(required = false) String updatedSince,
+            @RequestParam(required = false) String resumeToken,
+            @RequestParam(defaultValue = "false") String includeDoc,
+            @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding,
+            HttpServletResponse response) throws IOException {
+
+        log.debug("REST request to export {} since {}", types, updatedSince);
+        Set<RegistryExportService.EntityType> entityTypes = EnumSet.noneOf(RegistryExportService.EntityType.class);
+        for (String type : types.split(",")) {
+            entityTypes.add(RegistryExportService.EntityType.fromKey(type));
+        }
+        RegistryExportService.Filter filter = new RegistryExportService.Filter();
+        filter.setOrganizationId(organizationId);
+        filter.setStatus(status);
+        filter.setCompliant(compliant);
+        filter.setUpdatedSince(updatedSince);
+        if (resumeToken != null && !resumeToken.isEmpty()) {
+            registryExportService.validateResumeToken(resumeToken);
+        }
+
+        boolean gzip = acceptEncoding != null && acceptEncoding.toLowerCase().contains("gzip");
+        response.setContentType(NDJSON_VALUE);
+        response.setCharacterEncoding("UTF-8");
+        response.addHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+        if (gzip) {
+            response.setHeader(HttpHeaders.CONTENT_ENCODING, "gzip");
+        }
+
+        OutputStream out = response.getOutputStream();
+        if (gzip) {
+            // Sync flush, so every batch reaches the client as soon as it is written
+            out = new GZIPOutputStream(out, 8192, true);
+        }
+        registryExportService.export(entityTypes, filter, resumeToken, "true".equalsIgnoreCase(includeDoc), out);
+        if (gzip) {
+            ((GZIPOutputStream) out).finish();
+        }
+        out.flush();
+    }
+
+    @ExceptionHandler(IllegalArgumentException.class)
+    public ResponseEntity<?> handleException(Exception e, WebRequest webRequest) {
+        Map<String, String> errorMap = new HashMap<String, String>();
+        errorMap.put("status", "error");
+        errorMap.put("timestamp", ""+System.currentTimeMillis());
+        errorMap.put("error", "Bad Request");
+        errorMap.put("message", e.getMessage());
+        errorMap.put("status", "400");
+        return ResponseEntity.badRequest().body(errorMap);
+    }
+}
@@ -19,6 +19,7 @@ package com.frequentis.maritime.mcsr.web.rest.registry;
 
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -35,12 +36,18 @@ import com.codahale.metrics.annotation.Timed;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.frequentis.maritime.mcsr.domain.Instance;
 import com.frequentis.maritime.mcsr.domain.Xml;
+import com.frequentis.maritime.mcsr.security.RegistryPrincipalResolver;
+import com.frequentis.maritime.mcsr.service.CursorPage;
 import com.frequentis.maritime.mcsr.service.DesignService;
+import com.frequentis.maritime.mcsr.service.InstanceFields;
 import com.frequentis.maritime.mcsr.service.InstanceService;
+import com.frequentis.maritime.mcsr.service.SearchFacets;
+import com.frequentis.maritime.mcsr.service.VersionReference;
 import com.frequentis.maritime.mcsr.service.XmlService;
 import com.frequentis.maritime.mcsr.service.DocService;
 import com.frequentis.maritime.mcsr.web.exceptions.GeometryParseException;
 import com.frequentis.maritime.mcsr.web.exceptions.XMLValidationException;
+import com.frequentis.maritime.mcsr.web.rest.dto.ResolvedInstanceDTO;
 import com.frequentis.maritime.mcsr.web.rest.util.HeaderUtil;
 import com.frequentis.maritime.mcsr.web.rest.util.InstanceUtil;
 import com.frequentis.maritime.mcsr.web.rest.util.PaginationUtil;
@@ -112,14 +119,7 @@ public class ServiceInstanceResource {
     }
 
     private ResponseEntity<?> saveInstance(Instance instance, String bearerToken, boolean newInstance) throws URISyntaxException {
-        String organizationId = "";
-        try {
-            organizationId = HeaderUtil.extractOrganizationIdFromToken(bearerToken);
-        } catch (Exception e) {
-            log.warn("No organizationId could be parsed from the bearer token");
-        }
-
-        instance.setOrganizationId(organizationId);
+        instance.setOrganizationId(RegistryPrincipalResolver.resolve(bearerToken).getOrganizationId());
 
         try {
             InstanceUtil.prepareInstanceForSave(instance, designService);
@@ -264,6 +264,63 @@ public class ServiceInstanceResource {
             .orElse(new ResponseEntity<>(HttpStatus.NOT_FOUND));
     }
 
+    /**
+     * HEAD  /serviceInstance/:id/:version : check if the "id" instance of version "version" exists.
+     *
+     * @param id the domain id of the instance to check
+     * @param version the version of the instance to check, "latest" for the highest version number
+     * @param includeNonCompliant include also non-compliant services (used only for "latest" version)
+     * @return the ResponseEntity with status 200 (OK), or with status 404 (Not Found)
+     */
+    @RequestMapping(value = "/serviceInstance/{id}/{version}/",
+        method = RequestMethod.HEAD)
+    @Timed
+    @ApiOperation(value = "existsInstance", notes = "Checks if the service instance with the specified id and version exists, without returning it.")
+    public ResponseEntity<Void> existsInstance(@PathVariable String id, @PathVariable String version,
+            @RequestParam(defaultValue = "false") String includeNonCompliant) {
+        log.debug("REST request to check Instance via domain id {} and version {}", id, version);
+        boolean exists = instanceService.existsByDomainIdAndVersion(id, version, Boolean.valueOf(includeNonCompliant));
+        return new ResponseEntity<>(exists ? HttpStatus.OK : HttpStatus.NOT_FOUND);
+    }
+
+    /**
+     * POST  /_resolve/serviceInstance : get many instances by id and version in one call.
+     *
+     * @param references the ids and versions of the instances, "latest" as version for the highest version number
+     * @param includeNonCompliant include also non-compliant services (used only for "latest" versions)
+     * @return the ResponseEntity with status 200 (OK) and with body one result per reference, in the same order,
+     * or with status 400 (Bad Request) if there are too many references or one has no id or version
+     */
+    @RequestMapping(value = "/_resolve/serviceInstance",
+        method = RequestMethod.POST,
+        consumes = MediaType.APPLICATION_JSON_VALUE,
+        produces = MediaType.APPLICATION_JSON_VALUE)
+    @Timed
+    @ApiOperation(value = "resolveInstances", notes = "Returns the service instances with the specified ids and versions, in the order given. Use version 'latest' to get the newest one. References not found are marked with found=false.")
+    public ResponseEntity<List<ResolvedInstanceDTO>> resolveInstances(@RequestBody List<VersionReference> references,
+            @RequestParam(defaultValue = "false") String includeDoc,
+            @RequestParam(defaultValue = "false") String includeNonCompliant) {
+        log.debug("REST request to resolve {} Instances", references.size());
+        List<Instance> instances;
+        try {
+            instances = instanceService.findAllByDomainIdAndVersion(references, Boolean.valueOf(includeNonCompliant));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest()
+                .headers(HeaderUtil.createFailureAlert("instance", "invalidreferences", e.getMessage()))
+                .body(null);
+        }
+        List<ResolvedInstanceDTO> result = new ArrayList<>(references.size());
+        for (int i = 0; i < references.size(); i++) {
+            Instance instance = instances.get(i);
+            if (instance != null && !Boolean.parseBoolean(includeDoc)) {
+                instance.setDocs(null);
+                instance.setInstanceAsDoc(null);
+            }
+            result.add(new ResolvedInstanceDTO(references.get(i).getId(), references.get(i).getVersion(), instance));
+        }
+        return new ResponseEntity<>(result, HttpStatus.OK);
+    }
+
     /**
      * GET  /serviceInstance/:id : get all instances with id "id" across all versions.
      *
@@ -275,21 +332,48 @@ public class ServiceInstanceResource {
         produces = MediaType.APPLICATION_JSON_VALUE)
     @Timed
     public ResponseEntity<List<Instance>> getAllInstancesById(@PathVariable String id, @RequestParam(defaultValue = "false") String includeDoc,
+            @RequestParam(defaultValue = "true") String includeXml,
             @RequestParam(defaultValue = "false") String includeNonCompliant,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "false") String count,
 	    Pageable pageable)
         throws Exception, URISyntaxException {
         log.debug("REST request to get a page of Instances by id {}", id);
-        Page<Instance> page = instanceService.findAllByDomainId(id, Boolean.valueOf(includeNonCompliant), pageable);
-        if (page != null && page.getContent() != null && !Boolean.parseBoolean(includeDoc)) {
-            for(Instance instance:page.getContent()) {
-                instance.setDocs(null);
-                instance.setInstanceAsDoc(null);
-            }
+        if (cursor != null) {
+            CursorPage<Instance> cursorPage = instanceService.findAllByDomainId(id, Boolean.valueOf(includeNonCompliant),
+                fields(includeDoc, includeXml), PaginationUtil.searchCursor(cursor, pageable, count));
+            return new ResponseEntity<>(cursorPage.getContent(), PaginationUtil.generateCursorPaginationHttpHeaders(cursorPage), HttpStatus.OK);
         }
+        Page<Instance> page = instanceService.findAllByDomainId(id, Boolean.valueOf(includeNonCompliant),
+            fields(includeDoc, includeXml), pageable);
         HttpHeaders headers = PaginationUtil.generateSearchPaginationNoQueryHttpHeaders(page, "/api/serviceInstance/"+id);
         return new ResponseEntity<>(page.getContent(), headers, HttpStatus.OK);
     }
 
+    /**
+     * HEAD  /serviceInstance/:id : count the versions of the instance with id "id".
+     *
+     * @param id the domain id of the instance to check
+     * @param includeNonCompliant include also non-compliant versions
+     * @return the ResponseEntity with status 200 (OK) and the number of versions in the X-Total-Count header,
+     * or with status 404 (Not Found) if there is none
+     */
+    @RequestMapping(value = "/serviceInstance/{id}",
+        method = RequestMethod.HEAD)
+    @Timed
+    @ApiOperation(value = "countInstanceVersions", notes = "Checks if the service instance with the specified id exists, and reports the number of its versions in the X-Total-Count header.")
+    public ResponseEntity<Void> countInstanceVersions(@PathVariable String id,
+            @RequestParam(defaultValue = "false") String includeNonCompliant) {
+        log.debug("REST request to count Instances by id {}", id);
+        long count = instanceService.countByDomainId(id, Boolean.valueOf(includeNonCompliant));
+        if (count == 0) {
+            return ResponseEntity.notFound().build();
+        }
+        HttpHeaders headers = new HttpHeaders();
+        headers.add("X-Total-Count", Long.toString(count));
+        return new ResponseEntity<>(headers, HttpStatus.OK);
+    }
+
     /**
      * DELETE  /serviceInstance/:id/:version : delete the "id" instance of version "version".
      *
@@ -322,7 +406,10 @@ public class ServiceInstanceResource {
      *
      * @param query the query of the instance search
      * @param includeDoc includes docs
+     * @param includeXml includes the content of the instance XML
      * @param includeNonCompliant does not exclude non-compliant service from search
+     * @param cursor read the page following this cursor instead of a page number, empty for the first page
+     * @param count with a cursor, also report the total number of matching instances
      * @return the result of the search
      */
     @RequestMapping(value = "/_search/serviceInstance",
@@ -331,22 +418,83 @@ public class ServiceInstanceResource {
     @Timed
     public ResponseEntity<List<Instance>> searchInstances(@RequestParam String query,
             @RequestParam(defaultValue = "false") String includeDoc,
+            @RequestParam(defaultValue = "true") String includeXml,
             @RequestParam(defaultValue = "false") String includeNonCompliant,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "false") String count,
             Pageable pageable)
             throws Exception, URISyntaxException {
 
         log.debug("REST request to search for a page of Instances for query {}", query);
-        Page<Instance> page = instanceService.search(query, Boolean.valueOf(includeNonCompliant), pageable);
-        if (page != null && page.getContent() != null && "true".equalsIgnoreCase(includeDoc) == false) {
-            for(Instance instance:page.getContent()) {
-                instance.setDocs(null);
-                instance.setInstanceAsDoc(null);
-            }
+        if (cursor != null) {
+            CursorPage<Instance> cursorPage = instanceService.search(query, Boolean.valueOf(includeNonCompliant),
+                fields(includeDoc, includeXml), PaginationUtil.searchCursor(cursor, pageable, count));
+            return new ResponseEntity<>(cursorPage.getContent(), PaginationUtil.generateCursorPaginationHttpHeaders(cursorPage), HttpStatus.OK);
         }
+        Page<Instance> page = instanceService.search(query, Boolean.valueOf(includeNonCompliant),
+            fields(includeDoc, includeXml), pageable);
         HttpHeaders headers = PaginationUtil.generateSearchPaginationHttpHeaders(query, page, "/api/_search/serviceInstance");
         return new ResponseEntity<>(page.getContent(), headers, HttpStatus.OK);
     }
 
+    /**
+     * COUNT  /_count/serviceInstance?query=:query : count the instances corresponding to the query.
+     *
+     * @param query the query of the instance search, all instances if empty
+     * @param includeNonCompliant does not exclude non-compliant service from the count
+     * @return the ResponseEntity with status 200 (OK) and with body the number of matching instances
+     */
+    @RequestMapping(value = "/_count/serviceInstance",
+        method = RequestMethod.GET,
+        produces = MediaType.APPLICATION_JSON_VALUE)
+    @Timed
+    @ApiOperation(value = "countInstances", notes = "Returns the number of service instances matching the query, without reading them.")
+    public ResponseEntity<Map<String, Long>> countInstances(@RequestParam(defaultValue = "") String query,
+            @RequestParam(defaultValue = "false") String includeNonCompliant) {
+        log.debug("REST request to count Instances for query {}", query);
+        long count = instanceService.count(query, Boolean.valueOf(includeNonCompliant));
+        return new ResponseEntity<>(Collections.singletonMap("count", count), HttpStatus.OK);
+    }
+
+    /**
+     * FACETS  /_facets/serviceInstance?query=:query&fields=:fields : count the instances corresponding
+     * to the query per value of the given fields.
+     *
+     * @param query the query of the instance search, all instances if empty
+     * @param fields the fields to count by: organizationId, serviceType, status, unlocode, compliant or designId
+     * @param size the number of values to count per field, the most frequent ones
+     * @param includeNonCompliant does not exclude non-compliant service from the counts
+     * @return the ResponseEntity with status 200 (OK) and with body the total and the counts per field value,
+     * or with status 400 (Bad Request) for an unknown field or a size out of range
+     */
+    @RequestMapping(value = "/_facets/serviceInstance",
+        method = RequestMethod.GET,
+        produces = MediaType.APPLICATION_JSON_VALUE)
+    @Timed
+    @ApiOperation(value = "facetInstances", notes = "Returns the number of service instances matching the query per value of the given fields, without reading them.")
+    public ResponseEntity<SearchFacets> facetInstances(@RequestParam(defaultValue = "") String query,
+            @RequestParam List<String> fields,
+            @RequestParam(defaultValue = "10") int size,
+            @RequestParam(defaultValue = "false") String includeNonCompliant) {
+        log.debug("REST request to count Instances by {} for query {}", fields, query);
+        if (size < 1 || size > InstanceService.MAX_FACET_SIZE) {
+            return ResponseEntity.badRequest()
+                .headers(HeaderUtil.createFailureAlert("instance", "invalidsize",
+                    "Between 1 and " + InstanceService.MAX_FACET_SIZE + " values can be counted per field"))
+                .body(null);
+        }
+        for (String field : fields) {
+            if (!InstanceService.FACET_FIELDS.contains(field)) {
+                return ResponseEntity.badRequest()
+                    .headers(HeaderUtil.createFailureAlert("instance", "invalidfield",
+                        "Instances cannot be counted by " + field + ", only by " + InstanceService.FACET_FIELDS))
+                    .body(null);
+            }
+        }
+        SearchFacets facets = instanceService.facets(query, Boolean.valueOf(includeNonCompliant), fields, size);
+        return new ResponseEntity<>(facets, HttpStatus.OK);
+    }
+
     /**
      * SEARCH  /_searchKeywords/serviceInstance?query=:query : search for the instance corresponding
      * to the supplied keywords.
@@ -361,18 +509,21 @@ public class ServiceInstanceResource {
     @Timed
     public ResponseEntity<List<Instance>> searchInstancesByKeywords(@RequestParam String query,
             @RequestParam(defaultValue = "false") String includeDoc,
+            @RequestParam(defaultValue = "true") String includeXml,
             @RequestParam(defaultValue = "false") String includeNonCompliant,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "false") String count,
             Pageable pageable)
             throws Exception, URISyntaxException {
 
         log.debug("REST request to search for a page of Instances for keywords {}", query);
-        Page<Instance> page = instanceService.searchKeywords(query, Boolean.valueOf(includeNonCompliant), pageable);
-        if (page != null && page.getContent() != null && "true".equalsIgnoreCase(includeDoc) == false) {
-            for(Instance instance:page.getContent()) {
-                instance.setDocs(null);
-                instance.setInstanceAsDoc(null);
-            }
+        if (cursor != null) {
+            CursorPage<Instance> cursorPage = instanceService.searchKeywords(query, Boolean.valueOf(includeNonCompliant),
+                fields(includeDoc, includeXml), PaginationUtil.searchCursor(cursor, pageable, count));
+            return new ResponseEntity<>(cursorPage.getContent(), PaginationUtil.generateCursorPaginationHttpHeaders(cursorPage), HttpStatus.OK);
         }
+        Page<Instance> page = instanceService.searchKeywords(query, Boolean.valueOf(includeNonCompliant),
+            fields(includeDoc, includeXml), pageable);
         HttpHeaders headers = PaginationUtil.generateSearchPaginationHttpHeaders(query, page, "/api/_searchKeywords/serviceInstance");
         return new ResponseEntity<>(page.getContent(), headers, HttpStatus.OK);
     }
@@ -392,18 +543,21 @@ public class ServiceInstanceResource {
     @ApiOperation(value = "searchInstancesByUnlocode", notes = "Returns all service instances matching the specified UnLoCode.")
     public ResponseEntity<List<Instance>> searchInstancesByUnlocode(@RequestParam String query,
             @RequestParam(defaultValue = "false") String includeDoc,
+            @RequestParam(defaultValue = "true") String includeXml,
             @RequestParam(defaultValue = "false") String includeNonCompliant,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "false") String count,
             Pageable pageable)
         throws Exception, URISyntaxException {
 
         log.debug("REST request to search for a page of Instances for unlocode {}", query);
-        Page<Instance> page = instanceService.searchUnlocode(query, Boolean.valueOf(includeNonCompliant), pageable);
-        if (page != null && page.getContent() != null && "true".equalsIgnoreCase(includeDoc) == false) {
-            for(Instance instance:page.getContent()) {
-                instance.setDocs(null);
-                instance.setInstanceAsDoc(null);
-            }
+        if (cursor != null) {
+            CursorPage<Instance> cursorPage = instanceService.searchUnlocode(query, Boolean.valueOf(includeNonCompliant),
+                fields(includeDoc, includeXml), PaginationUtil.searchCursor(cursor, pageable, count));
+            return new ResponseEntity<>(cursorPage.getContent(), PaginationUtil.generateCursorPaginationHttpHeaders(cursorPage), HttpStatus.OK);
         }
+        Page<Instance> page = instanceService.searchUnlocode(query, Boolean.valueOf(includeNonCompliant),
+            fields(includeDoc, includeXml), pageable);
         HttpHeaders headers = PaginationUtil.generateSearchPaginationHttpHeaders(query, page, "/api/_searchUnlocode/serviceInstance");
         return new ResponseEntity<>(page.getContent(), headers, HttpStatus.OK);
     }
@@ -423,20 +577,23 @@ public class ServiceInstanceResource {
     @Timed
     @ApiOperation(value = "searchInstancesByLocation", notes = "Returns all service instances matching the specified Lat/Lon coordinates.")
     public ResponseEntity<?> searchInstancesByLocation(@RequestParam String latitude,
-            @RequestParam(defaultValue = "false") String includeDoc, @RequestParam String longitude,
+            @RequestParam(defaultValue = "false") String includeDoc,
+            @RequestParam(defaultValue = "true") String includeXml, @RequestParam String longitude,
             @RequestParam(defaultValue = "", required = false) String query,
             @RequestParam(defaultValue = "false") String includeNonCompliant,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "false") String count,
             Pageable pageable)
             throws Exception, URISyntaxException {
 
         log.debug("REST request to get Instance by lat {} long {}", latitude, longitude);
-        Page<Instance> page = instanceService.findByLocation(Double.parseDouble(latitude), Double.parseDouble(longitude), query, Boolean.valueOf(includeNonCompliant), pageable);
-        if (page != null && page.getContent() != null && "true".equalsIgnoreCase(includeDoc) == false) {
-            for(Instance instance:page.getContent()) {
-                instance.setDocs(null);
-                instance.setInstanceAsDoc(null);
-            }
+        if (cursor != null) {
+            CursorPage<Instance> cursorPage = instanceService.findByLocation(Double.parseDouble(latitude), Double.parseDouble(longitude), query, Boolean.valueOf(includeNonCompliant),
+                fields(includeDoc, includeXml), PaginationUtil.searchCursor(cursor, pageable, count));
+            return new ResponseEntity<>(cursorPage.getContent(), PaginationUtil.generateCursorPaginationHttpHeaders(cursorPage), HttpStatus.OK);
         }
+        Page<Instance> page = instanceService.findByLocation(Double.parseDouble(latitude), Double.parseDouble(longitude), query, Boolean.valueOf(includeNonCompliant),
+            fields(includeDoc, includeXml), pageable);
 //TODO: pagination headers only support one query parameter, need to find out if we even need this for the API
         HttpHeaders headers = PaginationUtil.generateSearchPaginationHttpHeaders(latitude, page, "/api/_searchLocation/serviceInstance");
         return new ResponseEntity<>(page.getContent(), headers, HttpStatus.OK);
@@ -458,19 +615,22 @@ public class ServiceInstanceResource {
     @ApiOperation(value = "searchInstancesByGeometryGeojson", notes = "Returns all service instances matching the specified GeoJson shape. Note that geometries have to follow the right-hand rule for inclusion, and left-hand rule for exclusion of areas.")
     public ResponseEntity<?> searchInstancesByGeometryGeojson(@RequestParam String geometry,
             @RequestParam(defaultValue = "false") String includeDoc,
+            @RequestParam(defaultValue = "true") String includeXml,
             @RequestParam(defaultValue = "", required = false) String query,
             @RequestParam(defaultValue = "false") String includeNonCompliant,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "false") String count,
             Pageable pageable)
             throws Exception, URISyntaxException {
 
         log.debug("REST request to get Instance by geojson ", geometry);
-        Page<Instance> page = instanceService.findByGeoshape(geometry, query, Boolean.valueOf(includeNonCompliant), pageable);
-        if (page != null && page.getContent() != null && "true".equalsIgnoreCase(includeDoc) == false) {
-            for(Instance instance:page.getContent()) {
-                instance.setDocs(null);
-                instance.setInstanceAsDoc(null);
-            }
+        if (cursor != null) {
+            CursorPage<Instance> cursorPage = instanceService.findByGeoshape(geometry, query, Boolean.valueOf(includeNonCompliant),
+                fields(includeDoc, includeXml), PaginationUtil.searchCursor(cursor, pageable, count));
+            return new ResponseEntity<>(cursorPage.getContent(), PaginationUtil.generateCursorPaginationHttpHeaders(cursorPage), HttpStatus.OK);
         }
+        Page<Instance> page = instanceService.findByGeoshape(geometry, query, Boolean.valueOf(includeNonCompliant),
+            fields(includeDoc, includeXml), pageable);
         HttpHeaders headers = PaginationUtil.generateSearchPaginationHttpHeaders(geometry, page, "/api/_searchGeometry/serviceInstance");
         return new ResponseEntity<>(page.getContent(), headers, HttpStatus.OK);
     }
@@ -492,22 +652,22 @@ public class ServiceInstanceResource {
     public ResponseEntity<?> searchInstancesByGeometryWKT(@RequestParam String geometry,
             @RequestParam(defaultValue = "", required = false) String query,
             @RequestParam(defaultValue = "false") String includeDoc,
+            @RequestParam(defaultValue = "true") String includeXml,
             @RequestParam(defaultValue = "false") String includeNonCompliant,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "false") String count,
             Pageable pageable)
             throws Exception, URISyntaxException {
 
         log.debug("REST request to get Instance by wkt ", geometry);
-        String geoJson = null;
-        geoJson = InstanceUtil.convertWKTtoGeoJson(geometry).toString();
-        log.debug("Converted Geojson: " + geoJson);
-        Page<Instance> page = instanceService.findByGeoshape(geoJson, query, Boolean.valueOf(includeNonCompliant), pageable);
-        if (page != null && page.getContent() != null && "true".equalsIgnoreCase(includeDoc) == false) {
-            for(Instance instance:page.getContent()) {
-                instance.setDocs(null);
-                instance.setInstanceAsDoc(null);
-            }
+        if (cursor != null) {
+            CursorPage<Instance> cursorPage = instanceService.findByWkt(geometry, query, Boolean.valueOf(includeNonCompliant),
+                fields(includeDoc, includeXml), PaginationUtil.searchCursor(cursor, pageable, count));
+            return new ResponseEntity<>(cursorPage.getContent(), PaginationUtil.generateCursorPaginationHttpHeaders(cursorPage), HttpStatus.OK);
         }
-        HttpHeaders headers = PaginationUtil.generateSearchPaginationHttpHeaders(geoJson, page, "/api/_searchGeometry/serviceInstance");
+        Page<Instance> page = instanceService.findByWkt(geometry, query, Boolean.valueOf(includeNonCompliant),
+            fields(includeDoc, includeXml), pageable);
+        HttpHeaders headers = PaginationUtil.generateSearchPaginationHttpHeaders(geometry, page, "/api/_searchGeometryWKT/serviceInstance");
         return new ResponseEntity<>(page.getContent(), headers, HttpStatus.OK);
     }
 
@@ -541,6 +701,10 @@ public class ServiceInstanceResource {
         return ResponseEntity.ok().headers(HeaderUtil.createEntityStatusUpdateAlert("instance", id.toString())).build();
     }
 
+    private static InstanceFields fields(String includeDoc, String includeXml) {
+        return InstanceFields.of("true".equalsIgnoreCase(includeDoc), !"false".equalsIgnoreCase(includeXml));
+    }
+
     @ExceptionHandler({Exception.class, URISyntaxException.class})
     public ResponseEntity<?> handleException(Exception e, WebRequest webRequest) {
         Map<String, String> errorMap = new HashMap<String, String>();
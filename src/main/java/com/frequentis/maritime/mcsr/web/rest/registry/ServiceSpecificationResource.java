@@ -48,6 +48,7 @@ import org.springframework.web.context.request.WebRequest;
 import com.codahale.metrics.annotation.Timed;
 import com.frequentis.maritime.mcsr.domain.Specification;
 import com.frequentis.maritime.mcsr.domain.Xml;
+import com.frequentis.maritime.mcsr.service.CursorPage;
 import com.frequentis.maritime.mcsr.service.SpecificationService;
 import com.frequentis.maritime.mcsr.service.XmlService;
 import com.frequentis.maritime.mcsr.web.rest.SpecificationResource;
@@ -260,13 +261,28 @@ public class ServiceSpecificationResource {
 	 *
 	 * @param query
 	 *            the query of the specification search
+	 * @param cursor
+	 *            read the page following this cursor instead of a page
+	 *            number, empty for the first page
+	 * @param count
+	 *            with a cursor, also report the total number of matching
+	 *            specifications
 	 * @return the result of the search
 	 */
 	@RequestMapping(value = "/_search/serviceSpecification", method = RequestMethod.GET, produces = MediaType.APPLICATION_JSON_VALUE)
 	@Timed
-	public ResponseEntity<List<Specification>> searchSpecifications(@RequestParam String query, Pageable pageable)
+	public ResponseEntity<List<Specification>> searchSpecifications(@RequestParam String query,
+	        @RequestParam(required = false) String cursor,
+	        @RequestParam(defaultValue = "false") String count,
+	        Pageable pageable)
 	        throws URISyntaxException {
 		log.debug("REST request to search for a page of Specifications for query {}", query);
+		if (cursor != null) {
+			CursorPage<Specification> cursorPage = specificationService.search(query,
+			        PaginationUtil.searchCursor(cursor, pageable, count));
+			return new ResponseEntity<>(cursorPage.getContent(),
+			        PaginationUtil.generateCursorPaginationHttpHeaders(cursorPage), HttpStatus.OK);
+		}
 		Page<Specification> page = specificationService.search(query, pageable);
 		HttpHeaders headers = PaginationUtil.generateSearchPaginationHttpHeaders(query, page,
 		        "/api/_search/serviceSpecification");
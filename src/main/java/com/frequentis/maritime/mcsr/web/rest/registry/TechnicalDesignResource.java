@@ -47,6 +47,7 @@ import org.springframework.web.context.request.WebRequest;
 
 import com.codahale.metrics.annotation.Timed;
 import com.frequentis.maritime.mcsr.domain.Design;
+import com.frequentis.maritime.mcsr.service.CursorPage;
 import com.frequentis.maritime.mcsr.service.DesignService;
 import com.frequentis.maritime.mcsr.web.rest.DesignResource;
 import com.frequentis.maritime.mcsr.web.rest.util.InstanceUtil;
@@ -247,15 +248,24 @@ public class TechnicalDesignResource {
      * to the query.
      *
      * @param query the query of the design search
+     * @param cursor read the page following this cursor instead of a page number, empty for the first page
+     * @param count with a cursor, also report the total number of matching designs
      * @return the result of the search
      */
     @RequestMapping(value = "/_search/technicalDesign",
         method = RequestMethod.GET,
         produces = MediaType.APPLICATION_JSON_VALUE)
     @Timed
-    public ResponseEntity<List<Design>> searchDesigns(@RequestParam String query, Pageable pageable)
+    public ResponseEntity<List<Design>> searchDesigns(@RequestParam String query,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "false") String count,
+            Pageable pageable)
         throws URISyntaxException {
         log.debug("REST request to search for a page of Designs for query {}", query);
+        if (cursor != null) {
+            CursorPage<Design> cursorPage = designService.search(query, PaginationUtil.searchCursor(cursor, pageable, count));
+            return new ResponseEntity<>(cursorPage.getContent(), PaginationUtil.generateCursorPaginationHttpHeaders(cursorPage), HttpStatus.OK);
+        }
         Page<Design> page = designService.search(query, pageable);
         HttpHeaders headers = PaginationUtil.generateSearchPaginationHttpHeaders(query, page, "/api/_search/technicalDesign");
         return new ResponseEntity<>(page.getContent(), headers, HttpStatus.OK);
@@ -24,6 +24,7 @@ import com.frequentis.maritime.mcsr.domain.Design;
 import com.frequentis.maritime.mcsr.domain.Instance;
 import com.frequentis.maritime.mcsr.domain.Specification;
 import com.frequentis.maritime.mcsr.domain.Xml;
+import com.frequentis.maritime.mcsr.security.RegistryPrincipalResolver;
 import com.frequentis.maritime.mcsr.service.DesignService;
 import com.frequentis.maritime.mcsr.web.exceptions.DesignDocumentDoesNotExistException;
 import com.frequentis.maritime.mcsr.web.exceptions.GeometryParseException;
@@ -36,28 +37,14 @@ import org.springframework.util.Assert;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.w3c.dom.Document;
 import org.wololo.geojson.GeoJSON;
 import org.wololo.jts2geojson.GeoJSONWriter;
 
-import javax.xml.parsers.DocumentBuilder;
-import javax.xml.parsers.DocumentBuilderFactory;
-import javax.xml.xpath.XPath;
-import javax.xml.xpath.XPathConstants;
-import javax.xml.xpath.XPathFactory;
 import java.io.*;
-import java.nio.charset.StandardCharsets;
-import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.HashSet;
 
 public class InstanceUtil {
     private static final Logger log = LoggerFactory.getLogger(InstanceUtil.class);
-    private static HashMap<String, UnLoCodeMapEntry> UnLoCodeMap = null;
-    private static final String JSON_KEY_COUNTRY = "Country";
-    private static final String JSON_KEY_LOCATION = "Location";
-    private static final String JSON_KEY_COORDINATES = "Coordinates";
-
 
     /**
      * Parse instance attributes from the xml payload for search/filtering
@@ -67,63 +54,8 @@ public class InstanceUtil {
      * @throws Exception if the XML is invalid or attributes not present
      */
     public static Instance parseInstanceAttributesFromXML(Instance instance) throws Exception {
-        DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
-        DocumentBuilder builder = null;
-        builder = factory.newDocumentBuilder();
-        log.info("Parsing XML: " + instance.getInstanceAsXml().getContent().toString());
-        Document doc = builder.parse(new ByteArrayInputStream(instance.getInstanceAsXml().getContent().toString().getBytes(StandardCharsets.UTF_8)));
-        XPathFactory xPathFactory = XPathFactory.newInstance();
-        XPath xPath = xPathFactory.newXPath();
-
-        instance.setName(xPath.compile("/*[local-name()='serviceInstance']/*[local-name()='name']").evaluate(doc, XPathConstants.STRING).toString());
-        instance.setVersion(xPath.compile("/*[local-name()='serviceInstance']/*[local-name()='version']").evaluate(doc, XPathConstants.STRING).toString());
-        instance.setInstanceId(xPath.compile("/*[local-name()='serviceInstance']/*[local-name()='id']").evaluate(doc, XPathConstants.STRING).toString());
-        instance.setKeywords(xPath.compile("/*[local-name()='serviceInstance']/*[local-name()='keywords']").evaluate(doc, XPathConstants.STRING).toString());
-        instance.setStatus(xPath.compile("/*[local-name()='serviceInstance']/*[local-name()='status']").evaluate(doc, XPathConstants.STRING).toString());
-        instance.setComment(xPath.compile("/*[local-name()='serviceInstance']/*[local-name()='description']").evaluate(doc, XPathConstants.STRING).toString());
-        instance.setEndpointUri(xPath.compile("/*[local-name()='serviceInstance']/*[local-name()='URL']").evaluate(doc, XPathConstants.STRING).toString());
-        instance.setMmsi(xPath.compile("/*[local-name()='serviceInstance']/*[local-name()='MMSI']").evaluate(doc, XPathConstants.STRING).toString());
-        instance.setImo(xPath.compile("/*[local-name()='serviceInstance']/*[local-name()='IMO']").evaluate(doc, XPathConstants.STRING).toString());
-        instance.setServiceType(xPath.compile("/*[local-name()='serviceInstance']/*[local-name()='serviceType']").evaluate(doc, XPathConstants.STRING).toString());
-
-        String unLoCode = xPath.compile("/*[local-name()='serviceInstance']/*[local-name()='unLoCode']").evaluate(doc, XPathConstants.STRING).toString();
-        if (unLoCode != null && unLoCode.length() > 0) {
-            instance.setUnlocode(unLoCode);
-        }
-        return instance;
-    }
-
-    public static DesignImplementation parseInstanceDesignImplementationFromXML(Instance instance) throws Exception {
-        DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
-        DocumentBuilder builder = null;
-        builder = factory.newDocumentBuilder();
-        Document doc = builder.parse(new ByteArrayInputStream(instance.getInstanceAsXml().getContent().toString().getBytes(StandardCharsets.UTF_8)));
-        XPathFactory xPathFactory = XPathFactory.newInstance();
-        XPath xPath = xPathFactory.newXPath();
-
-        String implementedServiceDesign = xPath.compile("/*[local-name()='serviceInstance']/*[local-name()='implementsServiceDesign']/*[local-name()='id']").evaluate(doc, XPathConstants.STRING).toString();
-        String implementedServiceDesignVersion = xPath.compile("/*[local-name()='serviceInstance']/*[local-name()='implementsServiceDesign']/*[local-name()='version']").evaluate(doc, XPathConstants.STRING).toString();
-
-        return new DesignImplementation(implementedServiceDesign, implementedServiceDesignVersion);
-    }
-
-    private static class DesignImplementation {
-        private String designId;
-        private String version;
-
-        private DesignImplementation(String designId, String version) {
-            this.designId = designId;
-            this.version = version;
-        }
-
-        public String getDesignId() {
-            return designId;
-        }
-
-        public String getVersion() {
-            return version;
-        }
-
+        log.debug("Parsing XML of instance {}", instance.getId());
+        return InstanceXmlParser.parse(instance.getInstanceAsXml().getContent()).applyTo(instance);
     }
 
     /**
@@ -134,16 +66,21 @@ public class InstanceUtil {
      * @throws Exception if the XML is invalid or attributes not present
      */
     public static Instance parseInstanceGeometryFromXML(Instance instance) throws Exception {
-        DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
-        DocumentBuilder builder = null;
-        builder = factory.newDocumentBuilder();
-        log.info("Parsing XML: " + instance.getInstanceAsXml().getContent().toString());
-        Document doc = builder.parse(new ByteArrayInputStream(instance.getInstanceAsXml().getContent().toString().getBytes(StandardCharsets.UTF_8)));
-        XPathFactory xPathFactory = XPathFactory.newInstance();
-        XPath xPath = xPathFactory.newXPath();
+        log.debug("Parsing geometry of instance {}", instance.getId());
+        return applyInstanceGeometry(instance, InstanceXmlParser.parse(instance.getInstanceAsXml().getContent()));
+    }
 
-        String unLoCode = xPath.compile("/*[local-name()='serviceInstance']/*[local-name()='coversAreas']/*[local-name()='unLoCode']").evaluate(doc, XPathConstants.STRING).toString();
-        String geometryAsWKT = xPath.compile("/*[local-name()='serviceInstance']/*[local-name()='coversAreas']/*[local-name()='coversArea']/*[local-name()='geometryAsWKT']").evaluate(doc);
+    /**
+     * Set the instance geometry from already parsed xml attributes
+     *
+     * @param instance the instance to update
+     * @param attributes the attributes parsed from the instance xml
+     * @return an instance with its geometry set
+     * @throws Exception if the geometry could not be parsed
+     */
+    public static Instance applyInstanceGeometry(Instance instance, InstanceXmlAttributes attributes) throws Exception {
+        String unLoCode = attributes.getCoversAreaUnLoCode();
+        String geometryAsWKT = attributes.getGeometryAsWKT();
 
         //UN/LOCODE and Coverage Geometry are supported simultaneously. However, for geo-searches, Coverage takes precedence over UN/LOCODE.
         if (unLoCode != null && unLoCode.length() > 0) {
@@ -193,20 +130,15 @@ public class InstanceUtil {
      * @throws IOException if the UnLoCode mapping file could not be loaded
      */
     public static void mapUnLoCodeToLocation(Instance instance, String unLoCode) throws IOException {
-        if (UnLoCodeMap == null) {
-            InputStream s = InstanceUtil.class.getClassLoader().getResourceAsStream("UnLoCodeLists.json");
-            loadUnLoCodeMapping(s);
-        }
-
         applyUnLoCodeMapping(instance, unLoCode);
     }
 
     public static void applyUnLoCodeMapping(Instance instance, String unLoCode) {
-        UnLoCodeMapEntry e = UnLoCodeMap.get(unLoCode);
+        double[] position = UnLoCodeGazetteer.getCurrent().getPosition(unLoCode);
         String pointWKT = "";
         try {
-            if (e != null) {
-                pointWKT = "POINT (" + e.longitude + " " + e.latitude + ")";
+            if (position != null) {
+                pointWKT = "POINT (" + position[1] + " " + position[0] + ")";
                 JsonNode pointJson = convertWKTtoGeoJson(pointWKT);
                 //Update the json geometry so E2 can find it
                 instance.setGeometry(pointJson);
@@ -223,56 +155,13 @@ public class InstanceUtil {
     }
 
     /**
-     * Fetch lat/lon from json mapping file and populate coverage geometry with it as point
+     * Fetch lat/lon from json mapping file and replace the UnLoCode gazetteer in use with it
      *
-     * @throws Exception if the unLoCode mapping file could not be found
+     * @param inStream the json mapping
+     * @throws IOException if the unLoCode mapping could not be read
      */
     public static void loadUnLoCodeMapping(InputStream inStream) throws IOException {
-        UnLoCodeMap = new HashMap<String, UnLoCodeMapEntry>();
-        ObjectMapper mapper = new ObjectMapper();
-        double invalid = -99999;
-
-        JsonNode unLoCodeJson = null;
-        unLoCodeJson = mapper.readTree(inStream);
-        for (JsonNode entry : unLoCodeJson) {
-            try {
-                UnLoCodeMapEntry unLoCode = new UnLoCodeMapEntry();
-                String country = entry.get(JSON_KEY_COUNTRY).textValue();
-                String location = entry.get(JSON_KEY_LOCATION).textValue();
-                String coordinatesCombined = entry.get(JSON_KEY_COORDINATES).textValue();
-                unLoCode.latitude = invalid;
-                unLoCode.longitude = invalid;
-                //coordinates are given in the form of "DDMM[N/S] DDDMM[W/E]"
-                if (coordinatesCombined != null) {
-                    coordinatesCombined = coordinatesCombined.trim();
-                    if (coordinatesCombined.length() > 0) {
-                        String[] c = coordinatesCombined.split("\\s");
-                        String latDegrees = c[0].substring(0, 2);
-                        String latMinutes = c[0].substring(2, 4);
-                        String latDirection = c[0].substring(4, 5);
-                        unLoCode.latitude = Double.parseDouble(latDegrees + "." + latMinutes);
-                        if (latDirection == "S") {
-                            unLoCode.latitude = -unLoCode.latitude;
-                        }
-                        String lonDegrees = c[1].substring(0, 3);
-                        String lonMinutes = c[1].substring(3, 5);
-                        String lonDirection = c[1].substring(5, 6);
-                        unLoCode.longitude = Double.parseDouble(lonDegrees + "." + lonMinutes);
-                        if (lonDirection == "W") {
-                            unLoCode.longitude = -unLoCode.longitude;
-                        }
-                    }
-                }
-                String status = entry.get("Status").textValue();
-
-                unLoCode.status = status;
-                if (unLoCode.latitude != invalid && unLoCode.longitude != invalid) {
-                    UnLoCodeMap.put(country + location, unLoCode);
-                }
-            } catch (Exception e) {
-                log.error("Error parsing UnLoCode mapping file: ", e);
-            }
-        }
+        UnLoCodeGazetteer.install(UnLoCodeGazetteer.fromJson(inStream));
     }
 
     public static boolean checkOrganizationId(Instance instance, String organizationId) {
@@ -302,21 +191,19 @@ public class InstanceUtil {
         if(instance == null) {
             return;
         }
+        InstanceXmlAttributes attributes;
         try {
-            String xml = instance.getInstanceAsXml().getContent().toString();
-            XmlUtil.validateXml(xml, "ServiceInstanceSchema.xsd");
-            instance = parseInstanceAttributesFromXML(instance);
+            String xml = instance.getInstanceAsXml().getContent();
+            attributes = InstanceXmlParser.parseAndValidate(xml, "ServiceInstanceSchema.xsd");
+            attributes.applyTo(instance);
 
-            DesignImplementation document = parseInstanceDesignImplementationFromXML(instance);
-            if(document != null) {
-                Design findByDomainId = designService.findByDomainId(document.getDesignId(), document.getVersion());
+            if (attributes.getDesignId().length() > 0) {
+                Design findByDomainId = designService.findByDomainId(attributes.getDesignId(), attributes.getDesignVersion());
                 if(findByDomainId != null) {
-                    if(instance.getDesigns().isEmpty()) {
+                    if(instance.getDesigns() == null || instance.getDesigns().isEmpty()) {
                         instance.setDesigns(new HashSet<>());
                     }
                     instance.getDesigns().add(findByDomainId);
-                } else {
-                    // nothing
                 }
             }
 
@@ -337,7 +224,7 @@ public class InstanceUtil {
         }
 
         try {
-            parseInstanceGeometryFromXML(instance);
+            applyInstanceGeometry(instance, attributes);
         } catch (Exception e) {
             throw new GeometryParseException("GeometryParse error.", e);
         }
@@ -349,44 +236,6 @@ public class InstanceUtil {
      *
      */
     public static boolean checkRolePermissions(String entityOrganizationId, String bearerToken) {
-	String organizationId = "";
-        ArrayList<String> roles = new ArrayList();
-        ArrayList<String> aobs = new ArrayList();
-        try {
-            organizationId = HeaderUtil.extractOrganizationIdFromToken(bearerToken);
-        } catch (Exception e) {
-            log.warn("No organizationId could be parsed from the bearer token");
-        }
-        try {
-            roles = HeaderUtil.getRolesFromToken(bearerToken);
-        } catch (Exception e) {
-            log.warn("No roles could be parsed from the bearer token");
-        }
-        try {
-            aobs = HeaderUtil.getActingOnBehalfOfFromToken(bearerToken);
-        } catch (Exception e) {
-            log.warn("No act-on-behalf-of data could be parsed from the bearer token");
-        }
-
-	if (!roles.contains("ROLE_SITE_ADMIN") && !roles.contains("ROLE_ORG_ADMIN") && !roles.contains("ROLE_ENTITY_ADMIN") && !roles.contains("ROLE_SERVICE_ADMIN")) {
-            log.warn("User does not have the neccessary roles to perform this operation");
-	    return false;
-	}
-
-        if (entityOrganizationId != null && entityOrganizationId.length() > 0 && !organizationId.equals(entityOrganizationId)) {
-	    if (!aobs.contains(entityOrganizationId)) {
-		if (roles.contains("ROLE_SERVICE_ADMIN")) {
-		    return true;
-		}
-                log.warn("User is not part or acting on behalf of Organization ID "+organizationId);
-		return false;
-	    } else {
-		return true;
-	    }
-        }
-	return true;
-
+        return RegistryPrincipalResolver.resolve(bearerToken).canModify(entityOrganizationId);
     }
-
-
 }
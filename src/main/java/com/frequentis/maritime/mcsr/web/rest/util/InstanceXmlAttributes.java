@@ -0,0 +1,156 @@
+/*
+ * MaritimeCloud Service Registry
+ * Copyright (c) 2016 Frequentis AG
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.frequentis.maritime.mcsr.web.rest.util;
+
+import com.frequentis.maritime.mcsr.domain.Instance;
+
+/**
+ * Values of a service instance XML needed for search/filtering, as read by {@link InstanceXmlParser}.
+ *
+ * <p>
+ * Elements missing in the XML are reported as empty strings, the same way
+ * the former XPath based parsing did.
+ * </p>
+ */
+public class InstanceXmlAttributes {
+
+    String name = "";
+    String version = "";
+    String id = "";
+    String keywords = "";
+    String status = "";
+    String description = "";
+    String url = "";
+    String mmsi = "";
+    String imo = "";
+    String serviceType = "";
+    String unLoCode = "";
+    String designId = "";
+    String designVersion = "";
+    String coversAreaUnLoCode = "";
+    String geometryAsWKT = "";
+
+    public String getName() {
+        return name;
+    }
+
+    public String getVersion() {
+        return version;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public String getKeywords() {
+        return keywords;
+    }
+
+    public String getStatus() {
+        return status;
+    }
+
+    public String getDescription() {
+        return description;
+    }
+
+    public String getUrl() {
+        return url;
+    }
+
+    public String getMmsi() {
+        return mmsi;
+    }
+
+    public String getImo() {
+        return imo;
+    }
+
+    public String getServiceType() {
+        return serviceType;
+    }
+
+    public String getUnLoCode() {
+        return unLoCode;
+    }
+
+    /**
+     * @return the id of the implemented service design
+     */
+    public String getDesignId() {
+        return designId;
+    }
+
+    /**
+     * @return the version of the implemented service design
+     */
+    public String getDesignVersion() {
+        return designVersion;
+    }
+
+    /**
+     * @return the UN/LOCODE given as coverage area
+     */
+    public String getCoversAreaUnLoCode() {
+        return coversAreaUnLoCode;
+    }
+
+    /**
+     * @return the WKT geometry of the first coverage area
+     */
+    public String getGeometryAsWKT() {
+        return geometryAsWKT;
+    }
+
+    /**
+     * Copy the search attributes to an instance.
+     *
+     * @param instance the instance to update
+     * @return the same instance
+     */
+    public Instance applyTo(Instance instance) {
+        instance.setName(name);
+        instance.setVersion(version);
+        instance.setInstanceId(id);
+        instance.setKeywords(keywords);
+        instance.setStatus(status);
+        instance.setComment(description);
+        instance.setEndpointUri(url);
+        instance.setMmsi(mmsi);
+        instance.setImo(imo);
+        instance.setServiceType(serviceType);
+        if (unLoCode.length() > 0) {
+            instance.setUnlocode(unLoCode);
+        }
+        return instance;
+    }
+
+    @Override
+    public String toString() {
+        return "InstanceXmlAttributes{" +
+            "name='" + name + "'" +
+            ", version='" + version + "'" +
+            ", id='" + id + "'" +
+            ", status='" + status + "'" +
+            ", designId='" + designId + "'" +
+            ", designVersion='" + designVersion + "'" +
+            ", coversAreaUnLoCode='" + coversAreaUnLoCode + "'" +
+            '}';
+    }
+}
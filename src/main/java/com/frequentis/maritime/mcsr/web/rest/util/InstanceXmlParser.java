@@ -0,0 +1,215 @@
+/*
+ * MaritimeCloud Service Registry
+ * Copyright (c) 2016 Frequentis AG
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.frequentis.maritime.mcsr.web.rest.util;
+
+import org.xml.sax.Attributes;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+import org.xml.sax.XMLReader;
+import org.xml.sax.helpers.DefaultHandler;
+
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.parsers.SAXParser;
+import javax.xml.parsers.SAXParserFactory;
+import javax.xml.validation.ValidatorHandler;
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Single pass reader for service instance XML.
+ *
+ * <p>
+ * The instance XML is streamed once through a SAX parser. The values needed for search/filtering are
+ * collected on the way, and optionally the same event stream is validated against the instance schema,
+ * so no DOM is built and no XPath is evaluated.
+ * </p>
+ */
+public final class InstanceXmlParser {
+
+    private static final String ROOT = "serviceInstance";
+    private static final String IMPLEMENTS_SERVICE_DESIGN = "implementsServiceDesign";
+    private static final String COVERS_AREAS = "coversAreas";
+    private static final String COVERS_AREA = "coversArea";
+
+    private static final Set<String> KEYS = new HashSet<>(Arrays.asList(
+        "name", "version", "id", "keywords", "status", "description", "URL", "MMSI", "IMO", "serviceType", "unLoCode",
+        IMPLEMENTS_SERVICE_DESIGN + "/id", IMPLEMENTS_SERVICE_DESIGN + "/version",
+        COVERS_AREAS + "/unLoCode", COVERS_AREAS + "/" + COVERS_AREA + "/geometryAsWKT"));
+
+    private static final ThreadLocal<SAXParser> PARSERS = ThreadLocal.withInitial(InstanceXmlParser::createParser);
+
+    private InstanceXmlParser() {
+        // Nothing
+    }
+
+    /**
+     * Read the search attributes from an instance XML without validating it.
+     *
+     * @param xml the XML as string
+     * @return the attributes found in the XML
+     * @throws SAXException if the XML is not well-formed
+     * @throws IOException if the XML could not be read
+     */
+    public static InstanceXmlAttributes parse(String xml) throws SAXException, IOException {
+        return parse(new InputSource(new StringReader(xml)), null);
+    }
+
+    /**
+     * Validate an instance XML against a schema on the classpath and read its search attributes in the same pass.
+     *
+     * @param xml the XML as string
+     * @param schemaFileName the name of the XSD on the classpath
+     * @return the attributes found in the XML
+     * @throws SAXException if the XML is invalid
+     * @throws IOException if the XML could not be read
+     */
+    public static InstanceXmlAttributes parseAndValidate(String xml, String schemaFileName) throws SAXException, IOException {
+        return parse(new InputSource(new StringReader(xml)), schemaFileName);
+    }
+
+    private static InstanceXmlAttributes parse(InputSource source, String schemaFileName) throws SAXException, IOException {
+        InstanceXmlAttributes result = new InstanceXmlAttributes();
+        AttributeHandler handler = new AttributeHandler(result);
+        SAXParser parser = PARSERS.get();
+        try {
+            XMLReader reader = parser.getXMLReader();
+            reader.setErrorHandler(null);
+            if (schemaFileName != null) {
+                ValidatorHandler validatorHandler = XmlSchemaRegistry.getSchema(schemaFileName).newValidatorHandler();
+                validatorHandler.setContentHandler(handler);
+                reader.setContentHandler(validatorHandler);
+            } else {
+                reader.setContentHandler(handler);
+            }
+            reader.parse(source);
+        } finally {
+            parser.reset();
+        }
+        return result;
+    }
+
+    private static SAXParser createParser() {
+        SAXParserFactory factory = SAXParserFactory.newInstance();
+        factory.setNamespaceAware(true);
+        try {
+            return factory.newSAXParser();
+        } catch (ParserConfigurationException | SAXException e) {
+            throw new IllegalStateException("Could not create SAX parser", e);
+        }
+    }
+
+    /**
+     * Collects the text of the interesting elements, keyed by their local name path below the root.
+     * Like the XPath string value, only the first occurrence of an element is taken.
+     */
+    private static class AttributeHandler extends DefaultHandler {
+
+        private static final int MAX_DEPTH = 8;
+
+        private final InstanceXmlAttributes result;
+        private final String[] path = new String[MAX_DEPTH];
+        private int depth;
+
+        private StringBuilder text;
+        private int textDepth;
+        private String target;
+        private final Set<String> captured = new HashSet<>();
+
+        AttributeHandler(InstanceXmlAttributes result) {
+            this.result = result;
+        }
+
+        @Override
+        public void startElement(String uri, String localName, String qName, Attributes attributes) {
+            if (depth < MAX_DEPTH) {
+                path[depth] = localName;
+            }
+            depth++;
+            if (text == null) {
+                String key = targetKey();
+                if (key != null && KEYS.contains(key) && !captured.contains(key)) {
+                    target = key;
+                    text = new StringBuilder();
+                    textDepth = depth;
+                }
+            }
+        }
+
+        @Override
+        public void characters(char[] ch, int start, int length) {
+            if (text != null) {
+                text.append(ch, start, length);
+            }
+        }
+
+        @Override
+        public void endElement(String uri, String localName, String qName) {
+            if (text != null && depth == textDepth) {
+                captured.add(target);
+                assign(target, text.toString());
+                text = null;
+                target = null;
+            }
+            depth--;
+        }
+
+        private String targetKey() {
+            if (depth < 2 || depth > 4 || !ROOT.equals(path[0])) {
+                return null;
+            }
+            if (depth == 2) {
+                return path[1];
+            }
+            if (depth == 3 && IMPLEMENTS_SERVICE_DESIGN.equals(path[1])) {
+                return IMPLEMENTS_SERVICE_DESIGN + "/" + path[2];
+            }
+            if (depth == 3 && COVERS_AREAS.equals(path[1])) {
+                return COVERS_AREAS + "/" + path[2];
+            }
+            if (depth == 4 && COVERS_AREAS.equals(path[1]) && COVERS_AREA.equals(path[2])) {
+                return COVERS_AREAS + "/" + COVERS_AREA + "/" + path[3];
+            }
+            return null;
+        }
+
+        private void assign(String key, String value) {
+            switch (key) {
+                case "name": result.name = value; break;
+                case "version": result.version = value; break;
+                case "id": result.id = value; break;
+                case "keywords": result.keywords = value; break;
+                case "status": result.status = value; break;
+                case "description": result.description = value; break;
+                case "URL": result.url = value; break;
+                case "MMSI": result.mmsi = value; break;
+                case "IMO": result.imo = value; break;
+                case "serviceType": result.serviceType = value; break;
+                case "unLoCode": result.unLoCode = value; break;
+                case IMPLEMENTS_SERVICE_DESIGN + "/id": result.designId = value; break;
+                case IMPLEMENTS_SERVICE_DESIGN + "/version": result.designVersion = value; break;
+                case COVERS_AREAS + "/unLoCode": result.coversAreaUnLoCode = value; break;
+                case COVERS_AREAS + "/" + COVERS_AREA + "/geometryAsWKT": result.geometryAsWKT = value; break;
+                default: break;
+            }
+        }
+    }
+}
@@ -18,9 +18,14 @@
 package com.frequentis.maritime.mcsr.web.rest.util;
 
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
 import org.springframework.http.HttpHeaders;
+import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
 import org.springframework.web.util.UriComponentsBuilder;
 
+import com.frequentis.maritime.mcsr.service.CursorPage;
+import com.frequentis.maritime.mcsr.service.SearchCursor;
+
 import java.net.URISyntaxException;
 
 /**
@@ -110,4 +115,35 @@ public class PaginationUtil {
         headers.add(HttpHeaders.LINK, link);
         return headers;
     }
+
+    /**
+     * @param cursor the cursor request parameter
+     * @param pageable the requested page, only its size is used
+     * @param count the count request parameter
+     * @return the search cursor
+     */
+    public static SearchCursor searchCursor(String cursor, Pageable pageable, String count) {
+        return SearchCursor.of(cursor, pageable.getPageSize(), "true".equalsIgnoreCase(count));
+    }
+
+    /**
+     * Headers of a page read with a cursor. The next link repeats the current request with the cursor of the following
+     * page, the total count is only set if it was requested.
+     */
+    public static HttpHeaders generateCursorPaginationHttpHeaders(CursorPage<?> page) {
+        HttpHeaders headers = new HttpHeaders();
+        if (page.getTotalElements() != null) {
+            headers.add("X-Total-Count", "" + page.getTotalElements());
+        }
+        if (page.getNextCursor() != null) {
+            headers.add("X-Next-Cursor", page.getNextCursor());
+            String next = ServletUriComponentsBuilder.fromCurrentRequest()
+                .replaceQueryParam("page")
+                .replaceQueryParam("cursor", page.getNextCursor())
+                .build()
+                .toUriString();
+            headers.add(HttpHeaders.LINK, "<" + next + ">; rel=\"next\"");
+        }
+        return headers;
+    }
 }
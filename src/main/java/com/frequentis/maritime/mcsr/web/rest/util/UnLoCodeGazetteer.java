@@ -0,0 +1,437 @@
+/*
+ * MaritimeCloud Service Registry
+ * Copyright (c) 2016 Frequentis AG
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.frequentis.maritime.mcsr.web.rest.util;
+
+import com.codahale.metrics.Timer;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Immutable UN/LOCODE to position lookup table.
+ *
+ * <p>
+ * The five character codes are packed into {@code int} keys (base 37 over 0-9 and A-Z), kept sorted and
+ * searched binary. Latitudes and longitudes are stored in parallel {@code double[]} arrays, so the whole
+ * table is a handful of primitive arrays instead of one map entry per location. A second index sorted
+ * by latitude serves "UN/LOCODEs near a point" lookups.
+ * </p>
+ *
+ * <p>
+ * The table in use is published through {@link #getCurrent()} and replaced atomically by {@link #install(UnLoCodeGazetteer)}.
+ * </p>
+ */
+public final class UnLoCodeGazetteer {
+
+    private static final Logger log = LoggerFactory.getLogger(UnLoCodeGazetteer.class);
+
+    public static final String JSON_RESOURCE = "UnLoCodeLists.json";
+    public static final String SNAPSHOT_RESOURCE = "UnLoCodeLists.bin";
+
+    private static final String JSON_KEY_COUNTRY = "Country";
+    private static final String JSON_KEY_LOCATION = "Location";
+    private static final String JSON_KEY_COORDINATES = "Coordinates";
+
+    private static final int CODE_LENGTH = 5;
+    private static final int CODE_RADIX = 37;
+    private static final int SNAPSHOT_MAGIC = 0x554C4331; // "ULC1"
+    private static final double EARTH_RADIUS_KM = 6371.0088;
+
+    private static final UnLoCodeGazetteer EMPTY = new UnLoCodeGazetteer(new int[0], new double[0], new double[0]);
+
+    private static final Timer LOOKUP_TIMER = new Timer();
+
+    private static volatile UnLoCodeGazetteer current = EMPTY;
+
+    private static volatile boolean loaded = false;
+
+    private final int[] keys;
+    private final double[] latitudes;
+    private final double[] longitudes;
+    private final int[] byLatitude;
+
+    private UnLoCodeGazetteer(int[] keys, double[] latitudes, double[] longitudes) {
+        this.keys = keys;
+        this.latitudes = latitudes;
+        this.longitudes = longitudes;
+        this.byLatitude = sortByLatitude(latitudes);
+    }
+
+    /**
+     * @return the table currently in use, never null
+     */
+    public static UnLoCodeGazetteer getCurrent() {
+        if (!loaded) {
+            loadDefault();
+        }
+        return current;
+    }
+
+    /**
+     * Replace the table in use.
+     *
+     * @param gazetteer the new table
+     */
+    public static void install(UnLoCodeGazetteer gazetteer) {
+        current = gazetteer == null ? EMPTY : gazetteer;
+        loaded = true;
+    }
+
+    /**
+     * Load the table from the classpath, preferring the binary snapshot over the JSON list, and install it,
+     * unless a table was installed already. Should it fail, the table in use is kept.
+     *
+     * @return the table in use afterwards
+     */
+    public static synchronized UnLoCodeGazetteer loadDefault() {
+        // Concurrent first lookups wait here, only the first one loads
+        if (loaded) {
+            return current;
+        }
+        try {
+            return reloadDefault();
+        } catch (IOException e) {
+            log.error("Error loading UnLoCode mapping, keeping the {} UnLoCodes loaded before: ", current.size(), e);
+            loaded = true;
+            return current;
+        }
+    }
+
+    /**
+     * Load the table from the classpath, preferring the binary snapshot over the JSON list, and install it.
+     *
+     * @return the installed table
+     * @throws IOException if no table could be read, the table in use is kept then
+     */
+    public static UnLoCodeGazetteer reloadDefault() throws IOException {
+        return reload(UnLoCodeGazetteer.class.getClassLoader());
+    }
+
+    static synchronized UnLoCodeGazetteer reload(ClassLoader classLoader) throws IOException {
+        UnLoCodeGazetteer gazetteer;
+        try (InputStream snapshot = classLoader.getResourceAsStream(SNAPSHOT_RESOURCE)) {
+            if (snapshot != null) {
+                gazetteer = readSnapshot(snapshot);
+            } else {
+                try (InputStream json = classLoader.getResourceAsStream(JSON_RESOURCE)) {
+                    if (json == null) {
+                        throw new IOException("No UnLoCode mapping found on classpath");
+                    }
+                    gazetteer = fromJson(json);
+                }
+            }
+        }
+        install(gazetteer);
+        return gazetteer;
+    }
+
+    /**
+     * @return timer of all code lookups done through {@link #getCurrent()} tables
+     */
+    public static Timer getLookupTimer() {
+        return LOOKUP_TIMER;
+    }
+
+    /**
+     * Build a table from the UN/LOCODE json list.
+     *
+     * <p>Coordinates are given in the form of "DDMM[N/S] DDDMM[W/E]", entries without coordinates are skipped.</p>
+     *
+     * @param inStream the json list
+     * @return the table
+     * @throws IOException if the json could not be read
+     */
+    public static UnLoCodeGazetteer fromJson(InputStream inStream) throws IOException {
+        ObjectMapper mapper = new ObjectMapper();
+        List<long[]> rows = new ArrayList<>();
+        try (JsonParser parser = mapper.getFactory().createParser(inStream)) {
+            if (parser.nextToken() != JsonToken.START_ARRAY) {
+                throw new IOException("UnLoCode mapping must be a json array");
+            }
+            while (parser.nextToken() == JsonToken.START_OBJECT) {
+                JsonNode entry = parser.readValueAsTree();
+                try {
+                    String country = entry.get(JSON_KEY_COUNTRY).textValue();
+                    String location = entry.get(JSON_KEY_LOCATION).textValue();
+                    JsonNode coordinatesNode = entry.get(JSON_KEY_COORDINATES);
+                    String coordinates = coordinatesNode == null ? null : coordinatesNode.textValue();
+                    if (coordinates == null || coordinates.trim().length() == 0) {
+                        continue;
+                    }
+                    int key = encode(country + location);
+                    if (key < 0) {
+                        continue;
+                    }
+                    String[] c = coordinates.trim().split("\\s");
+                    double latitude = Double.parseDouble(c[0].substring(0, 2) + "." + c[0].substring(2, 4));
+                    if ("S".equals(c[0].substring(4, 5))) {
+                        latitude = -latitude;
+                    }
+                    double longitude = Double.parseDouble(c[1].substring(0, 3) + "." + c[1].substring(3, 5));
+                    if ("W".equals(c[1].substring(5, 6))) {
+                        longitude = -longitude;
+                    }
+                    rows.add(new long[] {key, Double.doubleToLongBits(latitude), Double.doubleToLongBits(longitude)});
+                } catch (Exception e) {
+                    log.error("Error parsing UnLoCode mapping entry {}: ", entry, e);
+                }
+            }
+        }
+        return fromRows(rows);
+    }
+
+    /**
+     * Read a table written by {@link #writeSnapshot(OutputStream)}.
+     *
+     * @param inStream the snapshot
+     * @return the table
+     * @throws IOException if the snapshot could not be read
+     */
+    public static UnLoCodeGazetteer readSnapshot(InputStream inStream) throws IOException {
+        DataInputStream in = new DataInputStream(inStream);
+        if (in.readInt() != SNAPSHOT_MAGIC) {
+            throw new IOException("Not a UnLoCode snapshot");
+        }
+        int size = in.readInt();
+        int[] keys = new int[size];
+        double[] latitudes = new double[size];
+        double[] longitudes = new double[size];
+        for (int i = 0; i < size; i++) {
+            keys[i] = in.readInt();
+            latitudes[i] = in.readDouble();
+            longitudes[i] = in.readDouble();
+        }
+        return new UnLoCodeGazetteer(keys, latitudes, longitudes);
+    }
+
+    /**
+     * Write the table in a compact binary form that loads without json parsing.
+     *
+     * @param outStream the target, it is flushed but not closed
+     * @throws IOException if the snapshot could not be written
+     */
+    public void writeSnapshot(OutputStream outStream) throws IOException {
+        DataOutputStream out = new DataOutputStream(outStream);
+        out.writeInt(SNAPSHOT_MAGIC);
+        out.writeInt(keys.length);
+        for (int i = 0; i < keys.length; i++) {
+            out.writeInt(keys[i]);
+            out.writeDouble(latitudes[i]);
+            out.writeDouble(longitudes[i]);
+        }
+        out.flush();
+    }
+
+    private static UnLoCodeGazetteer fromRows(List<long[]> rows) {
+        rows.sort(Comparator.comparingLong(row -> row[0]));
+        int[] keys = new int[rows.size()];
+        double[] latitudes = new double[rows.size()];
+        double[] longitudes = new double[rows.size()];
+        int size = 0;
+        for (long[] row : rows) {
+            // keep the last entry of duplicated codes, as the former map did
+            if (size > 0 && keys[size - 1] == (int) row[0]) {
+                size--;
+            }
+            keys[size] = (int) row[0];
+            latitudes[size] = Double.longBitsToDouble(row[1]);
+            longitudes[size] = Double.longBitsToDouble(row[2]);
+            size++;
+        }
+        return new UnLoCodeGazetteer(Arrays.copyOf(keys, size), Arrays.copyOf(latitudes, size), Arrays.copyOf(longitudes, size));
+    }
+
+    private static int[] sortByLatitude(double[] latitudes) {
+        Integer[] order = new Integer[latitudes.length];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, Comparator.comparingDouble(i -> latitudes[i]));
+        int[] result = new int[order.length];
+        for (int i = 0; i < order.length; i++) {
+            result[i] = order[i];
+        }
+        return result;
+    }
+
+    /**
+     * Pack a five character code into an int.
+     *
+     * @return the key or -1 if the code is not a valid UN/LOCODE
+     */
+    static int encode(String code) {
+        if (code == null || code.length() != CODE_LENGTH) {
+            return -1;
+        }
+        int key = 0;
+        for (int i = 0; i < CODE_LENGTH; i++) {
+            char c = Character.toUpperCase(code.charAt(i));
+            int digit;
+            if (c >= '0' && c <= '9') {
+                digit = c - '0' + 1;
+            } else if (c >= 'A' && c <= 'Z') {
+                digit = c - 'A' + 11;
+            } else {
+                return -1;
+            }
+            key = key * CODE_RADIX + digit;
+        }
+        return key;
+    }
+
+    static String decode(int key) {
+        char[] code = new char[CODE_LENGTH];
+        for (int i = CODE_LENGTH - 1; i >= 0; i--) {
+            int digit = key % CODE_RADIX;
+            code[i] = digit <= 10 ? (char) ('0' + digit - 1) : (char) ('A' + digit - 11);
+            key /= CODE_RADIX;
+        }
+        return new String(code);
+    }
+
+    /**
+     * @param unLoCode the code to look up
+     * @return the position of the code as {latitude, longitude}, or null if unknown
+     */
+    public double[] getPosition(String unLoCode) {
+        final Timer.Context context = LOOKUP_TIMER.time();
+        try {
+            int key = encode(unLoCode);
+            int index = key < 0 ? -1 : Arrays.binarySearch(keys, key);
+            if (index < 0) {
+                return null;
+            }
+            return new double[] {latitudes[index], longitudes[index]};
+        } finally {
+            context.stop();
+        }
+    }
+
+    /**
+     * Find the UN/LOCODEs within a radius of a point, nearest first.
+     *
+     * @param latitude latitude of the point
+     * @param longitude longitude of the point
+     * @param radiusKm search radius in kilometres
+     * @param limit maximum number of results, none if negative
+     * @return the matching locations
+     */
+    public List<Location> findNear(double latitude, double longitude, double radiusKm, int limit) {
+        final Timer.Context context = LOOKUP_TIMER.time();
+        try {
+            List<Location> result = new ArrayList<>();
+            double deltaLatitude = Math.toDegrees(radiusKm / EARTH_RADIUS_KM);
+            int from = lowerBound(latitude - deltaLatitude);
+            for (int i = from; i < byLatitude.length && latitudes[byLatitude[i]] <= latitude + deltaLatitude; i++) {
+                int index = byLatitude[i];
+                double distance = distanceKm(latitude, longitude, latitudes[index], longitudes[index]);
+                if (distance <= radiusKm) {
+                    result.add(new Location(decode(keys[index]), latitudes[index], longitudes[index], distance));
+                }
+            }
+            result.sort(Comparator.comparingDouble(Location::getDistanceKm));
+            int max = Math.max(limit, 0);
+            return result.size() > max ? new ArrayList<>(result.subList(0, max)) : result;
+        } finally {
+            context.stop();
+        }
+    }
+
+    private int lowerBound(double latitude) {
+        int low = 0;
+        int high = byLatitude.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (latitudes[byLatitude[mid]] < latitude) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    private static double distanceKm(double lat1, double lon1, double lat2, double lon2) {
+        double dLat = Math.toRadians(lat2 - lat1);
+        double dLon = Math.toRadians(lon2 - lon1);
+        double a = Math.sin(dLat / 2) * Math.sin(dLat / 2)
+            + Math.cos(Math.toRadians(lat1)) * Math.cos(Math.toRadians(lat2)) * Math.sin(dLon / 2) * Math.sin(dLon / 2);
+        return 2 * EARTH_RADIUS_KM * Math.asin(Math.min(1, Math.sqrt(a)));
+    }
+
+    /**
+     * @return number of codes in the table
+     */
+    public int size() {
+        return keys.length;
+    }
+
+    /**
+     * @return approximate heap used by the table arrays in bytes
+     */
+    public long getEstimatedMemoryBytes() {
+        return (long) keys.length * (Integer.BYTES * 2 + Double.BYTES * 2);
+    }
+
+    /**
+     * A UN/LOCODE found near a point.
+     */
+    public static class Location {
+        private final String unLoCode;
+        private final double latitude;
+        private final double longitude;
+        private final double distanceKm;
+
+        Location(String unLoCode, double latitude, double longitude, double distanceKm) {
+            this.unLoCode = unLoCode;
+            this.latitude = latitude;
+            this.longitude = longitude;
+            this.distanceKm = distanceKm;
+        }
+
+        public String getUnLoCode() {
+            return unLoCode;
+        }
+
+        public double getLatitude() {
+            return latitude;
+        }
+
+        public double getLongitude() {
+            return longitude;
+        }
+
+        public double getDistanceKm() {
+            return distanceKm;
+        }
+    }
+}
@@ -0,0 +1,150 @@
+/*
+ * MaritimeCloud Service Registry
+ * Copyright (c) 2016 Frequentis AG
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.frequentis.maritime.mcsr.web.rest.util;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.xml.sax.SAXException;
+
+import javax.xml.XMLConstants;
+import javax.xml.transform.Source;
+import javax.xml.transform.stream.StreamSource;
+import javax.xml.validation.Schema;
+import javax.xml.validation.SchemaFactory;
+import javax.xml.validation.Validator;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Registry of compiled XSDs used to validate registry XML payloads.
+ *
+ * <p>
+ * Every schema is read from the classpath and compiled only once. The compiled {@link Schema} is
+ * thread-safe and shared, while {@link Validator}s are not, so each thread keeps its own validator
+ * per schema and resets it before reuse. A validator is only reused while the schema it was created
+ * from is still the registered one, so {@link #clear()} takes effect on all threads.
+ * </p>
+ */
+public final class XmlSchemaRegistry {
+
+    private static final Logger log = LoggerFactory.getLogger(XmlSchemaRegistry.class);
+
+    private static final Map<String, Schema> SCHEMAS = new ConcurrentHashMap<>();
+
+    private static final ThreadLocal<Map<String, CachedValidator>> VALIDATORS = ThreadLocal.withInitial(HashMap::new);
+
+    private XmlSchemaRegistry() {
+        // Nothing
+    }
+
+    /**
+     * Get the compiled schema for an XSD on the classpath, compiling it on first use.
+     *
+     * @param schemaFileName the name of the XSD on the classpath
+     * @return the compiled schema
+     * @throws SAXException if the XSD can not be found or compiled
+     */
+    public static Schema getSchema(String schemaFileName) throws SAXException {
+        Schema schema = SCHEMAS.get(schemaFileName);
+        if (schema == null) {
+            synchronized (SCHEMAS) {
+                schema = SCHEMAS.get(schemaFileName);
+                if (schema == null) {
+                    schema = compileSchema(schemaFileName);
+                    SCHEMAS.put(schemaFileName, schema);
+                }
+            }
+        }
+        return schema;
+    }
+
+    /**
+     * Validate a source against a schema on the classpath using the validator bound to the current thread.
+     *
+     * @param xmlSource the XML to validate
+     * @param schemaFileName the name of the XSD on the classpath
+     * @throws SAXException if the XML is invalid
+     * @throws IOException if the XML could not be read
+     */
+    public static void validate(Source xmlSource, String schemaFileName) throws SAXException, IOException {
+        Validator validator = getValidator(schemaFileName);
+        try {
+            validator.validate(xmlSource);
+        } finally {
+            validator.reset();
+        }
+    }
+
+    /**
+     * Drop all compiled schemas, e.g. after the XSDs were replaced. The validators of all threads are
+     * created again on their next use.
+     */
+    public static void clear() {
+        SCHEMAS.clear();
+        VALIDATORS.remove();
+    }
+
+    private static Validator getValidator(String schemaFileName) throws SAXException {
+        Schema schema = getSchema(schemaFileName);
+        Map<String, CachedValidator> validators = VALIDATORS.get();
+        CachedValidator cached = validators.get(schemaFileName);
+        if (cached == null || cached.schema != schema) {
+            cached = new CachedValidator(schema, schema.newValidator());
+            validators.put(schemaFileName, cached);
+        }
+        return cached.validator;
+    }
+
+    private static Schema compileSchema(String schemaFileName) throws SAXException {
+        log.debug("Compiling schema {}", schemaFileName);
+        InputStream schemaInputStream = XmlSchemaRegistry.class.getClassLoader().getResourceAsStream(schemaFileName);
+        if (schemaInputStream == null) {
+            throw new SAXException("Schema " + schemaFileName + " not found on classpath");
+        }
+        try {
+            SchemaFactory schemaFactory = SchemaFactory.newInstance(XMLConstants.W3C_XML_SCHEMA_NS_URI);
+            schemaFactory.setResourceResolver(new ResourceResolver());
+            return schemaFactory.newSchema(new StreamSource(schemaInputStream));
+        } finally {
+            try {
+                schemaInputStream.close();
+            } catch (IOException e) {
+                log.warn("Could not close schema stream for {}", schemaFileName);
+            }
+        }
+    }
+
+    /**
+     * A validator of the current thread and the schema it was created from.
+     */
+    private static final class CachedValidator {
+
+        private final Schema schema;
+
+        private final Validator validator;
+
+        CachedValidator(Schema schema, Validator validator) {
+            this.schema = schema;
+            this.validator = validator;
+        }
+    }
+}
@@ -22,20 +22,15 @@ import org.w3c.dom.Document;
 import org.w3c.dom.Node;
 import org.xml.sax.SAXException;
 
-import javax.xml.XMLConstants;
 import javax.xml.parsers.DocumentBuilder;
 import javax.xml.parsers.DocumentBuilderFactory;
 import javax.xml.parsers.ParserConfigurationException;
-import javax.xml.transform.Source;
 import javax.xml.transform.Transformer;
 import javax.xml.transform.TransformerException;
 import javax.xml.transform.TransformerFactory;
 import javax.xml.transform.dom.DOMSource;
 import javax.xml.transform.stream.StreamResult;
 import javax.xml.transform.stream.StreamSource;
-import javax.xml.validation.Schema;
-import javax.xml.validation.SchemaFactory;
-import javax.xml.validation.Validator;
 import javax.xml.xpath.XPath;
 import javax.xml.xpath.XPathConstants;
 import javax.xml.xpath.XPathExpressionException;
@@ -82,15 +77,30 @@ public class XmlUtil {
      * @return true if successful, throws SAXEXception if xml invalid
      */
     public static boolean validateXml(String xml, String schemaFileName) throws SAXException, IOException {
-        //File schemaFile = new File(schemaFileName);
-        Source xmlSource = new StreamSource(new StringReader(xml));
-        SchemaFactory schemaFactory = SchemaFactory.newInstance(XMLConstants.W3C_XML_SCHEMA_NS_URI);
-        schemaFactory.setResourceResolver(new ResourceResolver());
-        InputStream schemaInputStream = XmlUtil.class.getClassLoader().getResourceAsStream(schemaFileName);
-        StreamSource schemaStreamSource = new StreamSource(schemaInputStream);
-        Schema schema = schemaFactory.newSchema(schemaStreamSource);
-        Validator validator = schema.newValidator();
-        validator.validate(xmlSource);
+        XmlSchemaRegistry.validate(new StreamSource(new StringReader(xml)), schemaFileName);
+        return true;
+    }
+
+    /**
+     * Validate xml against a schema on classpath
+     *
+     * @param xml the XML as encoded bytes
+     * @param schemaFileName the name of the XSD on the classpath
+     * @return true if successful, throws SAXEXception if xml invalid
+     */
+    public static boolean validateXml(byte[] xml, String schemaFileName) throws SAXException, IOException {
+        return validateXml(new ByteArrayInputStream(xml), schemaFileName);
+    }
+
+    /**
+     * Validate xml against a schema on classpath
+     *
+     * @param xml the XML as stream, it is not closed
+     * @param schemaFileName the name of the XSD on the classpath
+     * @return true if successful, throws SAXEXception if xml invalid
+     */
+    public static boolean validateXml(InputStream xml, String schemaFileName) throws SAXException, IOException {
+        XmlSchemaRegistry.validate(new StreamSource(xml), schemaFileName);
         return true;
     }
 
@@ -91,7 +91,7 @@ public class DocResourceImpl implements DocResource {
     @Override
     public DocDTO getDoc(long id) {
         log.debug("SOAP request to get Doc with id {}", id);
-        Doc doc = docService.findOne(id);
+        Doc doc = docService.findOneWithContent(id);
         return docDTOConverter.convert(doc);
     }
 
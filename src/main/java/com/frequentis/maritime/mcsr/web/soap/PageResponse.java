@@ -4,6 +4,7 @@ import java.util.ArrayList;
 
 import org.springframework.data.domain.Page;
 
+import com.frequentis.maritime.mcsr.service.CursorPage;
 import com.frequentis.maritime.mcsr.web.soap.converters.Converter;
 import com.frequentis.maritime.mcsr.web.soap.dto.PageDTO;
 
@@ -26,5 +27,16 @@ public class PageResponse {
         return dto;
     }
 
-
+    /**
+     * A page read with a cursor has no page number, its item total count is -1 unless counting was requested.
+     */
+    public static <A,B> PageDTO<B> buildFromCursorPage(CursorPage<A> page, Converter<A, B> converter) {
+        PageDTO<B> dto = new PageDTO<>();
+        dto.page = 0;
+        dto.pageCount = 0;
+        dto.itemTotalCount = page.getTotalElements() == null ? -1 : page.getTotalElements();
+        dto.nextCursor = page.getNextCursor();
+        dto.content = new ArrayList<B>(converter.convert(page.getContent()));
+        return dto;
+    }
 }
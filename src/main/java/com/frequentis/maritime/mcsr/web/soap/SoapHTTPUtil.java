@@ -24,6 +24,9 @@ import org.apache.cxf.message.Message;
 import org.apache.cxf.phase.PhaseInterceptorChain;
 import org.apache.cxf.transport.http.AbstractHTTPDestination;
 
+import com.frequentis.maritime.mcsr.security.RegistryPrincipal;
+import com.frequentis.maritime.mcsr.security.RegistryPrincipalResolver;
+
 public final class SoapHTTPUtil {
 
     private SoapHTTPUtil() {
@@ -54,4 +57,17 @@ public final class SoapHTTPUtil {
         
         return authorization;
     }
+
+    /**
+     * Get the principal of the current SOAP request, decoded once per request.
+     *
+     * @return the principal, {@link RegistryPrincipal#ANONYMOUS} outside of requests or without bearer token
+     */
+    public static RegistryPrincipal currentPrincipal() {
+        HttpServletRequest httpRequest = currentHttpRequest();
+        if(httpRequest == null) {
+            return RegistryPrincipal.ANONYMOUS;
+        }
+        return RegistryPrincipalResolver.resolve(httpRequest);
+    }
 }
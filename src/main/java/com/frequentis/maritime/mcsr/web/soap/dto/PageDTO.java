@@ -14,6 +14,11 @@ public class PageDTO<E> {
     public int pageCount;
     @XmlElement(required = true)
     public long itemTotalCount;
+    /**
+     * Set on pages read with a cursor: the cursor of the following page, absent on the last page.
+     */
+    @XmlElement(required = false)
+    public String nextCursor;
     @XmlElementWrapper(name = "content")
     @XmlElement(required = true, name="item")
     public List<E> content;
@@ -0,0 +1,16 @@
+package com.frequentis.maritime.mcsr.web.soap.dto.instance;
+
+import javax.xml.bind.annotation.XmlElement;
+import javax.xml.bind.annotation.XmlRootElement;
+
+@XmlRootElement(name = "InstanceReference")
+public class InstanceReference {
+	@XmlElement(required = true)
+	public String id;
+
+	/**
+	 * The version, or "latest".
+	 */
+	@XmlElement(required = true)
+	public String version;
+}
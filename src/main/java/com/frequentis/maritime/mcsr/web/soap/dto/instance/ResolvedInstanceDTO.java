@@ -0,0 +1,22 @@
+package com.frequentis.maritime.mcsr.web.soap.dto.instance;
+
+import javax.xml.bind.annotation.XmlElement;
+import javax.xml.bind.annotation.XmlRootElement;
+
+@XmlRootElement(name = "ResolvedInstance")
+public class ResolvedInstanceDTO {
+	@XmlElement(required = true)
+	public String id;
+
+	@XmlElement(required = true)
+	public String version;
+
+	@XmlElement(required = true)
+	public boolean found;
+
+	/**
+	 * The instance, absent if not found.
+	 */
+	@XmlElement(required = false)
+	public InstanceDTO instance;
+}
@@ -18,6 +18,7 @@
 package com.frequentis.maritime.mcsr.web.soap.registry;
 
 import java.net.URISyntaxException;
+import java.util.List;
 
 import javax.jws.WebParam;
 import javax.jws.WebService;
@@ -28,6 +29,8 @@ import com.frequentis.maritime.mcsr.web.soap.dto.PageDTO;
 import com.frequentis.maritime.mcsr.web.soap.dto.doc.DocDescriptorDTO;
 import com.frequentis.maritime.mcsr.web.soap.dto.instance.InstanceDTO;
 import com.frequentis.maritime.mcsr.web.soap.dto.instance.InstanceParameterDTO;
+import com.frequentis.maritime.mcsr.web.soap.dto.instance.InstanceReference;
+import com.frequentis.maritime.mcsr.web.soap.dto.instance.ResolvedInstanceDTO;
 import com.frequentis.maritime.mcsr.web.soap.errors.AccessDeniedException;
 import com.frequentis.maritime.mcsr.web.soap.errors.InstanceAlreadyExistException;
 import com.frequentis.maritime.mcsr.web.soap.errors.ProcessingException;
@@ -103,6 +106,19 @@ public interface ServiceInstanceResource {
     		@WebParam(name = "includeDoc") @XmlElement(required = true) boolean includeDoc,
             @WebParam(name = "includeNonCompliant") @XmlElement(required = false) boolean includeNonCompliant);
 
+    /**
+     * POST  /_resolve/serviceInstance : get many instances by id and version in one call.
+     *
+     * @param references the ids and versions of the instances, "latest" as version for the highest version number
+     * @param includeNonCompliant include also non-compliant services (used only for "latest" versions)
+     * @return one result per reference, in the same order
+     * @throws ProcessingException if there are too many references
+     */
+    public List<ResolvedInstanceDTO> resolveInstances(
+    		@WebParam(name = "references") @XmlElement(required = true) List<InstanceReference> references,
+    		@WebParam(name = "includeDoc") @XmlElement(required = true) boolean includeDoc,
+    		@WebParam(name = "includeNonCompliant") @XmlElement(required = false) boolean includeNonCompliant) throws ProcessingException;
+
     /**
      * GET  /serviceInstance/:id : get all instances with id "id" across all versions.
      *
@@ -219,6 +235,73 @@ public interface ServiceInstanceResource {
     		@WebParam(name = "includeNonCompliant") @XmlElement(required = false) boolean includeNonCompliant,
     		@WebParam(name = "page") @XmlElement(required = true) int page) throws Exception;
 
+    /**
+     * SEARCH  /_search/serviceInstance?query=:query&cursor=:cursor : search for the instance corresponding
+     * to the query, page by page with a cursor.
+     *
+     * @param query the query of the instance search
+     * @param cursor the next cursor of the previous page, absent for the first page
+     * @param countTotal also report the total number of matching instances
+     * @return the result of the search
+     */
+    public PageDTO<InstanceDTO> searchInstancesWithCursor(
+    		@WebParam(name = "query") @XmlElement(required = true) String query,
+    		@WebParam(name = "includeDoc") @XmlElement(required = true) boolean includeDoc,
+    		@WebParam(name = "includeNonCompliant") @XmlElement(required = false) boolean includeNonCompliant,
+    		@WebParam(name = "cursor") @XmlElement(required = false) String cursor,
+    		@WebParam(name = "countTotal") @XmlElement(required = false) boolean countTotal);
+
+    /**
+     * SEARCH  /_searchKeywords/serviceInstance?query=:query&cursor=:cursor : search for the instance corresponding
+     * to the supplied keywords, page by page with a cursor.
+     *
+     * @param query the query of the instance keyword search
+     * @param cursor the next cursor of the previous page, absent for the first page
+     * @param countTotal also report the total number of matching instances
+     * @return the result of the search
+     */
+    public PageDTO<InstanceDTO> searchInstancesByKeywordsWithCursor(
+    		@WebParam(name = "query") @XmlElement(required = true) String query,
+    		@WebParam(name = "includeDoc") @XmlElement(required = true) boolean includeDoc,
+    		@WebParam(name = "includeNonCompliant") @XmlElement(required = false) boolean includeNonCompliant,
+    		@WebParam(name = "cursor") @XmlElement(required = false) String cursor,
+    		@WebParam(name = "countTotal") @XmlElement(required = false) boolean countTotal);
+
+    /**
+     * SEARCH  /_searchUnlocode/serviceInstance?query=:query&cursor=:cursor : search for the instance corresponding
+     * to the supplied unlocode, page by page with a cursor.
+     *
+     * @param query the query of the instance keyword search
+     * @param cursor the next cursor of the previous page, absent for the first page
+     * @param countTotal also report the total number of matching instances
+     * @return the result of the search
+     */
+    public PageDTO<InstanceDTO> searchInstancesByUnlocodeWithCursor(
+    		@WebParam(name = "query") @XmlElement(required = true) String query,
+    		@WebParam(name = "includeDoc") @XmlElement(required = true) boolean includeDoc,
+    		@WebParam(name = "includeNonCompliant") @XmlElement(required = false) boolean includeNonCompliant,
+    		@WebParam(name = "cursor") @XmlElement(required = false) String cursor,
+    		@WebParam(name = "countTotal") @XmlElement(required = false) boolean countTotal);
+
+    /**
+     * SEARCH  /_searchGeometryGeoJSON/serviceInstance?geometry=:geometry&cursor=:cursor : search for the instance corresponding
+     * to the supplied position, page by page with a cursor.
+     *
+     * @param geometry the search geometry in geojson format
+     * @param query additional query filters in elasticsearch queryString syntax
+     * @param cursor the next cursor of the previous page, absent for the first page
+     * @param countTotal also report the total number of matching instances
+     * @return the result of the search
+     * @throws ProcessingException
+     */
+    public PageDTO<InstanceDTO> searchInstancesByGeometryGeojsonWithCursor(
+    		@WebParam(name = "geometry") @XmlElement(required = true) String geometry,
+    		@WebParam(name = "query") @XmlElement(required = true) String query,
+    		@WebParam(name = "includeDoc") @XmlElement(required = true) boolean includeDoc,
+    		@WebParam(name = "includeNonCompliant") @XmlElement(required = false) boolean includeNonCompliant,
+    		@WebParam(name = "cursor") @XmlElement(required = false) String cursor,
+    		@WebParam(name = "countTotal") @XmlElement(required = false) boolean countTotal) throws ProcessingException;
+
     /**
      * STATUS UPDATE  /serviceInstance/:id/:version/status : changes status of the "id" instance of version "version".
      *
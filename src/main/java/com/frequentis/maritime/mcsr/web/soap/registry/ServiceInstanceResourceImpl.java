@@ -1,5 +1,8 @@
 package com.frequentis.maritime.mcsr.web.soap.registry;
 
+import java.util.ArrayList;
+import java.util.List;
+
 import javax.inject.Inject;
 import javax.jws.WebService;
 import javax.transaction.Transactional;
@@ -10,8 +13,13 @@ import org.slf4j.LoggerFactory;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.frequentis.maritime.mcsr.domain.Instance;
 import com.frequentis.maritime.mcsr.domain.Xml;
+import com.frequentis.maritime.mcsr.security.RegistryPrincipal;
+import com.frequentis.maritime.mcsr.service.CursorPage;
 import com.frequentis.maritime.mcsr.service.DesignService;
+import com.frequentis.maritime.mcsr.service.InstanceFields;
 import com.frequentis.maritime.mcsr.service.InstanceService;
+import com.frequentis.maritime.mcsr.service.SearchCursor;
+import com.frequentis.maritime.mcsr.service.VersionReference;
 import com.frequentis.maritime.mcsr.service.XmlService;
 import com.frequentis.maritime.mcsr.web.exceptions.GeometryParseException;
 import com.frequentis.maritime.mcsr.web.exceptions.XMLValidationException;
@@ -24,11 +32,12 @@ import com.frequentis.maritime.mcsr.web.soap.converters.instance.InstanceParamet
 import com.frequentis.maritime.mcsr.web.soap.dto.PageDTO;
 import com.frequentis.maritime.mcsr.web.soap.dto.instance.InstanceDTO;
 import com.frequentis.maritime.mcsr.web.soap.dto.instance.InstanceParameterDTO;
+import com.frequentis.maritime.mcsr.web.soap.dto.instance.InstanceReference;
+import com.frequentis.maritime.mcsr.web.soap.dto.instance.ResolvedInstanceDTO;
 import com.frequentis.maritime.mcsr.web.soap.errors.AccessDeniedException;
 import com.frequentis.maritime.mcsr.web.soap.errors.InstanceAlreadyExistException;
 import com.frequentis.maritime.mcsr.web.soap.errors.ProcessingException;
 import com.frequentis.maritime.mcsr.web.soap.errors.XmlValidateException;
-import com.frequentis.maritime.mcsr.web.util.WebUtils;
 import com.frequentis.maritime.mcsr.domain.util.EntityUtils;
 
 import org.springframework.data.domain.Page;
@@ -70,8 +79,7 @@ public class ServiceInstanceResourceImpl implements ServiceInstanceResource {
 	}
 
 	private InstanceDTO saveInstance(InstanceParameterDTO instanceDto, boolean isNew) throws XmlValidateException, InstanceAlreadyExistException, AccessDeniedException {
-	        String bearerToken = SoapHTTPUtil.currentBearerToken();
-	        String organizationId = WebUtils.extractOrganizationIdFromToken(bearerToken, log);
+	        RegistryPrincipal principal = SoapHTTPUtil.currentPrincipal();
 	        if(instanceDto.id != null) {
 	            throw new InstanceAlreadyExistException("A new instance cannot already have an ID");
 	        }
@@ -81,13 +89,13 @@ public class ServiceInstanceResourceImpl implements ServiceInstanceResource {
 	            throw new XmlValidateException("Instance must be created as XML (instanceAsXml must not be null)");
 	        }
 
-    		if (!InstanceUtil.checkRolePermissions(instance.getOrganizationId(), bearerToken)) {
+    		if (!principal.canModify(instance.getOrganizationId())) {
 		    String msg = "User does not have permission to create instances for organization: "+instance.getOrganizationId();
 		    log.warn(msg);
         	    throw new AccessDeniedException(msg);
     		}
 
-		instance.setOrganizationId(organizationId);
+		instance.setOrganizationId(principal.getOrganizationId());
 
 		if (isNew) {
 		    instance.setPublishedAt(EntityUtils.getCurrentUTCTimeISO8601());
@@ -169,15 +177,43 @@ public class ServiceInstanceResourceImpl implements ServiceInstanceResource {
 	}
 
 	@Override
-	public PageDTO<InstanceDTO> getAllInstancesById(String id, boolean includeDoc, boolean includenonCompliant, int page) {
-		log.debug("SOAP request to get a page of Instances by id {}", id);
-		Page<Instance> pageOfInstances = instanceService.findAllByDomainId(id, includenonCompliant, PageRequest.of(page, ITEMS_PER_PAGE));
-		if(pageOfInstances != null && pageOfInstances.getContent() != null && !includeDoc) {
-			for(Instance ins : pageOfInstances.getContent()) {
-				ins.setDocs(null);
-				ins.setInstanceAsDoc(null);
+	public List<ResolvedInstanceDTO> resolveInstances(List<InstanceReference> references, boolean includeDoc, boolean includeNonCompliant)
+			throws ProcessingException {
+		log.debug("SOAP request to resolve {} Instances", references.size());
+		List<VersionReference> versionReferences = new ArrayList<>(references.size());
+		for (InstanceReference reference : references) {
+			versionReferences.add(new VersionReference(reference.id, reference.version));
+		}
+		List<Instance> instances;
+		try {
+			instances = instanceService.findAllByDomainIdAndVersion(versionReferences, includeNonCompliant);
+		} catch (IllegalArgumentException e) {
+			throw new ProcessingException(e.getMessage(), e);
+		}
+		List<ResolvedInstanceDTO> result = new ArrayList<>(references.size());
+		for (int i = 0; i < references.size(); i++) {
+			Instance instance = instances.get(i);
+			ResolvedInstanceDTO resolved = new ResolvedInstanceDTO();
+			resolved.id = references.get(i).id;
+			resolved.version = references.get(i).version;
+			resolved.found = instance != null;
+			if (instance != null) {
+				// the entities are still managed here, so the documents are left out of the DTO only
+				resolved.instance = instanceDtoConverter.convert(instance);
+				if (!includeDoc) {
+					resolved.instance.docs = null;
+					resolved.instance.instanceAsDoc = null;
+				}
 			}
+			result.add(resolved);
 		}
+		return result;
+	}
+
+	@Override
+	public PageDTO<InstanceDTO> getAllInstancesById(String id, boolean includeDoc, boolean includenonCompliant, int page) {
+		log.debug("SOAP request to get a page of Instances by id {}", id);
+		Page<Instance> pageOfInstances = instanceService.findAllByDomainId(id, includenonCompliant, InstanceFields.of(includeDoc, true), PageRequest.of(page, ITEMS_PER_PAGE));
 
 		return PageResponse.buildFromPage(pageOfInstances, instanceDtoConverter);
 	}
@@ -198,26 +234,14 @@ public class ServiceInstanceResourceImpl implements ServiceInstanceResource {
 	@Override
 	public PageDTO<InstanceDTO> searchInstances(String query, boolean includeDoc, boolean includeNonCompliant, int page) {
 		log.debug("SOAP request to search for a page of Instances for query {}", query);
-        Page<Instance> pageOfInstances = instanceService.search(query, includeNonCompliant, PageRequest.of(page, ITEMS_PER_PAGE));
-        if (pageOfInstances != null && pageOfInstances.getContent() != null && !includeDoc) {
-            for(Instance instance : pageOfInstances.getContent()) {
-                instance.setDocs(null);
-                instance.setInstanceAsDoc(null);
-            }
-        }
+        Page<Instance> pageOfInstances = instanceService.search(query, includeNonCompliant, InstanceFields.of(includeDoc, true), PageRequest.of(page, ITEMS_PER_PAGE));
         return PageResponse.buildFromPage(pageOfInstances, instanceDtoConverter);
 	}
 
 	@Override
 	public PageDTO<InstanceDTO> searchInstancesByKeywords(String query, boolean includeDoc, boolean includeNonCompliant, int page) {
         log.debug("SOAP request to search for a page of Instances for keywords {}", query);
-        Page<Instance> pageOfInstances = instanceService.searchKeywords(query, includeNonCompliant, PageRequest.of(page, ITEMS_PER_PAGE));
-        if (pageOfInstances != null && pageOfInstances.getContent() != null && !includeDoc) {
-            for(Instance instance:pageOfInstances.getContent()) {
-                instance.setDocs(null);
-                instance.setInstanceAsDoc(null);
-            }
-        }
+        Page<Instance> pageOfInstances = instanceService.searchKeywords(query, includeNonCompliant, InstanceFields.of(includeDoc, true), PageRequest.of(page, ITEMS_PER_PAGE));
 
         return PageResponse.buildFromPage(pageOfInstances, instanceDtoConverter);
 	}
@@ -225,13 +249,7 @@ public class ServiceInstanceResourceImpl implements ServiceInstanceResource {
 	@Override
 	public PageDTO<InstanceDTO> searchInstancesByUnlocode(String query, boolean includeDoc, boolean includeNonCompliant, int page) {
         log.debug("SOAP request to search for a page of Instances for unlocode {}", query);
-        Page<Instance> pageOfInstances = instanceService.searchUnlocode(query, includeNonCompliant, PageRequest.of(page, ITEMS_PER_PAGE));
-        if (pageOfInstances != null && pageOfInstances.getContent() != null && !includeDoc) {
-            for(Instance instance:pageOfInstances.getContent()) {
-                instance.setDocs(null);
-                instance.setInstanceAsDoc(null);
-            }
-        }
+        Page<Instance> pageOfInstances = instanceService.searchUnlocode(query, includeNonCompliant, InstanceFields.of(includeDoc, true), PageRequest.of(page, ITEMS_PER_PAGE));
 
         return PageResponse.buildFromPage(pageOfInstances, instanceDtoConverter);
 	}
@@ -241,13 +259,7 @@ public class ServiceInstanceResourceImpl implements ServiceInstanceResource {
 		Page<Instance> pageOfInstances;
         log.debug("SOAP request to get Instance by lat {} long {}", latitude, longitude);
         try {
-	        pageOfInstances = instanceService.findByLocation(Double.parseDouble(latitude), Double.parseDouble(longitude), query, includeNonCompliant, PageRequest.of(page, ITEMS_PER_PAGE));
-	        if (pageOfInstances != null && pageOfInstances.getContent() != null && !includeDoc) {
-	            for(Instance instance:pageOfInstances.getContent()) {
-	                instance.setDocs(null);
-	                instance.setInstanceAsDoc(null);
-	            }
-	        }
+	        pageOfInstances = instanceService.findByLocation(Double.parseDouble(latitude), Double.parseDouble(longitude), query, includeNonCompliant, InstanceFields.of(includeDoc, true), PageRequest.of(page, ITEMS_PER_PAGE));
         } catch (Exception e) {
         	throw new ProcessingException(e.getMessage(), e);
         }
@@ -258,8 +270,8 @@ public class ServiceInstanceResourceImpl implements ServiceInstanceResource {
 	@Override
 	public PageDTO<InstanceDTO> searchInstancesByGeometryGeojson(String geometry, String query, boolean includeDoc, boolean includeNonCompliant, int page) throws Exception {
         log.debug("SOAP request to get Instance by geojson ", geometry);
-        Page<Instance> pageOfInstances = instanceService.findByGeoshape(geometry, query, includeNonCompliant, PageRequest.of(page, ITEMS_PER_PAGE));
-        removeIncludedDoc(pageOfInstances, includeDoc);
+        Page<Instance> pageOfInstances = instanceService.findByGeoshape(geometry, query, includeNonCompliant, InstanceFields.of(includeDoc, true),
+            PageRequest.of(page, ITEMS_PER_PAGE));
 
         return PageResponse.buildFromPage(pageOfInstances, instanceDtoConverter);
 	}
@@ -267,25 +279,55 @@ public class ServiceInstanceResourceImpl implements ServiceInstanceResource {
 	@Override
 	public PageDTO<InstanceDTO> searchInstancesByGeometryWKT(String geometry, String query, boolean includeDoc, boolean includeNonCompliant, int page) throws ProcessingException {
         log.debug("SOAP request to get Instance by wkt ", geometry);
-        String geoJson = null;
         Page<Instance> pageOfInstances;
         try {
-	        geoJson = InstanceUtil.convertWKTtoGeoJson(geometry).toString();
-	        log.debug("Converted Geojson: " + geoJson);
-	        pageOfInstances = instanceService.findByGeoshape(geoJson, query, includeNonCompliant, PageRequest.of(page, ITEMS_PER_PAGE));
+	        pageOfInstances = instanceService.findByWkt(geometry, query, includeNonCompliant, InstanceFields.of(includeDoc, true),
+	            PageRequest.of(page, ITEMS_PER_PAGE));
         } catch (Exception e) {
         	throw new ProcessingException(e.getMessage(), e);
         }
-        if (pageOfInstances != null && pageOfInstances.getContent() != null && !includeDoc) {
-            for(Instance instance : pageOfInstances.getContent()) {
-                instance.setDocs(null);
-                instance.setInstanceAsDoc(null);
-            }
-        }
 
 		return PageResponse.buildFromPage(pageOfInstances, instanceDtoConverter);
 	}
 
+	@Override
+	public PageDTO<InstanceDTO> searchInstancesWithCursor(String query, boolean includeDoc, boolean includeNonCompliant, String cursor, boolean countTotal) {
+        log.debug("SOAP request to search for a cursor page of Instances for query {}", query);
+        CursorPage<Instance> pageOfInstances = instanceService.search(query, includeNonCompliant, InstanceFields.of(includeDoc, true),
+            SearchCursor.of(cursor, ITEMS_PER_PAGE, countTotal));
+        return PageResponse.buildFromCursorPage(pageOfInstances, instanceDtoConverter);
+	}
+
+	@Override
+	public PageDTO<InstanceDTO> searchInstancesByKeywordsWithCursor(String query, boolean includeDoc, boolean includeNonCompliant, String cursor, boolean countTotal) {
+        log.debug("SOAP request to search for a cursor page of Instances for keywords {}", query);
+        CursorPage<Instance> pageOfInstances = instanceService.searchKeywords(query, includeNonCompliant, InstanceFields.of(includeDoc, true),
+            SearchCursor.of(cursor, ITEMS_PER_PAGE, countTotal));
+        return PageResponse.buildFromCursorPage(pageOfInstances, instanceDtoConverter);
+	}
+
+	@Override
+	public PageDTO<InstanceDTO> searchInstancesByUnlocodeWithCursor(String query, boolean includeDoc, boolean includeNonCompliant, String cursor, boolean countTotal) {
+        log.debug("SOAP request to search for a cursor page of Instances for unlocode {}", query);
+        CursorPage<Instance> pageOfInstances = instanceService.searchUnlocode(query, includeNonCompliant, InstanceFields.of(includeDoc, true),
+            SearchCursor.of(cursor, ITEMS_PER_PAGE, countTotal));
+        return PageResponse.buildFromCursorPage(pageOfInstances, instanceDtoConverter);
+	}
+
+	@Override
+	public PageDTO<InstanceDTO> searchInstancesByGeometryGeojsonWithCursor(String geometry, String query, boolean includeDoc, boolean includeNonCompliant,
+	        String cursor, boolean countTotal) throws ProcessingException {
+        log.debug("SOAP request to get a cursor page of Instances by geojson {}", geometry);
+        CursorPage<Instance> pageOfInstances;
+        try {
+            pageOfInstances = instanceService.findByGeoshape(geometry, query, includeNonCompliant, InstanceFields.of(includeDoc, true),
+                SearchCursor.of(cursor, ITEMS_PER_PAGE, countTotal));
+        } catch (Exception e) {
+            throw new ProcessingException(e.getMessage(), e);
+        }
+        return PageResponse.buildFromCursorPage(pageOfInstances, instanceDtoConverter);
+	}
+
 	@Override
 	public void updateInstanceStatus(String id, String version, String status) throws AccessDeniedException {
         log.debug("SOAP request to update status of Instance {} version {}", id, version);
@@ -306,13 +348,4 @@ public class ServiceInstanceResourceImpl implements ServiceInstanceResource {
         
 	}
 
-	private void removeIncludedDoc(Page<Instance> instPage, boolean includeDoc) {
-		if(instPage != null && instPage.getContent() != null && !includeDoc) {
-	          for(Instance instance : instPage.getContent()) {
-	                instance.setDocs(null);
-	                instance.setInstanceAsDoc(null);
-	            }
-		}
-	}
-
 }
@@ -0,0 +1,79 @@
+/*
+ * MaritimeCloud Service Registry
+ * Copyright (c) 2016 Frequentis AG
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package com.frequentis.maritime.mcsr.domain.util;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.nio.charset.StandardCharsets;
+
+import org.junit.Test;
+
+/**
+ * Test class for the CompressedText.
+ *
+ * @see CompressedText
+ */
+public class CompressedTextTest {
+
+    @Test
+    public void compressesLongText() {
+        StringBuilder xml = new StringBuilder("<coversAreas>");
+        for (int i = 0; i < 1000; i++) {
+            xml.append("<coversArea><name>Area ").append(i).append("</name></coversArea>");
+        }
+        String text = xml.append("</coversAreas>").toString();
+
+        byte[] stored = CompressedText.encode(text);
+
+        assertThat(CompressedText.isEncoded(stored)).isTrue();
+        assertThat(stored.length).isLessThan(text.length() / 4);
+        assertThat(CompressedText.decode(stored)).isEqualTo(text);
+    }
+
+    @Test
+    public void keepsShortTextAsItIs() {
+        byte[] stored = CompressedText.encode("{\"type\":\"Point\",\"coordinates\":[16.3,48.2]}");
+
+        assertThat(CompressedText.isEncoded(stored)).isTrue();
+        assertThat(new String(stored, 4, stored.length - 4, StandardCharsets.UTF_8)).startsWith("{\"type\":\"Point\"");
+        assertThat(CompressedText.decode(stored)).isEqualTo("{\"type\":\"Point\",\"coordinates\":[16.3,48.2]}");
+    }
+
+    @Test
+    public void readsValuesStoredBeforeCompression() {
+        byte[] stored = "<serviceInstance>Zürich</serviceInstance>".getBytes(StandardCharsets.UTF_8);
+
+        assertThat(CompressedText.isEncoded(stored)).isFalse();
+        assertThat(CompressedText.decode(stored)).isEqualTo("<serviceInstance>Zürich</serviceInstance>");
+        assertThat(CompressedText.decode(new byte[0])).isEmpty();
+    }
+
+    @Test
+    public void handlesEmptyAndNull() {
+        assertThat(CompressedText.decode(CompressedText.encode(""))).isEmpty();
+        assertThat(CompressedText.encode(null)).isNull();
+        assertThat(CompressedText.decode(null)).isNull();
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsUnknownFormat() {
+        CompressedText.decode(new byte[] {0, 'M', 'Z', 9, 1, 2});
+    }
+}
@@ -0,0 +1,64 @@
+/*
+ * MaritimeCloud Service Registry
+ * Copyright (c) 2016 Frequentis AG
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.frequentis.maritime.mcsr.domain.util;
+
+import org.apache.maven.artifact.versioning.DefaultArtifactVersion;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Test class for the VersionKey.
+ *
+ * @see VersionKey
+ */
+public class VersionKeyTest {
+
+    @Test
+    public void padsNumericComponents() {
+        assertThat(VersionKey.of("1.10")).isEqualTo("0000000001.0000000010.0000000000.0000000000-6");
+        assertThat(VersionKey.of(" 2.0.1-RC1 ")).isEqualTo("0000000002.0000000000.0000000001.0000000000-40000000001");
+        assertThat(VersionKey.of(null)).isNull();
+    }
+
+    @Test
+    public void sortsLikeArtifactVersions() {
+        List<String> versions = Arrays.asList("0.9", "1.0-alpha", "1.0-beta", "1.0-rc9", "1.0-rc10", "1.0", "1.0-sp", "1.0.1",
+            "1.2", "1.10", "2.0-SNAPSHOT", "2.0", "10.0");
+        for (int i = 1; i < versions.size(); i++) {
+            String lower = versions.get(i - 1);
+            String higher = versions.get(i);
+            assertThat(new DefaultArtifactVersion(lower).compareTo(new DefaultArtifactVersion(higher))).isNegative();
+            assertThat(VersionKey.of(lower).compareTo(VersionKey.of(higher))).as(lower + " < " + higher).isNegative();
+        }
+    }
+
+    @Test
+    public void equalVersionsHaveEqualKeys() {
+        assertThat(VersionKey.of("1.0")).isEqualTo(VersionKey.of("1.0.0"));
+        assertThat(VersionKey.of("01.2")).isEqualTo(VersionKey.of("1.2"));
+        assertThat(VersionKey.of("1.0-final")).isEqualTo(VersionKey.of("1.0"));
+        assertThat(VersionKey.of("1.0-GA")).isEqualTo(VersionKey.of("1.0"));
+        assertThat(VersionKey.of("1.0-cr1")).isEqualTo(VersionKey.of("1.0-rc1"));
+        assertThat(VersionKey.of("1.0a1")).isEqualTo(VersionKey.of("1.0-alpha1"));
+    }
+}
@@ -0,0 +1,75 @@
+/*
+ * MaritimeCloud Service Registry
+ * Copyright (c) 2016 Frequentis AG
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.frequentis.maritime.mcsr.repository;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import java.util.regex.Pattern;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Checks with EXPLAIN that the registry lookups by domain id and the reverse join table lookups
+ * are answered from an index instead of a table scan.
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest
+@ActiveProfiles(profiles = "integration")
+public class RegistryIndexIntTest {
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    public void instanceLookupsUseIndex() {
+        assertIndexLookup("select * from instance where instance_id = 'urn:x' and compliant = true", "INSTANCE_ID");
+        assertIndexLookup("select * from instance where instance_id = 'urn:x' and version = '1.0' and compliant = true", "INSTANCE_ID");
+    }
+
+    @Test
+    public void designAndSpecificationLookupsUseIndex() {
+        assertIndexLookup("select * from design where design_id = 'urn:x' and version = '1.0'", "DESIGN_ID");
+        assertIndexLookup("select * from specification where specification_id = 'urn:x' and version = '1.0'", "SPECIFICATION_ID");
+    }
+
+    @Test
+    public void joinTableReverseLookupsUseIndex() {
+        assertIndexLookup("select instances_id from instance_designs where designs_id = 1", "DESIGNS_ID");
+        assertIndexLookup("select instances_id from instance_docs where docs_id = 1", "DOCS_ID");
+        assertIndexLookup("select designs_id from design_specifications where specifications_id = 1", "SPECIFICATIONS_ID");
+        assertIndexLookup("select designs_id from design_docs where docs_id = 1", "DOCS_ID");
+        assertIndexLookup("select specifications_id from specification_docs where docs_id = 1", "DOCS_ID");
+    }
+
+    /**
+     * H2 reports the access path as comment in the plan: the index name followed by the condition it
+     * is looked up with, or "tableScan" for a full scan.
+     */
+    private void assertIndexLookup(String sql, String column) {
+        String plan = jdbcTemplate.queryForObject("EXPLAIN " + sql, String.class);
+        assertThat(plan).as(sql).doesNotContain("tableScan");
+        assertThat(plan).as(sql).containsPattern(Pattern.compile("/\\* PUBLIC\\.\\w+: [^*]*\\b" + column + " = "));
+    }
+}
@@ -0,0 +1,106 @@
+/*
+ * MaritimeCloud Service Registry
+ * Copyright (c) 2016 Frequentis AG
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.frequentis.maritime.mcsr.security;
+
+import org.junit.After;
+import org.junit.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Test class for the RegistryPrincipalResolver.
+ *
+ * @see RegistryPrincipalResolver
+ */
+public class RegistryPrincipalResolverUnitTest {
+
+    @After
+    public void tearDown() {
+        RequestContextHolder.resetRequestAttributes();
+        RegistryPrincipalResolver.clearCache();
+    }
+
+    @Test
+    public void decodesClaims() {
+        RegistryPrincipal principal = RegistryPrincipalResolver.resolve("Bearer " + token(
+            "{\"org\":\"urn:mrn:mcl:org:a\",\"roles\":[\"ROLE_ORG_ADMIN\",\"ROLE_USER\"],\"acting_on_behalf_of\":\"urn:mrn:mcl:org:b\"}"));
+
+        assertThat(principal.getOrganizationId()).isEqualTo("urn:mrn:mcl:org:a");
+        assertThat(principal.getRoles()).containsExactly("ROLE_ORG_ADMIN", "ROLE_USER");
+        assertThat(principal.getActingOnBehalfOf()).containsExactly("urn:mrn:mcl:org:b");
+    }
+
+    @Test
+    public void checksPermissions() {
+        RegistryPrincipal orgAdmin = RegistryPrincipalResolver.resolve(token(
+            "{\"org\":\"a\",\"roles\":[\"ROLE_ORG_ADMIN\"],\"acting_on_behalf_of\":[\"b\"]}"));
+        assertThat(orgAdmin.canModify("a")).isTrue();
+        assertThat(orgAdmin.canModify("b")).isTrue();
+        assertThat(orgAdmin.canModify("c")).isFalse();
+        assertThat(orgAdmin.canModify(null)).isTrue();
+
+        RegistryPrincipal serviceAdmin = RegistryPrincipalResolver.resolve(token("{\"org\":\"a\",\"roles\":\"ROLE_SERVICE_ADMIN\"}"));
+        assertThat(serviceAdmin.canModify("c")).isTrue();
+
+        RegistryPrincipal user = RegistryPrincipalResolver.resolve(token("{\"org\":\"a\",\"roles\":[\"ROLE_USER\"]}"));
+        assertThat(user.canModify("a")).isFalse();
+    }
+
+    @Test
+    public void cachesUntilTokenExpiry() {
+        long now = System.currentTimeMillis() / 1000;
+        String valid = token("{\"org\":\"a\",\"exp\":" + (now + 3600) + "}");
+        assertThat(RegistryPrincipalResolver.resolve(valid)).isSameAs(RegistryPrincipalResolver.resolve("Bearer " + valid));
+
+        String expired = token("{\"org\":\"a\",\"exp\":" + (now - 60) + "}");
+        assertThat(RegistryPrincipalResolver.resolve(expired)).isNotSameAs(RegistryPrincipalResolver.resolve(expired));
+    }
+
+    @Test
+    public void resolvesOncePerRequest() {
+        String token = token("{\"org\":\"a\",\"exp\":" + (System.currentTimeMillis() / 1000 - 60) + "}");
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.addHeader("Authorization", "Bearer " + token);
+        RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(request));
+
+        RegistryPrincipal principal = RegistryPrincipalResolver.current();
+        assertThat(principal.getOrganizationId()).isEqualTo("a");
+        assertThat(RegistryPrincipalResolver.resolve(token)).isSameAs(principal);
+        assertThat(RegistryPrincipalResolver.resolve(request)).isSameAs(principal);
+    }
+
+    @Test
+    public void invalidTokensAreAnonymous() {
+        assertThat(RegistryPrincipalResolver.resolve((String) null)).isSameAs(RegistryPrincipal.ANONYMOUS);
+        assertThat(RegistryPrincipalResolver.resolve("not a token")).isSameAs(RegistryPrincipal.ANONYMOUS);
+        assertThat(RegistryPrincipal.ANONYMOUS.canModify("a")).isFalse();
+    }
+
+    private static String token(String claims) {
+        Base64.Encoder encoder = Base64.getUrlEncoder().withoutPadding();
+        return encoder.encodeToString("{\"alg\":\"HS256\"}".getBytes(StandardCharsets.UTF_8)) + "."
+            + encoder.encodeToString(claims.getBytes(StandardCharsets.UTF_8)) + ".signature";
+    }
+}
@@ -0,0 +1,123 @@
+/*
+ * MaritimeCloud Service Registry
+ * Copyright (c) 2016 Frequentis AG
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.frequentis.maritime.mcsr.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import javax.inject.Inject;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.SpringBootTest.WebEnvironment;
+import org.springframework.data.elasticsearch.core.ElasticsearchTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import com.frequentis.maritime.mcsr.domain.Instance;
+import com.frequentis.maritime.mcsr.repository.search.InstanceSearchRepository;
+
+/**
+ * Test class for the CursorSearchService.
+ *
+ * @see CursorSearchService
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest(webEnvironment = WebEnvironment.RANDOM_PORT)
+@ActiveProfiles(profiles = "integration")
+public class CursorSearchServiceIntTest {
+
+    private static final String KEYWORD = "cursorsearchtest";
+
+    private static final int INSTANCES = 25;
+
+    @Inject
+    private InstanceService instanceService;
+
+    @Inject
+    private InstanceSearchRepository instanceSearchRepository;
+
+    @Inject
+    private ElasticsearchTemplate elasticsearchTemplate;
+
+    private final List<Instance> instances = new ArrayList<>();
+
+    @Before
+    public void indexInstances() {
+        for (int i = 0; i < INSTANCES; i++) {
+            Instance instance = new Instance();
+            instance.setId(9_160_000L + i);
+            instance.setName("Cursor instance " + i);
+            instance.setVersion("1.0");
+            instance.setComment("Cursor search");
+            instance.setInstanceId("urn:mrn:mcl:service:instance:test:cursor" + i);
+            instance.setKeywords(KEYWORD);
+            instance.setCompliant(true);
+            instances.add(instance);
+        }
+        instanceSearchRepository.saveAll(instances);
+        elasticsearchTemplate.refresh(Instance.class);
+    }
+
+    @After
+    public void deleteInstances() {
+        instanceSearchRepository.deleteAll(instances);
+        elasticsearchTemplate.refresh(Instance.class);
+    }
+
+    @Test
+    public void readsAllPagesWithCursor() {
+        Set<Long> seen = new HashSet<>();
+        String cursor = null;
+        int pages = 0;
+        do {
+            CursorPage<Instance> page = instanceService.searchKeywords(KEYWORD, false, InstanceFields.ALL,
+                SearchCursor.of(cursor, 10, false));
+            assertThat(page.getTotalElements()).isNull();
+            page.getContent().forEach(instance -> assertThat(seen.add(instance.getId())).isTrue());
+            cursor = page.getNextCursor();
+            pages++;
+        } while (cursor != null);
+
+        assertThat(pages).isEqualTo(3);
+        assertThat(seen).hasSize(INSTANCES);
+    }
+
+    @Test
+    public void countsTotalOnlyWhenAsked() {
+        CursorPage<Instance> page = instanceService.searchKeywords(KEYWORD, false, InstanceFields.ALL,
+            SearchCursor.of("", 5, true));
+
+        assertThat(page.getContent()).hasSize(5);
+        assertThat(page.getTotalElements()).isEqualTo((long) INSTANCES);
+        assertThat(page.getNextCursor()).isNotNull();
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsInvalidCursor() {
+        SearchCursor.of("not-a-cursor", 10, false);
+    }
+}
@@ -0,0 +1,187 @@
+/*
+ * MaritimeCloud Service Registry
+ * Copyright (c) 2016 Frequentis AG
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package com.frequentis.maritime.mcsr.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import javax.inject.Inject;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.SpringBootTest.WebEnvironment;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.frequentis.maritime.mcsr.domain.Doc;
+import com.frequentis.maritime.mcsr.domain.util.ContentHash;
+import com.frequentis.maritime.mcsr.repository.DocContentRepository;
+import com.frequentis.maritime.mcsr.repository.DocRepository;
+
+/**
+ * Test class for the DocContentService.
+ *
+ * @see DocContentService
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest(webEnvironment = WebEnvironment.RANDOM_PORT)
+@ActiveProfiles(profiles = "integration")
+@Transactional
+public class DocContentServiceIntTest {
+
+    private static final byte[] CONTENT = "The quick brown fox jumps over the lazy dog".getBytes(StandardCharsets.US_ASCII);
+
+    @Inject
+    private DocContentService docContentService;
+
+    @Inject
+    private DocService docService;
+
+    @Inject
+    private DocRepository docRepository;
+
+    @Inject
+    private DocContentRepository docContentRepository;
+
+    @Inject
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    public void keepsSizeAndHashOfSavedContent() {
+        Doc doc = docService.save(createDoc());
+
+        DocContentInfo info = docContentService.findInfo(doc.getId());
+
+        assertThat(info.getSize()).isEqualTo(CONTENT.length);
+        assertThat(info.getSha256()).isEqualTo("d7a8fbb307d7809469ca9abcb0082e4f8d5651e46d3cdb762d02d0bf37c9e592");
+        assertThat(info.getContentType()).isEqualTo("text/plain");
+    }
+
+    @Test
+    public void hashesContentStoredWithoutHash() {
+        Doc doc = docService.save(createDoc());
+        jdbcTemplate.update("update doc set filecontent_size = null, filecontent_sha256 = null where id = ?", doc.getId());
+
+        DocContentInfo info = docContentService.findInfo(doc.getId());
+
+        assertThat(info.getSize()).isEqualTo(CONTENT.length);
+        assertThat(info.getSha256()).isEqualTo(ContentHash.of(CONTENT));
+        assertThat(jdbcTemplate.queryForObject("select filecontent_sha256 from doc where id = ?", String.class, doc.getId()))
+            .isEqualTo(info.getSha256());
+    }
+
+    @Test
+    public void copiesRangeOfContent() throws Exception {
+        Doc doc = docService.save(createDoc());
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        docContentService.copyContent(doc.getId(), 4, 5, out);
+
+        assertThat(new String(out.toByteArray(), StandardCharsets.US_ASCII)).isEqualTo("quick");
+    }
+
+    @Test
+    public void replacesContentFromStream() throws Exception {
+        Doc doc = docService.save(createDoc());
+        byte[] replacement = new byte[100000];
+        Arrays.fill(replacement, (byte) 7);
+
+        DocContentInfo info = docContentService.replaceContent(doc.getId(), new ByteArrayInputStream(replacement), "application/pdf");
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        docContentService.copyContent(doc.getId(), 0, info.getSize(), out);
+
+        assertThat(info.getSize()).isEqualTo(replacement.length);
+        assertThat(info.getSha256()).isEqualTo(ContentHash.of(replacement));
+        assertThat(docContentService.findInfo(doc.getId()).getContentType()).isEqualTo("application/pdf");
+        assertThat(out.toByteArray()).isEqualTo(replacement);
+    }
+
+    @Test
+    public void storesIdenticalContentOnce() {
+        Doc doc = docService.save(createDoc());
+        Doc otherDoc = docService.save(createDoc());
+        Long contentId = docRepository.findContentIdById(doc.getId());
+
+        assertThat(docRepository.findContentIdById(otherDoc.getId())).isEqualTo(contentId);
+        assertThat(refCount(contentId)).isEqualTo(2);
+
+        docService.delete(doc.getId());
+
+        assertThat(refCount(contentId)).isEqualTo(1);
+        assertThat(docContentService.findInfo(otherDoc.getId()).getSize()).isEqualTo(CONTENT.length);
+    }
+
+    @Test
+    public void releasesReplacedContent() {
+        Doc doc = docService.save(createDoc());
+        Long contentId = docRepository.findContentIdById(doc.getId());
+
+        docContentService.replaceContent(doc.getId(), new ByteArrayInputStream(new byte[] {1, 2, 3}), "application/octet-stream");
+
+        assertThat(docRepository.findContentIdById(doc.getId())).isNotEqualTo(contentId);
+        assertThat(docContentRepository.existsById(contentId)).isFalse();
+    }
+
+    @Test
+    public void sharesContentSentWithHash() {
+        Doc doc = docService.save(createDoc());
+        Doc otherDoc = docService.save(createDoc());
+        docContentService.replaceContent(otherDoc.getId(), new ByteArrayInputStream(new byte[] {1, 2, 3}), "application/octet-stream");
+
+        DocContentInfo info = docContentService.replaceContent(otherDoc.getId(), new ByteArrayInputStream(CONTENT), "text/plain",
+            ContentHash.of(CONTENT).toUpperCase());
+
+        assertThat(info.getSha256()).isEqualTo(ContentHash.of(CONTENT));
+        assertThat(docRepository.findContentIdById(otherDoc.getId())).isEqualTo(docRepository.findContentIdById(doc.getId()));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsContentNotMatchingHash() {
+        Doc doc = docService.save(createDoc());
+
+        docContentService.replaceContent(doc.getId(), new ByteArrayInputStream(new byte[] {4}), "text/plain", ContentHash.of(CONTENT));
+    }
+
+    @Test
+    public void reportsMissingDoc() {
+        assertThat(docContentService.findInfo(Long.MAX_VALUE)).isNull();
+        assertThat(docContentService.replaceContent(Long.MAX_VALUE, new ByteArrayInputStream(CONTENT), "text/plain")).isNull();
+    }
+
+    private int refCount(Long contentId) {
+        return jdbcTemplate.queryForObject("select ref_count from doc_content where id = ?", Integer.class, contentId);
+    }
+
+    private Doc createDoc() {
+        Doc doc = new Doc();
+        doc.setName("content");
+        doc.setMimetype("text/plain");
+        doc.setFilecontent(CONTENT);
+        doc.setFilecontentContentType("text/plain");
+        return doc;
+    }
+}
@@ -0,0 +1,139 @@
+/*
+ * MaritimeCloud Service Registry
+ * Copyright (c) 2016 Frequentis AG
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.frequentis.maritime.mcsr.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.inject.Inject;
+import javax.persistence.EntityManager;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.SpringBootTest.WebEnvironment;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.frequentis.maritime.mcsr.domain.Doc;
+import com.frequentis.maritime.mcsr.domain.Instance;
+import com.frequentis.maritime.mcsr.repository.DocRepository;
+import com.frequentis.maritime.mcsr.repository.InstanceRepository;
+import com.frequentis.maritime.mcsr.repository.search.InstanceSearchRepository;
+
+/**
+ * Test class for the DocService.
+ *
+ * @see DocService
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest(webEnvironment = WebEnvironment.RANDOM_PORT)
+@ActiveProfiles(profiles = "integration")
+@Transactional
+public class DocServiceIntTest {
+
+    private static final int UNLINKED_INSTANCES = 3000;
+
+    @Inject
+    private DocService docService;
+
+    @Inject
+    private DocRepository docRepository;
+
+    @Inject
+    private InstanceRepository instanceRepository;
+
+    @Inject
+    private InstanceSearchRepository instanceSearchRepository;
+
+    @Inject
+    private IndexOutboxRelay indexOutboxRelay;
+
+    @Inject
+    private EntityManager em;
+
+    private Statistics statistics;
+
+    @Before
+    public void enableStatistics() {
+        statistics = em.getEntityManagerFactory().unwrap(SessionFactory.class).getStatistics();
+        statistics.setStatisticsEnabled(true);
+    }
+
+    @After
+    public void disableStatistics() {
+        statistics.setStatisticsEnabled(false);
+    }
+
+    @Test
+    public void saveDocLoadsOnlyLinkedOwners() {
+        Doc doc = docService.save(createDoc("linked"));
+        Doc otherDoc = docService.save(createDoc("other"));
+
+        List<Instance> instances = new ArrayList<>();
+        for (int i = 0; i < UNLINKED_INSTANCES; i++) {
+            Instance instance = createInstance("urn:mrn:mcl:service:instance:test:unlinked-" + i);
+            instance.getDocs().add(otherDoc);
+            instances.add(instance);
+        }
+        Instance linked = createInstance("urn:mrn:mcl:service:instance:test:linked");
+        linked.setInstanceAsDoc(doc);
+        instances.add(linked);
+        instanceRepository.saveAll(instances);
+        em.flush();
+        em.clear();
+
+        statistics.clear();
+        doc = docRepository.findById(doc.getId()).get();
+        doc.setName("updated");
+        docService.save(doc);
+        em.flush();
+
+        assertThat(statistics.getEntityLoadCount()).isLessThan(10);
+        assertThat(statistics.getEntityUpdateCount()).isEqualTo(1);
+
+        indexOutboxRelay.relay();
+        assertThat(instanceSearchRepository.findById(linked.getId()).get().getInstanceAsDoc().getName()).isEqualTo("updated");
+    }
+
+    private Doc createDoc(String name) {
+        Doc doc = new Doc();
+        doc.setName(name);
+        doc.setMimetype("text/plain");
+        doc.setFilecontent(new byte[] {1});
+        doc.setFilecontentContentType("text/plain");
+        return doc;
+    }
+
+    private Instance createInstance(String instanceId) {
+        Instance instance = new Instance();
+        instance.setName("Instance");
+        instance.setVersion("1.0");
+        instance.setComment("Instance");
+        instance.setInstanceId(instanceId);
+        return instance;
+    }
+}
@@ -0,0 +1,228 @@
+/*
+ * MaritimeCloud Service Registry
+ * Copyright (c) 2016 Frequentis AG
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.frequentis.maritime.mcsr.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Collectors;
+
+import javax.inject.Inject;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.SpringBootTest.WebEnvironment;
+import org.springframework.boot.test.mock.mockito.SpyBean;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.frequentis.maritime.mcsr.config.JHipsterProperties;
+import com.frequentis.maritime.mcsr.domain.Doc;
+import com.frequentis.maritime.mcsr.domain.DocTextExtractionTask;
+import com.frequentis.maritime.mcsr.domain.util.ContentHash;
+import com.frequentis.maritime.mcsr.repository.DocTextExtractionTaskRepository;
+import com.frequentis.maritime.mcsr.service.text.PlainTextExtractor;
+import com.frequentis.maritime.mcsr.service.text.TextExcerpt;
+
+/**
+ * Test class for the DocTextExtractionWorker.
+ *
+ * @see DocTextExtractionWorker
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest(webEnvironment = WebEnvironment.RANDOM_PORT)
+@ActiveProfiles(profiles = "integration")
+public class DocTextExtractionWorkerIntTest {
+
+    private static final String DOCX = "application/vnd.openxmlformats-officedocument.wordprocessingml.document";
+
+    @Inject
+    private DocTextExtractionWorker worker;
+
+    @Inject
+    private DocTextExtractionTaskRepository docTextExtractionTaskRepository;
+
+    @Inject
+    private DocService docService;
+
+    @Inject
+    private DocContentService docContentService;
+
+    @Inject
+    private JHipsterProperties jHipsterProperties;
+
+    @Inject
+    private JdbcTemplate jdbcTemplate;
+
+    @Inject
+    private PlatformTransactionManager transactionManager;
+
+    @SpyBean
+    private PlainTextExtractor plainTextExtractor;
+
+    private TransactionTemplate transaction;
+
+    private final List<Long> docIds = new ArrayList<>();
+
+    @Before
+    public void setup() {
+        transaction = new TransactionTemplate(transactionManager);
+    }
+
+    @After
+    public void cleanup() {
+        for (Long id : docIds) {
+            docService.delete(id);
+        }
+        transaction.execute(status -> {
+            docTextExtractionTaskRepository.deleteAll(tasks());
+            return null;
+        });
+    }
+
+    @Test
+    public void extractsOnlyLatestContentOfDoc() throws Exception {
+        Long id = transaction.execute(status -> {
+            Doc doc = docService.save(createDoc("text/plain", "first content"));
+            doc.setFilecontent("second content".getBytes(StandardCharsets.UTF_8));
+            return docService.save(doc).getId();
+        });
+        docIds.add(id);
+        assertThat(tasks()).hasSize(2);
+
+        worker.extract();
+
+        verify(plainTextExtractor, times(1)).extract(any(InputStream.class), anyString(), any(TextExcerpt.class));
+        assertThat(textExcerpt(id)).isEqualTo("second content");
+        assertThat(tasks()).isEmpty();
+    }
+
+    @Test
+    public void retriesWithBackoffUntilMaxAttempts() {
+        JHipsterProperties.TextExtraction properties = jHipsterProperties.getTextExtraction();
+        Long id = transaction.execute(status -> docService.save(createDoc(DOCX, "not a zip archive")).getId());
+        docIds.add(id);
+
+        worker.extract();
+
+        List<DocTextExtractionTask> tasks = tasks();
+        assertThat(tasks).hasSize(1);
+        DocTextExtractionTask task = tasks.get(0);
+        assertThat(task.getAttempts()).isEqualTo(1);
+        assertThat(task.getNextAttemptAt()).isAfter(ZonedDateTime.now().plusNanos(properties.getInitialBackoff() * 500000));
+
+        task.setAttempts(properties.getMaxAttempts() - 1);
+        task.setNextAttemptAt(ZonedDateTime.now());
+        transaction.execute(status -> docTextExtractionTaskRepository.save(task));
+
+        worker.extract();
+
+        assertThat(tasks()).isEmpty();
+        assertThat(textExcerpt(id)).isNull();
+    }
+
+    @Test
+    public void timesEachExtractionFromItsStart() throws Exception {
+        JHipsterProperties.TextExtraction properties = jHipsterProperties.getTextExtraction();
+        long timeout = properties.getTimeout();
+        doAnswer(invocation -> {
+            Thread.sleep(300);
+            return invocation.callRealMethod();
+        }).when(plainTextExtractor).extract(any(InputStream.class), anyString(), any(TextExcerpt.class));
+        // Twice as many docs as workers, so the batch as a whole takes longer than the timeout
+        for (int i = 0; i < properties.getPoolSize() * 2; i++) {
+            docIds.add(transaction.execute(status -> docService.save(createDoc("text/plain", "some content")).getId()));
+        }
+
+        properties.setTimeout(500);
+        try {
+            worker.extract();
+        } finally {
+            properties.setTimeout(timeout);
+        }
+
+        for (Long id : docIds) {
+            assertThat(textExcerpt(id)).isEqualTo("some content");
+        }
+        assertThat(tasks()).isEmpty();
+    }
+
+    @Test
+    public void dropsExcerptOfReplacedContent() throws Exception {
+        AtomicBoolean replaced = new AtomicBoolean();
+        AtomicReference<Long> replacedId = new AtomicReference<>();
+        doAnswer(invocation -> {
+            // The content is replaced while its text is extracted
+            if (replaced.compareAndSet(false, true)) {
+                docContentService.replaceContent(replacedId.get(),
+                    new ByteArrayInputStream("second content".getBytes(StandardCharsets.UTF_8)), "text/plain");
+            }
+            return invocation.callRealMethod();
+        }).when(plainTextExtractor).extract(any(InputStream.class), anyString(), any(TextExcerpt.class));
+        Long id = transaction.execute(status -> {
+            Long saved = docService.save(createDoc("text/plain", "first content")).getId();
+            replacedId.set(saved);
+            return saved;
+        });
+        docIds.add(id);
+
+        worker.extract();
+
+        assertThat(replaced.get()).isTrue();
+        assertThat(textExcerpt(id)).isNotEqualTo("first content");
+        assertThat(tasks()).extracting(DocTextExtractionTask::getContentSha256).doesNotContain(ContentHash.of("first content".getBytes(StandardCharsets.UTF_8)));
+    }
+
+    private List<DocTextExtractionTask> tasks() {
+        return docTextExtractionTaskRepository.findAll().stream()
+            .filter(task -> docIds.contains(task.getDocId()))
+            .collect(Collectors.toList());
+    }
+
+    private String textExcerpt(Long id) {
+        return jdbcTemplate.queryForObject("select text_excerpt from doc where id = ?", String.class, id);
+    }
+
+    private static Doc createDoc(String contentType, String content) {
+        Doc doc = new Doc();
+        doc.setName("Extraction");
+        doc.setMimetype(contentType);
+        doc.setFilecontent(content.getBytes(StandardCharsets.UTF_8));
+        doc.setFilecontentContentType(contentType);
+        return doc;
+    }
+}
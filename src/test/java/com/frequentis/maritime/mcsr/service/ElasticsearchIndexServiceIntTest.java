@@ -0,0 +1,82 @@
+/*
+ * MaritimeCloud Service Registry
+ * Copyright (c) 2016 Frequentis AG
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.frequentis.maritime.mcsr.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import javax.inject.Inject;
+
+import org.elasticsearch.action.admin.indices.settings.get.GetSettingsResponse;
+import org.elasticsearch.common.settings.Settings;
+import org.junit.After;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.SpringBootTest.WebEnvironment;
+import org.springframework.data.elasticsearch.core.ElasticsearchTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.util.AopTestUtils;
+
+import com.frequentis.maritime.mcsr.domain.Xsd;
+
+/**
+ * Test class for the ElasticsearchIndexService.
+ *
+ * @see ElasticsearchIndexService
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest(webEnvironment = WebEnvironment.RANDOM_PORT)
+@ActiveProfiles(profiles = "integration")
+public class ElasticsearchIndexServiceIntTest {
+
+    private static final String REFRESH_INTERVAL = "index.refresh_interval";
+
+    @Inject
+    private ElasticsearchIndexService elasticsearchIndexService;
+
+    @Inject
+    private ElasticsearchTemplate elasticsearchTemplate;
+
+    @After
+    public void resetRefreshInterval() {
+        updateRefreshInterval(Settings.builder().putNull(REFRESH_INTERVAL));
+    }
+
+    @Test
+    public void keepsRefreshIntervalOfPreviousGeneration() {
+        AopTestUtils.<ElasticsearchIndexService>getTargetObject(elasticsearchIndexService).reindexAll();
+        updateRefreshInterval(Settings.builder().put(REFRESH_INTERVAL, "30s"));
+
+        AopTestUtils.<ElasticsearchIndexService>getTargetObject(elasticsearchIndexService).reindexAll();
+
+        GetSettingsResponse response = elasticsearchTemplate.getClient().admin().indices()
+            .prepareGetSettings(alias()).get();
+        assertThat(response.getIndexToSettings().size()).isEqualTo(1);
+        assertThat(response.getIndexToSettings().valuesIt().next().get(REFRESH_INTERVAL)).isEqualTo("30s");
+    }
+
+    private void updateRefreshInterval(Settings.Builder settings) {
+        elasticsearchTemplate.getClient().admin().indices().prepareUpdateSettings(alias()).setSettings(settings).get();
+    }
+
+    private String alias() {
+        return elasticsearchTemplate.getPersistentEntityFor(Xsd.class).getIndexName();
+    }
+}
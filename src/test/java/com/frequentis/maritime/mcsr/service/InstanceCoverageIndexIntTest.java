@@ -0,0 +1,197 @@
+/*
+ * MaritimeCloud Service Registry
+ * Copyright (c) 2016 Frequentis AG
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.frequentis.maritime.mcsr.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.inject.Inject;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.SpringBootTest.WebEnvironment;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.elasticsearch.core.ElasticsearchTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.frequentis.maritime.mcsr.config.JHipsterProperties;
+import com.frequentis.maritime.mcsr.domain.Instance;
+import com.frequentis.maritime.mcsr.domain.InstanceChange;
+import com.frequentis.maritime.mcsr.repository.InstanceChangeRepository;
+import com.frequentis.maritime.mcsr.repository.search.InstanceSearchRepository;
+
+/**
+ * Test class for the InstanceCoverageIndex.
+ *
+ * @see InstanceCoverageIndex
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest(webEnvironment = WebEnvironment.RANDOM_PORT)
+@ActiveProfiles(profiles = "integration")
+public class InstanceCoverageIndexIntTest {
+
+    @Inject
+    private InstanceCoverageIndex instanceCoverageIndex;
+
+    @Inject
+    private InstanceService instanceService;
+
+    @Inject
+    private InstanceSearchRepository instanceSearchRepository;
+
+    @Inject
+    private ElasticsearchTemplate elasticsearchTemplate;
+
+    @Inject
+    private JHipsterProperties jHipsterProperties;
+
+    @Inject
+    private ObjectMapper objectMapper;
+
+    @Inject
+    private InstanceChangeRepository instanceChangeRepository;
+
+    private final List<Instance> instances = new ArrayList<>();
+
+    private final List<InstanceChange> changes = new ArrayList<>();
+
+    private Instance north;
+
+    private Instance south;
+
+    private Instance nonCompliant;
+
+    @Before
+    public void indexInstances() throws Exception {
+        north = instance(9_150_001L, box(10, 50), true);
+        south = instance(9_150_002L, box(10, 40), true);
+        nonCompliant = instance(9_150_003L, box(10, 50), false);
+        instanceSearchRepository.saveAll(instances);
+        elasticsearchTemplate.refresh(Instance.class);
+
+        jHipsterProperties.getCoverageIndex().setEnabled(true);
+        instanceCoverageIndex.rebuild();
+    }
+
+    @After
+    public void deleteInstances() {
+        jHipsterProperties.getCoverageIndex().setEnabled(false);
+        instanceChangeRepository.deleteAll(changes);
+        instanceSearchRepository.deleteAll(instances);
+        elasticsearchTemplate.refresh(Instance.class);
+    }
+
+    @Test
+    public void findsCoveringInstances() {
+        assertThat(instanceCoverageIndex.findCovering(50.5, 10.5, false))
+            .contains(north.getId()).doesNotContain(south.getId(), nonCompliant.getId());
+        assertThat(instanceCoverageIndex.findCovering(50.5, 10.5, true))
+            .contains(north.getId(), nonCompliant.getId()).doesNotContain(south.getId());
+        assertThat(instanceCoverageIndex.findCovering(40.5, 10.5, false))
+            .contains(south.getId()).doesNotContain(north.getId());
+    }
+
+    @Test
+    public void seesUpdatesWithoutRebuild() throws Exception {
+        north.setGeometry(objectMapper.readTree(box(30, 50)));
+        instanceCoverageIndex.update(north);
+        instanceCoverageIndex.remove(south.getId());
+
+        assertThat(instanceCoverageIndex.findCovering(50.5, 10.5, false)).doesNotContain(north.getId());
+        assertThat(instanceCoverageIndex.findCovering(50.5, 30.5, false)).contains(north.getId());
+        assertThat(instanceCoverageIndex.findCovering(40.5, 10.5, false)).doesNotContain(south.getId());
+    }
+
+    @Test
+    public void appliesChangesIndexedByOtherNodes() throws Exception {
+        // As another node's relay would: write to the search index and record the change
+        north.setGeometry(objectMapper.readTree(box(30, 50)));
+        instanceSearchRepository.save(north);
+        instanceSearchRepository.delete(south);
+        changes.add(instanceChangeRepository.save(new InstanceChange(north.getId())));
+        changes.add(instanceChangeRepository.save(new InstanceChange(south.getId())));
+
+        assertThat(instanceCoverageIndex.findCovering(50.5, 30.5, false)).doesNotContain(north.getId());
+
+        instanceCoverageIndex.applyChanges();
+
+        assertThat(instanceCoverageIndex.findCovering(50.5, 10.5, false)).doesNotContain(north.getId());
+        assertThat(instanceCoverageIndex.findCovering(50.5, 30.5, false)).contains(north.getId());
+        assertThat(instanceCoverageIndex.findCovering(40.5, 10.5, false)).doesNotContain(south.getId());
+    }
+
+    @Test
+    public void leavesDatelineShapesToElasticsearch() throws Exception {
+        Instance dateline = instance(9_150_004L, "{\"type\": \"Polygon\", \"coordinates\": "
+            + "[[[170, -60], [-170, -60], [-170, -61], [170, -61], [170, -60]]]}", true);
+        instanceCoverageIndex.update(dateline);
+
+        assertThat(instanceCoverageIndex.findCovering(-60.5, 175, false)).isNull();
+        assertThat(instanceCoverageIndex.findCovering(50.5, 10.5, false)).contains(north.getId());
+    }
+
+    @Test
+    public void searchesByLocationThroughTheIndex() throws Exception {
+        Page<Instance> page = instanceService.findByLocation(50.5, 10.5, "", false, InstanceFields.ALL, PageRequest.of(0, 100));
+
+        assertThat(page.getContent()).extracting(Instance::getId)
+            .contains(north.getId()).doesNotContain(south.getId(), nonCompliant.getId());
+    }
+
+    @Test
+    public void answersPositionWithoutGeoShapeSearch() throws Exception {
+        // Moved in Elasticsearch only, a geo shape search would not find it at its old position anymore
+        north.setGeometry(objectMapper.readTree(box(30, 50)));
+        instanceSearchRepository.save(north);
+        elasticsearchTemplate.refresh(Instance.class);
+
+        Page<Instance> page = instanceService.findByLocation(50.5, 10.5, "", false, InstanceFields.ALL, PageRequest.of(0, 100));
+
+        assertThat(page.getContent()).extracting(Instance::getId).contains(north.getId());
+    }
+
+    private Instance instance(long id, String geoJson, boolean compliant) throws Exception {
+        Instance instance = new Instance();
+        instance.setId(id);
+        instance.setName("Coverage instance " + id);
+        instance.setVersion("1.0");
+        instance.setInstanceId("urn:mrn:mcl:service:instance:test:coverage" + id);
+        instance.setCompliant(compliant);
+        instance.setGeometry(objectMapper.readTree(geoJson));
+        instances.add(instance);
+        return instance;
+    }
+
+    /**
+     * @return a one degree square with its south west corner at the position, as GeoJSON
+     */
+    private static String box(int longitude, int latitude) {
+        return "{\"type\": \"Polygon\", \"coordinates\": [[[" + longitude + ", " + latitude + "], ["
+            + (longitude + 1) + ", " + latitude + "], [" + (longitude + 1) + ", " + (latitude + 1) + "], ["
+            + longitude + ", " + (latitude + 1) + "], [" + longitude + ", " + latitude + "]]]}";
+    }
+}
@@ -0,0 +1,119 @@
+/*
+ * MaritimeCloud Service Registry
+ * Copyright (c) 2016 Frequentis AG
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package com.frequentis.maritime.mcsr.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import javax.inject.Inject;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.SpringBootTest.WebEnvironment;
+import org.springframework.data.elasticsearch.core.ElasticsearchTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import com.frequentis.maritime.mcsr.domain.Instance;
+import com.frequentis.maritime.mcsr.repository.search.InstanceSearchRepository;
+
+/**
+ * Test class for the count and facet searches of the InstanceService.
+ *
+ * @see InstanceService#count
+ * @see InstanceService#facets
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest(webEnvironment = WebEnvironment.RANDOM_PORT)
+@ActiveProfiles(profiles = "integration")
+public class InstanceSearchFacetsIntTest {
+
+    private static final String QUERY = "name:zfacetprobe";
+
+    @Inject
+    private InstanceService instanceService;
+
+    @Inject
+    private InstanceSearchRepository instanceSearchRepository;
+
+    @Inject
+    private ElasticsearchTemplate elasticsearchTemplate;
+
+    private final List<Instance> instances = new ArrayList<>();
+
+    @Before
+    public void indexInstances() {
+        instance(9_200_001L, "urn:mrn:mcl:org:facet-a", "provisional", true);
+        instance(9_200_002L, "urn:mrn:mcl:org:facet-a", "released", true);
+        instance(9_200_003L, "urn:mrn:mcl:org:facet-b", "provisional", true);
+        instance(9_200_004L, "urn:mrn:mcl:org:facet-b", "provisional", false);
+        instanceSearchRepository.saveAll(instances);
+        elasticsearchTemplate.refresh(Instance.class);
+    }
+
+    @After
+    public void deleteInstances() {
+        instanceSearchRepository.deleteAll(instances);
+        elasticsearchTemplate.refresh(Instance.class);
+    }
+
+    @Test
+    public void countsMatchingInstances() {
+        assertThat(instanceService.count(QUERY, false)).isEqualTo(3);
+        assertThat(instanceService.count(QUERY, true)).isEqualTo(4);
+    }
+
+    @Test
+    public void countsPerFieldValue() {
+        SearchFacets facets = instanceService.facets(QUERY, false, Arrays.asList("organizationId", "status"), 10);
+
+        assertThat(facets.getTotal()).isEqualTo(3);
+        assertThat(facets.getFacets().get("organizationId"))
+            .containsEntry("urn:mrn:mcl:org:facet-a", 2L)
+            .containsEntry("urn:mrn:mcl:org:facet-b", 1L);
+        assertThat(facets.getFacets().get("status"))
+            .containsEntry("provisional", 2L)
+            .containsEntry("released", 1L);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsUnknownField() {
+        instanceService.facets(QUERY, false, Collections.singletonList("instanceAsXml"), 10);
+    }
+
+    private void instance(long id, String organizationId, String status, boolean compliant) {
+        Instance instance = new Instance();
+        instance.setId(id);
+        instance.setName("zfacetprobe instance " + id);
+        instance.setVersion("1.0");
+        instance.setInstanceId("urn:mrn:mcl:service:instance:test:facet" + id);
+        instance.setOrganizationId(organizationId);
+        instance.setStatus(status);
+        instance.setCompliant(compliant);
+        instances.add(instance);
+    }
+}
@@ -0,0 +1,186 @@
+/*
+ * MaritimeCloud Service Registry
+ * Copyright (c) 2016 Frequentis AG
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.frequentis.maritime.mcsr.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import javax.inject.Inject;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.SpringBootTest.WebEnvironment;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.elasticsearch.core.ElasticsearchTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.frequentis.maritime.mcsr.domain.Doc;
+import com.frequentis.maritime.mcsr.domain.Instance;
+import com.frequentis.maritime.mcsr.domain.Xml;
+import com.frequentis.maritime.mcsr.repository.search.InstanceSearchRepository;
+
+/**
+ * Test class for the source filtering of instance searches, including a small benchmark of a
+ * 100 item page with and without documents.
+ *
+ * @see InstanceFields
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest(webEnvironment = WebEnvironment.RANDOM_PORT)
+@ActiveProfiles(profiles = "integration")
+public class InstanceSearchSourceFilterIntTest {
+
+    private static final Logger log = LoggerFactory.getLogger(InstanceSearchSourceFilterIntTest.class);
+
+    private static final String KEYWORD = "sourcefilterbenchmark";
+
+    private static final int PAGE_SIZE = 100;
+
+    private static final int DOC_SIZE = 64 * 1024;
+
+    private static final int ITERATIONS = 10;
+
+    @Inject
+    private InstanceService instanceService;
+
+    @Inject
+    private InstanceSearchRepository instanceSearchRepository;
+
+    @Inject
+    private ElasticsearchTemplate elasticsearchTemplate;
+
+    @Inject
+    private ObjectMapper objectMapper;
+
+    private final List<Instance> instances = new ArrayList<>();
+
+    @Before
+    public void indexInstances() {
+        byte[] content = new byte[DOC_SIZE];
+        for (int i = 0; i < content.length; i++) {
+            content[i] = (byte) ('a' + i % 26);
+        }
+        for (int i = 0; i < PAGE_SIZE; i++) {
+            long id = 9_140_000L + i;
+
+            Doc doc = new Doc();
+            doc.setId(id);
+            doc.setName("doc" + i);
+            doc.setMimetype("application/octet-stream");
+            doc.setFilecontent(content);
+            doc.setFilecontentContentType("application/octet-stream");
+
+            Xml xml = new Xml();
+            xml.setId(id);
+            xml.setName("xml" + i);
+            xml.setContent(new String(content, 0, DOC_SIZE / 4));
+            xml.setContentContentType("application/xml");
+
+            Instance instance = new Instance();
+            instance.setId(id);
+            instance.setName("Source filter instance " + i);
+            instance.setVersion("1.0");
+            instance.setComment("Source filter benchmark");
+            instance.setInstanceId("urn:mrn:mcl:service:instance:test:sourcefilter" + i);
+            instance.setKeywords(KEYWORD);
+            instance.setCompliant(true);
+            instance.setInstanceAsXml(xml);
+            instance.setInstanceAsDoc(doc);
+            instance.setDocs(Collections.singleton(doc));
+            instances.add(instance);
+        }
+        instanceSearchRepository.saveAll(instances);
+        elasticsearchTemplate.refresh(Instance.class);
+    }
+
+    @After
+    public void deleteInstances() {
+        instanceSearchRepository.deleteAll(instances);
+        elasticsearchTemplate.refresh(Instance.class);
+    }
+
+    @Test
+    public void excludedPartsAreNotReturned() {
+        Page<Instance> page = instanceService.searchKeywords(KEYWORD, true, InstanceFields.of(false, false), PageRequest.of(0, PAGE_SIZE));
+
+        assertThat(page.getContent()).hasSize(PAGE_SIZE);
+        for (Instance instance : page.getContent()) {
+            assertThat(instance.getDocs()).isNull();
+            assertThat(instance.getInstanceAsDoc()).isNull();
+            assertThat(instance.getInstanceAsXml()).isNotNull();
+            assertThat(instance.getInstanceAsXml().getContent()).isNull();
+            assertThat(instance.getInstanceAsXml().getName()).startsWith("xml");
+            assertThat(instance.getName()).startsWith("Source filter instance");
+        }
+    }
+
+    @Test
+    public void completeInstancesByDefault() {
+        Page<Instance> page = instanceService.searchKeywords(KEYWORD, true, PageRequest.of(0, PAGE_SIZE));
+
+        assertThat(page.getContent()).hasSize(PAGE_SIZE);
+        Instance instance = page.getContent().get(0);
+        assertThat(instance.getInstanceAsDoc().getFilecontent()).hasSize(DOC_SIZE);
+        assertThat(instance.getDocs()).hasSize(1);
+        assertThat(instance.getInstanceAsXml().getContent()).hasSize(DOC_SIZE / 4);
+    }
+
+    @Test
+    public void benchmarkPageWithAndWithoutDocuments() throws Exception {
+        // warm up both paths
+        long complete = run(InstanceFields.ALL);
+        long filtered = run(InstanceFields.of(false, true));
+
+        long start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            complete = run(InstanceFields.ALL);
+        }
+        long completeTime = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            filtered = run(InstanceFields.of(false, true));
+        }
+        long filteredTime = System.nanoTime() - start;
+
+        log.info("Page of {} instances: with documents {} bytes in {} ms, without documents {} bytes in {} ms",
+            PAGE_SIZE, complete, completeTime / ITERATIONS / 1000000, filtered, filteredTime / ITERATIONS / 1000000);
+        assertThat(filtered).isLessThan(complete / 10);
+    }
+
+    /**
+     * @return the size of the serialized response
+     */
+    private long run(InstanceFields fields) throws Exception {
+        Page<Instance> page = instanceService.searchKeywords(KEYWORD, true, fields, PageRequest.of(0, PAGE_SIZE));
+        assertThat(page.getContent()).hasSize(PAGE_SIZE);
+        return objectMapper.writeValueAsBytes(page.getContent()).length;
+    }
+}
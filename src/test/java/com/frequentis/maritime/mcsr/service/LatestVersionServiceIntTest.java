@@ -0,0 +1,171 @@
+/*
+ * MaritimeCloud Service Registry
+ * Copyright (c) 2016 Frequentis AG
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.frequentis.maritime.mcsr.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.entry;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import javax.inject.Inject;
+
+import org.junit.After;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.SpringBootTest.WebEnvironment;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import com.frequentis.maritime.mcsr.domain.Instance;
+import com.frequentis.maritime.mcsr.domain.LatestVersion;
+import com.frequentis.maritime.mcsr.repository.InstanceRepository;
+import com.frequentis.maritime.mcsr.repository.LatestVersionRepository;
+
+/**
+ * Test class for the LatestVersionService.
+ *
+ * @see LatestVersionService
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest(webEnvironment = WebEnvironment.RANDOM_PORT)
+@ActiveProfiles(profiles = "integration")
+public class LatestVersionServiceIntTest {
+
+    private static final String DOMAIN_ID = "urn:mrn:mcl:service:instance:test:latest";
+
+    @Inject
+    private InstanceService instanceService;
+
+    @Inject
+    private LatestVersionService latestVersionService;
+
+    @Inject
+    private LatestVersionRepository latestVersionRepository;
+
+    @Inject
+    private InstanceRepository instanceRepository;
+
+    @After
+    public void cleanup() {
+        for (Instance instance : instanceRepository.findByDomainId(DOMAIN_ID)) {
+            instanceService.delete(instance.getId());
+        }
+    }
+
+    @Test
+    public void tracksLatestLiveVersion() {
+        Instance v110 = instanceService.save(createInstance("1.10", Instance.SERVICESTATUS_LIVE));
+        Instance v19 = instanceService.save(createInstance("1.9", Instance.SERVICESTATUS_LIVE));
+        instanceService.save(createInstance("2.0", "provisional"));
+
+        assertThat(instanceService.findLatestVersionByDomainId(DOMAIN_ID, true).getId()).isEqualTo(v110.getId());
+        assertThat(instanceService.findLatestVersionByDomainId(DOMAIN_ID, false)).isNull();
+
+        LatestVersion latestVersion = latestVersionRepository.findOneByEntityTypeAndDomainId("Instance", DOMAIN_ID);
+        assertThat(latestVersion.getLatestId()).isEqualTo(v110.getId());
+        assertThat(latestVersion.getLatestCompliantId()).isNull();
+
+        instanceService.delete(v110.getId());
+        assertThat(instanceService.findLatestVersionByDomainId(DOMAIN_ID, true).getId()).isEqualTo(v19.getId());
+
+        instanceService.delete(v19.getId());
+        assertThat(instanceService.findLatestVersionByDomainId(DOMAIN_ID, true)).isNull();
+        assertThat(latestVersionRepository.findOneByEntityTypeAndDomainId("Instance", DOMAIN_ID)).isNull();
+    }
+
+    @Test
+    public void updatesPointerForConcurrentSaves() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<Instance>> saved = new ArrayList<>();
+            for (int i = 1; i <= 8; i++) {
+                Instance instance = createInstance("1." + i, Instance.SERVICESTATUS_LIVE);
+                saved.add(executor.submit(() -> instanceService.save(instance)));
+            }
+            Long latestId = null;
+            for (Future<Instance> future : saved) {
+                latestId = future.get(30, TimeUnit.SECONDS).getId();
+            }
+
+            LatestVersion latestVersion = latestVersionRepository.findOneByEntityTypeAndDomainId("Instance", DOMAIN_ID);
+            assertThat(latestVersion.getLatestId()).isEqualTo(latestId);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void computesPointerForUntrackedDomainId() {
+        Instance instance = instanceService.save(createInstance("1.0", Instance.SERVICESTATUS_LIVE));
+        latestVersionRepository.delete(latestVersionRepository.findOneByEntityTypeAndDomainId("Instance", DOMAIN_ID));
+
+        assertThat(instanceService.findLatestVersionByDomainId(DOMAIN_ID, true).getId()).isEqualTo(instance.getId());
+    }
+
+    @Test
+    public void resolvesManyReferencesInRequestOrder() {
+        Instance v10 = instanceService.save(createInstance("1.0", Instance.SERVICESTATUS_LIVE));
+        Instance v11 = instanceService.save(createInstance("1.1", Instance.SERVICESTATUS_LIVE));
+
+        assertThat(latestVersionService.findLatestIds(Instance.class, Arrays.asList(DOMAIN_ID, "urn:mrn:unknown"), false))
+            .containsOnly(entry(DOMAIN_ID, v11.getId()));
+
+        List<Instance> instances = instanceService.findAllByDomainIdAndVersion(Arrays.asList(
+            new VersionReference(DOMAIN_ID, "1.0"),
+            new VersionReference(DOMAIN_ID, "2.0"),
+            new VersionReference(DOMAIN_ID, "latest"),
+            new VersionReference("urn:mrn:unknown", "latest"),
+            new VersionReference(DOMAIN_ID, "1.0")), true);
+
+        assertThat(instances).hasSize(5);
+        assertThat(instances.get(0).getId()).isEqualTo(v10.getId());
+        assertThat(instances.get(1)).isNull();
+        assertThat(instances.get(2).getId()).isEqualTo(v11.getId());
+        assertThat(instances.get(3)).isNull();
+        assertThat(instances.get(4).getId()).isEqualTo(v10.getId());
+        // not compliant, so there is no latest compliant version
+        assertThat(instanceService.findAllByDomainIdAndVersion(
+            Collections.singletonList(new VersionReference(DOMAIN_ID, "latest")), false)).containsExactly((Instance) null);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsTooManyReferences() {
+        instanceService.findAllByDomainIdAndVersion(Collections.nCopies(InstanceService.MAX_RESOLVE_REFERENCES + 1,
+            new VersionReference(DOMAIN_ID, "latest")), true);
+    }
+
+    private Instance createInstance(String version, String status) {
+        Instance instance = new Instance();
+        instance.setName("Instance");
+        instance.setVersion(version);
+        instance.setComment("Instance");
+        instance.setStatus(status);
+        instance.setInstanceId(DOMAIN_ID);
+        return instance;
+    }
+}
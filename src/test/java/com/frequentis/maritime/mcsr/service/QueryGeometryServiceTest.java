@@ -0,0 +1,112 @@
+/*
+ * MaritimeCloud Service Registry
+ * Copyright (c) 2016 Frequentis AG
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.frequentis.maritime.mcsr.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.elasticsearch.common.geo.builders.PolygonBuilder;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.codahale.metrics.MetricRegistry;
+import com.frequentis.maritime.mcsr.config.JHipsterProperties;
+
+/**
+ * Test class for the QueryGeometryService.
+ *
+ * @see QueryGeometryService
+ */
+public class QueryGeometryServiceTest {
+
+    private static final String WKT = "POLYGON((-80.190 25.774, -66.118 18.466, -64.757 32.321, -80.190 25.774))";
+
+    private static final String GEOJSON = "{\"type\": \"Polygon\", \"coordinates\": "
+        + "[[[-80.19, 25.774], [-66.118, 18.466], [-64.757, 32.321], [-80.19, 25.774]]]}";
+
+    private JHipsterProperties properties;
+
+    private MetricRegistry metricRegistry;
+
+    private QueryGeometryService queryGeometryService;
+
+    @Before
+    public void setup() {
+        properties = new JHipsterProperties();
+        metricRegistry = new MetricRegistry();
+        queryGeometryService = new QueryGeometryService();
+        ReflectionTestUtils.setField(queryGeometryService, "jHipsterProperties", properties);
+        ReflectionTestUtils.setField(queryGeometryService, "metricRegistry", metricRegistry);
+        queryGeometryService.init();
+    }
+
+    @Test
+    public void wktAndGeoJsonOfTheSameGeometryHaveTheSameKey() throws Exception {
+        QueryGeometry wkt = queryGeometryService.fromWkt(WKT);
+        QueryGeometry geoJson = queryGeometryService.fromGeoJson(GEOJSON);
+
+        assertThat(wkt.getKey()).isEqualTo(geoJson.getKey());
+        assertThat(wkt.getVertices()).isEqualTo(4);
+        assertThat(wkt.toShapeBuilder()).isInstanceOf(PolygonBuilder.class);
+        assertThat(wkt.toShapeBuilder()).isNotSameAs(wkt.toShapeBuilder());
+    }
+
+    @Test
+    public void repeatedGeometryIsNotParsedAgain() throws Exception {
+        QueryGeometry first = queryGeometryService.fromWkt(WKT);
+        QueryGeometry second = queryGeometryService.fromWkt("  " + WKT.replace(", ", ",\n  ") + "\n");
+
+        assertThat(second).isSameAs(first);
+        assertThat(metricRegistry.getTimers().get("query.geometry.parse").getCount()).isEqualTo(1);
+        assertThat(metricRegistry.getMeters().get("query.geometry.cache.hit").getCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void cacheCanBeDisabled() throws Exception {
+        properties.getQueryGeometry().setCacheSize(0);
+
+        assertThat(queryGeometryService.fromWkt(WKT)).isNotSameAs(queryGeometryService.fromWkt(WKT));
+    }
+
+    @Test
+    public void denseGeometryIsSimplified() throws Exception {
+        properties.getQueryGeometry().setSimplifyTolerance(0.01);
+        properties.getQueryGeometry().setSimplifyMinVertices(100);
+        StringBuilder wkt = new StringBuilder("POLYGON((");
+        for (int i = 0; i < 3600; i++) {
+            double angle = Math.toRadians(i / 10.0);
+            wkt.append(10 * Math.cos(angle)).append(' ').append(10 * Math.sin(angle)).append(", ");
+        }
+        wkt.append("10 0))");
+
+        QueryGeometry geometry = queryGeometryService.fromWkt(wkt.toString());
+
+        assertThat(geometry.getVertices()).isLessThan(500);
+        assertThat(metricRegistry.getHistograms().get("query.geometry.vertices").getSnapshot().getMax()).isEqualTo(3601);
+    }
+
+    @Test
+    public void elasticsearchExtensionsAreParsedByElasticsearch() throws Exception {
+        QueryGeometry envelope = queryGeometryService.fromGeoJson(
+            "{\"type\": \"envelope\", \"coordinates\": [[-45.0, 45.0], [45.0, -45.0]]}");
+
+        assertThat(envelope.getVertices()).isEqualTo(0);
+        assertThat(envelope.toShapeBuilder()).isNotNull();
+    }
+}
@@ -0,0 +1,163 @@
+/*
+ * MaritimeCloud Service Registry
+ * Copyright (c) 2016 Frequentis AG
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.frequentis.maritime.mcsr.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+
+import javax.inject.Inject;
+import javax.persistence.EntityManager;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.SpringBootTest.WebEnvironment;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.frequentis.maritime.mcsr.config.JHipsterProperties;
+import com.frequentis.maritime.mcsr.domain.Instance;
+import com.frequentis.maritime.mcsr.repository.InstanceRepository;
+import com.frequentis.maritime.mcsr.service.RegistryExportService.EntityType;
+
+/**
+ * Test class for the RegistryExportService.
+ *
+ * @see RegistryExportService
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest(webEnvironment = WebEnvironment.RANDOM_PORT)
+@ActiveProfiles(profiles = "integration")
+@Transactional
+public class RegistryExportServiceIntTest {
+
+    private static final String ORGANIZATION = "urn:mrn:mcl:org:test:export";
+
+    @Inject
+    private RegistryExportService registryExportService;
+
+    @Inject
+    private InstanceRepository instanceRepository;
+
+    @Inject
+    private JHipsterProperties jHipsterProperties;
+
+    @Inject
+    private ObjectMapper objectMapper;
+
+    @Inject
+    private EntityManager em;
+
+    private int batchSize;
+
+    @Before
+    public void createInstances() {
+        batchSize = jHipsterProperties.getExport().getBatchSize();
+        jHipsterProperties.getExport().setBatchSize(2);
+        for (int i = 0; i < 5; i++) {
+            instanceRepository.save(createInstance(i, i % 2 == 0 ? "2017-06-01T10:00Z" : "2017-01-01T10:00Z"));
+        }
+        em.flush();
+    }
+
+    @After
+    public void restoreBatchSize() {
+        jHipsterProperties.getExport().setBatchSize(batchSize);
+    }
+
+    @Test
+    public void exportsMatchingEntitiesInBatches() throws Exception {
+        List<JsonNode> lines = export(filter(null), null);
+
+        assertThat(lines).hasSize(5);
+        for (int i = 0; i < lines.size(); i++) {
+            assertThat(lines.get(i).get("type").asText()).isEqualTo("instance");
+            assertThat(lines.get(i).get("entity").get("instanceId").asText()).isEqualTo(domainId(i));
+            assertThat(lines.get(i).get("resumeToken").asText()).isNotEmpty();
+        }
+    }
+
+    @Test
+    public void filtersByUpdatedSince() throws Exception {
+        List<JsonNode> lines = export(filter("2017-05-01"), null);
+
+        assertThat(lines).extracting(line -> line.get("entity").get("instanceId").asText())
+            .containsExactly(domainId(0), domainId(2), domainId(4));
+    }
+
+    @Test
+    public void resumesAfterToken() throws Exception {
+        List<JsonNode> all = export(filter(null), null);
+
+        List<JsonNode> resumed = export(filter(null), all.get(2).get("resumeToken").asText());
+
+        assertThat(resumed).extracting(line -> line.get("entity").get("instanceId").asText())
+            .containsExactly(domainId(3), domainId(4));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsInvalidResumeToken() {
+        registryExportService.validateResumeToken("not a token");
+    }
+
+    private List<JsonNode> export(RegistryExportService.Filter filter, String resumeToken) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        registryExportService.export(EnumSet.of(EntityType.INSTANCE), filter, resumeToken, false, out);
+        List<JsonNode> lines = new ArrayList<>();
+        for (String line : new String(out.toByteArray(), StandardCharsets.UTF_8).split("\n")) {
+            if (!line.isEmpty()) {
+                lines.add(objectMapper.readTree(line));
+            }
+        }
+        return lines;
+    }
+
+    private RegistryExportService.Filter filter(String updatedSince) {
+        RegistryExportService.Filter filter = new RegistryExportService.Filter();
+        filter.setOrganizationId(ORGANIZATION);
+        filter.setUpdatedSince(updatedSince);
+        return filter;
+    }
+
+    private String domainId(int i) {
+        return "urn:mrn:mcl:service:instance:test:export" + i;
+    }
+
+    private Instance createInstance(int i, String lastUpdatedAt) {
+        Instance instance = new Instance();
+        instance.setName("Instance");
+        instance.setVersion("1.0");
+        instance.setComment("Instance");
+        instance.setStatus(Instance.SERVICESTATUS_LIVE);
+        instance.setInstanceId(domainId(i));
+        instance.setOrganizationId(ORGANIZATION);
+        instance.setLastUpdatedAt(lastUpdatedAt);
+        return instance;
+    }
+}
@@ -0,0 +1,144 @@
+/*
+ * MaritimeCloud Service Registry
+ * Copyright (c) 2016 Frequentis AG
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package com.frequentis.maritime.mcsr.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicReference;
+
+import javax.inject.Inject;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.SpringBootTest.WebEnvironment;
+import org.springframework.boot.test.mock.mockito.SpyBean;
+import org.springframework.data.elasticsearch.core.ElasticsearchTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.util.AopTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.frequentis.maritime.mcsr.domain.Xsd;
+import com.frequentis.maritime.mcsr.repository.XsdRepository;
+import com.frequentis.maritime.mcsr.repository.search.XsdSearchRepository;
+
+/**
+ * Test class for the ReindexChangeTracker.
+ *
+ * @see ReindexChangeTracker
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest(webEnvironment = WebEnvironment.RANDOM_PORT)
+@ActiveProfiles(profiles = "integration")
+public class ReindexChangeTrackerIntTest {
+
+    @Inject
+    private ReindexChangeTracker changeTracker;
+
+    @Inject
+    private ElasticsearchIndexService elasticsearchIndexService;
+
+    @Inject
+    private XsdRepository xsdRepository;
+
+    @Inject
+    private XsdSearchRepository xsdSearchRepository;
+
+    @Inject
+    private ElasticsearchTemplate elasticsearchTemplate;
+
+    @Inject
+    private PlatformTransactionManager transactionManager;
+
+    @SpyBean
+    private SearchResultCache searchResultCache;
+
+    private TransactionTemplate transaction;
+
+    private final AtomicReference<Xsd> written = new AtomicReference<>();
+
+    @Before
+    public void init() {
+        transaction = new TransactionTemplate(transactionManager);
+    }
+
+    @After
+    public void cleanUp() {
+        changeTracker.stop(Xsd.class);
+        Xsd xsd = written.get();
+        if (xsd != null) {
+            xsdRepository.deleteById(xsd.getId());
+            xsdSearchRepository.deleteById(xsd.getId());
+        }
+    }
+
+    @Test
+    public void recordsChangesOnlyOnceCommitted() {
+        changeTracker.start(Xsd.class);
+
+        Long committed = transaction.execute(status -> {
+            Xsd xsd = xsdRepository.saveAndFlush(createXsd());
+            assertThat(changeTracker.drain(Xsd.class)).isEmpty();
+            return xsd.getId();
+        });
+        written.set(xsdRepository.findById(committed).get());
+        transaction.execute(status -> {
+            xsdRepository.saveAndFlush(createXsd());
+            status.setRollbackOnly();
+            return null;
+        });
+
+        assertThat(changeTracker.drain(Xsd.class)).containsExactly(committed);
+    }
+
+    @Test
+    public void replaysWritesDuringAliasSwitch() {
+        String alias = elasticsearchTemplate.getPersistentEntityFor(Xsd.class).getIndexName();
+        // The search cache is invalidated right after the alias switched to the new generation. The xsd is
+        // written to the database only, so only the replay of the recorded changes can bring it into the index.
+        doAnswer(invocation -> {
+            if (alias.equals(invocation.getArgument(0)) && written.get() == null) {
+                written.set(transaction.execute(status -> xsdRepository.save(createXsd())));
+            }
+            return invocation.callRealMethod();
+        }).when(searchResultCache).invalidate(anyString());
+
+        AopTestUtils.<ElasticsearchIndexService>getTargetObject(elasticsearchIndexService).reindexAll();
+
+        assertThat(written.get()).isNotNull();
+        elasticsearchTemplate.refresh(Xsd.class);
+        assertThat(xsdSearchRepository.findById(written.get().getId())).isPresent();
+    }
+
+    private Xsd createXsd() {
+        Xsd xsd = new Xsd();
+        xsd.setName("reindex");
+        xsd.setContent("<schema/>".getBytes(StandardCharsets.UTF_8));
+        xsd.setContentContentType("text/xml");
+        return xsd;
+    }
+}
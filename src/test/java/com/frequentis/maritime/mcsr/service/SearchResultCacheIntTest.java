@@ -0,0 +1,127 @@
+/*
+ * MaritimeCloud Service Registry
+ * Copyright (c) 2016 Frequentis AG
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.frequentis.maritime.mcsr.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.Collections;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.inject.Inject;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.SpringBootTest.WebEnvironment;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.elasticsearch.core.ElasticsearchTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import com.frequentis.maritime.mcsr.config.JHipsterProperties;
+import com.frequentis.maritime.mcsr.domain.Instance;
+
+/**
+ * Test class for the SearchResultCache.
+ *
+ * @see SearchResultCache
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest(webEnvironment = WebEnvironment.RANDOM_PORT)
+@ActiveProfiles(profiles = "integration")
+public class SearchResultCacheIntTest {
+
+    @Inject
+    private SearchResultCache searchResultCache;
+
+    @Inject
+    private JHipsterProperties jHipsterProperties;
+
+    @Inject
+    private ElasticsearchTemplate elasticsearchTemplate;
+
+    private final AtomicInteger searches = new AtomicInteger();
+
+    @Before
+    public void enableCache() {
+        jHipsterProperties.getSearchCache().setMaxEntries(100);
+        jHipsterProperties.getSearchCache().setRefreshWindow(0);
+        searchResultCache.clear();
+    }
+
+    @After
+    public void disableCache() {
+        jHipsterProperties.getSearchCache().setMaxEntries(0);
+        jHipsterProperties.getSearchCache().setRefreshWindow(1000);
+        searchResultCache.clear();
+    }
+
+    @Test
+    public void servesCopiesFromCache() {
+        Pageable pageable = PageRequest.of(0, 20);
+        Page<Instance> first = searchResultCache.get(Instance.class, "query", pageable, () -> search(pageable));
+        first.getContent().get(0).setName("modified by caller");
+
+        Page<Instance> second = searchResultCache.get(Instance.class, "query", pageable, () -> search(pageable));
+
+        assertThat(searches.get()).isEqualTo(1);
+        assertThat(second.getTotalElements()).isEqualTo(42);
+        assertThat(second.getContent().get(0).getName()).isEqualTo("Cached instance");
+        assertThat(second.getContent().get(0).getInstanceId()).isEqualTo("urn:mrn:mcl:service:instance:test:cached");
+    }
+
+    @Test
+    public void keysIncludePage() {
+        searchResultCache.get(Instance.class, "query", PageRequest.of(0, 20), () -> search(PageRequest.of(0, 20)));
+        searchResultCache.get(Instance.class, "query", PageRequest.of(1, 20), () -> search(PageRequest.of(1, 20)));
+
+        assertThat(searches.get()).isEqualTo(2);
+    }
+
+    @Test
+    public void writeToIndexInvalidates() {
+        Pageable pageable = PageRequest.of(0, 20);
+        searchResultCache.get(Instance.class, "query", pageable, () -> search(pageable));
+
+        // a write to another index keeps the entry
+        searchResultCache.invalidate("some-other-index");
+        searchResultCache.get(Instance.class, "query", pageable, () -> search(pageable));
+        assertThat(searches.get()).isEqualTo(1);
+
+        searchResultCache.invalidate(elasticsearchTemplate.getPersistentEntityFor(Instance.class).getIndexName());
+        searchResultCache.get(Instance.class, "query", pageable, () -> search(pageable));
+        assertThat(searches.get()).isEqualTo(2);
+    }
+
+    private Page<Instance> search(Pageable pageable) {
+        searches.incrementAndGet();
+        Instance instance = new Instance();
+        instance.setId(1L);
+        instance.setName("Cached instance");
+        instance.setVersion("1.0");
+        instance.setComment("Instance");
+        instance.setInstanceId("urn:mrn:mcl:service:instance:test:cached");
+        return new PageImpl<>(Collections.singletonList(instance), pageable, 42);
+    }
+}
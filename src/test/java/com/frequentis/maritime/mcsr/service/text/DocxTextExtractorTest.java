@@ -0,0 +1,97 @@
+/*
+ * MaritimeCloud Service Registry
+ * Copyright (c) 2016 Frequentis AG
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package com.frequentis.maritime.mcsr.service.text;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.charset.StandardCharsets;
+
+import org.docx4j.Docx4J;
+import org.docx4j.openpackaging.packages.WordprocessingMLPackage;
+import org.docx4j.openpackaging.parts.WordprocessingML.MainDocumentPart;
+import org.junit.Test;
+
+/**
+ * Test class for the DocxTextExtractor.
+ *
+ * @see DocxTextExtractor
+ */
+public class DocxTextExtractorTest {
+
+    private final DocxTextExtractor extractor = new DocxTextExtractor();
+
+    @Test
+    public void extractsParagraphs() throws Exception {
+        TextExcerpt excerpt = new TextExcerpt(1000);
+
+        extractor.extract(new ByteArrayInputStream(createDocx("Getting started", "Connect to the  service")),
+            DocxTextExtractor.CONTENT_TYPE, excerpt);
+
+        assertThat(excerpt.toString()).isEqualTo("Getting started Connect to the service");
+    }
+
+    @Test
+    public void stopsAtMaximumLength() throws Exception {
+        TextExcerpt excerpt = new TextExcerpt(7);
+
+        extractor.extract(new ByteArrayInputStream(createDocx("Getting started")), DocxTextExtractor.CONTENT_TYPE, excerpt);
+
+        assertThat(excerpt.toString()).isEqualTo("Getting");
+        assertThat(excerpt.isFull()).isTrue();
+    }
+
+    @Test(expected = IOException.class)
+    public void rejectsDocumentInflatingBeyondLimit() throws Exception {
+        new DocxTextExtractor(100).extract(new ByteArrayInputStream(createDocx("Getting started")),
+            DocxTextExtractor.CONTENT_TYPE, new TextExcerpt(1000));
+    }
+
+    @Test(expected = InterruptedIOException.class)
+    public void stopsWhenInterrupted() throws Exception {
+        byte[] docx = createDocx("Getting started");
+        Thread.currentThread().interrupt();
+        try {
+            extractor.extract(new ByteArrayInputStream(docx), DocxTextExtractor.CONTENT_TYPE, new TextExcerpt(1000));
+        } finally {
+            Thread.interrupted();
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void rejectsOtherContent() throws Exception {
+        extractor.extract(new ByteArrayInputStream("Getting started".getBytes(StandardCharsets.US_ASCII)),
+            DocxTextExtractor.CONTENT_TYPE, new TextExcerpt(1000));
+    }
+
+    private byte[] createDocx(String... paragraphs) throws Exception {
+        WordprocessingMLPackage wordMLPackage = WordprocessingMLPackage.createPackage();
+        MainDocumentPart mdp = wordMLPackage.getMainDocumentPart();
+        for (String paragraph : paragraphs) {
+            mdp.addParagraphOfText(paragraph);
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        Docx4J.save(wordMLPackage, out, Docx4J.FLAG_SAVE_ZIP_FILE);
+        return out.toByteArray();
+    }
+}
@@ -50,6 +50,7 @@ import org.springframework.context.ApplicationContext;
 import org.springframework.core.env.Environment;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.web.PageableHandlerMethodArgumentResolver;
+import org.springframework.data.elasticsearch.core.ElasticsearchTemplate;
 import org.springframework.http.MediaType;
 import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
 import org.springframework.security.test.context.support.WithMockUser;
@@ -67,6 +68,7 @@ import com.frequentis.maritime.mcsr.domain.Design;
 import com.frequentis.maritime.mcsr.domain.Xml;
 import com.frequentis.maritime.mcsr.repository.DesignRepository;
 import com.frequentis.maritime.mcsr.repository.search.DesignSearchRepository;
+import com.frequentis.maritime.mcsr.service.IndexOutboxRelay;
 import com.frequentis.maritime.mcsr.service.DesignService;
 
 
@@ -103,6 +105,12 @@ public class DesignResourceIntTest {
     @Inject
     private DesignSearchRepository designSearchRepository;
 
+    @Inject
+    private IndexOutboxRelay indexOutboxRelay;
+
+    @Inject
+    private ElasticsearchTemplate elasticsearchTemplate;
+
     @Inject
     private MappingJackson2HttpMessageConverter jacksonMessageConverter;
 
@@ -168,6 +176,7 @@ public class DesignResourceIntTest {
         assertThat(testDesign.getStatus()).isEqualTo(DEFAULT_STATUS);
         assertThat(testDesign.getOrganizationId()).isEqualTo(DEFAULT_ORGANIZATION_ID);
 
+        indexOutboxRelay.relay();
         // Validate the Design in ElasticSearch
         Design designEs = designSearchRepository.findById(testDesign.getId()).get();
         assertThat(designEs).isEqualToComparingFieldByField(testDesign);
@@ -325,6 +334,7 @@ public class DesignResourceIntTest {
         assertThat(testDesign.getStatus()).isEqualTo(UPDATED_STATUS);
         assertThat(testDesign.getOrganizationId()).isEqualTo(UPDATED_ORGANIZATION_ID);
 
+        indexOutboxRelay.relay();
         // Validate the Design in ElasticSearch
         Design designEs = designSearchRepository.findById(testDesign.getId()).get();
         assertThat(designEs).isEqualToComparingFieldByField(testDesign);
@@ -343,6 +353,7 @@ public class DesignResourceIntTest {
                 .accept(TestUtil.APPLICATION_JSON_UTF8))
                 .andExpect(status().isOk());
 
+        indexOutboxRelay.relay();
         // Validate ElasticSearch is empty
         // FIXME HOTFIX! There is SD-ES bug DATAES-363
         //boolean designExistsInEs = designSearchRepository.existsById(design.getId());
@@ -360,7 +371,9 @@ public class DesignResourceIntTest {
         // Initialize the database
         designService.save(design);
 
+        indexOutboxRelay.relay();
         // Search the design
+        elasticsearchTemplate.refresh(Design.class);
         restDesignMockMvc.perform(get("/api/_search/designs?query=id:" + design.getId()))
             .andExpect(status().isOk())
             .andExpect(content().contentType(MediaType.APPLICATION_JSON_UTF8))
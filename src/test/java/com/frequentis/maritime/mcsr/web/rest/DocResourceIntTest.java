@@ -31,6 +31,7 @@ import java.util.List;
 
 import javax.annotation.PostConstruct;
 import javax.inject.Inject;
+import javax.persistence.EntityManager;
 
 import org.junit.Before;
 import org.junit.Test;
@@ -39,6 +40,7 @@ import org.mockito.MockitoAnnotations;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.boot.test.context.SpringBootTest.WebEnvironment;
 import org.springframework.data.web.PageableHandlerMethodArgumentResolver;
+import org.springframework.data.elasticsearch.core.ElasticsearchTemplate;
 import org.springframework.http.MediaType;
 import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
 import org.springframework.security.test.context.support.WithMockUser;
@@ -53,6 +55,7 @@ import org.springframework.util.Base64Utils;
 import com.frequentis.maritime.mcsr.domain.Doc;
 import com.frequentis.maritime.mcsr.repository.DocRepository;
 import com.frequentis.maritime.mcsr.repository.search.DocSearchRepository;
+import com.frequentis.maritime.mcsr.service.IndexOutboxRelay;
 import com.frequentis.maritime.mcsr.service.DocService;
 
 
@@ -85,9 +88,18 @@ public class DocResourceIntTest {
     @Inject
     private DocService docService;
 
+    @Inject
+    private EntityManager em;
+
     @Inject
     private DocSearchRepository docSearchRepository;
 
+    @Inject
+    private IndexOutboxRelay indexOutboxRelay;
+
+    @Inject
+    private ElasticsearchTemplate elasticsearchTemplate;
+
     @Inject
     private MappingJackson2HttpMessageConverter jacksonMessageConverter;
 
@@ -138,12 +150,14 @@ public class DocResourceIntTest {
         assertThat(testDoc.getName()).isEqualTo(DEFAULT_NAME);
         assertThat(testDoc.getComment()).isEqualTo(DEFAULT_COMMENT);
         assertThat(testDoc.getMimetype()).isEqualTo(DEFAULT_MIMETYPE);
-        assertThat(testDoc.getFilecontent()).isEqualTo(DEFAULT_FILECONTENT);
+        assertThat(testDoc.getContent().getContent()).isEqualTo(DEFAULT_FILECONTENT);
+        assertThat(testDoc.getFilecontentSize()).isEqualTo(DEFAULT_FILECONTENT.length);
         assertThat(testDoc.getFilecontentContentType()).isEqualTo(DEFAULT_FILECONTENT_CONTENT_TYPE);
 
+        indexOutboxRelay.relay();
         // Validate the Doc in ElasticSearch
         Doc docEs = docSearchRepository.findById(testDoc.getId()).get();
-        assertThat(docEs).isEqualToComparingFieldByField(testDoc);
+        assertThat(docEs).isEqualToIgnoringGivenFields(testDoc, "content", "filecontent");
     }
 
     @Test
@@ -204,7 +218,9 @@ public class DocResourceIntTest {
     @Transactional
     public void getAllDocs() throws Exception {
         // Initialize the database
-        docRepository.saveAndFlush(doc);
+        docService.save(doc);
+        // Listings load the docs without their content
+        em.clear();
 
         // Get all the docs
         restDocMockMvc.perform(get("/api/docs?sort=id,desc"))
@@ -215,14 +231,15 @@ public class DocResourceIntTest {
                 .andExpect(jsonPath("$.[*].comment").value(hasItem(DEFAULT_COMMENT.toString())))
                 .andExpect(jsonPath("$.[*].mimetype").value(hasItem(DEFAULT_MIMETYPE.toString())))
                 .andExpect(jsonPath("$.[*].filecontentContentType").value(hasItem(DEFAULT_FILECONTENT_CONTENT_TYPE)))
-                .andExpect(jsonPath("$.[*].filecontent").value(hasItem(Base64Utils.encodeToString(DEFAULT_FILECONTENT))));
+                .andExpect(jsonPath("$.[*].filecontentSize").value(hasItem(DEFAULT_FILECONTENT.length)))
+                .andExpect(jsonPath("$.[*].filecontent").doesNotExist());
     }
 
     @Test
     @Transactional
     public void getDoc() throws Exception {
         // Initialize the database
-        docRepository.saveAndFlush(doc);
+        docService.save(doc);
 
         // Get the doc
         restDocMockMvc.perform(get("/api/docs/{id}", doc.getId()))
@@ -273,12 +290,14 @@ public class DocResourceIntTest {
         assertThat(testDoc.getName()).isEqualTo(UPDATED_NAME);
         assertThat(testDoc.getComment()).isEqualTo(UPDATED_COMMENT);
         assertThat(testDoc.getMimetype()).isEqualTo(UPDATED_MIMETYPE);
-        assertThat(testDoc.getFilecontent()).isEqualTo(UPDATED_FILECONTENT);
+        assertThat(testDoc.getContent().getContent()).isEqualTo(UPDATED_FILECONTENT);
+        assertThat(testDoc.getFilecontentSize()).isEqualTo(UPDATED_FILECONTENT.length);
         assertThat(testDoc.getFilecontentContentType()).isEqualTo(UPDATED_FILECONTENT_CONTENT_TYPE);
 
+        indexOutboxRelay.relay();
         // Validate the Doc in ElasticSearch
         Doc docEs = docSearchRepository.findById(testDoc.getId()).get();
-        assertThat(docEs).isEqualToComparingFieldByField(testDoc);
+        assertThat(docEs).isEqualToIgnoringGivenFields(testDoc, "content", "filecontent");
     }
 
     @Test
@@ -294,6 +313,7 @@ public class DocResourceIntTest {
                 .accept(TestUtil.APPLICATION_JSON_UTF8))
                 .andExpect(status().isOk());
 
+        indexOutboxRelay.relay();
         // Validate ElasticSearch is empty
         // FIXME HOTFIX! There is SD-ES bug DATAES-363
         //boolean docExistsInEs = docSearchRepository.existsById(doc.getId());
@@ -312,7 +332,9 @@ public class DocResourceIntTest {
         // Initialize the database
         docService.save(doc);
 
+        indexOutboxRelay.relay();
         // Search the doc
+        elasticsearchTemplate.refresh(Doc.class);
         restDocMockMvc.perform(get("/api/_search/docs?query=id:" + doc.getId()))
             .andExpect(status().isOk())
             .andExpect(content().contentType(MediaType.APPLICATION_JSON_UTF8))
@@ -321,6 +343,6 @@ public class DocResourceIntTest {
             .andExpect(jsonPath("$.[*].comment").value(hasItem(DEFAULT_COMMENT.toString())))
             .andExpect(jsonPath("$.[*].mimetype").value(hasItem(DEFAULT_MIMETYPE.toString())))
             .andExpect(jsonPath("$.[*].filecontentContentType").value(hasItem(DEFAULT_FILECONTENT_CONTENT_TYPE)))
-            .andExpect(jsonPath("$.[*].filecontent").value(hasItem(Base64Utils.encodeToString(DEFAULT_FILECONTENT))));
+            .andExpect(jsonPath("$.[*].filecontentSize").value(hasItem(DEFAULT_FILECONTENT.length)));
     }
 }
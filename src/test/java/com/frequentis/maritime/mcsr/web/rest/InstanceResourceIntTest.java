@@ -53,6 +53,7 @@ import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.boot.test.context.SpringBootTest.WebEnvironment;
 import org.springframework.context.ApplicationContext;
 import org.springframework.data.web.PageableHandlerMethodArgumentResolver;
+import org.springframework.data.elasticsearch.core.ElasticsearchTemplate;
 import org.springframework.http.MediaType;
 import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
 import org.springframework.security.test.context.support.WithMockUser;
@@ -71,6 +72,7 @@ import com.frequentis.maritime.mcsr.repository.XmlRepository;
 import com.frequentis.maritime.mcsr.repository.search.InstanceSearchRepository;
 import com.frequentis.maritime.mcsr.repository.search.XmlSearchRepository;
 import com.frequentis.maritime.mcsr.service.DesignService;
+import com.frequentis.maritime.mcsr.service.IndexOutboxRelay;
 import com.frequentis.maritime.mcsr.service.InstanceService;
 import com.frequentis.maritime.mcsr.service.XmlService;
 import com.frequentis.maritime.mcsr.web.soap.converters.instance.InstanceDTOConverter;
@@ -153,6 +155,12 @@ public class InstanceResourceIntTest {
     @Inject
     private InstanceSearchRepository instanceSearchRepository;
 
+    @Inject
+    private IndexOutboxRelay indexOutboxRelay;
+
+    @Inject
+    private ElasticsearchTemplate elasticsearchTemplate;
+
     @Inject
     private MappingJackson2HttpMessageConverter jacksonMessageConverter;
 
@@ -306,6 +314,7 @@ public class InstanceResourceIntTest {
         assertThat(testInstance.getEndpointUri()).isEqualTo(DEFAULT_ENDPOINT_URI);
         assertThat(testInstance.getEndpointType()).isEqualTo(DEFAULT_ENDPOINT_TYPE);
 
+        indexOutboxRelay.relay();
         // Validate the Instance in ElasticSearch
         Instance instanceEs = instanceSearchRepository.findById(testInstance.getId()).get();
         assertThat(instanceEs.getName()).isEqualTo(DEFAULT_NAME);
@@ -560,6 +569,7 @@ public class InstanceResourceIntTest {
         assertThat(testInstance.getEndpointUri()).isEqualTo(UPDATED_ENDPOINT_URI);
         assertThat(testInstance.getEndpointType()).isEqualTo(UPDATED_ENDPOINT_TYPE);
 
+        indexOutboxRelay.relay();
         // Validate the Instance in ElasticSearch
         Instance instanceEs = instanceSearchRepository.findById(testInstance.getId()).get();
         assertThat(instanceEs.getName()).isEqualTo(UPDATED_NAME);
@@ -588,6 +598,7 @@ public class InstanceResourceIntTest {
                 .accept(TestUtil.APPLICATION_JSON_UTF8))
                 .andExpect(status().isOk());
 
+        indexOutboxRelay.relay();
         // Validate ElasticSearch is empty
         //boolean instanceExistsInEs = instanceSearchRepository.existsById(instance.getId());
         boolean instanceExistsInEs = instanceSearchRepository.findById(instance.getId()).isPresent();
@@ -606,7 +617,9 @@ public class InstanceResourceIntTest {
         // saveGeometry have to be called
         instanceService.saveGeometry(instance);
 
+        indexOutboxRelay.relay();
         // Search the instance
+        elasticsearchTemplate.refresh(Instance.class);
         restInstanceMockMvc.perform(get("/api/_search/instances?query=id:" + instance.getId()))
             .andExpect(status().isOk())
             .andExpect(content().contentType(MediaType.APPLICATION_JSON_UTF8_VALUE))
@@ -44,6 +44,7 @@ import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.boot.test.context.SpringBootTest.WebEnvironment;
 import org.springframework.context.ApplicationContext;
 import org.springframework.data.web.PageableHandlerMethodArgumentResolver;
+import org.springframework.data.elasticsearch.core.ElasticsearchTemplate;
 import org.springframework.http.MediaType;
 import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
 import org.springframework.security.test.context.support.WithMockUser;
@@ -58,6 +59,7 @@ import com.frequentis.maritime.mcsr.domain.Specification;
 import com.frequentis.maritime.mcsr.domain.Xml;
 import com.frequentis.maritime.mcsr.repository.SpecificationRepository;
 import com.frequentis.maritime.mcsr.repository.search.SpecificationSearchRepository;
+import com.frequentis.maritime.mcsr.service.IndexOutboxRelay;
 import com.frequentis.maritime.mcsr.service.SpecificationService;
 import com.frequentis.maritime.mcsr.service.XmlService;
 
@@ -100,6 +102,12 @@ public class SpecificationResourceIntTest {
     @Inject
     private SpecificationSearchRepository specificationSearchRepository;
 
+    @Inject
+    private IndexOutboxRelay indexOutboxRelay;
+
+    @Inject
+    private ElasticsearchTemplate elasticsearchTemplate;
+
     @Inject
     private MappingJackson2HttpMessageConverter jacksonMessageConverter;
 
@@ -180,6 +188,7 @@ public class SpecificationResourceIntTest {
         assertThat(testSpecification.getStatus()).isEqualTo(DEFAULT_STATUS);
         assertThat(testSpecification.getOrganizationId()).isEqualTo(DEFAULT_ORGANIZATION_ID);
 
+        indexOutboxRelay.relay();
         // Validate the Specification in ElasticSearch
         Specification specificationEs = specificationSearchRepository.findById(testSpecification.getId()).get();
         assertThat(specificationEs).isEqualToComparingFieldByField(testSpecification);
@@ -344,6 +353,7 @@ public class SpecificationResourceIntTest {
         assertThat(testSpecification.getStatus()).isEqualTo(UPDATED_STATUS);
         assertThat(testSpecification.getOrganizationId()).isEqualTo(UPDATED_ORGANIZATION_ID);
 
+        indexOutboxRelay.relay();
         // Validate the Specification in ElasticSearch
         Specification specificationEs = specificationSearchRepository.findById(testSpecification.getId()).get();
         assertThat(specificationEs).isEqualToComparingFieldByField(testSpecification);
@@ -365,6 +375,7 @@ public class SpecificationResourceIntTest {
         // Validate ElasticSearch is empty
         specificationSearchRepository.refresh();
 
+        indexOutboxRelay.relay();
         // FIXME HOTFIX! There is SD-ES bug DATAES-363
         //boolean specificationExistsInEs = specificationSearchRepository.existsById(specification.getId());
         boolean specificationExistsInEs = specificationSearchRepository.findById(specification.getId()).isPresent();
@@ -381,7 +392,9 @@ public class SpecificationResourceIntTest {
         // Initialize the database
         specificationService.save(specification);
 
+        indexOutboxRelay.relay();
         // Search the specification
+        elasticsearchTemplate.refresh(Specification.class);
         restSpecificationMockMvc.perform(get("/api/_search/specifications?query=id:" + specification.getId()))
             .andExpect(status().isOk())
             .andExpect(content().contentType(MediaType.APPLICATION_JSON_UTF8))
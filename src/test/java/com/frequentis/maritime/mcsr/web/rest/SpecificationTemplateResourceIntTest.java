@@ -39,6 +39,7 @@ import org.mockito.MockitoAnnotations;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.boot.test.context.SpringBootTest.WebEnvironment;
 import org.springframework.data.web.PageableHandlerMethodArgumentResolver;
+import org.springframework.data.elasticsearch.core.ElasticsearchTemplate;
 import org.springframework.http.MediaType;
 import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
 import org.springframework.security.test.context.support.WithMockUser;
@@ -53,6 +54,7 @@ import com.frequentis.maritime.mcsr.domain.SpecificationTemplate;
 import com.frequentis.maritime.mcsr.domain.enumeration.SpecificationTemplateType;
 import com.frequentis.maritime.mcsr.repository.SpecificationTemplateRepository;
 import com.frequentis.maritime.mcsr.repository.search.SpecificationTemplateSearchRepository;
+import com.frequentis.maritime.mcsr.service.SearchIndexingService;
 import com.frequentis.maritime.mcsr.service.SpecificationTemplateService;
 
 /**
@@ -85,6 +87,12 @@ public class SpecificationTemplateResourceIntTest {
     @Inject
     private SpecificationTemplateSearchRepository specificationTemplateSearchRepository;
 
+    @Inject
+    private SearchIndexingService searchIndexingService;
+
+    @Inject
+    private ElasticsearchTemplate elasticsearchTemplate;
+
     @Inject
     private MappingJackson2HttpMessageConverter jacksonMessageConverter;
 
@@ -136,6 +144,7 @@ public class SpecificationTemplateResourceIntTest {
         assertThat(testSpecificationTemplate.getType()).isEqualTo(DEFAULT_TYPE);
         assertThat(testSpecificationTemplate.getComment()).isEqualTo(DEFAULT_COMMENT);
 
+        searchIndexingService.flush();
         // Validate the SpecificationTemplate in ElasticSearch
         SpecificationTemplate specificationTemplateEs = specificationTemplateSearchRepository.findById(testSpecificationTemplate.getId()).get();
         assertThat(specificationTemplateEs).isEqualToComparingFieldByField(testSpecificationTemplate);
@@ -267,6 +276,7 @@ public class SpecificationTemplateResourceIntTest {
         assertThat(testSpecificationTemplate.getType()).isEqualTo(UPDATED_TYPE);
         assertThat(testSpecificationTemplate.getComment()).isEqualTo(UPDATED_COMMENT);
 
+        searchIndexingService.flush();
         // Validate the SpecificationTemplate in ElasticSearch
         SpecificationTemplate specificationTemplateEs = specificationTemplateSearchRepository.findById(testSpecificationTemplate.getId()).get();
         assertThat(specificationTemplateEs).isEqualToComparingFieldByField(testSpecificationTemplate);
@@ -285,6 +295,7 @@ public class SpecificationTemplateResourceIntTest {
                 .accept(TestUtil.APPLICATION_JSON_UTF8))
                 .andExpect(status().isOk());
 
+        searchIndexingService.flush();
         // Validate ElasticSearch is empty
         // Bug in existById
         //boolean specificationTemplateExistsInEs = specificationTemplateSearchRepository.existsById(specificationTemplate.getId());
@@ -303,6 +314,8 @@ public class SpecificationTemplateResourceIntTest {
         specificationTemplateService.save(specificationTemplate);
 
         // Search the specificationTemplate
+        searchIndexingService.flush();
+        elasticsearchTemplate.refresh(SpecificationTemplate.class);
         restSpecificationTemplateMockMvc.perform(get("/api/_search/specification-templates?query=id:" + specificationTemplate.getId()))
             .andExpect(status().isOk())
             .andExpect(content().contentType(MediaType.APPLICATION_JSON_UTF8))
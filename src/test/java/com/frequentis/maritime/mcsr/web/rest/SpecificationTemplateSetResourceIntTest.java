@@ -39,6 +39,7 @@ import org.mockito.MockitoAnnotations;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.boot.test.context.SpringBootTest.WebEnvironment;
 import org.springframework.data.web.PageableHandlerMethodArgumentResolver;
+import org.springframework.data.elasticsearch.core.ElasticsearchTemplate;
 import org.springframework.http.MediaType;
 import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
 import org.springframework.security.test.context.support.WithMockUser;
@@ -52,6 +53,7 @@ import org.springframework.transaction.annotation.Transactional;
 import com.frequentis.maritime.mcsr.domain.SpecificationTemplateSet;
 import com.frequentis.maritime.mcsr.repository.SpecificationTemplateSetRepository;
 import com.frequentis.maritime.mcsr.repository.search.SpecificationTemplateSetSearchRepository;
+import com.frequentis.maritime.mcsr.service.SearchIndexingService;
 import com.frequentis.maritime.mcsr.service.SpecificationTemplateSetService;
 
 
@@ -82,6 +84,12 @@ public class SpecificationTemplateSetResourceIntTest {
     @Inject
     private SpecificationTemplateSetSearchRepository specificationTemplateSetSearchRepository;
 
+    @Inject
+    private SearchIndexingService searchIndexingService;
+
+    @Inject
+    private ElasticsearchTemplate elasticsearchTemplate;
+
     @Inject
     private MappingJackson2HttpMessageConverter jacksonMessageConverter;
 
@@ -131,6 +139,7 @@ public class SpecificationTemplateSetResourceIntTest {
         assertThat(testSpecificationTemplateSet.getVersion()).isEqualTo(DEFAULT_VERSION);
         assertThat(testSpecificationTemplateSet.getComment()).isEqualTo(DEFAULT_COMMENT);
 
+        searchIndexingService.flush();
         // Validate the SpecificationTemplateSet in ElasticSearch
         SpecificationTemplateSet specificationTemplateSetEs = specificationTemplateSetSearchRepository.findById(testSpecificationTemplateSet.getId()).get();
         assertThat(specificationTemplateSetEs).isEqualToComparingFieldByField(testSpecificationTemplateSet);
@@ -240,6 +249,7 @@ public class SpecificationTemplateSetResourceIntTest {
         assertThat(testSpecificationTemplateSet.getVersion()).isEqualTo(UPDATED_VERSION);
         assertThat(testSpecificationTemplateSet.getComment()).isEqualTo(UPDATED_COMMENT);
 
+        searchIndexingService.flush();
         // Validate the SpecificationTemplateSet in ElasticSearch
         SpecificationTemplateSet specificationTemplateSetEs = specificationTemplateSetSearchRepository.findById(testSpecificationTemplateSet.getId()).get();
         assertThat(specificationTemplateSetEs).isEqualToComparingFieldByField(testSpecificationTemplateSet);
@@ -259,6 +269,7 @@ public class SpecificationTemplateSetResourceIntTest {
                 .accept(TestUtil.APPLICATION_JSON_UTF8))
                 .andExpect(status().isOk());
 
+        searchIndexingService.flush();
         // Validate ElasticSearch is empty
         // Bug in existById
         //boolean specificationTemplateSetExistsInEs = specificationTemplateSetSearchRepository.existsById(specificationTemplateSet.getId());
@@ -277,6 +288,8 @@ public class SpecificationTemplateSetResourceIntTest {
         specificationTemplateSetService.save(specificationTemplateSet);
 
         // Search the specificationTemplateSet
+        searchIndexingService.flush();
+        elasticsearchTemplate.refresh(SpecificationTemplateSet.class);
         restSpecificationTemplateSetMockMvc.perform(get("/api/_search/specification-template-sets?query=id:" + specificationTemplateSet.getId()))
             .andExpect(status().isOk())
             .andExpect(content().contentType(MediaType.APPLICATION_JSON_UTF8))
@@ -39,6 +39,7 @@ import org.mockito.MockitoAnnotations;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.boot.test.context.SpringBootTest.WebEnvironment;
 import org.springframework.data.web.PageableHandlerMethodArgumentResolver;
+import org.springframework.data.elasticsearch.core.ElasticsearchTemplate;
 import org.springframework.http.MediaType;
 import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
 import org.springframework.security.test.context.support.WithMockUser;
@@ -52,6 +53,7 @@ import org.springframework.transaction.annotation.Transactional;
 import com.frequentis.maritime.mcsr.domain.Xml;
 import com.frequentis.maritime.mcsr.repository.XmlRepository;
 import com.frequentis.maritime.mcsr.repository.search.XmlSearchRepository;
+import com.frequentis.maritime.mcsr.service.SearchIndexingService;
 import com.frequentis.maritime.mcsr.service.XmlService;
 
 
@@ -85,6 +87,12 @@ public class XmlResourceIntTest {
     @Inject
     private XmlSearchRepository xmlSearchRepository;
 
+    @Inject
+    private SearchIndexingService searchIndexingService;
+
+    @Inject
+    private ElasticsearchTemplate elasticsearchTemplate;
+
     @Inject
     private MappingJackson2HttpMessageConverter jacksonMessageConverter;
 
@@ -136,6 +144,7 @@ public class XmlResourceIntTest {
         assertThat(testXml.getContent()).isEqualTo(DEFAULT_CONTENT);
         assertThat(testXml.getContentContentType()).isEqualTo(DEFAULT_CONTENT_CONTENT_TYPE);
 
+        searchIndexingService.flush();
         // Validate the Xml in ElasticSearch
         Xml xmlEs = xmlSearchRepository.findById(testXml.getId()).orElse(null);
         assertThat(xmlEs).isEqualToComparingFieldByField(testXml);
@@ -249,6 +258,7 @@ public class XmlResourceIntTest {
         assertThat(testXml.getContent()).isEqualTo(UPDATED_CONTENT);
         assertThat(testXml.getContentContentType()).isEqualTo(UPDATED_CONTENT_CONTENT_TYPE);
 
+        searchIndexingService.flush();
         // Validate the Xml in ElasticSearch
         Xml xmlEs = xmlSearchRepository.findById(testXml.getId()).orElse(null);
         assertThat(xmlEs).isEqualToComparingFieldByField(testXml);
@@ -267,6 +277,7 @@ public class XmlResourceIntTest {
                 .accept(TestUtil.APPLICATION_JSON_UTF8))
                 .andExpect(status().isOk());
 
+        searchIndexingService.flush();
         // Validate ElasticSearch is empty
         // FIXME HOTFIX! There is SD-ES bug DATAES-363
         //boolean xmlExistsInEs = xmlSearchRepository.existsById(xml.getId());
@@ -285,6 +296,8 @@ public class XmlResourceIntTest {
         xmlService.save(xml);
 
         // Search the xml
+        searchIndexingService.flush();
+        elasticsearchTemplate.refresh(Xml.class);
         restXmlMockMvc.perform(get("/api/_search/xmls?query=id:" + xml.getId()))
             .andExpect(status().isOk())
             .andExpect(content().contentType(MediaType.APPLICATION_JSON_UTF8))
@@ -39,6 +39,7 @@ import org.mockito.MockitoAnnotations;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.boot.test.context.SpringBootTest.WebEnvironment;
 import org.springframework.data.web.PageableHandlerMethodArgumentResolver;
+import org.springframework.data.elasticsearch.core.ElasticsearchTemplate;
 import org.springframework.http.MediaType;
 import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
 import org.springframework.security.test.context.support.WithMockUser;
@@ -53,6 +54,7 @@ import org.springframework.util.Base64Utils;
 import com.frequentis.maritime.mcsr.domain.Xsd;
 import com.frequentis.maritime.mcsr.repository.XsdRepository;
 import com.frequentis.maritime.mcsr.repository.search.XsdSearchRepository;
+import com.frequentis.maritime.mcsr.service.IndexOutboxRelay;
 import com.frequentis.maritime.mcsr.service.XsdService;
 
 
@@ -86,6 +88,12 @@ public class XsdResourceIntTest {
     @Inject
     private XsdSearchRepository xsdSearchRepository;
 
+    @Inject
+    private IndexOutboxRelay indexOutboxRelay;
+
+    @Inject
+    private ElasticsearchTemplate elasticsearchTemplate;
+
     @Inject
     private MappingJackson2HttpMessageConverter jacksonMessageConverter;
 
@@ -137,6 +145,7 @@ public class XsdResourceIntTest {
         assertThat(testXsd.getContent()).isEqualTo(DEFAULT_CONTENT);
         assertThat(testXsd.getContentContentType()).isEqualTo(DEFAULT_CONTENT_CONTENT_TYPE);
 
+        indexOutboxRelay.relay();
         // Validate the Xsd in ElasticSearch
         Xsd xsdEs = xsdSearchRepository.findById(testXsd.getId()).orElse(null);
         assertThat(xsdEs).isEqualToComparingFieldByField(testXsd);
@@ -250,6 +259,7 @@ public class XsdResourceIntTest {
         assertThat(testXsd.getContent()).isEqualTo(UPDATED_CONTENT);
         assertThat(testXsd.getContentContentType()).isEqualTo(UPDATED_CONTENT_CONTENT_TYPE);
 
+        indexOutboxRelay.relay();
         // Validate the Xsd in ElasticSearch
         Xsd xsdEs = xsdSearchRepository.findById(testXsd.getId()).orElse(null);
         assertThat(xsdEs).isEqualToComparingFieldByField(testXsd);
@@ -268,6 +278,7 @@ public class XsdResourceIntTest {
                 .accept(TestUtil.APPLICATION_JSON_UTF8))
                 .andExpect(status().isOk());
 
+        indexOutboxRelay.relay();
         // Validate ElasticSearch is empty
         // FIXME HOTFIX! There is SD-ES bug DATAES-363
         //boolean xsdExistsInEs = xsdSearchRepository.existsById(xsd.getId());
@@ -285,7 +296,9 @@ public class XsdResourceIntTest {
         // Initialize the database
         xsdService.save(xsd);
 
+        indexOutboxRelay.relay();
         // Search the xsd
+        elasticsearchTemplate.refresh(Xsd.class);
         restXsdMockMvc.perform(get("/api/_search/xsds?query=id:" + xsd.getId()))
             .andExpect(status().isOk())
             .andExpect(content().contentType(MediaType.APPLICATION_JSON_UTF8))
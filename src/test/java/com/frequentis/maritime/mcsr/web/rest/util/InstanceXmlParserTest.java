@@ -0,0 +1,78 @@
+/*
+ * MaritimeCloud Service Registry
+ * Copyright (c) 2016 Frequentis AG
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.frequentis.maritime.mcsr.web.rest.util;
+
+import org.apache.commons.io.IOUtils;
+import org.junit.Test;
+import org.xml.sax.SAXException;
+
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Test class for the InstanceXmlParser.
+ *
+ * @see InstanceXmlParser
+ */
+public class InstanceXmlParserTest {
+
+    @Test
+    public void parsesAndValidatesSampleInstance() throws Exception {
+        InstanceXmlAttributes attributes = InstanceXmlParser.parseAndValidate(loadSampleInstance(), "ServiceInstanceSchema.xsd");
+
+        assertThat(attributes.getName()).isEqualTo("John Doe's Address Person Lookup Service Implementation");
+        assertThat(attributes.getVersion()).isEqualTo("1.0.0");
+        assertThat(attributes.getStatus()).isEqualTo("provisional");
+        assertThat(attributes.getUrl()).isEqualTo("https://john.doe.example.com/mcl/addressLookupServiceImpl/");
+        assertThat(attributes.getDesignId()).isEqualTo("urn:mrn:mcl:service:design:example:32c11e45-1fa0-42db-bbff-cfe687382fee");
+        assertThat(attributes.getDesignVersion()).isEqualTo("1.0.0");
+        assertThat(attributes.getGeometryAsWKT()).startsWith("POLYGON((-80.190 25.774");
+        assertThat(attributes.getMmsi()).isEmpty();
+    }
+
+    @Test
+    public void nestedElementsDoNotLeakIntoTopLevelValues() throws Exception {
+        String xml = "<serviceInstance xmlns=\"urn:test\">" +
+            "<implementsServiceDesign><id>design</id><version>2.0</version></implementsServiceDesign>" +
+            "<coversAreas><unLoCode>DEHAM</unLoCode></coversAreas>" +
+            "<id>instance</id><version>1.0</version>" +
+            "</serviceInstance>";
+        InstanceXmlAttributes attributes = InstanceXmlParser.parse(xml);
+
+        assertThat(attributes.getId()).isEqualTo("instance");
+        assertThat(attributes.getVersion()).isEqualTo("1.0");
+        assertThat(attributes.getDesignId()).isEqualTo("design");
+        assertThat(attributes.getDesignVersion()).isEqualTo("2.0");
+        assertThat(attributes.getCoversAreaUnLoCode()).isEqualTo("DEHAM");
+        assertThat(attributes.getUnLoCode()).isEmpty();
+    }
+
+    @Test(expected = SAXException.class)
+    public void rejectsInvalidInstance() throws Exception {
+        InstanceXmlParser.parseAndValidate("<serviceInstance/>", "ServiceInstanceSchema.xsd");
+    }
+
+    private String loadSampleInstance() throws Exception {
+        try (InputStream in = getClass().getClassLoader().getResourceAsStream("dataload/xml/AddressForPersonLookupServiceInstance.xml")) {
+            return IOUtils.toString(in, StandardCharsets.UTF_8);
+        }
+    }
+}
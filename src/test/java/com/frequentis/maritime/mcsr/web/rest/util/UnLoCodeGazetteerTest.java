@@ -0,0 +1,107 @@
+/*
+ * MaritimeCloud Service Registry
+ * Copyright (c) 2016 Frequentis AG
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.frequentis.maritime.mcsr.web.rest.util;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Test class for the UnLoCodeGazetteer.
+ *
+ * @see UnLoCodeGazetteer
+ */
+public class UnLoCodeGazetteerTest {
+
+    private static final String MAPPING = "[" +
+        "{\"Country\":\"AD\",\"Location\":\"ALV\",\"Status\":\"AI\",\"Coordinates\":\"4230N 00131E\"}," +
+        "{\"Country\":\"AD\",\"Location\":\"CAN\",\"Status\":\"RL\",\"Coordinates\":\"4234N 00135E\"}," +
+        "{\"Country\":\"AR\",\"Location\":\"BUE\",\"Status\":\"AI\",\"Coordinates\":\"3436S 05827W\"}," +
+        "{\"Country\":\"DE\",\"Location\":\"HAM\",\"Status\":\"AI\",\"Coordinates\":\"\"}]";
+
+    private UnLoCodeGazetteer load() throws Exception {
+        return UnLoCodeGazetteer.fromJson(new ByteArrayInputStream(MAPPING.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    @Test
+    public void looksUpCodesWithPosition() throws Exception {
+        UnLoCodeGazetteer gazetteer = load();
+
+        assertThat(gazetteer.size()).isEqualTo(3);
+        assertThat(gazetteer.getPosition("ADCAN")).containsExactly(42.34, 1.35);
+        assertThat(gazetteer.getPosition("ARBUE")).containsExactly(-34.36, -58.27);
+        assertThat(gazetteer.getPosition("DEHAM")).isNull();
+        assertThat(gazetteer.getPosition("XXXXX")).isNull();
+        assertThat(gazetteer.getPosition("AD-CAN")).isNull();
+    }
+
+    @Test
+    public void keepsTableInUseWhenReloadFails() throws Exception {
+        UnLoCodeGazetteer previous = UnLoCodeGazetteer.getCurrent();
+        UnLoCodeGazetteer gazetteer = load();
+        UnLoCodeGazetteer.install(gazetteer);
+        ClassLoader corrupt = new ClassLoader() {
+            @Override
+            public InputStream getResourceAsStream(String name) {
+                return new ByteArrayInputStream(new byte[] {1, 2, 3});
+            }
+        };
+        try {
+            assertThatThrownBy(() -> UnLoCodeGazetteer.reload(corrupt)).isInstanceOf(IOException.class);
+            assertThat(UnLoCodeGazetteer.getCurrent()).isSameAs(gazetteer);
+        } finally {
+            UnLoCodeGazetteer.install(previous);
+        }
+    }
+
+    @Test
+    public void encodedKeysRoundTrip() {
+        assertThat(UnLoCodeGazetteer.decode(UnLoCodeGazetteer.encode("ZZZZZ"))).isEqualTo("ZZZZZ");
+        assertThat(UnLoCodeGazetteer.decode(UnLoCodeGazetteer.encode("US2AB"))).isEqualTo("US2AB");
+        assertThat(UnLoCodeGazetteer.encode("ADALV")).isLessThan(UnLoCodeGazetteer.encode("ADCAN"));
+    }
+
+    @Test
+    public void snapshotRoundTrip() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        load().writeSnapshot(out);
+        UnLoCodeGazetteer gazetteer = UnLoCodeGazetteer.readSnapshot(new ByteArrayInputStream(out.toByteArray()));
+
+        assertThat(gazetteer.size()).isEqualTo(3);
+        assertThat(gazetteer.getPosition("ADALV")).containsExactly(42.30, 1.31);
+    }
+
+    @Test
+    public void findsCodesNearPoint() throws Exception {
+        List<UnLoCodeGazetteer.Location> near = load().findNear(42.33, 1.34, 20, 10);
+
+        assertThat(near).extracting(UnLoCodeGazetteer.Location::getUnLoCode).containsExactly("ADCAN", "ADALV");
+        assertThat(load().findNear(42.33, 1.34, 20, 1)).hasSize(1);
+        assertThat(load().findNear(0, 0, 20, 10)).isEmpty();
+        assertThat(load().findNear(42.33, 1.34, 20, -1)).isEmpty();
+    }
+}
@@ -0,0 +1,95 @@
+/*
+ * MaritimeCloud Service Registry
+ * Copyright (c) 2016 Frequentis AG
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.frequentis.maritime.mcsr.web.rest.util;
+
+import org.apache.commons.io.IOUtils;
+import org.junit.Test;
+import org.xml.sax.SAXException;
+
+import javax.xml.validation.Schema;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Test class for the XmlSchemaRegistry.
+ *
+ * @see XmlSchemaRegistry
+ */
+public class XmlSchemaRegistryTest {
+
+    private static final String SCHEMA_SERVICE_INSTANCE = "ServiceInstanceSchema.xsd";
+
+    @Test
+    public void compilesSchemaOnlyOnce() throws Exception {
+        Schema first = XmlSchemaRegistry.getSchema(SCHEMA_SERVICE_INSTANCE);
+        Schema second = XmlSchemaRegistry.getSchema(SCHEMA_SERVICE_INSTANCE);
+        assertThat(first).isSameAs(second);
+    }
+
+    @Test
+    public void validatesSampleInstanceFromStringAndBytes() throws Exception {
+        byte[] xml = loadSampleInstance();
+        assertThat(XmlUtil.validateXml(new String(xml, StandardCharsets.UTF_8), SCHEMA_SERVICE_INSTANCE)).isTrue();
+        assertThat(XmlUtil.validateXml(xml, SCHEMA_SERVICE_INSTANCE)).isTrue();
+    }
+
+    @Test(expected = SAXException.class)
+    public void rejectsInvalidInstance() throws Exception {
+        XmlUtil.validateXml("<serviceInstance/>", SCHEMA_SERVICE_INSTANCE);
+    }
+
+    @Test
+    public void validatorIsReusableAfterFailure() throws Exception {
+        try {
+            XmlUtil.validateXml("<serviceInstance/>", SCHEMA_SERVICE_INSTANCE);
+        } catch (SAXException e) {
+            // expected
+        }
+        assertThat(XmlUtil.validateXml(loadSampleInstance(), SCHEMA_SERVICE_INSTANCE)).isTrue();
+    }
+
+    @Test
+    public void recompilesSchemaAfterClear() throws Exception {
+        Schema before = XmlSchemaRegistry.getSchema(SCHEMA_SERVICE_INSTANCE);
+        XmlSchemaRegistry.clear();
+
+        Schema after = XmlSchemaRegistry.getSchema(SCHEMA_SERVICE_INSTANCE);
+
+        assertThat(after).isNotSameAs(before);
+        assertThat(XmlUtil.validateXml(loadSampleInstance(), SCHEMA_SERVICE_INSTANCE)).isTrue();
+    }
+
+    @Test
+    public void validationUsesCachedSchema() throws Exception {
+        Schema schema = XmlSchemaRegistry.getSchema(SCHEMA_SERVICE_INSTANCE);
+
+        XmlUtil.validateXml(loadSampleInstance(), SCHEMA_SERVICE_INSTANCE);
+        XmlUtil.validateXml(loadSampleInstance(), SCHEMA_SERVICE_INSTANCE);
+
+        assertThat(XmlSchemaRegistry.getSchema(SCHEMA_SERVICE_INSTANCE)).isSameAs(schema);
+    }
+
+    private byte[] loadSampleInstance() throws Exception {
+        try (InputStream in = getClass().getClassLoader().getResourceAsStream("dataload/xml/AddressForPersonLookupServiceInstance.xml")) {
+            return IOUtils.toByteArray(in);
+        }
+    }
+}
@@ -40,6 +40,7 @@ import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.boot.test.context.SpringBootTest.WebEnvironment;
 import org.springframework.boot.web.server.LocalServerPort;
+import org.springframework.context.ApplicationContext;
 import org.springframework.security.access.annotation.Secured;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.test.context.support.WithMockUser;
@@ -62,6 +63,9 @@ public class DocResourceTest {
 	@Autowired
 	private DocResource internal;
 
+	@Autowired
+	private ApplicationContext applicationContext;
+
 	@LocalServerPort
 	private int port;
 
@@ -182,6 +186,7 @@ public class DocResourceTest {
 			internal.createDoc(createDocument());
 		}
 
+		SoapTestUtils.awaitSearchIndex(applicationContext);
 		// When
 		PageDTO<DocDescriptorDTO> resultPage = client.searchDocs("name:" + randomPrefix + "*", 0);
 
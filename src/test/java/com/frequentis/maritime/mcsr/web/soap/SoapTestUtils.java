@@ -21,6 +21,11 @@ package com.frequentis.maritime.mcsr.web.soap;
 import org.apache.cxf.configuration.security.AuthorizationPolicy;
 import org.apache.cxf.frontend.ClientProxy;
 import org.apache.cxf.transport.http.HTTPConduit;
+import org.springframework.context.ApplicationContext;
+import org.springframework.data.elasticsearch.core.ElasticsearchTemplate;
+
+import com.frequentis.maritime.mcsr.service.IndexOutboxRelay;
+import com.frequentis.maritime.mcsr.service.SearchIndexingService;
 
 public final class SoapTestUtils {
 
@@ -54,4 +59,15 @@ public final class SoapTestUtils {
         cp.setAuthorization(ap);
     }
 
+    /**
+     * Make the changes committed so far visible to searches: relay the index outbox, send the queued
+     * documents and refresh all indices.
+     * @param context the application context of the test
+     */
+    public static void awaitSearchIndex(ApplicationContext context) {
+        context.getBean(IndexOutboxRelay.class).relay();
+        context.getBean(SearchIndexingService.class).flush();
+        context.getBean(ElasticsearchTemplate.class).getClient().admin().indices().prepareRefresh().get();
+    }
+
 }
@@ -42,6 +42,7 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.boot.test.context.SpringBootTest.WebEnvironment;
 import org.springframework.boot.web.server.LocalServerPort;
+import org.springframework.context.ApplicationContext;
 import org.springframework.security.test.context.support.WithMockUser;
 import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.context.junit4.SpringRunner;
@@ -64,6 +65,9 @@ public class SpecificationTemplateResourceTest {
 	@Autowired
 	private XsdService xsdService;
 
+	@Autowired
+	private ApplicationContext applicationContext;
+
 	@LocalServerPort
 	private int port;
 
@@ -230,6 +234,7 @@ public class SpecificationTemplateResourceTest {
 			internal.createSpecificationTemplate(createSpecificationTempalte());
 		}
 
+		SoapTestUtils.awaitSearchIndex(applicationContext);
 		// When
 		PageDTO<SpecificationTemplateDescriptorDTO> resultPage = client.searchSpecificationTemplates("name:" + prefix + "*", 0);
 
@@ -44,6 +44,7 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.boot.test.context.SpringBootTest.WebEnvironment;
 import org.springframework.boot.web.server.LocalServerPort;
+import org.springframework.context.ApplicationContext;
 import org.springframework.core.io.DefaultResourceLoader;
 import org.springframework.core.io.Resource;
 import org.springframework.security.test.context.support.WithMockUser;
@@ -67,6 +68,9 @@ public class SpecificationTemplateSetResourceTest {
 	@Autowired
 	SpecificationTemplateService specificationTemplateService;
 
+	@Autowired
+	private ApplicationContext applicationContext;
+
 	@LocalServerPort
 	private int port;
 
@@ -255,6 +259,7 @@ public class SpecificationTemplateSetResourceTest {
 			internal.createSpecificationTemplateSet(createSpecificationTemplateSetParameter());
 		}
 
+		SoapTestUtils.awaitSearchIndex(applicationContext);
 		// When
 		PageDTO<SpecificationTemplateSetDescriptorDTO> resultPage = client.searchSpecificationTemplateSets("name:" + prefix + "*", 0);
 
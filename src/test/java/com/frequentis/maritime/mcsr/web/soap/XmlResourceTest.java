@@ -39,6 +39,7 @@ import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.boot.test.context.SpringBootTest.WebEnvironment;
 import org.springframework.boot.web.server.LocalServerPort;
+import org.springframework.context.ApplicationContext;
 import org.springframework.core.io.DefaultResourceLoader;
 import org.springframework.core.io.Resource;
 import org.springframework.security.test.context.support.WithMockUser;
@@ -60,6 +61,9 @@ public class XmlResourceTest {
 	@Autowired
 	private XmlResource internal;
 
+	@Autowired
+	private ApplicationContext applicationContext;
+
 	@LocalServerPort
 	private int port;
 
@@ -176,6 +180,7 @@ public class XmlResourceTest {
 			internal.createXml(createXml());
 		}
 
+		SoapTestUtils.awaitSearchIndex(applicationContext);
 		// When
 		PageDTO<XmlDescriptorDTO> resultPage = client.searchXmls("name:" + prefix + "*", 0);
 
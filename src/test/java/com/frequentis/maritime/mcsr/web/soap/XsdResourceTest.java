@@ -35,6 +35,7 @@ import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.boot.test.context.SpringBootTest.WebEnvironment;
 import org.springframework.boot.web.server.LocalServerPort;
+import org.springframework.context.ApplicationContext;
 import org.springframework.security.test.context.support.WithMockUser;
 import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.context.junit4.SpringRunner;
@@ -54,6 +55,9 @@ public class XsdResourceTest {
 	@Autowired
 	private XsdResource internal;
 
+	@Autowired
+	private ApplicationContext applicationContext;
+
 	@LocalServerPort
 	private int port;
 
@@ -157,6 +161,7 @@ public class XsdResourceTest {
 			internal.createXsd(createXsd());
 		}
 
+		SoapTestUtils.awaitSearchIndex(applicationContext);
 		// When
 		PageDTO<XsdDescriptorDTO> resultPage = client.searchXsds("name:" + prefix + "*", 0);
 
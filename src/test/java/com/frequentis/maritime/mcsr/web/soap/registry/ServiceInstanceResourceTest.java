@@ -70,6 +70,7 @@ import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.boot.test.context.SpringBootTest.WebEnvironment;
 import org.springframework.boot.web.server.LocalServerPort;
+import org.springframework.context.ApplicationContext;
 import org.springframework.core.io.DefaultResourceLoader;
 import org.springframework.core.io.Resource;
 import org.springframework.security.test.context.support.WithMockUser;
@@ -104,6 +105,9 @@ public class ServiceInstanceResourceTest {
 	@Autowired
 	SpecificationTemplateService specTemplateService;
 
+	@Autowired
+	private ApplicationContext applicationContext;
+
 	@LocalServerPort
 	private int port;
 
@@ -444,6 +448,7 @@ public class ServiceInstanceResourceTest {
 			instanceInternal.createInstance(prepareValidWithXML());
 		}
 
+		SoapTestUtils.awaitSearchIndex(applicationContext);
 		// When
 		long count = client.searchInstances("name:" + prefix + "*", false, true, 0).itemTotalCount;
 		// Then
@@ -464,6 +469,7 @@ public class ServiceInstanceResourceTest {
 			instances[i] = instanceInternal.createInstance(instPar);
 			instanceInternal.createInstance(prepareValidWithXML());
 		}
+		SoapTestUtils.awaitSearchIndex(applicationContext);
 		// When
 		PageDTO<InstanceDTO> result = client.searchInstancesByKeywords(customKeyword, false, true, 0);
 		// Then
@@ -488,6 +494,7 @@ public class ServiceInstanceResourceTest {
 		oi.name += " PE";
 		instanceInternal.createInstance(prepareValidWithXML(oi));
 
+		SoapTestUtils.awaitSearchIndex(applicationContext);
 		// When
 		PageDTO<InstanceDTO> result = client.searchInstancesByUnlocode(randomPrefix + "FR", false, true, 0);
 
@@ -508,6 +515,7 @@ public class ServiceInstanceResourceTest {
 			instanceInternal.createInstance(prepareValidWithXML());
 		}
 
+		SoapTestUtils.awaitSearchIndex(applicationContext);
 		// When
 		PageDTO<InstanceDTO> result = client.searchInstancesByLocation("26.31311263768267", "-70.048828125",
 		        "name:" + iv.name, false, true, 0);
@@ -534,6 +542,7 @@ public class ServiceInstanceResourceTest {
 		        + "[ [ [ 14.372949600219725, 50.11711093052596 ], " + "[ 14.354925155639648, 50.07526499644457 ], "
 		        + "[ 14.411916732788084, 50.11573500084129 ], " + "[ 14.372949600219725, 50.11711093052596 ] ] ] }";
 
+		SoapTestUtils.awaitSearchIndex(applicationContext);
 		// When
 		PageDTO<InstanceDTO> resultPage = client.searchInstancesByGeometryGeojson(polygon, "name:" + iv.name, false, true, 0);
 		PageDTO<InstanceDTO> badResultPage = client.searchInstancesByGeometryGeojson(badPolygon, "name:" + iv.name,
@@ -563,6 +572,7 @@ public class ServiceInstanceResourceTest {
 		        + "14.403848648071289 50.086776271666096," + "14.403204917907715 50.09652289335359,"
 		        + "14.421186447143555 50.096330182758116))";
 
+		SoapTestUtils.awaitSearchIndex(applicationContext);
 		// When
 		PageDTO<InstanceDTO> resultPage = client.searchInstancesByGeometryWKT(polygon, "name:" + iv.name, false, true, 0);
 		PageDTO<InstanceDTO> badResultPage = client.searchInstancesByGeometryWKT(badPolygon, "name:" + iv.name, false, true,
@@ -37,6 +37,7 @@ import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.boot.test.context.SpringBootTest.WebEnvironment;
 import org.springframework.boot.web.server.LocalServerPort;
+import org.springframework.context.ApplicationContext;
 import org.springframework.core.io.DefaultResourceLoader;
 import org.springframework.core.io.Resource;
 import org.springframework.security.test.context.support.WithMockUser;
@@ -69,6 +70,9 @@ public class ServiceSpecificationResourceTest {
 	@Autowired
 	private	SpecificationService specService;
 
+	@Autowired
+	private ApplicationContext applicationContext;
+
 	@LocalServerPort
 	private int port;
 
@@ -281,6 +285,7 @@ public class ServiceSpecificationResourceTest {
 			serviceSpecificationResourceInternal.createSpecification(newSpec);
 		}
 
+		SoapTestUtils.awaitSearchIndex(applicationContext);
 		// When
 		PageDTO<?> results = client.searchSpecifications("name:" + searchSpecNamePrefix + "*", 0);
 		PageDTO<?> results2 = client.searchSpecifications("name:" + searchSpecNamePrefix + "*", 1);
@@ -311,6 +316,7 @@ public class ServiceSpecificationResourceTest {
 			serviceSpecificationResourceInternal.createSpecification(newSpec);
 		}
 
+		SoapTestUtils.awaitSearchIndex(applicationContext);
 		// When
 		PageDTO<?> results = client.searchSpecifications("organizationId:" + QueryParser.escape(ORGANIZATION_ID) + "*", 0);
 
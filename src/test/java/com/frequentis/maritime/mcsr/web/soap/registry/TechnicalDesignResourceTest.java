@@ -30,6 +30,7 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.boot.test.context.SpringBootTest.WebEnvironment;
 import org.springframework.boot.web.server.LocalServerPort;
+import org.springframework.context.ApplicationContext;
 import org.springframework.core.io.DefaultResourceLoader;
 import org.springframework.core.io.Resource;
 import org.springframework.data.elasticsearch.core.ElasticsearchTemplate;
@@ -56,6 +57,9 @@ public class TechnicalDesignResourceTest {
 	@Autowired
 	ElasticsearchTemplate est;
 
+	@Autowired
+	private ApplicationContext applicationContext;
+
 	@LocalServerPort
 	private int port;
 
@@ -240,6 +244,7 @@ public class TechnicalDesignResourceTest {
 			designResourceInternal.createDesign(d);
 		}
 
+		SoapTestUtils.awaitSearchIndex(applicationContext);
 		// When
 		PageDTO<DesignDescriptorDTO> pdd = client.searchDesigns("name:customSearch*", 0);
 